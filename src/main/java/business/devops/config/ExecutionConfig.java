@@ -0,0 +1,34 @@
+package business.devops.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 执行引擎配置类（DevOps业务）
+ *
+ * 从环境变量或application.properties读取配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "execution")
+public class ExecutionConfig {
+
+    // 虚拟线程钉住诊断（JFR jdk.VirtualThreadPinned），关闭应用时打印报告
+    private boolean pinningDiagnosticsEnabled = false;
+    private long pinningThresholdMs = 20; // 钉住时长超过此值才报告
+
+    public boolean isPinningDiagnosticsEnabled() {
+        return pinningDiagnosticsEnabled;
+    }
+
+    public void setPinningDiagnosticsEnabled(boolean pinningDiagnosticsEnabled) {
+        this.pinningDiagnosticsEnabled = pinningDiagnosticsEnabled;
+    }
+
+    public long getPinningThresholdMs() {
+        return pinningThresholdMs;
+    }
+
+    public void setPinningThresholdMs(long pinningThresholdMs) {
+        this.pinningThresholdMs = pinningThresholdMs;
+    }
+}
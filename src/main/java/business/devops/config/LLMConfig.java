@@ -1,5 +1,8 @@
 package business.devops.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,6 +19,79 @@ public class LLMConfig {
     private String baseUrl;
     private String modelName;
     private String provider = "deepseek"; // deepseek, ollama, openai
+    private List<String> apiKeys = new ArrayList<>(); // 多个Key时按通道分摊配额
+    
+    // 多副本端点（同一模型的多个 OpenAI 兼容推理副本，负载均衡 + 会话亲和）
+    private List<String> baseUrls = new ArrayList<>(); // 多于一个时替代 baseUrl
+    private int endpointFailureThreshold = 3; // 连续失败多少次后摘除副本
+    private int endpointEjectionSeconds = 30; // 首次摘除时长，再次摘除时翻倍
+    
+    // HTTP连接配置（LLMClientFactory 使用）
+    private int connectTimeoutSeconds = 10;
+    private int requestTimeoutSeconds = 120;
+    private int connectionPoolSize = 0; // 0 表示使用JDK默认值
+    private int keepAliveSeconds = 0; // 0 表示使用JDK默认值
+    private boolean prewarm = true;
+    private List<String> requestGzipProviders = new ArrayList<>(); // 请求体使用gzip压缩的提供者
+    
+    // 限流配置（每个API Key）
+    private long rateLimitRpm = 0; // 0 表示不限制
+    private long rateLimitTpm = 0; // 0 表示不限制
+    private int initialConcurrency = 4;
+    private int maxConcurrency = 32;
+    private int maxRetries = 5;
+    private long retryBaseBackoffMs = 500; // 无 Retry-After 时的首次退避，之后指数增长
+    private long retryMaxBackoffMs = 30000; // 最长退避；Retry-After 超过此值时不再重试
+    
+    // 端点熔断（同一端点的所有客户端共享一个熔断器）
+    private boolean circuitBreakerEnabled = true;
+    private int circuitFailureThreshold = 5; // 连续失败多少次后熔断
+    private int circuitOpenSeconds = 30; // 熔断时长，到期后放行探测请求
+    
+    // 备用提供者（按顺序故障转移，主提供者超过p95延迟时向第一个备用提供者发起对冲请求）
+    private List<String> fallbackProviders = new ArrayList<>(); // 如 ollama,openai
+    private boolean hedgeEnabled = true;
+    private long hedgeInitialDelayMs = 8000;
+    private long hedgeMinDelayMs = 1000;
+    private String deepseekApiKey;
+    private String openaiApiKey;
+    private String openaiModelName;
+    private String ollamaBaseUrl;
+    private String ollamaModelName;
+    
+    // Ollama 本地推理优化
+    private String ollamaKeepAlive = "30m"; // 模型常驻时间（如 30m、-1 表示一直常驻），为空时使用服务端默认（5分钟）
+    private boolean ollamaPreload = true; // 启动时预加载模型
+    private boolean ollamaContextReuse = true; // 同一会话相邻轮次复用 context，只发送新消息
+    private int ollamaMinNumCtx = 4096;
+    private int ollamaMaxNumCtx = 16384; // 0 表示不设置 num_ctx（使用模型默认值）
+    
+    // 响应缓存配置
+    private boolean cacheEnabled = false;
+    private int cacheMaxEntries = 1000;
+    private int cacheTtlMinutes = 60; // 0 表示不过期
+    private String cacheDiskPath; // 为空时只使用内存缓存
+    private int cacheDiskMaxMb = 64;
+    private List<String> cacheExcludedAgents = new ArrayList<>();
+    
+    // 合并同一时刻的相同请求（只向上游发起一次）
+    private boolean coalescingEnabled = true;
+    
+    // 按智能体角色 / 提示长度路由到不同模型（按顺序匹配，没有匹配时使用主提供者）
+    private List<Route> routes = new ArrayList<>();
+    
+    // 上下文窗口预算（发送前统计 token 数，超出时在本地裁剪）
+    private String tokenizerVocabPath; // cl100k_base 词表（tiktoken 格式），为空时使用估算
+    private int contextWindowTokens = 65536;
+    private int reservedOutputTokens = 4096;
+    
+    // 模拟LLM（llm.provider=simulated，用于压测，不调用真实API）
+    private String simRulesPath; // 为空时使用内置演示逻辑
+    private String simTtftMs = "const:0"; // 首 token 延迟分布，如 lognormal:800,0.4
+    private String simTokensPerSecond; // 输出速度分布，为空表示立即输出
+    private double simErrorRate = 0;
+    private double simRateLimitRate = 0;
+    private long simSeed = 42;
     
     public LLMConfig() {
         // 优先从环境变量读取
@@ -65,8 +141,511 @@ public class LLMConfig {
         this.provider = provider;
     }
     
+    public List<String> getApiKeys() {
+        return apiKeys;
+    }
+    
+    public void setApiKeys(List<String> apiKeys) {
+        this.apiKeys = apiKeys;
+    }
+    
+    public List<String> getBaseUrls() {
+        return baseUrls;
+    }
+    
+    public void setBaseUrls(List<String> baseUrls) {
+        this.baseUrls = baseUrls;
+    }
+    
+    public int getEndpointFailureThreshold() {
+        return endpointFailureThreshold;
+    }
+    
+    public void setEndpointFailureThreshold(int endpointFailureThreshold) {
+        this.endpointFailureThreshold = endpointFailureThreshold;
+    }
+    
+    public int getEndpointEjectionSeconds() {
+        return endpointEjectionSeconds;
+    }
+    
+    public void setEndpointEjectionSeconds(int endpointEjectionSeconds) {
+        this.endpointEjectionSeconds = endpointEjectionSeconds;
+    }
+    
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+    
+    public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+    }
+    
+    public int getRequestTimeoutSeconds() {
+        return requestTimeoutSeconds;
+    }
+    
+    public void setRequestTimeoutSeconds(int requestTimeoutSeconds) {
+        this.requestTimeoutSeconds = requestTimeoutSeconds;
+    }
+    
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+    
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = connectionPoolSize;
+    }
+    
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+    
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+    
+    public List<String> getRequestGzipProviders() {
+        return requestGzipProviders;
+    }
+    
+    public void setRequestGzipProviders(List<String> requestGzipProviders) {
+        this.requestGzipProviders = requestGzipProviders;
+    }
+    
+    public boolean isPrewarm() {
+        return prewarm;
+    }
+    
+    public void setPrewarm(boolean prewarm) {
+        this.prewarm = prewarm;
+    }
+    
+    public long getRateLimitRpm() {
+        return rateLimitRpm;
+    }
+    
+    public void setRateLimitRpm(long rateLimitRpm) {
+        this.rateLimitRpm = rateLimitRpm;
+    }
+    
+    public long getRateLimitTpm() {
+        return rateLimitTpm;
+    }
+    
+    public void setRateLimitTpm(long rateLimitTpm) {
+        this.rateLimitTpm = rateLimitTpm;
+    }
+    
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+    
+    public void setInitialConcurrency(int initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+    
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+    
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+    
+    public long getRetryBaseBackoffMs() {
+        return retryBaseBackoffMs;
+    }
+    
+    public void setRetryBaseBackoffMs(long retryBaseBackoffMs) {
+        this.retryBaseBackoffMs = retryBaseBackoffMs;
+    }
+    
+    public long getRetryMaxBackoffMs() {
+        return retryMaxBackoffMs;
+    }
+    
+    public void setRetryMaxBackoffMs(long retryMaxBackoffMs) {
+        this.retryMaxBackoffMs = retryMaxBackoffMs;
+    }
+    
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+    
+    public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+    }
+    
+    public int getCircuitFailureThreshold() {
+        return circuitFailureThreshold;
+    }
+    
+    public void setCircuitFailureThreshold(int circuitFailureThreshold) {
+        this.circuitFailureThreshold = circuitFailureThreshold;
+    }
+    
+    public int getCircuitOpenSeconds() {
+        return circuitOpenSeconds;
+    }
+    
+    public void setCircuitOpenSeconds(int circuitOpenSeconds) {
+        this.circuitOpenSeconds = circuitOpenSeconds;
+    }
+    
+    public List<String> getFallbackProviders() {
+        return fallbackProviders;
+    }
+    
+    public void setFallbackProviders(List<String> fallbackProviders) {
+        this.fallbackProviders = fallbackProviders;
+    }
+    
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+    
+    public void setHedgeEnabled(boolean hedgeEnabled) {
+        this.hedgeEnabled = hedgeEnabled;
+    }
+    
+    public long getHedgeInitialDelayMs() {
+        return hedgeInitialDelayMs;
+    }
+    
+    public void setHedgeInitialDelayMs(long hedgeInitialDelayMs) {
+        this.hedgeInitialDelayMs = hedgeInitialDelayMs;
+    }
+    
+    public long getHedgeMinDelayMs() {
+        return hedgeMinDelayMs;
+    }
+    
+    public void setHedgeMinDelayMs(long hedgeMinDelayMs) {
+        this.hedgeMinDelayMs = hedgeMinDelayMs;
+    }
+    
+    public String getDeepseekApiKey() {
+        return deepseekApiKey;
+    }
+    
+    public void setDeepseekApiKey(String deepseekApiKey) {
+        this.deepseekApiKey = deepseekApiKey;
+    }
+    
+    public String getOpenaiApiKey() {
+        return openaiApiKey;
+    }
+    
+    public void setOpenaiApiKey(String openaiApiKey) {
+        this.openaiApiKey = openaiApiKey;
+    }
+    
+    public String getOpenaiModelName() {
+        return openaiModelName;
+    }
+    
+    public void setOpenaiModelName(String openaiModelName) {
+        this.openaiModelName = openaiModelName;
+    }
+    
+    public String getOllamaBaseUrl() {
+        return ollamaBaseUrl;
+    }
+    
+    public void setOllamaBaseUrl(String ollamaBaseUrl) {
+        this.ollamaBaseUrl = ollamaBaseUrl;
+    }
+    
+    public String getOllamaModelName() {
+        return ollamaModelName;
+    }
+    
+    public void setOllamaModelName(String ollamaModelName) {
+        this.ollamaModelName = ollamaModelName;
+    }
+    
+    public String getOllamaKeepAlive() {
+        return ollamaKeepAlive;
+    }
+    
+    public void setOllamaKeepAlive(String ollamaKeepAlive) {
+        this.ollamaKeepAlive = ollamaKeepAlive;
+    }
+    
+    public boolean isOllamaPreload() {
+        return ollamaPreload;
+    }
+    
+    public void setOllamaPreload(boolean ollamaPreload) {
+        this.ollamaPreload = ollamaPreload;
+    }
+    
+    public boolean isOllamaContextReuse() {
+        return ollamaContextReuse;
+    }
+    
+    public void setOllamaContextReuse(boolean ollamaContextReuse) {
+        this.ollamaContextReuse = ollamaContextReuse;
+    }
+    
+    public int getOllamaMinNumCtx() {
+        return ollamaMinNumCtx;
+    }
+    
+    public void setOllamaMinNumCtx(int ollamaMinNumCtx) {
+        this.ollamaMinNumCtx = ollamaMinNumCtx;
+    }
+    
+    public int getOllamaMaxNumCtx() {
+        return ollamaMaxNumCtx;
+    }
+    
+    public void setOllamaMaxNumCtx(int ollamaMaxNumCtx) {
+        this.ollamaMaxNumCtx = ollamaMaxNumCtx;
+    }
+    
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+    
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+    
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+    
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+    
+    public int getCacheTtlMinutes() {
+        return cacheTtlMinutes;
+    }
+    
+    public void setCacheTtlMinutes(int cacheTtlMinutes) {
+        this.cacheTtlMinutes = cacheTtlMinutes;
+    }
+    
+    public String getCacheDiskPath() {
+        return cacheDiskPath;
+    }
+    
+    public void setCacheDiskPath(String cacheDiskPath) {
+        this.cacheDiskPath = cacheDiskPath;
+    }
+    
+    public int getCacheDiskMaxMb() {
+        return cacheDiskMaxMb;
+    }
+    
+    public void setCacheDiskMaxMb(int cacheDiskMaxMb) {
+        this.cacheDiskMaxMb = cacheDiskMaxMb;
+    }
+    
+    public List<String> getCacheExcludedAgents() {
+        return cacheExcludedAgents;
+    }
+    
+    public void setCacheExcludedAgents(List<String> cacheExcludedAgents) {
+        this.cacheExcludedAgents = cacheExcludedAgents;
+    }
+    
+    public boolean isCoalescingEnabled() {
+        return coalescingEnabled;
+    }
+    
+    public void setCoalescingEnabled(boolean coalescingEnabled) {
+        this.coalescingEnabled = coalescingEnabled;
+    }
+    
+    public List<Route> getRoutes() {
+        return routes;
+    }
+    
+    public void setRoutes(List<Route> routes) {
+        this.routes = routes;
+    }
+    
+    public String getTokenizerVocabPath() {
+        return tokenizerVocabPath;
+    }
+    
+    public void setTokenizerVocabPath(String tokenizerVocabPath) {
+        this.tokenizerVocabPath = tokenizerVocabPath;
+    }
+    
+    public int getContextWindowTokens() {
+        return contextWindowTokens;
+    }
+    
+    public void setContextWindowTokens(int contextWindowTokens) {
+        this.contextWindowTokens = contextWindowTokens;
+    }
+    
+    public int getReservedOutputTokens() {
+        return reservedOutputTokens;
+    }
+    
+    public void setReservedOutputTokens(int reservedOutputTokens) {
+        this.reservedOutputTokens = reservedOutputTokens;
+    }
+    
+    public String getSimRulesPath() {
+        return simRulesPath;
+    }
+    
+    public void setSimRulesPath(String simRulesPath) {
+        this.simRulesPath = simRulesPath;
+    }
+    
+    public String getSimTtftMs() {
+        return simTtftMs;
+    }
+    
+    public void setSimTtftMs(String simTtftMs) {
+        this.simTtftMs = simTtftMs;
+    }
+    
+    public String getSimTokensPerSecond() {
+        return simTokensPerSecond;
+    }
+    
+    public void setSimTokensPerSecond(String simTokensPerSecond) {
+        this.simTokensPerSecond = simTokensPerSecond;
+    }
+    
+    public double getSimErrorRate() {
+        return simErrorRate;
+    }
+    
+    public void setSimErrorRate(double simErrorRate) {
+        this.simErrorRate = simErrorRate;
+    }
+    
+    public double getSimRateLimitRate() {
+        return simRateLimitRate;
+    }
+    
+    public void setSimRateLimitRate(double simRateLimitRate) {
+        this.simRateLimitRate = simRateLimitRate;
+    }
+    
+    public long getSimSeed() {
+        return simSeed;
+    }
+    
+    public void setSimSeed(long simSeed) {
+        this.simSeed = simSeed;
+    }
+    
     public boolean isConfigured() {
-        return apiKey != null && !apiKey.isEmpty();
+        return (apiKey != null && !apiKey.isEmpty()) || !apiKeys.isEmpty();
+    }
+    
+    /**
+     * 模型路由配置（llm.routes[0].name=fast ...）
+     */
+    public static class Route {
+        private String name; // 路由名称（用于日志）
+        private String provider; // deepseek, openai, ollama（为空时使用主提供者）
+        private String modelName;
+        private String baseUrl;
+        private String apiKey; // 为空时使用该提供者的Key
+        private List<String> agents = new ArrayList<>(); // 服务的智能体（为空表示所有智能体）
+        private int minPromptTokens = 0;
+        private int maxPromptTokens = 0; // 0 表示不限
+        private long maxP90LatencyMs = 0; // 近期p90延迟上限，0 表示不限
+        private double maxErrorRate = 0.5; // 近期错误率上限，超出时暂停使用该路由
+        
+        public String getName() {
+            return name;
+        }
+        
+        public void setName(String name) {
+            this.name = name;
+        }
+        
+        public String getProvider() {
+            return provider;
+        }
+        
+        public void setProvider(String provider) {
+            this.provider = provider;
+        }
+        
+        public String getModelName() {
+            return modelName;
+        }
+        
+        public void setModelName(String modelName) {
+            this.modelName = modelName;
+        }
+        
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+        
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+        
+        public String getApiKey() {
+            return apiKey;
+        }
+        
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+        
+        public List<String> getAgents() {
+            return agents;
+        }
+        
+        public void setAgents(List<String> agents) {
+            this.agents = agents;
+        }
+        
+        public int getMinPromptTokens() {
+            return minPromptTokens;
+        }
+        
+        public void setMinPromptTokens(int minPromptTokens) {
+            this.minPromptTokens = minPromptTokens;
+        }
+        
+        public int getMaxPromptTokens() {
+            return maxPromptTokens;
+        }
+        
+        public void setMaxPromptTokens(int maxPromptTokens) {
+            this.maxPromptTokens = maxPromptTokens;
+        }
+        
+        public long getMaxP90LatencyMs() {
+            return maxP90LatencyMs;
+        }
+        
+        public void setMaxP90LatencyMs(long maxP90LatencyMs) {
+            this.maxP90LatencyMs = maxP90LatencyMs;
+        }
+        
+        public double getMaxErrorRate() {
+            return maxErrorRate;
+        }
+        
+        public void setMaxErrorRate(double maxErrorRate) {
+            this.maxErrorRate = maxErrorRate;
+        }
     }
 }
-
@@ -1,14 +1,18 @@
 package business.devops.service;
 
+import business.devops.config.ExecutionConfig;
 import framework.agent.AgentFramework;
 import framework.agent.PlanAndSolve;
 import framework.agent.ReActAgent;
+import framework.execution.PinningDiagnostics;
 import framework.llm.LLMClient;
 import framework.tool.MCPClient;
 import framework.tool.MCPTool;
 import framework.tool.StdioMCPClient;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -19,12 +23,24 @@ import java.util.*;
 @Service
 public class AgentService {
     
+    /**
+     * 文件系统 MCP 服务器中的只读工具（服务器未声明 readOnlyHint 时使用），结果在调用链内复用
+     */
+    private static final Set<String> READ_ONLY_FILE_TOOLS = Set.of(
+        "read_file", "read_text_file", "read_multiple_files", "list_directory",
+        "directory_tree", "search_files", "get_file_info", "list_allowed_directories"
+    );
+    
     private final LLMClientService llmClientService;
     private final AgentFramework framework;
     
-    public AgentService(LLMClientService llmClientService) {
+    public AgentService(LLMClientService llmClientService, ExecutionConfig executionConfig) {
         this.llmClientService = llmClientService;
+        if (executionConfig.isPinningDiagnosticsEnabled()) {
+            PinningDiagnostics.start(Duration.ofMillis(executionConfig.getPinningThresholdMs()));
+        }
         this.framework = new AgentFramework();
+        this.framework.setContextBudget(llmClientService.getContextBudget());
         initializeAgents();
     }
     
@@ -39,18 +55,18 @@ public class AgentService {
         // 2. 创建DevOps业务所需要的子智能体
 
         // 2.1 创建需求分析智能体,使用 ReActAgent 实现
-        LLMClient llmClient = llmClientService.getLLMClient();
-        ReActAgent requirementAgent = createRequirementAgent(llmClient);
+        ReActAgent requirementAgent = createRequirementAgent(llmClientService.getLLMClient("requirement_agent"));
 
         // 2.2 创建带权限控制的需求分析智能体（权限演示）
         // ⭐ 权限控制示例：限制智能体只能调用特定的工具或子智能体
-        ReActAgent restrictedRequirementAgent = createRestrictedRequirementAgent(llmClient);
+        ReActAgent restrictedRequirementAgent = createRestrictedRequirementAgent(
+            llmClientService.getLLMClient("restricted_requirement_agent"));
 
         // 2.3 创建编码智能体
-        ReActAgent codeAgent = createCodeAgent(llmClient);
+        ReActAgent codeAgent = createCodeAgent(llmClientService.getLLMClient("code_agent"));
 
         // 3. 创建编码需求的主控智能体（ReAct 模式）
-        ReActAgent masterAgent = createMasterAgent(llmClient);
+        ReActAgent masterAgent = createMasterAgent(llmClientService.getLLMClient("devops_master"));
         
         // 4. 注册编码需求的智能体
         framework.registerAgent("requirement_agent", requirementAgent);
@@ -67,13 +83,12 @@ public class AgentService {
         
         initializeMCPTools();
         
-        LLMClient llmClient = llmClientService.getLLMClient();
-        
          // 创建 PlanAndSolve 流程所需的智能体（演示）
-         ReActAgent plannerAgent = createPlannerAgent(llmClient);
-         ReActAgent executorAgent = createExecutorAgent(llmClient);
+         ReActAgent plannerAgent = createPlannerAgent(llmClientService.getLLMClient("planner_agent"));
+         ReActAgent executorAgent = createExecutorAgent(llmClientService.getLLMClient("executor_agent"));
          // 创建 PlanAndSolve 流程主控智能体（演示）
-         PlanAndSolve planAndSolveMaster = createPlanAndSolveMaster(llmClient);
+         PlanAndSolve planAndSolveMaster = createPlanAndSolveMaster(
+             llmClientService.getLLMClient("plan_and_solve_master"));
          
 
         // PlanAndSolve 流程所需要的智能体
@@ -112,11 +127,15 @@ public class AgentService {
             
             // 注册发现的工具
             for (MCPClient.MCPToolInfo toolInfo : fileToolsClient.getTools()) {
+                Boolean readOnlyHint = toolInfo.getReadOnlyHint();
+                boolean readOnly = readOnlyHint != null ? readOnlyHint : READ_ONLY_FILE_TOOLS.contains(toolInfo.getName());
                 MCPTool mcpTool = new MCPTool(
                     toolInfo.getName(),
                     toolInfo.getDescription(),
                     fileToolsClient,
-                    "file_tools"
+                    "file_tools",
+                    toolInfo.getInputSchema(),
+                    readOnly
                 );
                 framework.registerTool(toolInfo.getName(), mcpTool);
             }
@@ -445,5 +464,15 @@ public class AgentService {
     public AgentFramework getFramework() {
         return framework;
     }
+    
+    /**
+     * 应用关闭时打印虚拟线程钉住诊断报告
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (PinningDiagnostics.isRunning()) {
+            PinningDiagnostics.printReport();
+            PinningDiagnostics.stop();
+        }
+    }
 }
-
@@ -1,33 +1,207 @@
 package business.devops.service;
 
 import business.devops.config.LLMConfig;
+import framework.llm.CoalescingLLMClient;
+import framework.llm.HedgedLLMClient;
 import framework.llm.LLMClient;
+import framework.llm.LLMClientFactory;
+import framework.llm.LoadBalancedLLMClient;
 import framework.llm.DeepSeekLLMClient;
 import framework.llm.OllamaLLMClient;
 import framework.llm.OpenAILLMClient;
+import framework.llm.PromptCacheStats;
+import framework.llm.RateLimitedLLMClient;
+import framework.llm.RetryPolicy;
+import framework.llm.RoutingLLMClient;
 import framework.llm.SimpleLLMClient;
+import framework.llm.cache.CachingLLMClient;
+import framework.llm.cache.LLMResponseCache;
+import framework.llm.token.ContextBudget;
+import framework.llm.token.Tokenizer;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * LLM客户端服务（DevOps业务）
  * 
  * 负责创建和初始化LLM客户端
+ * 所有真实客户端都通过 LLMClientFactory 创建，共享同一端点的 HttpClient（连接池、HTTP/2、TLS会话）
  */
 @Service
 public class LLMClientService {
     
     private final LLMConfig llmConfig;
+    private final LLMClientFactory llmClientFactory;
+    private final LLMResponseCache responseCache;
     private LLMClient llmClient;
+    private final LLMClient sharedLLMClient;
+    private final LLMClient uncachedLLMClient;
+    private final ContextBudget contextBudget;
+    private final RoutingLLMClient router;
+    private final Map<String, LLMClient> agentClients = new ConcurrentHashMap<>();
+    private final List<LoadBalancedLLMClient> endpointPools = new ArrayList<>();
     
     public LLMClientService(LLMConfig llmConfig) {
         this.llmConfig = llmConfig;
+        this.contextBudget = createContextBudget();
+        this.llmClientFactory = createLLMClientFactory();
         this.llmClient = createLLMClient();
+        this.router = createRouter(llmClient);
+        this.responseCache = createResponseCache();
+        
+        // 装饰顺序：合并相同请求 → 响应缓存 → 模型路由 → 对冲/故障转移 → 限流 → 端点熔断 → 原始客户端
+        LLMClient baseClient = router != null ? router : llmClient;
+        this.sharedLLMClient = decorate(baseClient, true);
+        this.uncachedLLMClient = responseCache != null ? decorate(baseClient, false) : sharedLLMClient;
+    }
+    
+    /**
+     * 包装响应缓存和相同请求合并层
+     */
+    private LLMClient decorate(LLMClient client, boolean cached) {
+        return coalesce(cached && responseCache != null ? new CachingLLMClient(client, responseCache) : client);
+    }
+    
+    /**
+     * 创建模型路由（未配置路由时返回null）
+     * 每个路由使用独立的限流通道，默认客户端为主提供者（含对冲/故障转移）
+     */
+    private RoutingLLMClient createRouter(LLMClient defaultClient) {
+        if (llmConfig.getRoutes().isEmpty()) {
+            return null;
+        }
+        List<RoutingLLMClient.Route> routes = new ArrayList<>();
+        for (LLMConfig.Route config : llmConfig.getRoutes()) {
+            String provider = config.getProvider() != null && !config.getProvider().isBlank()
+                ? config.getProvider().trim().toLowerCase() : llmConfig.getProvider();
+            LLMClient client = llmClientFactory.createClient(
+                provider, resolveApiKey(provider, config.getApiKey()),
+                blankToNull(config.getModelName()), blankToNull(config.getBaseUrl()));
+            if (client == null) {
+                System.out.println("⚠️  路由 " + config.getName() + " 的提供者未知: " + provider + "，已跳过");
+                continue;
+            }
+            RoutingLLMClient.Route route = new RoutingLLMClient.Route(
+                config.getName() != null ? config.getName() : provider,
+                rateLimit(List.of(client)),
+                Set.copyOf(config.getAgents()),
+                config.getMinPromptTokens(),
+                config.getMaxPromptTokens(),
+                config.getMaxP90LatencyMs(),
+                config.getMaxErrorRate()
+            );
+            routes.add(route);
+            System.out.println("🧭 LLM路由: " + route);
+        }
+        System.out.println();
+        return new RoutingLLMClient(routes, defaultClient, contextBudget.getTokenizer());
+    }
+    
+    /**
+     * 路由使用的API Key：显式配置 → 该提供者的Key → 主提供者的Key
+     */
+    private String resolveApiKey(String provider, String apiKey) {
+        if (blankToNull(apiKey) != null) {
+            return apiKey;
+        }
+        if ("deepseek".equals(provider) && blankToNull(llmConfig.getDeepseekApiKey()) != null) {
+            return llmConfig.getDeepseekApiKey();
+        }
+        if ("openai".equals(provider) && blankToNull(llmConfig.getOpenaiApiKey()) != null) {
+            return llmConfig.getOpenaiApiKey();
+        }
+        if (blankToNull(llmConfig.getApiKey()) == null && !llmConfig.getApiKeys().isEmpty()) {
+            return llmConfig.getApiKeys().get(0);
+        }
+        return llmConfig.getApiKey();
+    }
+    
+    /**
+     * 创建上下文窗口预算（配置了词表时使用 BPE 分词器，否则按字符数估算）
+     */
+    private ContextBudget createContextBudget() {
+        Tokenizer tokenizer = Tokenizer.estimating();
+        String vocabPath = blankToNull(llmConfig.getTokenizerVocabPath());
+        if (vocabPath != null) {
+            try {
+                tokenizer = Tokenizer.cl100k(Path.of(vocabPath));
+            } catch (RuntimeException e) {
+                System.out.println("⚠️  加载分词器词表失败（" + e.getMessage() + "），按字符数估算 token\n");
+            }
+        }
+        return new ContextBudget(tokenizer, llmConfig.getContextWindowTokens(), llmConfig.getReservedOutputTokens());
+    }
+    
+    /**
+     * 创建LLM客户端工厂
+     */
+    private LLMClientFactory createLLMClientFactory() {
+        LLMClientFactory factory = new LLMClientFactory(
+            Duration.ofSeconds(llmConfig.getConnectTimeoutSeconds()),
+            llmConfig.getRequestTimeoutSeconds() > 0 ? Duration.ofSeconds(llmConfig.getRequestTimeoutSeconds()) : null,
+            llmConfig.getConnectionPoolSize(),
+            llmConfig.getKeepAliveSeconds() > 0 ? Duration.ofSeconds(llmConfig.getKeepAliveSeconds()) : null
+        );
+        factory.setGzipProviders(llmConfig.getRequestGzipProviders());
+        factory.setCircuitBreakerSettings(
+            llmConfig.getCircuitFailureThreshold(), Duration.ofSeconds(llmConfig.getCircuitOpenSeconds()));
+        
+        OllamaLLMClient.Settings ollamaSettings = new OllamaLLMClient.Settings();
+        ollamaSettings.setKeepAlive(blankToNull(llmConfig.getOllamaKeepAlive()));
+        ollamaSettings.setContextReuse(llmConfig.isOllamaContextReuse());
+        ollamaSettings.setMinNumCtx(llmConfig.getOllamaMinNumCtx());
+        ollamaSettings.setMaxNumCtx(llmConfig.getOllamaMaxNumCtx());
+        ollamaSettings.setReservedOutputTokens(contextBudget.getReservedOutputTokens());
+        ollamaSettings.setTokenizer(contextBudget.getTokenizer());
+        factory.setOllamaSettings(ollamaSettings);
+        return factory;
+    }
+    
+    /**
+     * 创建LLM响应缓存（未开启时返回null）
+     */
+    private LLMResponseCache createResponseCache() {
+        if (!llmConfig.isCacheEnabled()) {
+            return null;
+        }
+        Duration ttl = llmConfig.getCacheTtlMinutes() > 0 ? Duration.ofMinutes(llmConfig.getCacheTtlMinutes()) : null;
+        String diskPath = llmConfig.getCacheDiskPath();
+        LLMResponseCache cache = new LLMResponseCache(
+            llmConfig.getCacheMaxEntries(),
+            ttl,
+            diskPath != null && !diskPath.isBlank() ? Path.of(diskPath) : null,
+            (long) llmConfig.getCacheDiskMaxMb() * 1024 * 1024
+        );
+        System.out.println("✅ LLM响应缓存已开启（内存上限: " + llmConfig.getCacheMaxEntries() + " 条）");
+        if (!llmConfig.getCacheExcludedAgents().isEmpty()) {
+            System.out.println("   不使用缓存的智能体: " + llmConfig.getCacheExcludedAgents());
+        }
+        System.out.println();
+        return cache;
+    }
+    
+    /**
+     * 按配置包装相同请求合并层
+     */
+    private LLMClient coalesce(LLMClient client) {
+        return llmConfig.isCoalescingEnabled() ? new CoalescingLLMClient(client) : client;
     }
     
     /**
      * 创建LLM客户端
      */
     private LLMClient createLLMClient() {
+        if ("simulated".equals(llmConfig.getProvider())) {
+            return withFallbacks(rateLimit(createSimulatedClient(), "simulated", null, null));
+        }
         if (!llmConfig.isConfigured()) {
             System.out.println("⚠️  未设置API Key，使用SimpleLLMClient（模拟模式）\n");
             System.out.println("💡 提示：要使用真实API，请设置环境变量：");
@@ -38,29 +212,298 @@ public class LLMClientService {
         }
         
         String provider = llmConfig.getProvider();
-        String apiKey = llmConfig.getApiKey();
+        String apiKey = llmConfig.getApiKey() != null && !llmConfig.getApiKey().isEmpty()
+            ? llmConfig.getApiKey() : llmConfig.getApiKeys().get(0);
         String modelName = llmConfig.getModelName();
         String baseUrl = llmConfig.getBaseUrl();
         
+        LLMClient client = createEndpointClient(provider, apiKey, modelName, baseUrl);
+        if (client instanceof LoadBalancedLLMClient pool) {
+            System.out.println("✅ LLM负载均衡客户端初始化成功（" + pool.getEndpoints().size() + " 个副本，最少在途请求 + 会话亲和）");
+            System.out.println("   模型: " + pool.getModelName());
+            for (LoadBalancedLLMClient.Endpoint endpoint : pool.getEndpoints()) {
+                System.out.println("   端点: " + endpoint.getName());
+            }
+            System.out.println();
+            for (LoadBalancedLLMClient.Endpoint endpoint : pool.getEndpoints()) {
+                if (endpoint.getClient() instanceof OllamaLLMClient ollamaClient) {
+                    preload(ollamaClient);
+                } else {
+                    prewarm(endpoint.getName());
+                }
+            }
+        } else if (client instanceof DeepSeekLLMClient deepSeekClient) {
+            System.out.println("✅ DeepSeek LLM客户端初始化成功（使用真实API）");
+            System.out.println("   模型: " + deepSeekClient.getModelName());
+            System.out.println("   端点: " + deepSeekClient.getBaseUrl() + "\n");
+            prewarm(deepSeekClient.getBaseUrl());
+        } else if (client instanceof OpenAILLMClient openAIClient) {
+            System.out.println("✅ OpenAI LLM客户端初始化成功（使用真实API）");
+            System.out.println("   端点: " + openAIClient.getBaseUrl() + "\n");
+            prewarm(openAIClient.getBaseUrl());
+        } else if (client instanceof OllamaLLMClient ollamaClient) {
+            System.out.println("✅ Ollama LLM客户端初始化成功");
+            System.out.println("   端点: " + (baseUrl != null ? baseUrl : "http://localhost:11434") + "\n");
+            preload(ollamaClient);
+        } else {
+            System.out.println("⚠️  未知的LLM提供者: " + provider + "，使用SimpleLLMClient（模拟模式）\n");
+            return new SimpleLLMClient();
+        }
+        return withFallbacks(rateLimit(client, provider, modelName, baseUrl));
+    }
+    
+    /**
+     * 创建主提供者的端点客户端：配置了多个副本（llm.base-urls）时返回负载均衡客户端
+     * 
+     * @return 客户端；未知提供者返回null
+     */
+    private LLMClient createEndpointClient(String provider, String apiKey, String modelName, String baseUrl) {
+        List<String> replicas = llmConfig.getBaseUrls().stream()
+            .map(String::trim).filter(url -> !url.isEmpty()).toList();
+        if (replicas.size() <= 1) {
+            return llmClientFactory.createClient(provider, apiKey, modelName,
+                replicas.isEmpty() ? baseUrl : replicas.get(0));
+        }
+        List<LoadBalancedLLMClient.Endpoint> endpoints = new ArrayList<>();
+        for (String url : replicas) {
+            LLMClient client = llmClientFactory.createClient(provider, apiKey, modelName, url);
+            if (client == null) {
+                return null;
+            }
+            endpoints.add(new LoadBalancedLLMClient.Endpoint(url, client));
+        }
+        LoadBalancedLLMClient pool = new LoadBalancedLLMClient(
+            endpoints,
+            llmConfig.getEndpointFailureThreshold(),
+            Duration.ofSeconds(llmConfig.getEndpointEjectionSeconds())
+        );
+        endpointPools.add(pool);
+        return pool;
+    }
+    
+    /**
+     * 创建某个API Key的通道客户端：主提供者为多副本负载均衡时共享同一个池（副本选择、健康状况、会话亲和），
+     * 只为各副本换用该Key的客户端
+     */
+    private LLMClient createKeyLane(LLMClient primary, String provider, String apiKey, String modelName, String baseUrl) {
+        if (!(primary instanceof LoadBalancedLLMClient pool)) {
+            return createEndpointClient(provider, apiKey, modelName, baseUrl);
+        }
+        List<LLMClient> clients = new ArrayList<>();
+        for (LoadBalancedLLMClient.Endpoint endpoint : pool.getEndpoints()) {
+            clients.add(llmClientFactory.createClient(provider, apiKey, modelName, endpoint.getName()));
+        }
+        return pool.withClients(clients);
+    }
+    
+    /**
+     * 创建模拟LLM客户端（压测用：按规则生成响应，模拟延迟分布和错误）
+     */
+    private LLMClient createSimulatedClient() {
+        String rulesPath = blankToNull(llmConfig.getSimRulesPath());
+        List<SimpleLLMClient.Rule> rules = rulesPath != null ? SimpleLLMClient.loadRules(Path.of(rulesPath)) : List.of();
+        SimpleLLMClient client = new SimpleLLMClient(
+            rules,
+            SimpleLLMClient.Distribution.parse(llmConfig.getSimTtftMs()),
+            SimpleLLMClient.Distribution.parse(llmConfig.getSimTokensPerSecond()),
+            llmConfig.getSimErrorRate(),
+            llmConfig.getSimRateLimitRate(),
+            llmConfig.getSimSeed()
+        );
+        System.out.println("🧪 模拟LLM客户端（压测模式，不调用真实API）");
+        System.out.println("   规则: " + rules.size() + " 条" + (rulesPath != null ? "（" + rulesPath + "）" : "（使用内置演示逻辑）"));
+        System.out.println("   首token延迟: " + llmConfig.getSimTtftMs() + " ms，输出速度: "
+            + (blankToNull(llmConfig.getSimTokensPerSecond()) != null ? llmConfig.getSimTokensPerSecond() + " tokens/s" : "立即输出"));
+        System.out.println("   错误率: " + llmConfig.getSimErrorRate() + "，限流率: " + llmConfig.getSimRateLimitRate() + "\n");
+        return client;
+    }
+    
+    /**
+     * 配置了备用提供者时，组合为对冲 + 故障转移客户端
+     */
+    private LLMClient withFallbacks(LLMClient primary) {
+        List<LLMClient> clients = new ArrayList<>();
+        clients.add(primary);
+        for (String fallback : llmConfig.getFallbackProviders()) {
+            LLMClient backup = circuitBreaker(createFallbackClient(fallback.trim().toLowerCase()));
+            if (backup != null) {
+                clients.add(backup);
+                System.out.println("✅ 备用LLM提供者: " + fallback.trim() + "（模型: " + backup.getModelName() + "）");
+            }
+        }
+        if (clients.size() == 1) {
+            return primary;
+        }
+        System.out.println("🪁 LLM对冲请求: " + (llmConfig.isHedgeEnabled() ? "开启" : "关闭")
+            + "，故障转移顺序共 " + clients.size() + " 个提供者\n");
+        return new HedgedLLMClient(
+            clients,
+            llmConfig.isHedgeEnabled(),
+            Duration.ofMillis(llmConfig.getHedgeInitialDelayMs()),
+            Duration.ofMillis(llmConfig.getHedgeMinDelayMs())
+        );
+    }
+    
+    /**
+     * 创建备用提供者客户端（配置不完整时返回null）
+     */
+    private LLMClient createFallbackClient(String provider) {
         switch (provider) {
+            case "openai":
+                if (blankToNull(llmConfig.getOpenaiApiKey()) == null) {
+                    System.out.println("⚠️  备用提供者 openai 未设置API Key，已跳过");
+                    return null;
+                }
+                return llmClientFactory.createOpenAIClient(
+                    llmConfig.getOpenaiApiKey(), blankToNull(llmConfig.getOpenaiModelName()));
+            case "ollama":
+                OllamaLLMClient ollamaClient = llmClientFactory.createOllamaClient(
+                    blankToNull(llmConfig.getOllamaBaseUrl()), blankToNull(llmConfig.getOllamaModelName()));
+                preload(ollamaClient);
+                return ollamaClient;
             case "deepseek":
-                DeepSeekLLMClient deepSeekClient = new DeepSeekLLMClient(apiKey, modelName, baseUrl);
-                System.out.println("✅ DeepSeek LLM客户端初始化成功（使用真实API）");
-                System.out.println("   模型: " + deepSeekClient.getModelName());
-                System.out.println("   端点: " + deepSeekClient.getBaseUrl() + "\n");
-                return deepSeekClient;
-                
+                if (blankToNull(llmConfig.getDeepseekApiKey()) == null) {
+                    System.out.println("⚠️  备用提供者 deepseek 未设置API Key，已跳过");
+                    return null;
+                }
+                return llmClientFactory.createDeepSeekClient(llmConfig.getDeepseekApiKey(), null, null);
             default:
-                System.out.println("⚠️  未知的LLM提供者: " + provider + "，使用SimpleLLMClient（模拟模式）\n");
-                return new SimpleLLMClient();
+                System.out.println("⚠️  未知的备用LLM提供者: " + provider + "，已跳过");
+                return null;
+        }
+    }
+    
+    /**
+     * 包装限流层：每个API Key一条通道（RPM/TPM令牌桶 + 自适应并发），超出配额排队
+     */
+    private LLMClient rateLimit(LLMClient client, String provider, String modelName, String baseUrl) {
+        List<LLMClient> clients = new ArrayList<>();
+        List<String> apiKeys = llmConfig.getApiKeys();
+        if (apiKeys.isEmpty() || "ollama".equals(provider) || "simulated".equals(provider)) {
+            clients.add(client);
+        } else {
+            for (String key : apiKeys) {
+                clients.add(createKeyLane(client, provider, key.trim(), modelName, baseUrl));
+            }
+        }
+        System.out.println("🚦 LLM限流: " + clients.size() + " 个API Key"
+            + "，每个Key RPM=" + formatLimit(llmConfig.getRateLimitRpm())
+            + "，TPM=" + formatLimit(llmConfig.getRateLimitTpm())
+            + "，并发上限 " + llmConfig.getInitialConcurrency() + "~" + llmConfig.getMaxConcurrency() + "\n");
+        return rateLimit(clients);
+    }
+    
+    /**
+     * 按配置的配额创建限流客户端（每个客户端一条通道，通道下方包装端点熔断器）
+     */
+    private LLMClient rateLimit(List<LLMClient> clients) {
+        return new RateLimitedLLMClient(
+            clients.stream().map(this::circuitBreaker).toList(),
+            llmConfig.getRateLimitRpm(),
+            llmConfig.getRateLimitTpm(),
+            llmConfig.getInitialConcurrency(),
+            llmConfig.getMaxConcurrency(),
+            new RetryPolicy(
+                llmConfig.getMaxRetries(),
+                Duration.ofMillis(llmConfig.getRetryBaseBackoffMs()),
+                Duration.ofMillis(llmConfig.getRetryMaxBackoffMs())
+            )
+        );
+    }
+    
+    /**
+     * 按配置包装端点熔断器（同一端点的客户端共享一个熔断器）
+     */
+    private LLMClient circuitBreaker(LLMClient client) {
+        return llmConfig.isCircuitBreakerEnabled() ? llmClientFactory.withCircuitBreaker(client) : client;
+    }
+    
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+    
+    private static String formatLimit(long limit) {
+        return limit > 0 ? String.valueOf(limit) : "不限";
+    }
+    
+    /**
+     * 启动时预热连接（异步，不阻塞启动）
+     */
+    private void prewarm(String baseUrl) {
+        if (llmConfig.isPrewarm()) {
+            llmClientFactory.prewarm(baseUrl);
         }
     }
     
     /**
-     * 获取LLM客户端
+     * 按配置预加载 Ollama 模型（异步，不阻塞启动）
+     */
+    private void preload(OllamaLLMClient client) {
+        if (llmConfig.isOllamaPreload()) {
+            client.preload();
+        }
+    }
+    
+    /**
+     * 获取LLM客户端（已按配置包装缓存和相同请求合并）
      */
     public LLMClient getLLMClient() {
-        return llmClient;
+        return sharedLLMClient;
+    }
+    
+    /**
+     * 获取指定智能体使用的LLM客户端
+     * 在 llm.cache-excluded-agents 中的智能体使用不带缓存的客户端；
+     * 配置了 llm.routes 时按智能体角色路由到对应的模型
+     */
+    public LLMClient getLLMClient(String agentName) {
+        boolean cached = !llmConfig.getCacheExcludedAgents().contains(agentName);
+        if (router != null) {
+            // 配置了模型路由时，每个智能体使用绑定了角色的路由视图
+            return agentClients.computeIfAbsent(agentName, name -> decorate(router.forAgent(name), cached));
+        }
+        return cached ? sharedLLMClient : uncachedLLMClient;
+    }
+    
+    /**
+     * 获取LLM响应缓存（未开启时为null）
+     */
+    public LLMResponseCache getResponseCache() {
+        return responseCache;
+    }
+    
+    /**
+     * 获取LLM客户端工厂（用于创建共享连接的其他客户端）
+     */
+    public LLMClientFactory getLLMClientFactory() {
+        return llmClientFactory;
+    }
+    
+    /**
+     * 获取上下文窗口预算（由 AgentService 设置到框架）
+     */
+    public ContextBudget getContextBudget() {
+        return contextBudget;
+    }
+    
+    /**
+     * 应用关闭时释放HTTP资源
+     */
+    @PreDestroy
+    public void shutdown() {
+        PromptCacheStats.printReport();
+        if (router != null) {
+            router.printReport();
+        }
+        endpointPools.forEach(LoadBalancedLLMClient::printReport);
+        if (!llmClientFactory.getCircuitBreakers().isEmpty()) {
+            System.out.println("🔌 LLM端点熔断统计:");
+            llmClientFactory.getCircuitBreakers().forEach(breaker -> System.out.println("   " + breaker));
+        }
+        if (responseCache != null) {
+            System.out.println("💾 LLM缓存统计: " + responseCache.getStats());
+            responseCache.close();
+        }
+        llmClientFactory.shutdown();
     }
 }
-
@@ -1,5 +1,7 @@
 package framework.agent;
 
+import framework.execution.ExecutionEngine;
+import framework.llm.token.ContextBudget;
 import framework.model.AgentRequest;
 import framework.model.AgentResponse;
 import java.util.List;
@@ -80,5 +82,22 @@ public interface Agent {
     default long getDelay() {
         return 1;  // 默认延迟1秒
     }
+    
+    /**
+     * 获取执行引擎
+     * 已注册到框架时使用框架的引擎，否则使用全局默认引擎（虚拟线程）
+     */
+    default ExecutionEngine getExecutionEngine() {
+        AgentFramework framework = getFramework();
+        return framework != null ? framework.getExecutionEngine() : ExecutionEngine.defaultEngine();
+    }
+    
+    /**
+     * 获取上下文窗口预算
+     * 已注册到框架时使用框架的预算，否则使用全局默认预算
+     */
+    default ContextBudget getContextBudget() {
+        AgentFramework framework = getFramework();
+        return framework != null ? framework.getContextBudget() : ContextBudget.defaultBudget();
+    }
 }
-
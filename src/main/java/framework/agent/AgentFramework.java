@@ -1,5 +1,7 @@
 package framework.agent;
 
+import framework.execution.ExecutionEngine;
+import framework.llm.token.ContextBudget;
 import framework.tool.Tool;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -22,6 +24,12 @@ public class AgentFramework {
     // 主控智能体名称
     private String masterAgentName;
     
+    // 执行引擎（默认：每个调用一个虚拟线程）
+    private volatile ExecutionEngine executionEngine = ExecutionEngine.defaultEngine();
+    
+    // 上下文窗口预算（为null时使用全局默认预算）
+    private volatile ContextBudget contextBudget;
+    
     /**
      * 注册智能体到框架
      */
@@ -109,5 +117,44 @@ public class AgentFramework {
     public String getMasterAgentName() {
         return masterAgentName;
     }
+    
+    /**
+     * 获取执行引擎
+     * 所有智能体、工具以及 AgentRequest.call() 的异步任务都通过该引擎调度
+     */
+    public ExecutionEngine getExecutionEngine() {
+        return executionEngine;
+    }
+    
+    /**
+     * 设置执行引擎（可插拔，默认使用虚拟线程引擎）
+     */
+    public void setExecutionEngine(ExecutionEngine executionEngine) {
+        if (executionEngine == null) {
+            throw new IllegalArgumentException("执行引擎不能为空");
+        }
+        this.executionEngine = executionEngine;
+        System.out.println("✅ 设置执行引擎: " + executionEngine.getName());
+    }
+    
+    /**
+     * 获取上下文窗口预算
+     * 智能体发送请求前用它统计提示长度，超出时在本地裁剪
+     */
+    public ContextBudget getContextBudget() {
+        ContextBudget current = contextBudget;
+        return current != null ? current : ContextBudget.defaultBudget();
+    }
+    
+    /**
+     * 设置上下文窗口预算（分词器、上下文窗口、预留输出）
+     */
+    public void setContextBudget(ContextBudget contextBudget) {
+        if (contextBudget == null) {
+            throw new IllegalArgumentException("上下文预算不能为空");
+        }
+        this.contextBudget = contextBudget;
+        System.out.println("✅ 设置上下文预算: " + contextBudget.getTokenizer().getName()
+            + "，窗口 " + contextBudget.getMaxContextTokens() + " tokens，预留输出 " + contextBudget.getReservedOutputTokens());
+    }
 }
-
@@ -1,11 +1,18 @@
 package framework.agent;
 
+import framework.llm.LLMCallMeter;
 import framework.llm.LLMClient;
+import framework.llm.LLMStreamListener;
+import framework.llm.PromptCacheStats;
+import framework.llm.token.ContextBudget;
+import framework.llm.token.Tokenizer;
 import framework.model.AgentRequest;
 import framework.model.AgentResponse;
 import framework.model.AgentState;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * ChatAgent - 纯对话智能体
@@ -14,14 +21,24 @@ import java.util.concurrent.CompletableFuture;
  * - 管理短期记忆（对话历史）
  * - 将系统提示和历史对话拼装后直连 LLM
  * - 输入为 query 和历史对话，输出为 LLM 的回答
+ *
+ * 系统提示中的模板变量（如 ${knowledge}）有值时不直接替换进系统消息，
+ * 而是替换为对 &lt;knowledge&gt; 段落的引用，变量值随当前查询放在最后一条用户消息中；没有值的变量保持原样。
+ * 这样提供相同变量的请求系统消息字节一致，可以命中 DeepSeek / OpenAI 的提示前缀缓存。
+ *
+ * 发送前按上下文预算裁剪：模板变量值（如 RAG 检索到的知识）优先占用系统提示和当前查询之外的空间，
+ * 超出时按各自长度比例截断；历史对话使用剩余空间，从最早的一轮开始省略。
  */
 public class ChatAgent implements Agent {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)}");
+    
     private final String name;
     private final String description;
     private final boolean isMaster;
     private final LLMClient llmClient;
     private final String systemPrompt;
     private final int shortMemorySize; // 短期记忆大小（保留的对话轮数）
+    private final List<String> templateKeys; // 系统提示中出现的模板变量（按出现顺序）
     
     private AgentFramework framework;
     
@@ -33,11 +50,18 @@ public class ChatAgent implements Agent {
         this.llmClient = llmClient;
         this.systemPrompt = systemPrompt != null ? systemPrompt : "You are a helpful assistant.";
         this.shortMemorySize = shortMemorySize > 0 ? shortMemorySize : 10; // 默认保留10轮对话
+        
+        Set<String> keys = new LinkedHashSet<>();
+        Matcher matcher = PLACEHOLDER.matcher(this.systemPrompt);
+        while (matcher.find()) {
+            keys.add(matcher.group(1));
+        }
+        this.templateKeys = new ArrayList<>(keys);
     }
     
     @Override
     public CompletableFuture<AgentResponse> execute(AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getExecutionEngine().submit(() -> {
             System.out.println("\n💬 [" + name + "] 开始对话: " + request.getQuery());
             
             // 确保请求对象有框架引用
@@ -50,35 +74,50 @@ public class ChatAgent implements Agent {
             
             // 调用 LLM
             try {
-                String llmResponse = llmClient.chat(messages);
+                LLMCallMeter meter = new LLMCallMeter(LLMStreamListener.of(
+                    null, usage -> PromptCacheStats.record(name, usage)
+                ), request.getUsageStats());
+                String llmResponse;
+                try {
+                    llmResponse = llmClient.chatStream(messages, meter);
+                } finally {
+                    meter.finish();
+                }
                 System.out.println("  ✅ 获得回答: " + llmResponse.substring(0, Math.min(100, llmResponse.length())) + "...");
                 
-                return new AgentResponse(
+                AgentResponse response = new AgentResponse(
                     AgentState.COMPLETED,
                     llmResponse,
                     null,
                     request
                 );
+                request.getUsageStats().writeTo(response.getExtra());
+                return response;
             } catch (Exception e) {
                 System.out.println("  ❌ LLM 调用失败: " + e.getMessage());
-                return new AgentResponse(
+                AgentResponse response = new AgentResponse(
                     AgentState.FAILED,
                     "LLM 调用失败: " + e.getMessage(),
                     null,
                     request
                 );
+                request.getUsageStats().writeTo(response.getExtra());
+                return response;
             }
         });
     }
     
     /**
-     * 构建消息列表（系统提示 + 历史对话 + 当前查询）
+     * 构建消息列表（系统提示 + 历史对话 + 模板变量值和当前查询）
+     * 稳定部分在前、随请求变化的部分在后，保持提示前缀可缓存
      */
     private List<Map<String, String>> buildMessages(AgentRequest request) {
+        ContextBudget budget = getContextBudget();
         List<Map<String, String>> messages = new ArrayList<>();
+        List<String> providedKeys = getProvidedKeys(request);
+        String prompt = buildSystemPrompt(providedKeys);
         
-        // 1. 系统提示（支持模板变量替换）
-        String prompt = buildSystemPrompt(request);
+        // 1. 系统提示（提供相同模板变量的请求相同）
         Map<String, String> systemMsg = new HashMap<>();
         systemMsg.put("role", "system");
         systemMsg.put("content", prompt);
@@ -95,35 +134,81 @@ public class ChatAgent implements Agent {
             }
         }
         
-        // 3. 添加当前用户查询
+        // 3. 添加模板变量值和当前用户查询
         Map<String, String> userMsg = new HashMap<>();
         userMsg.put("role", "user");
-        userMsg.put("content", request.getQuery());
+        userMsg.put("content", buildUserContent(request, providedKeys, prompt, budget));
         messages.add(userMsg);
         
-        return messages;
+        // 4. 超出上下文预算时从最早的历史对话开始省略
+        return budget.fit(messages, 1, 1);
     }
     
     /**
-     * 构建系统提示（支持模板变量替换）
-     * 例如：${knowledge} 会被替换为 arguments 中 knowledge 的值
+     * 系统提示中在本次请求参数里有值的模板变量（按出现顺序）
      */
-    private String buildSystemPrompt(AgentRequest request) {
-        String prompt = systemPrompt;
-        
-        // 替换模板变量（例如 ${knowledge}）
-        if (request.getArguments() != null) {
-            for (Map.Entry<String, Object> entry : request.getArguments().entrySet()) {
-                String placeholder = "${" + entry.getKey() + "}";
-                if (prompt.contains(placeholder)) {
-                    prompt = prompt.replace(placeholder, String.valueOf(entry.getValue()));
-                }
+    private List<String> getProvidedKeys(AgentRequest request) {
+        Map<String, Object> arguments = request.getArguments();
+        if (templateKeys.isEmpty() || arguments == null) {
+            return List.of();
+        }
+        List<String> keys = new ArrayList<>();
+        for (String key : templateKeys) {
+            if (arguments.containsKey(key)) {
+                keys.add(key);
             }
         }
-        
+        return keys;
+    }
+    
+    /**
+     * 构建系统提示
+     * 例如：${knowledge} 有值时被替换为对 <knowledge> 段落的引用，段落内容见 buildUserContent；
+     * 没有值的变量保持原样（与直接替换时的行为一致）
+     */
+    private String buildSystemPrompt(List<String> providedKeys) {
+        String prompt = systemPrompt;
+        for (String key : providedKeys) {
+            prompt = prompt.replace("${" + key + "}", "（见用户消息中的 <" + key + "> 段落）");
+        }
         return prompt;
     }
     
+    /**
+     * 构建最后一条用户消息：系统提示引用的模板变量值 + 当前查询
+     * 变量值总长超出预算（可用空间 - 系统提示 - 查询）时按各自长度比例截断
+     */
+    private String buildUserContent(AgentRequest request, List<String> providedKeys, String prompt, ContextBudget budget) {
+        if (providedKeys.isEmpty()) {
+            return request.getQuery();
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        int valueTokens = 0;
+        for (String key : providedKeys) {
+            String value = String.valueOf(request.getArguments().get(key));
+            values.put(key, value);
+            valueTokens += budget.count(value);
+        }
+        int valueBudget = budget.getAvailableTokens() - Tokenizer.REPLY_PRIMING_TOKENS
+            - 2 * Tokenizer.TOKENS_PER_MESSAGE - budget.count(prompt) - budget.count(request.getQuery())
+            - values.size() * 8; // 标签开销
+        if (valueTokens > valueBudget) {
+            System.out.println("  ✂️  模板变量超出上下文预算（" + valueTokens + " > " + Math.max(0, valueBudget) + " tokens），按比例截断");
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                int share = (int) ((long) Math.max(0, valueBudget) * budget.count(entry.getValue()) / valueTokens);
+                entry.setValue(budget.truncate(entry.getValue(), share));
+            }
+        }
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            content.append('<').append(entry.getKey()).append(">\n")
+                   .append(entry.getValue())
+                   .append("\n</").append(entry.getKey()).append(">\n\n");
+        }
+        content.append(request.getQuery());
+        return content.toString();
+    }
+    
     /**
      * 获取短期记忆（从 arguments 中获取 short_memory）
      * 对应 Python 版本的 get_short_memory()
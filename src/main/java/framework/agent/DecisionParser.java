@@ -0,0 +1,228 @@
+package framework.agent;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import framework.model.ToolCall;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 决策 JSON 解析器（框架内部使用）
+ *
+ * 基于 Jackson 流式 JsonParser，在混杂说明文字的 LLM 输出中定位第一个决策对象并逐字段读取：
+ * - {"type": "tool_call", "tool_name": "...", "arguments": {...}}
+ * - {"type": "tool_calls", "calls": [{"tool_name": "...", "arguments": {...}}, ...]}
+ * - {"type": "answer", "content": "..."}
+ *
+ * 从每个 '{' 开始尝试解析，不含决策字段的对象（如说明文字里的示例参数）整体跳过；
+ * 正确处理转义、字符串中的花括号和任意嵌套的 arguments，允许字符串中出现未转义的换行。
+ * 看起来是决策但无法解析时（语法错误、缺少 tool_name、未知类型）返回带位置的解析错误，
+ * 调用方可以把错误原样反馈给模型修正。
+ */
+final class DecisionParser {
+    private static final ObjectMapper objectMapper = JsonMapper.builder()
+        .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+        .build();
+    private static final TypeReference<Map<String, Object>> ARGUMENTS_TYPE = new TypeReference<>() {};
+    private static final Set<String> DECISION_FIELDS = Set.of("type", "tool_name", "arguments", "calls");
+
+    private DecisionParser() {
+    }
+
+    /**
+     * 决策：工具调用（按输出顺序）或最终答案
+     */
+    record Decision(boolean answer, List<ToolCall> toolCalls, String content) {
+    }
+
+    /**
+     * 解析错误
+     *
+     * @param offset 错误在原始文本中的字符位置
+     */
+    record ParseError(String message, int offset) {
+        @Override
+        public String toString() {
+            return "第 " + offset + " 个字符附近: " + message;
+        }
+    }
+
+    /**
+     * 解析结果：decision 和 error 至多一个不为 null，都为 null 表示文本中没有决策对象
+     */
+    record Result(Decision decision, ParseError error) {
+        static final Result NONE = new Result(null, null);
+    }
+
+    /**
+     * 解析 LLM 输出中的第一个决策对象
+     */
+    static Result parse(String text) {
+        if (text == null) {
+            return Result.NONE;
+        }
+        char[] chars = text.toCharArray();
+        ParseError firstError = null;
+        int start = text.indexOf('{');
+        while (start >= 0) {
+            Candidate candidate = readCandidate(chars, start);
+            if (candidate.decision != null) {
+                return new Result(candidate.decision, null);
+            }
+            if (candidate.error != null && firstError == null) {
+                firstError = candidate.error;
+            }
+            // 完整但不是决策的对象整体跳过，避免把它内部的嵌套对象当作候选
+            start = text.indexOf('{', candidate.end > start ? candidate.end : start + 1);
+        }
+        return new Result(null, firstError);
+    }
+
+    private static Candidate readCandidate(char[] chars, int start) {
+        Candidate candidate = new Candidate();
+        try (JsonParser parser = objectMapper.createParser(chars, start, chars.length - start)) {
+            parser.nextToken();
+            String type = null;
+            String toolName = null;
+            String content = null;
+            Map<String, Object> arguments = null;
+            List<ToolCall> calls = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                candidate.recognized |= DECISION_FIELDS.contains(field);
+                parser.nextToken();
+                switch (field) {
+                    case "type" -> type = parser.getValueAsString();
+                    case "tool_name" -> toolName = parser.getValueAsString();
+                    case "arguments" -> arguments = readArguments(parser);
+                    case "content" -> content = readContent(parser);
+                    case "calls" -> calls = readCalls(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                // 输入在对象闭合前结束（如输出被截断）
+                if (candidate.recognized) {
+                    candidate.error = new ParseError("决策对象不完整", chars.length);
+                }
+                return candidate;
+            }
+            candidate.end = start + (int) parser.currentLocation().getCharOffset();
+            if (type == null) {
+                return candidate;
+            }
+            switch (type) {
+                case "tool_call" -> {
+                    if (toolName == null || toolName.isBlank()) {
+                        candidate.error = new ParseError("tool_call 缺少 tool_name", start);
+                    } else {
+                        ToolCall call = new ToolCall(toolName, arguments != null ? arguments : new HashMap<>());
+                        candidate.decision = new Decision(false, List.of(call), null);
+                    }
+                }
+                case "tool_calls" -> {
+                    if (calls == null || calls.isEmpty()) {
+                        candidate.error = new ParseError("tool_calls 缺少有效的 calls", start);
+                    } else {
+                        candidate.decision = new Decision(false, calls, null);
+                    }
+                }
+                case "answer" -> candidate.decision = new Decision(true, List.of(), content != null ? content : "");
+                default -> candidate.error = new ParseError("未知的决策类型: " + type, start);
+            }
+        } catch (JsonEOFException e) {
+            if (candidate.recognized) {
+                candidate.error = new ParseError("决策对象不完整", chars.length);
+            }
+        } catch (JsonProcessingException e) {
+            if (candidate.recognized) {
+                int offset = start + (int) e.getLocation().getCharOffset();
+                String message = e.getOriginalMessage();
+                int detail = message.indexOf(" (start marker");
+                candidate.error = new ParseError(detail > 0 ? message.substring(0, detail) : message, offset);
+            }
+        } catch (IOException e) {
+            // 内存中的字符数组不会出现 IO 错误
+        }
+        return candidate;
+    }
+
+    /**
+     * 读取工具参数（保留完整的嵌套结构；非对象参数当作 query）
+     */
+    private static Map<String, Object> readArguments(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parser.readValueAs(ARGUMENTS_TYPE);
+        }
+        Map<String, Object> args = new HashMap<>();
+        if (token == JsonToken.VALUE_STRING) {
+            args.put("query", parser.getText());
+        } else if (token != null && token != JsonToken.VALUE_NULL) {
+            JsonNode value = parser.readValueAsTree();
+            args.put("query", value.toString());
+        }
+        return args;
+    }
+
+    private static String readContent(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token == null || token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        JsonNode value = parser.readValueAsTree();
+        return value.toString();
+    }
+
+    private static List<ToolCall> readCalls(JsonParser parser) throws IOException {
+        List<ToolCall> calls = new ArrayList<>();
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return calls;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String toolName = null;
+            Map<String, Object> arguments = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "tool_name" -> toolName = parser.getValueAsString();
+                    case "arguments" -> arguments = readArguments(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (toolName != null && !toolName.isBlank()) {
+                calls.add(new ToolCall(toolName, arguments != null ? arguments : new HashMap<>()));
+            }
+        }
+        return calls;
+    }
+
+    private static final class Candidate {
+        Decision decision;
+        ParseError error;
+        boolean recognized; // 出现过决策字段，解析失败时才报告错误
+        int end = -1;
+    }
+}
@@ -0,0 +1,84 @@
+package framework.agent;
+
+/**
+ * 增量 JSON 对象检测器（框架内部使用）
+ *
+ * 用于流式接收 LLM 输出时，逐段喂入文本，
+ * 一旦第一个顶层 JSON 对象闭合（花括号配平）即报告完成，
+ * 调用方可以立即停止接收并分发工具调用，无需等待模型输出的尾部文本。
+ *
+ * 能正确处理字符串内的花括号和转义字符。
+ */
+class IncrementalJsonDetector {
+    private final StringBuilder buffer = new StringBuilder();
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+    private int objectStart = -1;
+    private int objectEnd = -1;
+
+    /**
+     * 喂入一段增量文本
+     *
+     * @return 第一个顶层 JSON 对象是否已闭合
+     */
+    boolean feed(String chunk) {
+        if (isComplete()) {
+            return true;
+        }
+        int offset = buffer.length();
+        buffer.append(chunk);
+        for (int i = offset; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (c == '"') {
+                // 只有进入对象后字符串才有意义，对象外的引号属于普通文本
+                if (depth > 0) {
+                    inString = true;
+                }
+            } else if (c == '{') {
+                if (depth == 0) {
+                    objectStart = i;
+                }
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+                if (depth == 0) {
+                    objectEnd = i;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第一个顶层 JSON 对象是否已闭合
+     */
+    boolean isComplete() {
+        return objectEnd >= 0;
+    }
+
+    /**
+     * 获取已闭合的 JSON 对象文本（未闭合时返回 null）
+     */
+    String getObject() {
+        return isComplete() ? buffer.substring(objectStart, objectEnd + 1) : null;
+    }
+
+    /**
+     * 获取截至目前接收到的全部文本
+     */
+    String getText() {
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package framework.agent;
+
+/**
+ * ReAct 循环检测策略（框架核心）
+ *
+ * 模型反复以几乎相同的参数调用同一个子智能体或工具时，ReActAgent 会一直跑到 maxReactRounds
+ * 才以失败结束，期间每一轮都要付出一次 LLM 调用。按 (工具名, 参数, 观察) 为每轮生成指纹：
+ * - 本轮调用与之前某一轮的工具相同、参数规范化后相同（完整观察也相同）或相似度不低于 similarityThreshold
+ *   （观察也相似），或者观察与之前某一轮完全相同（没有获得新信息），记为一次"无进展"；
+ *   参数相同但观察有任何变化（轮询状态、写入后重新读取文件）不算重复，连续计数清零
+ * - 连续无进展达到 noProgressLimit 轮时，先在观察中追加纠正提示（最多 maxWarnings 次），
+ *   之后仍无进展则提前结束：返回 FAILED 状态，输出中附上已获得的信息，extra.early_stopped 为 loop_detected
+ *
+ * 使用示例：
+ * <pre>
+ * agent.setLoopDetectionPolicy(new LoopDetectionPolicy(0.7, 2, 1));
+ * agent.setLoopDetectionPolicy(LoopDetectionPolicy.disabled()); // 关闭检测
+ * </pre>
+ */
+public final class LoopDetectionPolicy {
+    private static final LoopDetectionPolicy DISABLED = new LoopDetectionPolicy(1.0, Integer.MAX_VALUE, 0);
+    private static final LoopDetectionPolicy DEFAULTS = new LoopDetectionPolicy(0.7, 2, 1);
+
+    private final double similarityThreshold;
+    private final int noProgressLimit;
+    private final int maxWarnings;
+
+    /**
+     * @param similarityThreshold 参数相似度阈值（0~1，字符二元组的 Jaccard 系数），达到即视为重复调用
+     * @param noProgressLimit 连续无进展多少轮后介入
+     * @param maxWarnings 提前结束前最多追加几次纠正提示（0 表示直接结束）
+     */
+    public LoopDetectionPolicy(double similarityThreshold, int noProgressLimit, int maxWarnings) {
+        if (similarityThreshold <= 0 || similarityThreshold > 1) {
+            throw new IllegalArgumentException("相似度阈值必须在 (0, 1] 之间: " + similarityThreshold);
+        }
+        if (noProgressLimit <= 0) {
+            throw new IllegalArgumentException("无进展轮数必须大于0: " + noProgressLimit);
+        }
+        this.similarityThreshold = similarityThreshold;
+        this.noProgressLimit = noProgressLimit;
+        this.maxWarnings = Math.max(0, maxWarnings);
+    }
+
+    /**
+     * 默认策略：参数相似度 0.7，连续 2 轮无进展时提示一次，再无进展即结束
+     */
+    public static LoopDetectionPolicy defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * 关闭循环检测
+     */
+    public static LoopDetectionPolicy disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    public int getNoProgressLimit() {
+        return noProgressLimit;
+    }
+
+    public int getMaxWarnings() {
+        return maxWarnings;
+    }
+
+    @Override
+    public String toString() {
+        if (!isEnabled()) {
+            return "不检测";
+        }
+        return "相似度 " + similarityThreshold + "，连续 " + noProgressLimit + " 轮无进展介入，最多提示 " + maxWarnings + " 次";
+    }
+}
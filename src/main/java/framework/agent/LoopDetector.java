@@ -0,0 +1,214 @@
+package framework.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import framework.model.ToolCall;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ReAct 循环检测器（框架内部使用，每次执行一个实例）
+ *
+ * 每轮工具调用结束后记录 (工具名, 参数, 观察)，按 LoopDetectionPolicy 判断是否陷入重复。
+ * 参数和观察规范化时只保留字母、数字和汉字并转为小写（参数先转为按键排序的 JSON），参数按字符二元组比较相似度。
+ * 一轮没有进展指以下任一情况：
+ * - 参数规范化后与之前的调用相同（只改了标点、空格、大小写），且完整观察也与那次调用相同（比较全文摘要）
+ * - 参数不同但相似，且观察也与那次调用的观察相似（换个说法问同一个问题，得到差不多的回答）
+ * - 观察与之前某一轮完全相同（没有获得任何新信息）
+ * 参数相同但观察有任何变化（如轮询任务状态、修改一行后重新读取同一个大文件）视为正常进展，
+ * 参数相似但观察差别很大（如依次读取路径相近的不同文件）同样如此。
+ */
+class LoopDetector {
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final int MAX_PARTIAL_ANSWER_CHARS = 2000;
+    private static final int MAX_COMPARED_OBSERVATION_CHARS = 2000;
+    private static final double OBSERVATION_SIMILARITY = 0.5;
+
+    enum Verdict {
+        /** 有进展或尚未达到阈值 */
+        CONTINUE,
+        /** 在观察中追加纠正提示后继续 */
+        WARN,
+        /** 提前结束，以失败状态返回已获得的信息 */
+        STOP
+    }
+
+    private record Action(String tools, String arguments, Set<String> bigrams,
+                          String observationDigest, Set<String> observation) {
+    }
+
+    private final LoopDetectionPolicy policy;
+    private final List<Action> actions = new ArrayList<>();
+    private final Set<String> observations = new HashSet<>(); // 观察的全文摘要
+    private String lastNewObservation;
+    private String repeatedTools;
+    private int streak = 0;
+    private int warnings = 0;
+
+    LoopDetector(LoopDetectionPolicy policy) {
+        this.policy = policy != null ? policy : LoopDetectionPolicy.defaults();
+    }
+
+    /**
+     * 记录一轮工具调用及其观察
+     */
+    Verdict record(List<ToolCall> calls, String observation) {
+        if (!policy.isEnabled()) {
+            return Verdict.CONTINUE;
+        }
+        Action action = toAction(calls, normalize(observation));
+        boolean repeated = false;
+        for (Action previous : actions) {
+            if (!previous.tools.equals(action.tools)) {
+                continue;
+            }
+            boolean same = previous.arguments.equals(action.arguments)
+                ? previous.observationDigest.equals(action.observationDigest)
+                : similarity(previous.bigrams, action.bigrams) >= policy.getSimilarityThreshold()
+                    && similarity(previous.observation, action.observation) >= OBSERVATION_SIMILARITY;
+            if (same) {
+                repeated = true;
+                break;
+            }
+        }
+        actions.add(action);
+        boolean newInformation = observations.add(action.observationDigest);
+        if (newInformation) {
+            lastNewObservation = observation;
+        }
+
+        if (!repeated && newInformation) {
+            streak = 0;
+            return Verdict.CONTINUE;
+        }
+        streak++;
+        repeatedTools = action.tools;
+        if (streak < policy.getNoProgressLimit()) {
+            return Verdict.CONTINUE;
+        }
+        if (warnings < policy.getMaxWarnings()) {
+            warnings++;
+            return Verdict.WARN;
+        }
+        return Verdict.STOP;
+    }
+
+    /**
+     * 追加到观察后的纠正提示
+     */
+    String correction() {
+        return "\n⚠️ 检测到重复调用 " + repeatedTools + "，已连续 " + streak + " 轮没有获得新信息。"
+            + "不要再用相同或相似的参数调用它；请换一种方法，或根据已有信息直接给出答案。";
+    }
+
+    /**
+     * 提前结束时返回的输出（说明未完成的原因，并附上最近一次带来新信息的观察）
+     */
+    String partialAnswer() {
+        StringBuilder answer = new StringBuilder("未能完成任务：连续 ")
+            .append(streak).append(" 轮重复调用 ").append(repeatedTools).append(" 且没有新进展，已提前结束。");
+        if (lastNewObservation != null) {
+            String info = lastNewObservation.length() > MAX_PARTIAL_ANSWER_CHARS
+                ? lastNewObservation.substring(0, MAX_PARTIAL_ANSWER_CHARS) + "…"
+                : lastNewObservation;
+            answer.append("\n\n目前获得的信息：\n").append(info);
+        }
+        return answer.toString();
+    }
+
+    int getStreak() {
+        return streak;
+    }
+
+    private static Action toAction(List<ToolCall> calls, String normalizedObservation) {
+        List<ToolCall> sorted = new ArrayList<>(calls);
+        sorted.sort(Comparator.comparing(ToolCall::getToolName));
+        StringBuilder tools = new StringBuilder();
+        StringBuilder arguments = new StringBuilder();
+        for (ToolCall call : sorted) {
+            if (tools.length() > 0) {
+                tools.append(',');
+            }
+            tools.append(call.getToolName());
+            arguments.append(canonicalArguments(call));
+        }
+        String normalizedArguments = normalize(arguments.toString());
+        String compared = normalizedObservation.length() > MAX_COMPARED_OBSERVATION_CHARS
+            ? normalizedObservation.substring(0, MAX_COMPARED_OBSERVATION_CHARS)
+            : normalizedObservation;
+        return new Action(tools.toString(), normalizedArguments, bigrams(normalizedArguments),
+            digest(normalizedObservation), bigrams(compared));
+    }
+    
+    /**
+     * 全文摘要（SHA-256），只保存摘要而不保存每一轮的完整观察
+     */
+    private static String digest(String text) {
+        try {
+            return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    private static String canonicalArguments(ToolCall call) {
+        if (call.getArguments() == null) {
+            return "";
+        }
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(call.getArguments());
+        } catch (JsonProcessingException e) {
+            return String.valueOf(call.getArguments());
+        }
+    }
+
+    /**
+     * 只保留字母、数字和汉字，转为小写
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        text.codePoints()
+            .filter(Character::isLetterOrDigit)
+            .map(Character::toLowerCase)
+            .forEach(normalized::appendCodePoint);
+        return normalized.toString();
+    }
+
+    private static Set<String> bigrams(String text) {
+        Set<String> bigrams = new HashSet<>();
+        if (text.length() == 1) {
+            bigrams.add(text);
+        }
+        for (int i = 0; i + 1 < text.length(); i++) {
+            bigrams.add(text.substring(i, i + 2));
+        }
+        return bigrams;
+    }
+
+    private static double similarity(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        int common = 0;
+        for (String gram : a) {
+            if (b.contains(gram)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+}
@@ -1,6 +1,9 @@
 package framework.agent;
 
+import framework.llm.LLMCallMeter;
 import framework.llm.LLMClient;
+import framework.llm.LLMStreamListener;
+import framework.llm.PromptCacheStats;
 import framework.model.AgentRequest;
 import framework.model.AgentResponse;
 import framework.model.AgentState;
@@ -37,7 +40,7 @@ public class ParallelAgent implements Agent {
     
     @Override
     public CompletableFuture<AgentResponse> execute(AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getExecutionEngine().submit(() -> {
             System.out.println("\n🔄 [" + name + "] 开始并行执行任务: " + request.getQuery());
             
             // 确保请求对象有框架引用
@@ -82,22 +85,27 @@ public class ParallelAgent implements Agent {
                 // 3. 聚合结果并使用 LLM 总结
                 String summary = summarizeResults(request, responses);
                 
-                return new AgentResponse(
+                // 4. 写入用量（并行子任务的用量已经由 request.call() 汇总到本请求）
+                AgentResponse response = new AgentResponse(
                     AgentState.COMPLETED,
                     summary,
                     null,
                     request
                 );
+                request.getUsageStats().writeTo(response.getExtra());
+                return response;
                 
             } catch (Exception e) {
                 System.out.println("  ❌ 并行执行失败: " + e.getMessage());
                 e.printStackTrace();
-                return new AgentResponse(
+                AgentResponse response = new AgentResponse(
                     AgentState.FAILED,
                     "并行执行失败: " + e.getMessage(),
                     null,
                     request
                 );
+                request.getUsageStats().writeTo(response.getExtra());
+                return response;
             }
         });
     }
@@ -130,9 +138,18 @@ public class ParallelAgent implements Agent {
         userMsg.put("content", resultsText.toString());
         messages.add(userMsg);
         
-        // 调用 LLM 总结
+        // 调用 LLM 总结（流式调用以获取用量，计入请求的 UsageStats）
+        LLMCallMeter meter = new LLMCallMeter(
+            LLMStreamListener.of(null, usage -> PromptCacheStats.record(name, usage)),
+            request.getUsageStats()
+        );
         try {
-            String summary = llmClient.chat(messages);
+            String summary;
+            try {
+                summary = llmClient.chatStream(messages, meter);
+            } finally {
+                meter.finish();
+            }
             System.out.println("  ✅ 总结完成");
             return summary;
         } catch (Exception e) {
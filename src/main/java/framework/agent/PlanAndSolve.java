@@ -84,7 +84,7 @@ public class PlanAndSolve implements Agent {
     
     @Override
     public CompletableFuture<AgentResponse> execute(AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getExecutionEngine().submit(() -> {
             System.out.println("\n📋 [" + name + "] 开始 PlanAndSolve 流程: " + request.getQuery());
             
             // 确保请求对象有框架引用
@@ -13,6 +13,7 @@ import java.util.concurrent.CompletableFuture;
  * - 调用知识检索函数（需要用户自定义）来拉取知识
  * - 将检索到的知识填充到 prompt 中
  * - 输入为 query，内部先调用检索函数，输出为结合知识后的 LLM 回答
+ * - 知识超出上下文预算时由 ChatAgent 截断（优先于历史对话占用空间），不会因超长在提供者处失败
  * 
  * 使用示例：
  * <pre>
@@ -101,7 +102,7 @@ public class RAGAgent extends ChatAgent {
                     request.setArguments(new java.util.HashMap<>());
                 }
                 request.getArguments().put(knowledgePlaceholder, knowledge);
-                System.out.println("  ✅ 知识检索完成，已填充到 prompt");
+                System.out.println("  ✅ 知识检索完成（" + getContextBudget().count(knowledge) + " tokens），已填充到 prompt");
                 return request;
             })
             .exceptionally(throwable -> {
@@ -1,14 +1,27 @@
 package framework.agent;
 
+import framework.memory.CompactionPolicy;
 import framework.memory.ReactMemory;
 import framework.memory.Observation;
+import framework.llm.ChatOptions;
+import framework.llm.LLMBadRequestException;
+import framework.llm.LLMCallMeter;
 import framework.llm.LLMClient;
+import framework.llm.LLMStreamListener;
+import framework.llm.LLMToolSpec;
+import framework.llm.PromptCacheStats;
 import framework.model.AgentRequest;
 import framework.model.AgentResponse;
 import framework.model.AgentState;
 import framework.model.ToolCall;
+import framework.model.UsageStats;
+import framework.tool.Tool;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * ReAct智能体实现（框架核心）
@@ -16,6 +29,11 @@ import java.util.concurrent.CompletableFuture;
  * 
  */
 public class ReActAgent implements Agent {
+    // 请求错误的响应体提到这些字段时，视为提供者不支持当前决策协议
+    private static final String[] PROTOCOL_FIELDS = {"tools", "tool_choice", "response_format"};
+    // 写入用量前等待提前停止的调用读完剩余数据的最长时间（只短暂等待，不拖慢返回；超出时标记 usage_pending）
+    private static final long USAGE_SETTLE_WAIT_MS = 50;
+    
     private final String name;
     private final String description;
     private final boolean isMaster;
@@ -24,8 +42,14 @@ public class ReActAgent implements Agent {
     private final List<String> tools;     // 可用的工具
     private final String systemPrompt;    // 系统提示（包含流程描述）
     private final int maxReactRounds;
+    private final String stableSystemPrompt; // 构造时生成一次，保证每轮请求前缀字节一致（命中提供者前缀缓存）
+    private final Map<String, String> systemMessage; // 所有请求共享的系统消息
     
     private AgentFramework framework;
+    private volatile DecisionProtocol decisionProtocol = DecisionProtocol.NATIVE;
+    private volatile ChatOptions chatOptions; // 首次调用时根据框架中的工具定义生成
+    private volatile CompactionPolicy compactionPolicy = CompactionPolicy.defaults();
+    private volatile LoopDetectionPolicy loopDetectionPolicy = LoopDetectionPolicy.defaults();
     
     public ReActAgent(String name, String description, boolean isMaster,
                      LLMClient llmClient, List<String> subAgents, 
@@ -34,140 +58,316 @@ public class ReActAgent implements Agent {
         this.description = description;
         this.isMaster = isMaster;
         this.llmClient = llmClient;
-        this.subAgents = subAgents != null ? subAgents : new ArrayList<>();
-        this.tools = tools != null ? tools : new ArrayList<>();
+        this.subAgents = subAgents != null ? new ArrayList<>(subAgents) : new ArrayList<>();
+        this.tools = tools != null ? new ArrayList<>(tools) : new ArrayList<>();
         this.systemPrompt = systemPrompt;
         this.maxReactRounds = maxReactRounds;
+        this.stableSystemPrompt = buildSystemPrompt();
+        this.systemMessage = Map.of("role", "system", "content", stableSystemPrompt);
     }
     
+    /**
+     * 执行任务（异步状态机）
+     * 每一轮 ReAct 都通过 CompletableFuture 串联：等待 LLM 或子智能体期间不占用任何线程
+     */
     @Override
     public CompletableFuture<AgentResponse> execute(AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            System.out.println("\n🤖 [" + name + "] 开始执行任务: " + request.getQuery());
+        System.out.println("\n🤖 [" + name + "] 开始执行任务: " + request.getQuery());
+        
+        // 初始化ReAct内存（以系统提示和原始查询开头，之后每轮只追加新的思考/观察，旧观察按策略压缩）
+        ReactMemory reactMemory = new ReactMemory(
+            buildMessages(request), compactionPolicy, getContextBudget().getTokenizer());
+        // 循环检测（每次执行独立统计）
+        LoopDetector loopDetector = new LoopDetector(loopDetectionPolicy);
+        // 本次执行使用的决策协议（提供者拒绝时只在本次执行内降级）
+        AtomicReference<DecisionProtocol> protocol = new AtomicReference<>(decisionProtocol);
+        
+        // 确保请求对象有框架引用（用于调用其他智能体）
+        if (request.getFramework() == null) {
+            request.setFramework(framework);
+        }
+        
+        // ReAct循环：自动顺序执行（首轮在执行引擎上启动，后续轮次由异步回调驱动）
+        return getExecutionEngine()
+            .submit(() -> runRound(request, reactMemory, loopDetector, protocol, 0))
+            .thenCompose(future -> future)
+            .exceptionally(ex -> {
+                // LLM 调用最终失败（如限流重试耗尽）时返回失败状态，而不是把错误当作答案
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                System.out.println("  ❌ [" + name + "] 执行失败: " + cause.getMessage());
+                return new AgentResponse(
+                    AgentState.FAILED,
+                    "LLM 调用失败: " + cause.getMessage(),
+                    null,
+                    request
+                );
+            })
+            .thenCompose(response -> {
+                // 决策JSON闭合后提前返回的轮次，用量在后台读完剩余数据后才到达
+                CompletableFuture<Void> settled = request.getUsageStats().whenSettled();
+                return settled.copy()
+                    .completeOnTimeout(null, USAGE_SETTLE_WAIT_MS, TimeUnit.MILLISECONDS)
+                    .thenApply(ignored -> {
+                        // 写入本次执行（含所有子智能体）的用量与耗时；仍在读取的用量稍后计入 request.getUsageStats()
+                        request.getUsageStats().writeTo(response.getExtra());
+                        if (!settled.isDone()) {
+                            response.getExtra().put(UsageStats.USAGE_PENDING, true);
+                        }
+                        System.out.println("  📊 [" + name + "] " + request.getUsageStats()
+                            + (settled.isDone() ? "" : "（最后一轮用量仍在读取）"));
+                        return response;
+                    });
+            });
+    }
+    
+    /**
+     * 执行一轮 ReAct：推理 → 决策 → 执行，完成后异步进入下一轮
+     */
+    private CompletableFuture<AgentResponse> runRound(AgentRequest request, ReactMemory reactMemory,
+                                                      LoopDetector loopDetector,
+                                                      AtomicReference<DecisionProtocol> protocol, int round) {
+        if (round > maxReactRounds) {
+            // 达到最大轮次，返回最后一次的结果
+            return CompletableFuture.completedFuture(new AgentResponse(
+                AgentState.FAILED,
+                "达到最大执行轮次，无法完成任务",
+                null,
+                request
+            ));
+        }
+        
+        System.out.println("  📍 Round " + round + " - " + name);
+        
+        // 1. 构建完整上下文（包含历史结果），超出上下文预算时保留系统提示、原始查询和最新一轮，
+        //    从最早的轮次开始省略
+        List<Map<String, String>> messages = getContextBudget().fit(reactMemory.getMessages(), 2, 2);
+        
+        // 2. 调用LLM进行推理决策（流式接收，决策JSON闭合即停止）
+        return streamDecision(messages, request, protocol).thenCompose(llmResponse -> {
+            System.out.println("  💭 LLM决策: " + llmResponse.substring(0, Math.min(100, llmResponse.length())) + "...");
             
-            // 初始化ReAct内存
-            ReactMemory reactMemory = new ReactMemory();
+            // 3. 解析LLM响应
+            LLMDecision decision = parseLLMResponse(llmResponse, protocol.get());
+            
+            // 4. 根据决策执行
+            if (decision.type == DecisionType.ANSWER) {
+                // 最终答案，退出循环
+                System.out.println("  ✅ 获得最终答案，退出ReAct循环");
+                return CompletableFuture.completedFuture(new AgentResponse(
+                    AgentState.COMPLETED,
+                    decision.content,
+                    null,
+                    request
+                ));
+            }
             
-            // 确保请求对象有框架引用（用于调用其他智能体）
-            if (request.getFramework() == null) {
-                request.setFramework(framework);
+            if (decision.type != DecisionType.TOOL_CALL) {
+                // 解析错误，加入内存供下一轮修正
+                reactMemory.addRound(llmResponse, "格式错误（" + decision.content + "），请重试");
+                System.out.println("  ⚠️  LLM响应格式错误，重试中: " + decision.content);
+                return runRound(request, reactMemory, loopDetector, protocol, round + 1);
             }
             
-            // ReAct循环：自动顺序执行
-            for (int round = 0; round <= maxReactRounds; round++) {
-                System.out.println("  📍 Round " + round + " - " + name);
-                
-                // 1. 构建完整上下文（包含历史结果）
-                List<Map<String, String>> messages = buildMessages(request, reactMemory);
-                
-                // 2. 调用LLM进行推理决策
-                String llmResponse = llmClient.chat(messages);
-                System.out.println("  💭 LLM决策: " + llmResponse.substring(0, Math.min(100, llmResponse.length())) + "...");
-                
-                // 3. 解析LLM响应
-                LLMDecision decision = parseLLMResponse(llmResponse);
-                
-                // 4. 根据决策执行
-                if (decision.type == DecisionType.ANSWER) {
-                    // 最终答案，退出循环
-                    System.out.println("  ✅ 获得最终答案，退出ReAct循环");
-                    return new AgentResponse(
-                        AgentState.COMPLETED,
-                        decision.content,
-                        null,
-                        request
-                    );
+            // 工具调用（可能是子智能体或工具，一轮可以有多个相互独立的调用）
+            // 使用请求对象的 call() 方法（支持权限校验、超时、重试），多个调用并发执行
+            List<ToolCall> toolCalls = decision.toolCalls;
+            if (toolCalls.size() > 1) {
+                System.out.println("  🔀 并发执行 " + toolCalls.size() + " 个工具调用");
+            }
+            List<CompletableFuture<String>> observations = new ArrayList<>(toolCalls.size());
+            for (ToolCall toolCall : toolCalls) {
+                observations.add(executeToolCallWithRetry(toolCall, request)
+                    .handle((toolResponse, ex) -> observe(toolCall, toolResponse, ex)));
+            }
+            return CompletableFuture.allOf(observations.toArray(new CompletableFuture[0]))
+                .thenCompose(ignored -> {
+                    String observation = joinObservations(toolCalls, observations);
                     
-                } else if (decision.type == DecisionType.TOOL_CALL) {
-                    // 工具调用（可能是子智能体或工具）
-                    try {
-                        // 使用请求对象的 call() 方法（支持权限校验、超时、重试）
-                        AgentResponse toolResponse = executeToolCallWithRetry(decision.toolCall, request);
-                        
-                        // 检查响应状态
-                        if (toolResponse.getState() == AgentState.SKIPPED) {
-                            // 权限不足，跳过
-                            reactMemory.addRound(llmResponse, "权限不足: " + toolResponse.getOutput());
-                            System.out.println("  ⚠️  权限不足: " + toolResponse.getOutput());
-                            continue;
-                        } else if (toolResponse.getState() == AgentState.FAILED) {
-                            // 调用失败，加入内存供下一轮修复
-                            reactMemory.addRound(llmResponse, "错误: " + toolResponse.getOutput());
-                            System.out.println("  ❌ 工具调用失败: " + toolResponse.getOutput());
-                            continue;
-                        }
-                        
-                        // 收集执行结果
-                        Observation observation = new Observation(
-                            decision.toolCall.getToolName(),
-                            toolResponse.getOutput()
+                    // 循环检测：连续无进展时先提示模型换方法，仍无进展则提前结束（失败状态，附上已获得的信息）
+                    LoopDetector.Verdict verdict = loopDetector.record(toolCalls, observation);
+                    if (verdict == LoopDetector.Verdict.STOP) {
+                        System.out.println("  🔁 [" + name + "] 连续 " + loopDetector.getStreak() + " 轮没有进展，提前结束");
+                        AgentResponse partial = new AgentResponse(
+                            AgentState.FAILED,
+                            loopDetector.partialAnswer(),
+                            null,
+                            request
                         );
-                        
-                        // 更新react_memory（自动记录和传递历史）
-                        reactMemory.addRound(llmResponse, observation.toString());
-                        
-                        System.out.println("  🔧 工具调用完成: " + decision.toolCall.getToolName());
-                        System.out.println("  📝 结果: " + toolResponse.getOutput().substring(0, Math.min(80, toolResponse.getOutput().length())) + "...");
-                        
-                    } catch (Exception e) {
-                        // 工具调用失败，加入内存供下一轮修复
-                        reactMemory.addRound(llmResponse, "错误: " + e.getMessage());
-                        System.out.println("  ❌ 工具调用失败: " + e.getMessage());
+                        partial.getExtra().put("early_stopped", "loop_detected");
+                        return CompletableFuture.completedFuture(partial);
+                    }
+                    if (verdict == LoopDetector.Verdict.WARN) {
+                        System.out.println("  🔁 [" + name + "] 检测到重复调用，提示模型换一种方法");
+                        observation += loopDetector.correction();
                     }
                     
-                } else {
-                    // 解析错误，加入内存供下一轮修正
-                    reactMemory.addRound(llmResponse, "格式错误，请重试");
-                    System.out.println("  ⚠️  LLM响应格式错误，重试中...");
-                }
-            }
-            
-            // 达到最大轮次，返回最后一次的结果
-            return new AgentResponse(
-                AgentState.FAILED,
-                "达到最大执行轮次，无法完成任务",
-                null,
-                request
-            );
+                    // 所有观察按决策中的调用顺序记录为同一轮（自动记录和传递历史）
+                    reactMemory.addRound(llmResponse, observation);
+                    return runRound(request, reactMemory, loopDetector, protocol, round + 1);
+                });
         });
     }
     
     /**
-     * 构建完整上下文（包含历史结果）
+     * 将工具调用结果转换为观察文本（失败和权限不足也作为观察，供下一轮修正）
      */
-    private List<Map<String, String>> buildMessages(AgentRequest request, ReactMemory reactMemory) {
-        List<Map<String, String>> messages = new ArrayList<>();
+    private String observe(ToolCall toolCall, AgentResponse toolResponse, Throwable ex) {
+        if (ex != null) {
+            // 工具调用失败，加入内存供下一轮修复
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            System.out.println("  ❌ 工具调用失败: " + cause.getMessage());
+            return "错误: " + cause.getMessage();
+        }
         
-        // 1. 系统提示（包含流程描述）
-        Map<String, String> systemMsg = new HashMap<>();
-        systemMsg.put("role", "system");
-        systemMsg.put("content", buildSystemPrompt());
-        messages.add(systemMsg);
+        // 检查响应状态
+        if (toolResponse.getState() == AgentState.SKIPPED) {
+            // 权限不足，跳过
+            System.out.println("  ⚠️  权限不足: " + toolResponse.getOutput());
+            return "权限不足: " + toolResponse.getOutput();
+        } else if (toolResponse.getState() == AgentState.FAILED) {
+            // 调用失败，加入内存供下一轮修复
+            System.out.println("  ❌ 工具调用失败: " + toolResponse.getOutput());
+            return "错误: " + toolResponse.getOutput();
+        }
         
-        // 2. 原始用户查询
-        Map<String, String> userMsg = new HashMap<>();
-        userMsg.put("role", "user");
-        userMsg.put("content", request.getQuery());
-        messages.add(userMsg);
+        // 收集执行结果
+        Observation observation = new Observation(
+            toolCall.getToolName(),
+            toolResponse.getOutput()
+        );
         
-        // 3. ReAct历史（自动传递历史结果）
-        for (ReactMemory.Round round : reactMemory.getRounds()) {
-            Map<String, String> assistantMsg = new HashMap<>();
-            assistantMsg.put("role", "assistant");
-            assistantMsg.put("content", round.getThought());
-            messages.add(assistantMsg);
-            
-            Map<String, String> userResponse = new HashMap<>();
-            userResponse.put("role", "user");
-            userResponse.put("content", round.getObservation());
-            messages.add(userResponse);
+        System.out.println("  🔧 工具调用完成: " + toolCall.getToolName());
+        System.out.println("  📝 结果: " + toolResponse.getOutput().substring(0, Math.min(80, toolResponse.getOutput().length())) + "...");
+        return observation.toString();
+    }
+    
+    /**
+     * 合并一轮中各个调用的观察：单个调用保持原格式，多个调用按决策中的顺序编号
+     */
+    private String joinObservations(List<ToolCall> toolCalls, List<CompletableFuture<String>> observations) {
+        if (observations.size() == 1) {
+            return observations.get(0).join();
         }
-        
-        return messages;
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < observations.size(); i++) {
+            if (i > 0) {
+                joined.append('\n');
+            }
+            joined.append('[').append(i + 1).append("] ").append(toolCalls.get(i).getToolName())
+                .append(" → ").append(observations.get(i).join());
+        }
+        return joined.toString();
+    }
+    
+    /**
+     * 流式调用LLM，增量检测决策JSON
+     * 第一个顶层JSON对象一旦闭合就停止接收，立即进入工具分发，
+     * 省去等待模型输出尾部文本的时间；首字节、耗时和用量计入请求的 UsageStats。
+     * 原生工具调用由客户端转换为同样的决策JSON，因此检测和解析逻辑与文本协议一致；
+     * 提供者因 tools / tool_choice / response_format 字段拒绝请求时，按 NATIVE → JSON_MODE → TEXT
+     * 降一级并重新发起本轮请求，降级只对本次执行的后续轮次生效（同一智能体可能经由路由发往其他提供者）
+     */
+    private CompletableFuture<String> streamDecision(List<Map<String, String>> messages, AgentRequest request,
+                                                     AtomicReference<DecisionProtocol> protocol) {
+        DecisionProtocol current = protocol.get();
+        ChatOptions options = getChatOptions(current);
+        IncrementalJsonDetector detector = new IncrementalJsonDetector();
+        LLMCallMeter meter = new LLMCallMeter(LLMStreamListener.of(
+            token -> !detector.feed(token),
+            usage -> PromptCacheStats.record(name, usage)
+        ), request.getUsageStats());
+        return llmClient.chatStreamAsync(messages, withSessionKey(options, request), meter)
+            .whenComplete((response, ex) -> meter.finish())
+            .thenApply(response -> {
+                if (detector.isComplete()) {
+                    System.out.println("  ⚡ 决策JSON已闭合，提前结束接收");
+                    return detector.getObject();
+                }
+                return response;
+            })
+            .exceptionallyCompose(ex -> {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                if (options == null || !(cause instanceof LLMBadRequestException badRequest)
+                        || !badRequest.mentionsAny(PROTOCOL_FIELDS)) {
+                    return CompletableFuture.failedFuture(cause);
+                }
+                DecisionProtocol fallback = current == DecisionProtocol.NATIVE
+                    ? DecisionProtocol.JSON_MODE : DecisionProtocol.TEXT;
+                protocol.compareAndSet(current, fallback);
+                System.out.println("  ⚠️  [" + name + "] 提供者拒绝 " + current
+                    + " 决策协议，本次执行退回 " + protocol.get() + ": " + cause.getMessage());
+                return streamDecision(messages, request, protocol);
+            });
+    }
+    
+    /**
+     * 附加会话键（请求的 groupId，没有时为 traceId）：多副本负载均衡时同一会话的各轮请求发往同一副本
+     */
+    private static ChatOptions withSessionKey(ChatOptions options, AgentRequest request) {
+        String sessionKey = request.getGroupId() != null && !request.getGroupId().isBlank()
+            ? request.getGroupId() : request.getTraceId();
+        if (sessionKey == null) {
+            return options;
+        }
+        return (options != null ? options : ChatOptions.none()).withSessionKey(sessionKey);
+    }
+    
+    /**
+     * 当前决策协议对应的请求选项（文本协议或没有可调用工具时为 null）
+     */
+    private ChatOptions getChatOptions(DecisionProtocol protocol) {
+        if (protocol == DecisionProtocol.TEXT || (subAgents.isEmpty() && tools.isEmpty())) {
+            return null;
+        }
+        if (protocol == DecisionProtocol.JSON_MODE) {
+            return ChatOptions.jsonMode();
+        }
+        ChatOptions options = chatOptions;
+        if (options == null) {
+            options = new ChatOptions(buildToolSpecs(), null, false);
+            chatOptions = options;
+        }
+        return options;
+    }
+    
+    /**
+     * 根据框架中注册的子智能体和工具生成原生工具定义
+     * 子智能体只接受 query 参数；工具使用其声明的参数 Schema（如 MCP 工具的 inputSchema）
+     */
+    private List<LLMToolSpec> buildToolSpecs() {
+        List<LLMToolSpec> specs = new ArrayList<>();
+        for (String agentName : subAgents) {
+            String agentDescription = null;
+            if (framework != null && framework.getAllAgents().contains(agentName)) {
+                agentDescription = framework.getAgent(agentName).getDescription();
+            }
+            specs.add(new LLMToolSpec(agentName, agentDescription, null));
+        }
+        for (String toolName : tools) {
+            if (framework != null && framework.hasTool(toolName)) {
+                Tool tool = framework.getTool(toolName);
+                specs.add(new LLMToolSpec(toolName, tool.getDescription(), tool.getInputSchema()));
+            } else {
+                specs.add(new LLMToolSpec(toolName, null, null));
+            }
+        }
+        return specs;
+    }
+
+    /**
+     * 构建每轮请求的固定前缀（每次执行只调用一次）
+     *
+     * 顺序固定为：系统提示（含工具列表，构造时生成）→ 原始查询，之后由 ReactMemory 逐轮追加思考/观察。
+     * 前面的部分在整个 ReAct 循环中保持字节一致，每轮只在末尾追加新内容，
+     * DeepSeek / OpenAI 的前缀缓存因此可以命中之前所有轮次的提示。
+     */
+    private List<Map<String, String>> buildMessages(AgentRequest request) {
+        String query = request.getQuery() != null ? request.getQuery() : "";
+        return List.of(systemMessage, Map.of("role", "user", "content", query));
     }
     
     /**
-     * 构建系统提示（包含流程描述和可用工具列表）
+     * 构建系统提示（包含流程描述和可用工具列表，只在构造时调用一次）
      */
     private String buildSystemPrompt() {
         // 处理 systemPrompt 为 null 的情况
@@ -190,6 +390,8 @@ public class ReActAgent implements Agent {
             
             prompt.append("\n\n调用格式（JSON）:");
             prompt.append("\n{\"type\": \"tool_call\", \"tool_name\": \"工具名\", \"arguments\": {\"query\": \"...\"}}");
+            prompt.append("\n多个相互独立的调用可以在同一轮发出（并发执行）:");
+            prompt.append("\n{\"type\": \"tool_calls\", \"calls\": [{\"tool_name\": \"工具名\", \"arguments\": {\"query\": \"...\"}}, ...]}");
             prompt.append("\n或直接回答:");
             prompt.append("\n{\"type\": \"answer\", \"content\": \"...\"}");
         }
@@ -200,31 +402,22 @@ public class ReActAgent implements Agent {
     /**
      * 解析LLM响应（判断是工具调用还是最终答案）
      */
-    private LLMDecision parseLLMResponse(String response) {
-        // 简单JSON解析
-        try {
-            // 查找JSON对象
-            int jsonStart = response.indexOf("{");
-            int jsonEnd = response.lastIndexOf("}");
-            
-            if (jsonStart >= 0 && jsonEnd > jsonStart) {
-                String jsonStr = response.substring(jsonStart, jsonEnd + 1);
-                
-                // 简单的JSON解析
-                if (jsonStr.contains("\"type\": \"tool_call\"")) {
-                    // 提取工具名和参数
-                    String toolName = extractJsonValue(jsonStr, "tool_name");
-                    Map<String, Object> arguments = extractArguments(jsonStr);
-                    
-                    return new LLMDecision(DecisionType.TOOL_CALL, 
-                                          new ToolCall(toolName, arguments), null);
-                } else if (jsonStr.contains("\"type\": \"answer\"")) {
-                    String content = extractJsonValue(jsonStr, "content");
-                    return new LLMDecision(DecisionType.ANSWER, null, content);
-                }
-            }
-        } catch (Exception e) {
-            // JSON解析失败，当作普通文本回答
+    private LLMDecision parseLLMResponse(String response, DecisionProtocol protocol) {
+        DecisionParser.Result parsed = DecisionParser.parse(response);
+        DecisionParser.Decision decision = parsed.decision();
+        if (decision != null) {
+            return decision.answer()
+                ? new LLMDecision(DecisionType.ANSWER, null, decision.content())
+                : new LLMDecision(DecisionType.TOOL_CALL, decision.toolCalls(), null);
+        }
+        if (parsed.error() != null) {
+            // 看起来是决策但无法解析，把错误位置反馈给模型修正
+            return new LLMDecision(DecisionType.ERROR, null, parsed.error().toString());
+        }
+        
+        // 原生工具调用以结构化字段返回，普通文本即最终答案；文本协议下才按工具名猜测
+        if (protocol == DecisionProtocol.NATIVE && getChatOptions(protocol) != null) {
+            return new LLMDecision(DecisionType.ANSWER, null, response);
         }
         
         // 如果包含工具名，尝试提取
@@ -233,7 +426,7 @@ public class ReActAgent implements Agent {
                 Map<String, Object> arguments = new HashMap<>();
                 arguments.put("query", response);
                 return new LLMDecision(DecisionType.TOOL_CALL, 
-                                     new ToolCall(agentName, arguments), null);
+                                     List.of(new ToolCall(agentName, arguments)), null);
             }
         }
         
@@ -244,8 +437,9 @@ public class ReActAgent implements Agent {
     /**
      * 执行工具调用（支持重试机制）
      * 对应 Python 版本的 retry_execute()
+     * 重试间隔通过延迟调度实现，等待期间不阻塞线程
      */
-    private AgentResponse executeToolCallWithRetry(ToolCall toolCall, AgentRequest originalRequest) {
+    private CompletableFuture<AgentResponse> executeToolCallWithRetry(ToolCall toolCall, AgentRequest originalRequest) {
         String toolName = toolCall.getToolName();
         
         // 确保请求对象有框架引用
@@ -268,93 +462,65 @@ public class ReActAgent implements Agent {
             int retries = agent != null ? agent.getRetries() : 0;
             long delay = agent != null ? agent.getDelay() : 1;
             
-            // 重试逻辑
-            int attempt = 0;
-            while (attempt <= retries) {
-                try {
-                    // 使用请求对象的 call() 方法（自动处理权限、超时等）
-                    AgentResponse response = originalRequest.call(toolName, toolCall.getArguments()).join();
-                    
-                    // 如果成功，直接返回
-                    if (response.getState() == AgentState.COMPLETED) {
-                        return response;
-                    }
-                    
-                    // 如果是权限问题，直接返回（不重试）
-                    if (response.getState() == AgentState.SKIPPED) {
-                        return response;
-                    }
-                    
-                    // 失败但还有重试机会
-                    if (attempt < retries) {
-                        attempt++;
-                        System.out.println("    ⚠️  调用失败，第 " + attempt + " 次重试...");
-                        try {
-                            Thread.sleep(delay * 1000);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                        continue;
-                    }
-                    
-                    // 重试次数用完，返回失败响应
-                    return response;
-                    
-                } catch (Exception e) {
-                    // 异常处理
-                    if (attempt < retries) {
-                        attempt++;
-                        System.out.println("    ⚠️  调用异常，第 " + attempt + " 次重试: " + e.getMessage());
-                        try {
-                            Thread.sleep(delay * 1000);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        }
-                        continue;
-                    }
-                    
-                    // 重试次数用完，返回失败响应
-                    return new AgentResponse(
-                        AgentState.FAILED,
-                        "工具调用失败（已重试 " + retries + " 次）: " + e.getMessage(),
-                        null,
-                        originalRequest
-                    );
-                }
-            }
+            return attemptToolCall(toolCall, originalRequest, 0, retries, delay);
         }
         
         // 未知的工具或智能体
-        return new AgentResponse(
+        return CompletableFuture.completedFuture(new AgentResponse(
             AgentState.FAILED,
             "未知的工具或智能体: " + toolName,
             null,
             originalRequest
-        );
+        ));
     }
     
-    
-    // 简单的JSON提取方法
-    private String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-        java.util.regex.Matcher m = p.matcher(json);
-        if (m.find()) {
-            return m.group(1);
-        }
-        return "";
-    }
-    
-    private Map<String, Object> extractArguments(String json) {
-        Map<String, Object> args = new HashMap<>();
-        // 简单提取query参数
-        String query = extractJsonValue(json, "query");
-        if (!query.isEmpty()) {
-            args.put("query", query);
+    /**
+     * 单次工具调用尝试，失败且有剩余次数时延迟后重试
+     */
+    private CompletableFuture<AgentResponse> attemptToolCall(ToolCall toolCall, AgentRequest originalRequest,
+                                                             int attempt, int retries, long delay) {
+        CompletableFuture<AgentResponse> call;
+        try {
+            // 使用请求对象的 call() 方法（自动处理权限、超时等）
+            call = originalRequest.call(toolCall.getToolName(), toolCall.getArguments());
+        } catch (Exception e) {
+            call = CompletableFuture.failedFuture(e);
         }
-        return args;
+        
+        return call.handle((response, ex) -> {
+            // 如果成功或是权限问题，直接返回（权限问题不重试）
+            if (ex == null && (response.getState() == AgentState.COMPLETED
+                    || response.getState() == AgentState.SKIPPED)) {
+                return CompletableFuture.completedFuture(response);
+            }
+            
+            // 失败但还有重试机会
+            if (attempt < retries) {
+                if (ex != null) {
+                    System.out.println("    ⚠️  调用异常，第 " + (attempt + 1) + " 次重试: " + ex.getMessage());
+                } else {
+                    System.out.println("    ⚠️  调用失败，第 " + (attempt + 1) + " 次重试...");
+                }
+                Executor delayed = CompletableFuture.delayedExecutor(
+                    delay, TimeUnit.SECONDS, getExecutionEngine().executor());
+                return CompletableFuture.supplyAsync(() -> (Void) null, delayed)
+                    .thenCompose(ignored -> attemptToolCall(toolCall, originalRequest, attempt + 1, retries, delay));
+            }
+            
+            // 重试次数用完，返回失败响应
+            if (ex != null) {
+                return CompletableFuture.completedFuture(new AgentResponse(
+                    AgentState.FAILED,
+                    "工具调用失败（已重试 " + retries + " 次）: " + ex.getMessage(),
+                    null,
+                    originalRequest
+                ));
+            }
+            return CompletableFuture.completedFuture(response);
+        }).thenCompose(future -> future);
     }
-    
+
+
     // ========== Getters ==========
     
     @Override
@@ -382,20 +548,65 @@ public class ReActAgent implements Agent {
         return framework;
     }
     
+    public CompactionPolicy getCompactionPolicy() {
+        return compactionPolicy;
+    }
+    
+    /**
+     * 设置ReAct内存压缩策略（默认 CompactionPolicy.defaults()，对之后开始的执行生效）
+     */
+    public void setCompactionPolicy(CompactionPolicy compactionPolicy) {
+        this.compactionPolicy = compactionPolicy != null ? compactionPolicy : CompactionPolicy.none();
+    }
+    
+    public LoopDetectionPolicy getLoopDetectionPolicy() {
+        return loopDetectionPolicy;
+    }
+    
+    /**
+     * 设置循环检测策略（默认 LoopDetectionPolicy.defaults()，对之后开始的执行生效）
+     */
+    public void setLoopDetectionPolicy(LoopDetectionPolicy loopDetectionPolicy) {
+        this.loopDetectionPolicy = loopDetectionPolicy != null ? loopDetectionPolicy : LoopDetectionPolicy.disabled();
+    }
+    
+    public DecisionProtocol getDecisionProtocol() {
+        return decisionProtocol;
+    }
+    
+    /**
+     * 设置决策协议（默认 NATIVE，对之后开始的执行生效；提供者拒绝相应字段时各次执行自行降级，不修改此设置）
+     */
+    public void setDecisionProtocol(DecisionProtocol decisionProtocol) {
+        this.decisionProtocol = decisionProtocol != null ? decisionProtocol : DecisionProtocol.TEXT;
+    }
+    
     // ========== 内部类 ==========
     
+    /**
+     * 决策协议：模型如何表达"调用工具"或"直接回答"
+     */
+    public enum DecisionProtocol {
+        /** 原生函数调用（tools / tool_calls），不支持的客户端自动忽略 */
+        NATIVE,
+        /** JSON 模式（response_format: json_object / format: json），按文本协议输出决策JSON */
+        JSON_MODE,
+        /** 纯文本协议：从模型输出中提取决策JSON */
+        TEXT
+    }
+    
     private enum DecisionType {
         ANSWER, TOOL_CALL, ERROR
     }
     
     private static class LLMDecision {
         DecisionType type;
-        ToolCall toolCall;
+        List<ToolCall> toolCalls; // 按决策中的顺序排列
         String content;
         
-        LLMDecision(DecisionType type, ToolCall toolCall, String content) {
+        LLMDecision(DecisionType type, List<ToolCall> toolCalls, String content) {
             this.type = type;
-            this.toolCall = toolCall;
+            this.toolCalls = toolCalls;
             this.content = content;
         }
     }
@@ -111,7 +111,7 @@ public class ReflexionAgent implements Agent {
     
     @Override
     public CompletableFuture<AgentResponse> execute(AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getExecutionEngine().submit(() -> {
             System.out.println("\n🔄 [" + name + "] 开始反思流程: " + request.getQuery());
             
             // 确保请求对象有框架引用
@@ -38,7 +38,7 @@ public class SSEOxyGent extends RemoteAgent {
     
     @Override
     public CompletableFuture<AgentResponse> execute(AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getExecutionEngine().submit(() -> {
             System.out.println("🔄 [" + name + "] 开始远程调用: " + serverUrl);
             
             try {
@@ -68,7 +68,7 @@ public class WorkflowAgent implements Agent {
     
     @Override
     public CompletableFuture<AgentResponse> execute(AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getExecutionEngine().submit(() -> {
             System.out.println("\n⚙️  [" + name + "] 开始执行工作流: " + request.getQuery());
             
             // 确保请求对象有框架引用
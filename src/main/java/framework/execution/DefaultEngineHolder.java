@@ -0,0 +1,32 @@
+package framework.execution;
+
+/**
+ * 全局默认执行引擎持有者（框架内部使用）
+ */
+final class DefaultEngineHolder {
+    private static volatile ExecutionEngine engine;
+
+    private DefaultEngineHolder() {
+    }
+
+    static ExecutionEngine get() {
+        ExecutionEngine current = engine;
+        if (current == null) {
+            synchronized (DefaultEngineHolder.class) {
+                current = engine;
+                if (current == null) {
+                    current = new VirtualThreadExecutionEngine();
+                    engine = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    static void set(ExecutionEngine newEngine) {
+        if (newEngine == null) {
+            throw new IllegalArgumentException("执行引擎不能为空");
+        }
+        engine = newEngine;
+    }
+}
@@ -0,0 +1,81 @@
+package framework.execution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 执行引擎接口（框架核心）
+ *
+ * 所有智能体、工具以及 AgentRequest.call() 的异步任务都通过执行引擎调度，
+ * 不再直接使用公共 ForkJoinPool。
+ *
+ * 默认实现为"每个调用一个虚拟线程"（VirtualThreadExecutionEngine）：
+ * 智能体内部嵌套的 join() 只会挂起虚拟线程，不会耗尽载体线程，
+ * 因此在小核数机器上也不会因线程池饥饿而死锁。
+ *
+ * 使用示例：
+ * <pre>
+ * AgentFramework framework = new AgentFramework();
+ * // 使用默认的虚拟线程引擎（无需设置）
+ * // 或切换为固定大小线程池
+ * framework.setExecutionEngine(ExecutionEngine.fromExecutor("fixed-16", Executors.newFixedThreadPool(16)));
+ * </pre>
+ */
+public interface ExecutionEngine {
+
+    /**
+     * 异步执行任务
+     *
+     * @param task 任务
+     * @return 任务结果（异步）
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> task);
+
+    /**
+     * 获取底层执行器（用于 CompletableFuture 的 *Async 方法或 HttpClient）
+     */
+    Executor executor();
+
+    /**
+     * 引擎名称（用于日志）
+     */
+    String getName();
+
+    /**
+     * 关闭引擎，释放线程资源
+     */
+    default void shutdown() {
+    }
+
+    /**
+     * 创建虚拟线程引擎（每个调用一个虚拟线程）
+     */
+    static ExecutionEngine virtualThreads() {
+        return new VirtualThreadExecutionEngine();
+    }
+
+    /**
+     * 基于已有执行器创建引擎
+     *
+     * @param name 引擎名称
+     * @param executor 执行器
+     */
+    static ExecutionEngine fromExecutor(String name, Executor executor) {
+        return new ExecutorExecutionEngine(name, executor);
+    }
+
+    /**
+     * 获取全局默认引擎（未关联框架的智能体、工具和 LLM 客户端使用）
+     */
+    static ExecutionEngine defaultEngine() {
+        return DefaultEngineHolder.get();
+    }
+
+    /**
+     * 替换全局默认引擎
+     */
+    static void setDefaultEngine(ExecutionEngine engine) {
+        DefaultEngineHolder.set(engine);
+    }
+}
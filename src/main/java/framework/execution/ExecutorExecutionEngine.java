@@ -0,0 +1,46 @@
+package framework.execution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * 基于任意 Executor 的执行引擎
+ *
+ * 用于需要沿用平台线程池的场景（例如限制总并发线程数）
+ */
+public class ExecutorExecutionEngine implements ExecutionEngine {
+    private final String name;
+    private final Executor executor;
+
+    public ExecutorExecutionEngine(String name, Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor 不能为空");
+        }
+        this.name = name != null ? name : executor.getClass().getSimpleName();
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    @Override
+    public Executor executor() {
+        return executor;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package framework.execution;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 虚拟线程钉住（pinning）诊断
+ *
+ * 虚拟线程在 synchronized 块内阻塞、或执行本地方法（如读取子进程管道）时，
+ * 会占住载体线程无法卸载。此类诊断提供两种手段：
+ * 1. JFR 事件流：订阅 jdk.VirtualThreadPinned 事件，超过阈值时打印钉住位置
+ * 2. 阻塞区段统计：在已知可能钉住的代码段（如 StdioMCPClient 管道读写）外包一层
+ *    blockingSection()，统计进入次数、总耗时以及在虚拟线程上执行的次数
+ *
+ * 也可以配合 JVM 参数 -Djdk.tracePinnedThreads=short 使用。
+ *
+ * 使用示例：
+ * <pre>
+ * PinningDiagnostics.start(Duration.ofMillis(20));
+ * try (PinningDiagnostics.Section section = PinningDiagnostics.blockingSection("mcp-stdio")) {
+ *     line = reader.readLine();
+ * }
+ * PinningDiagnostics.printReport();
+ * </pre>
+ */
+public final class PinningDiagnostics {
+    private static final Map<String, SectionStats> SECTIONS = new ConcurrentHashMap<>();
+    private static final AtomicLong PINNED_EVENTS = new AtomicLong();
+    private static volatile RecordingStream recordingStream;
+
+    private PinningDiagnostics() {
+    }
+
+    /**
+     * 启动 JFR 钉住事件监听
+     *
+     * @param threshold 钉住时长阈值，超过才报告
+     */
+    public static synchronized void start(Duration threshold) {
+        if (recordingStream != null) {
+            return;
+        }
+        try {
+            RecordingStream stream = new RecordingStream();
+            stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+            stream.onEvent("jdk.VirtualThreadPinned", PinningDiagnostics::onPinned);
+            stream.setReuse(false);
+            // 在守护线程中消费事件流，避免阻止 JVM 退出
+            Thread.ofPlatform().daemon().name("oxygent-pinning-diagnostics").start(stream::start);
+            recordingStream = stream;
+            System.out.println("📌 虚拟线程钉住诊断已开启（阈值: " + threshold.toMillis() + "ms）");
+        } catch (Exception | LinkageError e) {
+            System.err.println("⚠️  无法开启虚拟线程钉住诊断: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止 JFR 钉住事件监听
+     */
+    public static synchronized void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+            recordingStream = null;
+        }
+    }
+
+    /**
+     * 是否已开启 JFR 监听
+     */
+    public static boolean isRunning() {
+        return recordingStream != null;
+    }
+
+    /**
+     * 标记一个可能钉住载体线程的阻塞区段
+     *
+     * @param name 区段名称（如 "mcp-stdio:file_tools"）
+     * @return 区段句柄，需在 try-with-resources 中关闭
+     */
+    public static Section blockingSection(String name) {
+        return new Section(SECTIONS.computeIfAbsent(name, SectionStats::new));
+    }
+
+    /**
+     * 获取阻塞区段统计快照
+     */
+    public static Map<String, SectionStats> getSectionStats() {
+        return new LinkedHashMap<>(SECTIONS);
+    }
+
+    /**
+     * 获取 JFR 报告的钉住事件数
+     */
+    public static long getPinnedEventCount() {
+        return PINNED_EVENTS.get();
+    }
+
+    /**
+     * 打印诊断报告
+     */
+    public static void printReport() {
+        System.out.println("📌 虚拟线程钉住诊断报告");
+        System.out.println("   JFR 钉住事件: " + PINNED_EVENTS.get());
+        for (SectionStats stats : SECTIONS.values()) {
+            System.out.println("   区段 " + stats);
+        }
+    }
+
+    private static void onPinned(RecordedEvent event) {
+        PINNED_EVENTS.incrementAndGet();
+        StringBuilder sb = new StringBuilder();
+        sb.append("📌 虚拟线程被钉住 ").append(event.getDuration().toMillis()).append("ms");
+        if (event.getThread() != null) {
+            sb.append(" [").append(event.getThread().getJavaName()).append("]");
+        }
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace != null) {
+            List<RecordedFrame> frames = stackTrace.getFrames();
+            for (int i = 0; i < Math.min(8, frames.size()); i++) {
+                RecordedFrame frame = frames.get(i);
+                sb.append("\n      at ")
+                  .append(frame.getMethod().getType().getName())
+                  .append('.')
+                  .append(frame.getMethod().getName())
+                  .append(':')
+                  .append(frame.getLineNumber());
+            }
+        }
+        System.err.println(sb);
+    }
+
+    /**
+     * 阻塞区段句柄
+     */
+    public static final class Section implements AutoCloseable {
+        private final SectionStats stats;
+        private final long startNanos;
+        private final boolean virtual;
+
+        private Section(SectionStats stats) {
+            this.stats = stats;
+            this.startNanos = System.nanoTime();
+            this.virtual = Thread.currentThread().isVirtual();
+        }
+
+        @Override
+        public void close() {
+            stats.record(System.nanoTime() - startNanos, virtual);
+        }
+    }
+
+    /**
+     * 阻塞区段统计
+     */
+    public static final class SectionStats {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong virtualCount = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private SectionStats(String name) {
+            this.name = name;
+        }
+
+        private void record(long nanos, boolean virtual) {
+            count.incrementAndGet();
+            if (virtual) {
+                virtualCount.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getVirtualCount() {
+            return virtualCount.get();
+        }
+
+        public long getTotalMillis() {
+            return totalNanos.get() / 1_000_000;
+        }
+
+        public long getMaxMillis() {
+            return maxNanos.get() / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": 次数=" + getCount() + "（虚拟线程 " + getVirtualCount() + "）"
+                + ", 总耗时=" + getTotalMillis() + "ms, 最大=" + getMaxMillis() + "ms";
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package framework.execution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * 虚拟线程执行引擎（默认引擎）
+ *
+ * 每次提交的任务运行在一个新的虚拟线程上：
+ * - 阻塞调用（HTTP、join()、Thread.sleep）只挂起虚拟线程，载体线程立即复用
+ * - 不存在线程池大小上限，嵌套调用不会饥饿或死锁
+ *
+ * 注意：虚拟线程在 synchronized 块或本地方法中阻塞时会钉住载体线程，
+ * 可开启 PinningDiagnostics 观察此类情况。
+ */
+public class VirtualThreadExecutionEngine implements ExecutionEngine {
+    private final String name;
+    private final ExecutorService executor;
+
+    public VirtualThreadExecutionEngine() {
+        this("oxygent-vt");
+    }
+
+    /**
+     * @param name 引擎名称，同时作为虚拟线程名前缀
+     */
+    public VirtualThreadExecutionEngine(String name) {
+        this.name = name;
+        this.executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name(name + "-", 0).factory()
+        );
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    @Override
+    public Executor executor() {
+        return executor;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,68 @@
+package framework.llm;
+
+/**
+ * AIMD 自适应并发上限（RateLimitedLLMClient 内部使用，非线程安全，由调用方加锁）
+ *
+ * - 加性增：每次成功且延迟正常时 limit += 1 / limit（大约每轮满载并发 +1）
+ * - 乘性减：收到 429 / 5xx 时 limit *= 0.5；延迟超过平滑延迟的 2 倍时 limit *= 0.9
+ * - 上限在 [min, max] 之间
+ */
+final class AdaptiveConcurrencyLimit {
+    private static final double OVERLOAD_FACTOR = 0.5;
+    private static final double SLOW_FACTOR = 0.9;
+    private static final double SLOW_THRESHOLD = 2.0;
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    private final int min;
+    private final int max;
+    private double limit;
+    private int inFlight;
+    private double smoothedLatencyNanos;
+
+    AdaptiveConcurrencyLimit(int initial, int min, int max) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = Math.max(this.min, Math.min(this.max, initial));
+    }
+
+    boolean tryAcquire() {
+        if (inFlight < (int) limit) {
+            inFlight++;
+            return true;
+        }
+        return false;
+    }
+
+    void release() {
+        inFlight--;
+    }
+
+    void onSuccess(long latencyNanos) {
+        if (smoothedLatencyNanos == 0) {
+            smoothedLatencyNanos = latencyNanos;
+        }
+        boolean slow = latencyNanos > smoothedLatencyNanos * SLOW_THRESHOLD;
+        smoothedLatencyNanos += (latencyNanos - smoothedLatencyNanos) * LATENCY_SMOOTHING;
+        if (slow) {
+            limit = Math.max(min, limit * SLOW_FACTOR);
+        } else {
+            limit = Math.min(max, limit + 1.0 / limit);
+        }
+    }
+
+    void onOverload() {
+        limit = Math.max(min, limit * OVERLOAD_FACTOR);
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight;
+    }
+
+    long getSmoothedLatencyMillis() {
+        return (long) (smoothedLatencyNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,604 @@
+package framework.llm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 对话请求/响应编解码（框架内部使用，三个 LLM 客户端共享）
+ *
+ * - 请求：类型化的 record，由 JsonGenerator 按需逐条写入 HTTP 请求体（StreamingJsonBodyPublisher），
+ *   消息由预先构建的 ObjectWriter 序列化，不再为每条消息创建 HashMap，也不生成完整的请求体字符串
+ * - 响应：用流式 JsonParser 只提取需要的字段（正文和用量），其余字段直接跳过，不构建完整的 JSON 树
+ *
+ * 同一个解码逻辑兼容四种形态：
+ * - OpenAI 兼容非流式：choices[0].message.content / tool_calls + usage
+ * - OpenAI 兼容流式分块：choices[0].delta.content / tool_calls（按 index 分片）+ usage（最后一个分块）
+ * - Ollama 非流式 / 流式分块：message.content / tool_calls + done + prompt_eval_count / eval_count
+ * - Ollama /api/generate：response + done + context（会话的 token 序列，可在下一轮复用）
+ *
+ * 原生工具调用（tool_calls）被转换为决策 JSON（见 ChatOptions），调用方拿到的始终是文本。
+ *
+ * 线程安全：ObjectWriter / ObjectReader 不可变，可在客户端之间共享。
+ */
+final class ChatCompletionCodec {
+
+    /**
+     * 对话消息
+     */
+    record ChatMessage(String role, String content) {
+    }
+
+    /**
+     * 流式选项（OpenAI 兼容接口）
+     */
+    record StreamOptions(@JsonProperty("include_usage") boolean includeUsage) {
+    }
+
+    /**
+     * 对话请求体（由 requestPublisher 逐条流式写出，为 null 的字段不输出）
+     *
+     * @param keepAlive Ollama 模型常驻时间（如 "30m"）
+     * @param options Ollama 模型参数（如 num_ctx）
+     * @param tools 原生工具定义
+     * @param toolChoice auto / required / none
+     * @param responseFormat OpenAI 兼容接口的 response_format
+     * @param format Ollama 的 format（"json" 为 JSON 模式）
+     */
+    record ChatRequest(String model,
+                       List<ChatMessage> messages,
+                       Double temperature,
+                       Boolean stream,
+                       StreamOptions streamOptions,
+                       String keepAlive,
+                       Map<String, Object> options,
+                       List<ToolDefinition> tools,
+                       String toolChoice,
+                       ResponseFormat responseFormat,
+                       String format) {
+
+        /**
+         * 不带工具和 JSON 模式的请求
+         */
+        ChatRequest(String model, List<ChatMessage> messages, Double temperature, Boolean stream,
+                    StreamOptions streamOptions, String keepAlive, Map<String, Object> options) {
+            this(model, messages, temperature, stream, streamOptions, keepAlive, options, null, null, null, null);
+        }
+
+        /**
+         * 按请求选项设置工具和 JSON 模式
+         *
+         * @param ollama 是否为 Ollama 接口（JSON 模式使用 format 字段）
+         */
+        ChatRequest withOptions(ChatOptions chatOptions, boolean ollama) {
+            if (chatOptions == null) {
+                return this;
+            }
+            List<ToolDefinition> toolDefinitions = chatOptions.hasTools() ? toToolDefinitions(chatOptions.getTools()) : null;
+            return new ChatRequest(model, messages, temperature, stream, streamOptions, keepAlive, options,
+                toolDefinitions,
+                toolDefinitions != null && !ollama ? chatOptions.getToolChoice() : null,
+                chatOptions.isJsonMode() && !ollama ? JSON_OBJECT : null,
+                chatOptions.isJsonMode() && ollama ? "json" : null);
+        }
+    }
+
+    /**
+     * 工具定义：{"type": "function", "function": {...}}
+     */
+    record ToolDefinition(String type, FunctionDefinition function) {
+    }
+
+    record FunctionDefinition(String name, String description, Map<String, Object> parameters) {
+    }
+
+    /**
+     * OpenAI 兼容接口的 response_format
+     */
+    record ResponseFormat(String type) {
+    }
+
+    /**
+     * 一个工具调用（流式分块中为分片：同一 index 的 name / arguments 需要拼接）
+     *
+     * @param index 调用序号（Ollama 不提供，按出现顺序编号）
+     * @param name 工具名（分片中可能只在第一个分片出现）
+     * @param arguments 参数 JSON 文本（分片中为增量）
+     */
+    record ToolCallChunk(int index, String name, String arguments) {
+    }
+
+    /**
+     * Ollama /api/generate 请求体（prompt 为空时只加载模型）
+     *
+     * @param context 上一轮返回的 context（为 null 时从 system + prompt 开始新会话）
+     * @param format "json" 为 JSON 模式
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record GenerateRequest(String model,
+                           String system,
+                           String prompt,
+                           int[] context,
+                           Boolean stream,
+                           @JsonProperty("keep_alive") String keepAlive,
+                           Map<String, Object> options,
+                           String format) {
+
+        /**
+         * 不使用 JSON 模式的请求
+         */
+        GenerateRequest(String model, String system, String prompt, int[] context, Boolean stream,
+                        String keepAlive, Map<String, Object> options) {
+            this(model, system, prompt, context, stream, keepAlive, options, null);
+        }
+    }
+
+    /**
+     * OpenAI 兼容接口的 usage 块
+     */
+    record Usage(@JsonProperty("prompt_tokens") long promptTokens,
+                 @JsonProperty("completion_tokens") long completionTokens,
+                 @JsonProperty("total_tokens") long totalTokens,
+                 @JsonProperty("prompt_cache_hit_tokens") Long promptCacheHitTokens,
+                 @JsonProperty("prompt_tokens_details") PromptTokensDetails promptTokensDetails) {
+
+        LLMUsage toLLMUsage() {
+            long cached = promptCacheHitTokens != null ? promptCacheHitTokens
+                : promptTokensDetails != null ? promptTokensDetails.cachedTokens() : 0;
+            return new LLMUsage(promptTokens, completionTokens, totalTokens, cached);
+        }
+    }
+
+    record PromptTokensDetails(@JsonProperty("cached_tokens") long cachedTokens) {
+    }
+
+    /**
+     * 解码结果
+     *
+     * @param content 正文（流式分块中为增量文本；字段不存在时为 null）
+     * @param done Ollama 的 done 标记
+     * @param usage 用量（响应中不含时为 null）
+     * @param context Ollama /api/generate 返回的会话 token 序列（其他响应为 null）
+     * @param toolCalls 原生工具调用（不含时为 null）
+     * @param finishReason 结束原因（如 "stop"、"tool_calls"，不含时为 null）
+     */
+    record ChatResult(String content, boolean done, LLMUsage usage, int[] context,
+                      List<ToolCallChunk> toolCalls, String finishReason) {
+    }
+
+    static final StreamOptions INCLUDE_USAGE = new StreamOptions(true);
+    static final ResponseFormat JSON_OBJECT = new ResponseFormat("json_object");
+
+    private final JsonFactory jsonFactory;
+    private final ObjectWriter messageWriter;
+    private final ObjectWriter streamOptionsWriter;
+    private final ObjectWriter optionsWriter;
+    private final ObjectWriter generateWriter;
+    private final ObjectReader usageReader;
+    private final ObjectWriter toolsWriter;
+    private final ObjectMapper objectMapper;
+
+    ChatCompletionCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        this.messageWriter = objectMapper.writerFor(ChatMessage.class);
+        this.streamOptionsWriter = objectMapper.writerFor(StreamOptions.class);
+        this.optionsWriter = objectMapper.writerFor(Map.class);
+        this.generateWriter = objectMapper.writerFor(GenerateRequest.class);
+        this.usageReader = objectMapper.readerFor(Usage.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.toolsWriter = objectMapper.writerFor(ToolDefinition[].class);
+    }
+
+    /**
+     * 转换消息格式
+     */
+    static List<ChatMessage> toChatMessages(List<Map<String, String>> messages) {
+        List<ChatMessage> converted = new ArrayList<>(messages.size());
+        for (Map<String, String> msg : messages) {
+            converted.add(new ChatMessage(msg.get("role"), msg.get("content")));
+        }
+        return converted;
+    }
+
+    /**
+     * 转换工具定义格式
+     */
+    static List<ToolDefinition> toToolDefinitions(List<LLMToolSpec> tools) {
+        List<ToolDefinition> converted = new ArrayList<>(tools.size());
+        for (LLMToolSpec tool : tools) {
+            converted.add(new ToolDefinition("function",
+                new FunctionDefinition(tool.getName(), tool.getDescription(), tool.getParameters())));
+        }
+        return converted;
+    }
+
+    /**
+     * 构建流式请求体：HttpClient 按需拉取，每次写出一条消息
+     *
+     * 段落：0 = 请求头部字段和 messages 数组起始；1..n = 第 n 条消息；最后 = 数组结束和其余字段
+     *
+     * @param gzip 是否 gzip 压缩（调用方需同时设置 Content-Encoding: gzip）
+     */
+    HttpRequest.BodyPublisher requestPublisher(ChatRequest request, boolean gzip) {
+        List<ChatMessage> messages = request.messages();
+        return new StreamingJsonBodyPublisher(jsonFactory, gzip, (generator, step) -> {
+            if (step == 0) {
+                generator.writeStartObject();
+                generator.writeStringField("model", request.model());
+                generator.writeArrayFieldStart("messages");
+                return true;
+            }
+            if (step <= messages.size()) {
+                messageWriter.writeValue(generator, messages.get(step - 1));
+                return true;
+            }
+            generator.writeEndArray();
+            if (request.temperature() != null) {
+                generator.writeNumberField("temperature", request.temperature());
+            }
+            if (request.stream() != null) {
+                generator.writeBooleanField("stream", request.stream());
+            }
+            if (request.streamOptions() != null) {
+                generator.writeFieldName("stream_options");
+                streamOptionsWriter.writeValue(generator, request.streamOptions());
+            }
+            if (request.keepAlive() != null) {
+                generator.writeStringField("keep_alive", request.keepAlive());
+            }
+            if (request.options() != null) {
+                generator.writeFieldName("options");
+                optionsWriter.writeValue(generator, request.options());
+            }
+            if (request.tools() != null) {
+                generator.writeFieldName("tools");
+                toolsWriter.writeValue(generator, request.tools().toArray(new ToolDefinition[0]));
+            }
+            if (request.toolChoice() != null) {
+                generator.writeStringField("tool_choice", request.toolChoice());
+            }
+            if (request.responseFormat() != null) {
+                generator.writeObjectFieldStart("response_format");
+                generator.writeStringField("type", request.responseFormat().type());
+                generator.writeEndObject();
+            }
+            if (request.format() != null) {
+                generator.writeStringField("format", request.format());
+            }
+            generator.writeEndObject();
+            return false;
+        });
+    }
+
+    /**
+     * 构建 Ollama /api/generate 请求体（context 数组直接由生成器写出）
+     *
+     * @param gzip 是否 gzip 压缩（调用方需同时设置 Content-Encoding: gzip）
+     */
+    HttpRequest.BodyPublisher generatePublisher(GenerateRequest request, boolean gzip) {
+        return new StreamingJsonBodyPublisher(jsonFactory, gzip, (generator, step) -> {
+            generateWriter.writeValue(generator, request);
+            return false;
+        });
+    }
+
+    /**
+     * 解析非流式响应（同步调用，响应体为 InputStream）
+     *
+     * @param providerName 提供者名称（用于错误信息）
+     */
+    ChatResult readResponse(HttpResponse<InputStream> response, String providerName) {
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                String errorBody = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                throw LLMException.fromResponse(providerName, response.statusCode(), response.headers(), errorBody);
+            }
+            try (JsonParser parser = jsonFactory.createParser(body)) {
+                return requireContent(decode(parser), providerName);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 解析非流式响应（异步调用，响应体为字节数组）
+     *
+     * 异步路径不使用 InputStream：在 HttpClient 回调线程上阻塞读取流会占用其执行器
+     *
+     * @param providerName 提供者名称（用于错误信息）
+     */
+    ChatResult readResponseBytes(HttpResponse<byte[]> response, String providerName) {
+        if (response.statusCode() != 200) {
+            String errorBody = new String(response.body(), StandardCharsets.UTF_8);
+            throw LLMException.fromResponse(providerName, response.statusCode(), response.headers(), errorBody);
+        }
+        try (JsonParser parser = jsonFactory.createParser(response.body())) {
+            return requireContent(decode(parser), providerName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 解析一个流式分块（SSE 的 data 内容或 NDJSON 的一行）
+     */
+    ChatResult readChunk(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return decode(parser);
+        }
+    }
+
+    /**
+     * 非流式响应：有原生工具调用时以决策 JSON 作为正文，否则要求正文存在
+     */
+    private ChatResult requireContent(ChatResult result, String providerName) {
+        if (result.toolCalls() != null && !result.toolCalls().isEmpty()) {
+            ToolCallAssembler assembler = new ToolCallAssembler();
+            assembler.add(result.toolCalls());
+            return new ChatResult(toDecisionJson(assembler.calls()), result.done(), result.usage(),
+                result.context(), result.toolCalls(), result.finishReason());
+        }
+        if (result.content() == null) {
+            throw new LLMException(providerName, 0, null, providerName + " API调用失败: 返回空响应", null);
+        }
+        return result;
+    }
+
+    /**
+     * 把原生工具调用转换为文本协议的决策 JSON
+     * 单个调用：{"type": "tool_call", "tool_name": "...", "arguments": {...}}
+     * 多个调用：{"type": "tool_calls", "calls": [{"tool_name": "...", "arguments": {...}}, ...]}（按 index 排序）
+     *
+     * 参数不是合法的 JSON 对象时作为 query 传递
+     */
+    String toDecisionJson(List<ToolCallChunk> calls) {
+        ObjectNode decision = objectMapper.createObjectNode();
+        if (calls.size() == 1) {
+            ToolCallChunk call = calls.get(0);
+            decision.put("type", "tool_call");
+            decision.put("tool_name", call.name());
+            decision.set("arguments", parseArguments(call.arguments()));
+            return decision.toString();
+        }
+        decision.put("type", "tool_calls");
+        ArrayNode array = decision.putArray("calls");
+        for (ToolCallChunk call : calls) {
+            ObjectNode item = array.addObject();
+            item.put("tool_name", call.name());
+            item.set("arguments", parseArguments(call.arguments()));
+        }
+        return decision.toString();
+    }
+
+    private JsonNode parseArguments(String arguments) {
+        if (arguments == null || arguments.isBlank()) {
+            return objectMapper.createObjectNode();
+        }
+        try {
+            JsonNode node = objectMapper.readTree(arguments);
+            if (node != null && node.isObject()) {
+                return node;
+            }
+        } catch (IOException ignored) {
+            // 不是合法 JSON，下面作为 query 传递
+        }
+        return objectMapper.createObjectNode().put("query", arguments);
+    }
+
+    /**
+     * 从顶层对象中提取正文、done 标记和用量，其余字段跳过
+     */
+    private ChatResult decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("响应不是JSON对象");
+        }
+        Message message = new Message();
+        String content = null;
+        boolean done = false;
+        LLMUsage usage = null;
+        long promptEvalCount = -1;
+        long evalCount = 0;
+        int[] context = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "choices" -> readFirstChoice(parser, message);
+                case "message" -> readMessage(parser, message);
+                case "response" -> {
+                    if (value == JsonToken.VALUE_STRING) {
+                        content = parser.getText();
+                    }
+                }
+                case "context" -> context = readIntArray(parser);
+                case "usage" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        usage = usageReader.<Usage>readValue(parser).toLLMUsage();
+                    }
+                }
+                case "done" -> done = value == JsonToken.VALUE_TRUE;
+                case "prompt_eval_count" -> promptEvalCount = parser.getValueAsLong();
+                case "eval_count" -> evalCount = parser.getValueAsLong();
+                default -> parser.skipChildren();
+            }
+        }
+        if (usage == null && promptEvalCount >= 0) {
+            usage = new LLMUsage(promptEvalCount, evalCount, 0, 0);
+        }
+        if (content == null) {
+            content = message.content;
+        }
+        return new ChatResult(content, done, usage, context, message.toolCalls, message.finishReason);
+    }
+
+    /**
+     * 读取整数数组（当前 token 为数组起始）
+     */
+    private static int[] readIntArray(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        int[] values = new int[256];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = parser.getIntValue();
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * choices[0] 的 message / delta 和 finish_reason（当前 token 为数组起始）
+     */
+    private static void readFirstChoice(JsonParser parser, Message message) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("message".equals(field) || "delta".equals(field)) {
+                        readMessage(parser, message);
+                    } else if ("finish_reason".equals(field) && value == JsonToken.VALUE_STRING) {
+                        message.finishReason = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+    }
+
+    /**
+     * 读取 {"content": "...", "tool_calls": [...]} 对象（当前 token 为对象起始）
+     */
+    private static void readMessage(JsonParser parser, Message message) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                message.content = parser.getText();
+            } else if ("tool_calls".equals(field) && value == JsonToken.START_ARRAY) {
+                message.toolCalls = readToolCalls(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * 读取 tool_calls 数组：[{"index": 0, "function": {"name": "...", "arguments": "..." 或 {...}}}]
+     */
+    private static List<ToolCallChunk> readToolCalls(JsonParser parser) throws IOException {
+        List<ToolCallChunk> calls = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            int index = calls.size();
+            String name = null;
+            String arguments = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("index".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    index = parser.getIntValue();
+                } else if ("function".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String functionField = parser.currentName();
+                        JsonToken functionValue = parser.nextToken();
+                        if ("name".equals(functionField) && functionValue == JsonToken.VALUE_STRING) {
+                            name = parser.getText();
+                        } else if ("arguments".equals(functionField) && functionValue == JsonToken.VALUE_STRING) {
+                            arguments = parser.getText();
+                        } else if ("arguments".equals(functionField) && functionValue == JsonToken.START_OBJECT) {
+                            // Ollama 直接返回参数对象
+                            arguments = parser.readValueAsTree().toString();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            calls.add(new ToolCallChunk(index, name, arguments));
+        }
+        return calls;
+    }
+
+    /**
+     * 解码过程中的 message / delta 字段
+     */
+    private static final class Message {
+        private String content;
+        private List<ToolCallChunk> toolCalls;
+        private String finishReason;
+    }
+
+    /**
+     * 按 index 拼接流式工具调用分片（非线程安全）
+     */
+    static final class ToolCallAssembler {
+        private final Map<Integer, ToolCallChunk> calls = new TreeMap<>();
+
+        void add(List<ToolCallChunk> chunks) {
+            for (ToolCallChunk chunk : chunks) {
+                calls.merge(chunk.index(), chunk, (previous, next) -> new ToolCallChunk(
+                    previous.index(),
+                    previous.name() != null ? previous.name() : next.name(),
+                    previous.arguments() == null ? next.arguments()
+                        : next.arguments() == null ? previous.arguments() : previous.arguments() + next.arguments()));
+            }
+        }
+
+        boolean isEmpty() {
+            return calls.isEmpty();
+        }
+
+        /**
+         * 按 index 排序的完整调用
+         */
+        List<ToolCallChunk> calls() {
+            return new ArrayList<>(calls.values());
+        }
+    }
+}
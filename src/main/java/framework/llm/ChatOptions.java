@@ -0,0 +1,103 @@
+package framework.llm;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+
+/**
+ * 对话请求选项：原生函数调用和 JSON 模式（框架核心）
+ *
+ * 支持的客户端（DeepSeek / OpenAI 兼容接口、Ollama /api/chat）会把选项映射到提供者的原生字段：
+ * - tools / tool_choice：模型以结构化的 tool_calls 返回工具调用，不再需要从自由文本中提取 JSON
+ * - response_format: json_object（Ollama 为 format: json）：直接回答时保证输出合法的 JSON 对象
+ *
+ * 无论是否使用原生字段，返回给调用方的文本都是同一种决策 JSON：
+ * {"type": "tool_call", "tool_name": "...", "arguments": {...}}、
+ * {"type": "tool_calls", "calls": [{"tool_name": "...", "arguments": {...}}, ...]}（模型一次返回多个调用时）
+ * 或 {"type": "answer", "content": "..."}，
+ * 因此不支持这些选项的客户端（默认实现直接忽略选项）可以无缝退回到文本协议。
+ *
+ * 会话键（sessionKey）不发送给提供者、也不计入请求指纹，只用于多副本负载均衡的会话亲和
+ * （见 LoadBalancedLLMClient）；ReActAgent 以请求的 groupId（没有时为 traceId）作为会话键。
+ */
+public final class ChatOptions {
+    private static final ChatOptions NONE = new ChatOptions(null, null, false);
+
+    private final List<LLMToolSpec> tools;
+    private final String toolChoice;
+    private final boolean jsonMode;
+    private final String sessionKey;
+
+    /**
+     * @param tools 可调用的工具（为空时不发送 tools）
+     * @param toolChoice auto / required / none（为null时使用提供者默认值，有工具时即 auto）
+     * @param jsonMode 是否要求直接回答为 JSON 对象
+     */
+    public ChatOptions(List<LLMToolSpec> tools, String toolChoice, boolean jsonMode) {
+        this(tools, toolChoice, jsonMode, null);
+    }
+
+    private ChatOptions(List<LLMToolSpec> tools, String toolChoice, boolean jsonMode, String sessionKey) {
+        this.tools = tools != null ? List.copyOf(tools) : List.of();
+        this.toolChoice = toolChoice;
+        this.jsonMode = jsonMode;
+        this.sessionKey = sessionKey;
+    }
+
+    /**
+     * 不带任何原生字段的选项（可再通过 withSessionKey 附加会话键）
+     */
+    public static ChatOptions none() {
+        return NONE;
+    }
+
+    /**
+     * 只开启 JSON 模式（不使用原生工具）
+     */
+    public static ChatOptions jsonMode() {
+        return new ChatOptions(null, null, true);
+    }
+
+    public List<LLMToolSpec> getTools() {
+        return tools;
+    }
+
+    public String getToolChoice() {
+        return toolChoice;
+    }
+
+    public boolean isJsonMode() {
+        return jsonMode;
+    }
+
+    public boolean hasTools() {
+        return !tools.isEmpty();
+    }
+
+    /**
+     * 是否需要映射到提供者的原生字段（只带会话键时与不带选项等价）
+     */
+    public boolean hasProviderFields() {
+        return hasTools() || jsonMode;
+    }
+
+    /**
+     * 会话键（为null时由对话开头识别会话）
+     */
+    @JsonIgnore
+    public String getSessionKey() {
+        return sessionKey;
+    }
+
+    /**
+     * 附加会话键（其他选项不变）
+     */
+    public ChatOptions withSessionKey(String sessionKey) {
+        return new ChatOptions(tools, toolChoice, jsonMode, sessionKey);
+    }
+
+    @Override
+    public String toString() {
+        return "tools=" + tools + ", toolChoice=" + toolChoice + ", jsonMode=" + jsonMode;
+    }
+}
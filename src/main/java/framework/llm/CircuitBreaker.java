@@ -0,0 +1,178 @@
+package framework.llm;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 端点熔断器（每个端点一个，由 LLMClientFactory 按 scheme://host:port 共享）
+ *
+ * - 关闭：正常放行；连续失败达到阈值后打开
+ * - 打开：直接以 LLMCircuitOpenException 失败，不再发出注定失败的请求、占用工作线程和并发额度
+ * - 半开：打开时长到期后放行少量探测请求，探测成功即关闭，失败则重新打开
+ *
+ * 只有端点本身不可用才计为失败（服务端错误、无法连接、超时）；
+ * 限流（429）说明端点健康但配额不足，请求错误（4xx）与端点健康无关，都不计入。
+ */
+public class CircuitBreaker {
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilNanos;
+    private int probesInFlight;
+    private long openCount;
+    private long rejectedCalls;
+
+    /**
+     * 使用默认参数（连续失败 5 次打开 30 秒，半开时放行 1 个探测请求）
+     */
+    public CircuitBreaker(String name) {
+        this(name, 5, Duration.ofSeconds(30), 1);
+    }
+
+    /**
+     * @param name 端点名称（用于日志）
+     * @param failureThreshold 连续失败多少次后打开
+     * @param openDuration 打开时长（到期后进入半开）
+     * @param halfOpenProbes 半开时同时放行的探测请求数
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, int halfOpenProbes) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration != null ? openDuration.toNanos() : Duration.ofSeconds(30).toNanos();
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+    }
+
+    /**
+     * 申请发出一次请求
+     *
+     * @return 本次请求是否为半开探测（需原样传给 record）
+     * @throws LLMCircuitOpenException 熔断中
+     */
+    public boolean acquire() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (state == State.OPEN && now - openUntilNanos >= 0) {
+                state = State.HALF_OPEN;
+                System.out.println("    🔌 端点 " + name + " 熔断到期，放行探测请求");
+            }
+            if (state == State.CLOSED) {
+                return false;
+            }
+            if (state == State.HALF_OPEN && probesInFlight < halfOpenProbes) {
+                probesInFlight++;
+                return true;
+            }
+            rejectedCalls++;
+            // 半开且探测名额已满时，预计一个打开周期内会有结论
+            long remaining = state == State.OPEN ? openUntilNanos - now : openNanos;
+            throw new LLMCircuitOpenException(name, Duration.ofNanos(Math.max(0, remaining)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录请求结果
+     *
+     * @param probe acquire 的返回值
+     * @param error 失败原因（成功时为null）
+     */
+    public void record(boolean probe, Throwable error) {
+        boolean failed = isEndpointFailure(error);
+        boolean ignored = error != null && isIgnored(error);
+        lock.lock();
+        try {
+            if (probe) {
+                probesInFlight--;
+            }
+            if (ignored) {
+                // 探测名额归还，状态不变
+                return;
+            }
+            if (!failed) {
+                consecutiveFailures = 0;
+                if (probe && state == State.HALF_OPEN) {
+                    state = State.CLOSED;
+                    System.out.println("    🔌 端点 " + name + " 探测成功，熔断关闭");
+                }
+                return;
+            }
+            consecutiveFailures++;
+            if ((probe && state == State.HALF_OPEN)
+                    || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                state = State.OPEN;
+                openUntilNanos = System.nanoTime() + openNanos;
+                openCount++;
+                System.out.println("    🔌 端点 " + name + (probe ? " 探测失败" : " 连续失败 " + consecutiveFailures + " 次")
+                    + "，熔断 " + Duration.ofNanos(openNanos).toSeconds() + " 秒");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 当前状态（打开已到期但尚未有请求时仍为 OPEN）
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 是否为端点本身不可用导致的失败（服务端错误、无法连接、超时）
+     */
+    static boolean isEndpointFailure(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof LLMException llmException) {
+            return llmException.isServerError() || llmException instanceof LLMTimeoutException;
+        }
+        return cause instanceof IOException;
+    }
+
+    /**
+     * 不说明端点状况的结果：调用方取消，或下游熔断器拒绝
+     */
+    private static boolean isIgnored(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof CancellationException || cause instanceof LLMCircuitOpenException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return name + ": " + state + "，连续失败 " + consecutiveFailures + " 次，累计熔断 " + openCount
+                + " 次，拒绝 " + rejectedCalls + " 次";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
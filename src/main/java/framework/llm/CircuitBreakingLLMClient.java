@@ -0,0 +1,105 @@
+package framework.llm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 熔断 LLM 客户端（装饰器）
+ *
+ * 每次调用前向端点熔断器申请放行，熔断中直接以 LLMCircuitOpenException 失败（不可重试），
+ * 由上层的故障转移（HedgedLLMClient）切换到备用提供者，或由调用方返回失败状态。
+ * 同一端点的多个客户端（如多个 API Key）应共享同一个熔断器，见 LLMClientFactory.withCircuitBreaker。
+ *
+ * 使用示例：
+ * <pre>
+ * LLMClient client = new CircuitBreakingLLMClient(deepSeekClient, new CircuitBreaker("api.deepseek.com"));
+ * </pre>
+ */
+public class CircuitBreakingLLMClient implements LLMClient {
+    private final LLMClient delegate;
+    private final CircuitBreaker breaker;
+
+    public CircuitBreakingLLMClient(LLMClient delegate, CircuitBreaker breaker) {
+        if (delegate == null || breaker == null) {
+            throw new IllegalArgumentException("LLM客户端和熔断器不能为空");
+        }
+        this.delegate = delegate;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        boolean probe = breaker.acquire();
+        try {
+            String content = delegate.chat(messages);
+            breaker.record(probe, null);
+            return content;
+        } catch (RuntimeException e) {
+            breaker.record(probe, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return call(() -> delegate.chatAsync(messages));
+    }
+
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        boolean probe = breaker.acquire();
+        try {
+            String content = delegate.chatStream(messages, listener);
+            breaker.record(probe, null);
+            return content;
+        } catch (RuntimeException e) {
+            breaker.record(probe, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        return call(() -> delegate.chatStreamAsync(messages, listener));
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        return call(() -> delegate.chatStreamAsync(messages, options, listener));
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+
+    public LLMClient getDelegate() {
+        return delegate;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    private CompletableFuture<String> call(Supplier<CompletableFuture<String>> call) {
+        boolean probe;
+        try {
+            probe = breaker.acquire();
+        } catch (LLMCircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<String> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        // 直接返回底层 future：调用方取消时中止的就是底层请求（取消不计入熔断）
+        future.whenComplete((content, ex) -> breaker.record(probe, ex));
+        return future;
+    }
+}
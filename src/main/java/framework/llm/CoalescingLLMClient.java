@@ -0,0 +1,331 @@
+package framework.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 合并相同请求的 LLM 客户端（装饰器，single-flight）
+ *
+ * 同一时刻对同一请求指纹（RequestFingerprint）只向上游发起一次调用，
+ * 其余调用方作为等待者共享这一次调用的结果。典型场景：
+ * - ParallelAgent 并发调用多个系统提示和查询都相同的智能体
+ * - 多个用户同时通过 chatWithMaster 提交相同任务
+ *
+ * 流式调用同样合并：后加入的等待者会先收到已到达的增量文本（回放），再继续接收后续增量。
+ * 每个等待者的监听器返回 false 时只让该等待者提前结束；所有等待者都结束后才停止上游。
+ *
+ * 取消语义：取消某个等待者返回的 future 只移除该等待者；
+ * 当所有等待者都已取消或结束时，取消上游调用（中止 HTTP 请求）。
+ *
+ * 非流式与流式调用分别合并，互不共享。
+ */
+public class CoalescingLLMClient implements LLMClient {
+    private final LLMClient delegate;
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+
+    public CoalescingLLMClient(LLMClient delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate 不能为空");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        return chatAsync(messages).join();
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        String key = "chat:" + RequestFingerprint.of(delegate, messages);
+        return coalesce(key, null, flight -> delegate.chatAsync(messages));
+    }
+
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return chatStreamAsync(messages, listener).join();
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        String key = "stream:" + RequestFingerprint.of(delegate, messages, options);
+        return coalesce(key, listener, flight -> delegate.chatStreamAsync(messages, options, flight));
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+
+    /**
+     * 获取被装饰的客户端
+     */
+    public LLMClient getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 实际发往上游的调用次数
+     */
+    public long getUpstreamCalls() {
+        return upstreamCalls.get();
+    }
+
+    /**
+     * 被合并（未单独发往上游）的调用次数
+     */
+    public long getCoalescedCalls() {
+        return coalescedCalls.get();
+    }
+
+    /**
+     * 当前正在进行的上游调用数
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private CompletableFuture<String> coalesce(String key, LLMStreamListener listener,
+                                               Function<Flight, CompletableFuture<String>> call) {
+        while (true) {
+            Flight created = new Flight(key);
+            Flight existing = inFlight.putIfAbsent(key, created);
+            Flight flight = existing != null ? existing : created;
+
+            CompletableFuture<String> result = flight.join(listener, existing != null);
+            if (result == null) {
+                // 该调用已在关闭中（所有等待者刚离开），重新发起
+                inFlight.remove(key, flight);
+                continue;
+            }
+            if (existing == null) {
+                upstreamCalls.incrementAndGet();
+                flight.start(() -> call.apply(flight));
+            } else {
+                coalescedCalls.incrementAndGet();
+                System.out.println("    🔗 合并相同的LLM请求（共享进行中的调用）");
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 一次进行中的上游调用及其等待者（同时作为上游流式调用的监听器）
+     */
+    private final class Flight implements LLMStreamListener {
+        private final String key;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Waiter> waiters = new ArrayList<>();
+        private final StringBuilder received = new StringBuilder();
+        private final List<String> tokens = new ArrayList<>();
+        private CompletableFuture<String> upstream;
+        private boolean closed;
+        private LLMStreamListener initiator;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 加入等待者；调用已关闭时返回null
+         *
+         * @param coalesced 是否合并到已有的调用（通知监听器本次调用复用了进行中的结果）
+         */
+        CompletableFuture<String> join(LLMStreamListener listener, boolean coalesced) {
+            Waiter waiter = new Waiter(listener);
+            lock.lock();
+            try {
+                if (closed) {
+                    return null;
+                }
+                if (coalesced && listener != null) {
+                    listener.onReused();
+                }
+                // 回放已收到的增量文本
+                StringBuilder replayed = new StringBuilder();
+                for (String token : tokens) {
+                    replayed.append(token);
+                    if (listener != null && !listener.onToken(token)) {
+                        return CompletableFuture.completedFuture(replayed.toString());
+                    }
+                }
+                if (initiator == null && waiters.isEmpty()) {
+                    initiator = listener;
+                }
+                waiters.add(waiter);
+            } finally {
+                lock.unlock();
+            }
+            waiter.result.whenComplete((content, ex) -> {
+                if (waiter.result.isCancelled()) {
+                    leave(waiter);
+                }
+            });
+            return waiter.result;
+        }
+
+        /**
+         * 发起上游调用
+         */
+        void start(Supplier<CompletableFuture<String>> call) {
+            CompletableFuture<String> future;
+            try {
+                future = call.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            boolean cancelNow;
+            lock.lock();
+            try {
+                upstream = future;
+                cancelNow = closed && waiters.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+            if (cancelNow) {
+                future.cancel(true);
+            }
+            future.whenComplete(this::finish);
+        }
+
+        /**
+         * 上游增量文本：转发给所有仍在接收的等待者
+         *
+         * @return 是否还有等待者需要后续增量
+         */
+        @Override
+        public boolean onToken(String token) {
+            List<Waiter> stopped = new ArrayList<>();
+            String soFar = null;
+            boolean proceed;
+            lock.lock();
+            try {
+                tokens.add(token);
+                received.append(token);
+                for (Waiter waiter : waiters) {
+                    if (waiter.listener != null && !waiter.listener.onToken(token)) {
+                        stopped.add(waiter);
+                    }
+                }
+                if (!stopped.isEmpty()) {
+                    waiters.removeAll(stopped);
+                    soFar = received.toString();
+                }
+                proceed = !waiters.isEmpty();
+                if (!proceed) {
+                    close();
+                }
+            } finally {
+                lock.unlock();
+            }
+            // 在锁外完成 future，避免在锁内执行调用方的后续逻辑
+            for (Waiter waiter : stopped) {
+                waiter.result.complete(soFar);
+            }
+            return proceed;
+        }
+
+        /**
+         * 上游用量：只转发给发起调用的等待者（合并进来的等待者没有产生额外的提供者调用）
+         */
+        @Override
+        public void onUsage(LLMUsage usage) {
+            LLMStreamListener target = initiator();
+            if (target != null) {
+                target.onUsage(usage);
+            }
+        }
+
+        /**
+         * 上游读取结束：与用量一样只通知发起调用的等待者
+         */
+        @Override
+        public void onEnd() {
+            LLMStreamListener target = initiator();
+            if (target != null) {
+                target.onEnd();
+            }
+        }
+
+        private LLMStreamListener initiator() {
+            lock.lock();
+            try {
+                return initiator;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish(String content, Throwable ex) {
+            List<Waiter> remaining;
+            lock.lock();
+            try {
+                remaining = new ArrayList<>(waiters);
+                waiters.clear();
+                close();
+            } finally {
+                lock.unlock();
+            }
+            for (Waiter waiter : remaining) {
+                if (ex != null) {
+                    waiter.result.completeExceptionally(ex);
+                } else {
+                    waiter.result.complete(content);
+                }
+            }
+        }
+
+        private void leave(Waiter waiter) {
+            CompletableFuture<String> toCancel = null;
+            lock.lock();
+            try {
+                if (!waiters.remove(waiter) || !waiters.isEmpty()) {
+                    return;
+                }
+                close();
+                toCancel = upstream;
+            } finally {
+                lock.unlock();
+            }
+            if (toCancel != null && !toCancel.isDone()) {
+                System.out.println("    🔗 所有等待者已取消，中止上游LLM调用");
+                toCancel.cancel(true);
+            }
+        }
+
+        /**
+         * 关闭调用：不再接受新的等待者（需持有锁）
+         */
+        private void close() {
+            if (!closed) {
+                closed = true;
+                inFlight.remove(key, this);
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final LLMStreamListener listener;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private Waiter(LLMStreamListener listener) {
+            this.listener = listener;
+        }
+    }
+}
@@ -5,6 +5,13 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.URI;
+import java.time.Duration;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -18,7 +25,9 @@ public class DeepSeekLLMClient implements LLMClient {
     private final String modelName;
     private final String baseUrl;
     private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private final ChatCompletionCodec codec;
+    private final Duration requestTimeout;
+    private final boolean gzipRequests;
     
     /**
      * 构造函数（支持自定义baseUrl）
@@ -27,6 +36,27 @@ public class DeepSeekLLMClient implements LLMClient {
      * @param baseUrl Base URL（如果为null，则从环境变量DEFAULT_LLM_BASE_URL获取，默认: https://api.deepseek.com/v1）
      */
     public DeepSeekLLMClient(String apiKey, String modelName, String baseUrl) {
+        this(apiKey, modelName, baseUrl, null, null, null);
+    }
+    
+    /**
+     * 构造函数（使用共享的 HttpClient，一般由 LLMClientFactory 调用）
+     * @param httpClient 共享的 HttpClient（为null时单独创建）
+     * @param objectMapper 共享的 ObjectMapper（为null时单独创建）
+     * @param requestTimeout 单次请求超时（为null时不限制）
+     */
+    public DeepSeekLLMClient(String apiKey, String modelName, String baseUrl,
+                             HttpClient httpClient, ObjectMapper objectMapper, Duration requestTimeout) {
+        this(apiKey, modelName, baseUrl, httpClient, objectMapper, requestTimeout, false);
+    }
+    
+    /**
+     * 构造函数（使用共享的 HttpClient，可选 gzip 压缩请求体）
+     * @param gzipRequests 是否以 gzip 压缩请求体（需提供者或其前置网关支持 Content-Encoding: gzip）
+     */
+    public DeepSeekLLMClient(String apiKey, String modelName, String baseUrl,
+                             HttpClient httpClient, ObjectMapper objectMapper, Duration requestTimeout,
+                             boolean gzipRequests) {
         // 优先使用参数，其次从环境变量获取
         this.apiKey = apiKey != null ? apiKey : 
                       System.getenv("DEFAULT_LLM_API_KEY") != null ? System.getenv("DEFAULT_LLM_API_KEY") :
@@ -35,22 +65,12 @@ public class DeepSeekLLMClient implements LLMClient {
         this.modelName = modelName != null ? modelName : 
                         (System.getenv("DEFAULT_LLM_MODEL_NAME") != null ? System.getenv("DEFAULT_LLM_MODEL_NAME") : "deepseek-chat");
         
-        // 处理baseUrl：如果提供的是完整endpoint URL，则提取baseUrl
-        String envBaseUrl = System.getenv("DEFAULT_LLM_BASE_URL");
-        String providedBaseUrl = baseUrl != null ? baseUrl : envBaseUrl;
-        
-        if (providedBaseUrl != null && providedBaseUrl.contains("/chat/completions")) {
-            // 如果是完整URL，提取base部分
-            int idx = providedBaseUrl.indexOf("/chat/completions");
-            this.baseUrl = providedBaseUrl.substring(0, idx);
-        } else if (providedBaseUrl != null) {
-            this.baseUrl = providedBaseUrl;
-        } else {
-            this.baseUrl = "https://api.deepseek.com/v1";
-        }
+        this.baseUrl = resolveBaseUrl(baseUrl);
         
-        this.httpClient = HttpClient.newHttpClient();
-        this.objectMapper = new ObjectMapper();
+        this.httpClient = httpClient != null ? httpClient : HttpClient.newHttpClient();
+        this.codec = new ChatCompletionCodec(objectMapper != null ? objectMapper : new ObjectMapper());
+        this.requestTimeout = requestTimeout;
+        this.gzipRequests = gzipRequests;
         
         if (this.apiKey == null || this.apiKey.isEmpty()) {
             throw new IllegalArgumentException(
@@ -73,83 +93,203 @@ public class DeepSeekLLMClient implements LLMClient {
         this(null, null, null);
     }
     
+    /**
+     * 解析最终使用的baseUrl
+     * 优先使用参数，其次环境变量DEFAULT_LLM_BASE_URL，默认 https://api.deepseek.com/v1；
+     * 如果提供的是完整endpoint URL，则提取baseUrl
+     */
+    static String resolveBaseUrl(String baseUrl) {
+        String envBaseUrl = System.getenv("DEFAULT_LLM_BASE_URL");
+        String providedBaseUrl = baseUrl != null ? baseUrl : envBaseUrl;
+        
+        if (providedBaseUrl != null && providedBaseUrl.contains("/chat/completions")) {
+            // 如果是完整URL，提取base部分
+            int idx = providedBaseUrl.indexOf("/chat/completions");
+            return providedBaseUrl.substring(0, idx);
+        } else if (providedBaseUrl != null) {
+            return providedBaseUrl;
+        } else {
+            return "https://api.deepseek.com/v1";
+        }
+    }
+    
     @Override
     public String chat(List<Map<String, String>> messages) {
         try {
             System.out.println("    🌐 调用DeepSeek API (模型: " + modelName + ")...");
             
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", modelName);
-            requestBody.put("messages", convertMessages(messages));
-            requestBody.put("temperature", 0.1);
-            requestBody.put("stream", false);
-            
-            String requestBodyJson = objectMapper.writeValueAsString(requestBody);
-            
             // 发送HTTP请求
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/chat/completions"))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + apiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
-                .build();
+            HttpRequest request = buildRequest(messages, false, null);
             
-            HttpResponse<String> response = httpClient.send(
+            HttpResponse<InputStream> response = httpClient.send(
                 request, 
-                HttpResponse.BodyHandlers.ofString()
+                HttpResponse.BodyHandlers.ofInputStream()
+            );
+            
+            String content = codec.readResponse(response, "DeepSeek").content();
+            System.out.println("    ✅ DeepSeek响应接收成功");
+            return content;
+            
+        } catch (Exception e) {
+            throw failure(e);
+        }
+    }
+    
+    /**
+     * 异步调用（基于 HttpClient.sendAsync，等待响应期间不占用线程）
+     * 取消返回的 future 会中止底层 HTTP 请求
+     */
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        try {
+            System.out.println("    🌐 异步调用DeepSeek API (模型: " + modelName + ")...");
+            
+            HttpRequest request = buildRequest(messages, false, null);
+            CompletableFuture<HttpResponse<byte[]>> exchange =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+            CompletableFuture<String> result = exchange
+                .thenApply(response -> {
+                    String content = codec.readResponseBytes(response, "DeepSeek").content();
+                    System.out.println("    ✅ DeepSeek响应接收成功");
+                    return content;
+                })
+                .exceptionally(ex -> {
+                    throw failure(ex);
+                });
+            // 调用方取消时中止 HTTP 交换
+            result.whenComplete((content, ex) -> {
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+            return result;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(failure(e));
+        }
+    }
+    
+    /**
+     * 流式调用（SSE），逐段回调增量内容
+     */
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        try {
+            System.out.println("    🌐 流式调用DeepSeek API (模型: " + modelName + ")...");
+            
+            HttpRequest request = buildRequest(messages, true, null);
+            HttpResponse<Stream<String>> response = httpClient.send(
+                request,
+                HttpResponse.BodyHandlers.ofLines()
             );
             
-            if (response.statusCode() == 200) {
-                // 解析响应
-                Map<String, Object> responseBody = objectMapper.readValue(
-                    response.body(), 
-                    Map.class
-                );
-                
-                List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-                if (choices == null || choices.isEmpty()) {
-                    throw new RuntimeException("DeepSeek API返回空响应");
+            if (response.statusCode() != 200) {
+                String errorBody;
+                try (Stream<String> body = response.body()) {
+                    errorBody = body.collect(Collectors.joining("\n"));
                 }
-                
-                Map<String, Object> firstChoice = choices.get(0);
-                Map<String, Object> message = (Map<String, Object>) firstChoice.get("message");
-                String content = (String) message.get("content");
-                
-                System.out.println("    ✅ DeepSeek响应接收成功");
-                return content;
-            } else {
-                String errorBody = response.body();
-                throw new RuntimeException(
-                    "DeepSeek API调用失败: HTTP " + response.statusCode() + " - " + errorBody
-                );
+                throw LLMException.fromResponse("DeepSeek", response.statusCode(), response.headers(), errorBody);
             }
             
+            String content = new StreamingResponseReader(
+                StreamingResponseReader.Protocol.SSE, codec, listener
+            ).read(response.body());
+            System.out.println("    ✅ DeepSeek流式响应接收完成");
+            return content;
+            
+        } catch (Exception e) {
+            throw failure(e);
+        }
+    }
+    
+    /**
+     * 异步流式调用（SSE），由 HttpClient 推送行数据，不占用等待线程
+     */
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+    
+    /**
+     * 带请求选项的异步流式调用：原生 tools / tool_choice 和 response_format: json_object
+     */
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        try {
+            System.out.println("    🌐 异步流式调用DeepSeek API (模型: " + modelName + ")...");
+            
+            HttpRequest request = buildRequest(messages, true, options);
+            CompletableFuture<String> stream = new StreamingResponseReader(
+                StreamingResponseReader.Protocol.SSE, codec, listener
+            ).readAsync(httpClient, request, "DeepSeek");
+            CompletableFuture<String> result = stream.exceptionally(ex -> {
+                throw failure(ex);
+            });
+            // 调用方取消时中止读取和 HTTP 交换（取消依赖阶段不会传到 stream）
+            result.whenComplete((content, ex) -> {
+                if (result.isCancelled()) {
+                    stream.cancel(true);
+                }
+            });
+            return result;
         } catch (Exception e) {
-            System.err.println("    ❌ DeepSeek API调用失败: " + e.getMessage());
-            e.printStackTrace();
-            // 失败时返回默认响应
-            return "{\"type\": \"answer\", \"content\": \"DeepSeek API调用失败: " + e.getMessage() + "\"}";
+            return CompletableFuture.failedFuture(failure(e));
         }
     }
     
     /**
-     * 转换消息格式
+     * 调用失败时转换为对应类型的 LLMException（取消原样传递），不再把错误文本当作回答返回
+     * 是否重试、熔断或故障转移由上层决定
      */
-    private List<Map<String, Object>> convertMessages(List<Map<String, String>> messages) {
-        List<Map<String, Object>> converted = new ArrayList<>();
-        for (Map<String, String> msg : messages) {
-            Map<String, Object> convertedMsg = new HashMap<>();
-            convertedMsg.put("role", msg.get("role"));
-            convertedMsg.put("content", msg.get("content"));
-            converted.add(convertedMsg);
+    private RuntimeException failure(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof CancellationException cancelled) {
+            return cancelled;
         }
-        return converted;
+        LLMException failure = LLMException.classify("DeepSeek", cause);
+        if (failure.isRetryable()) {
+            System.err.println("    ⚠️  DeepSeek API暂时不可用: " + failure.getReason());
+        } else {
+            System.err.println("    ❌ " + failure.getMessage());
+        }
+        return failure;
+    }
+    
+    /**
+     * 构建 chat/completions 请求
+     */
+    private HttpRequest buildRequest(List<Map<String, String>> messages, boolean stream,
+                                     ChatOptions options) throws Exception {
+        // 构建请求体（流式调用时要求在流末尾返回用量，含 prompt_cache_hit_tokens）
+        ChatCompletionCodec.ChatRequest requestBody = new ChatCompletionCodec.ChatRequest(
+            modelName,
+            ChatCompletionCodec.toChatMessages(messages),
+            0.1,
+            stream,
+            stream ? ChatCompletionCodec.INCLUDE_USAGE : null,
+            null,
+            null
+        ).withOptions(options, false);
+        
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+            .uri(URI.create(baseUrl + "/chat/completions"))
+            .header("Content-Type", "application/json")
+            .header("Authorization", "Bearer " + apiKey)
+            .header("Accept", stream ? "text/event-stream" : "application/json")
+            .POST(codec.requestPublisher(requestBody, gzipRequests));
+        if (gzipRequests) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+        return builder.build();
     }
     
     /**
      * 获取模型名称
      */
+    @Override
     public String getModelName() {
         return modelName;
     }
@@ -0,0 +1,414 @@
+package framework.llm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * 对冲 + 故障转移的组合 LLM 客户端
+ *
+ * 按顺序持有多个提供者（第一个为主提供者，其余为备用）：
+ * - 对冲：主提供者超过其 p95 延迟仍未返回时，向第二个提供者再发一次相同请求，
+ *   先返回有效结果者胜出，另一个请求被取消（中止 HTTP 连接）
+ * - 故障转移：某个提供者出错（异常或兜底错误响应）时，按顺序启用下一个提供者
+ *
+ * 流式调用以"首个 token"定胜负：先吐出 token 的请求胜出，其余立即取消（中止连接，不为用量继续读取）；
+ * 对冲延迟使用主提供者的首 token 延迟 p95。胜出的流中途失败时无法再切换（已输出部分内容）。
+ *
+ * 主提供者输给对冲请求时，以截至取消时的耗时作为样本（真实延迟只会更长）；只统计主提供者胜出的
+ * 调用会让 p95 越来越低、对冲越来越频繁。样本不足时使用初始对冲延迟；对冲延迟不低于最小值，避免过早加倍请求。
+ *
+ * 使用示例：
+ * <pre>
+ * LLMClient client = new HedgedLLMClient(
+ *     List.of(deepSeekClient, openAIClient, ollamaClient), true, Duration.ofSeconds(8), Duration.ofSeconds(1));
+ * </pre>
+ */
+public class HedgedLLMClient implements LLMClient {
+    private static final int MIN_SAMPLES = 20;
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private final List<LLMClient> clients;
+    private final boolean hedgeEnabled;
+    private final Duration initialHedgeDelay;
+    private final Duration minHedgeDelay;
+    private final LatencyTracker completionLatency = new LatencyTracker(200);
+    private final LatencyTracker firstTokenLatency = new LatencyTracker(200);
+
+    /**
+     * @param clients 提供者（按优先级排序，第一个为主提供者）
+     * @param hedgeEnabled 是否启用对冲（关闭时只做故障转移）
+     * @param initialHedgeDelay 样本不足时的对冲延迟
+     * @param minHedgeDelay 对冲延迟下限
+     */
+    public HedgedLLMClient(List<LLMClient> clients, boolean hedgeEnabled,
+                           Duration initialHedgeDelay, Duration minHedgeDelay) {
+        if (clients == null || clients.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个LLM客户端");
+        }
+        this.clients = List.copyOf(clients);
+        this.hedgeEnabled = hedgeEnabled;
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        try {
+            return chatAsync(messages).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return new Race(null, (client, listener) -> client.chatAsync(messages)).run();
+    }
+
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        try {
+            return chatStreamAsync(messages, listener).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        LLMStreamListener target = listener != null ? listener : token -> true;
+        return new Race(target,
+            (client, attemptListener) -> client.chatStreamAsync(messages, options, attemptListener)).run();
+    }
+
+    @Override
+    public String getModelName() {
+        return clients.get(0).getModelName();
+    }
+
+    /**
+     * 当前对冲延迟
+     *
+     * @param stream 是否为流式调用（使用首 token 延迟）
+     */
+    public Duration getHedgeDelay(boolean stream) {
+        LatencyTracker tracker = stream ? firstTokenLatency : completionLatency;
+        if (tracker.count() < MIN_SAMPLES) {
+            return initialHedgeDelay;
+        }
+        Duration p95 = Duration.ofNanos(tracker.percentile(HEDGE_PERCENTILE));
+        return p95.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : p95;
+    }
+
+    /**
+     * 一次请求在多个提供者之间的竞速
+     */
+    private final class Race {
+        private final LLMStreamListener listener;
+        private final BiFunction<LLMClient, LLMStreamListener, CompletableFuture<String>> call;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Attempt> attempts = new ArrayList<>();
+        private int nextIndex;
+        private Attempt winner;
+        private Throwable lastError;
+        private String lastFailureContent;
+
+        private Race(LLMStreamListener listener,
+                     BiFunction<LLMClient, LLMStreamListener, CompletableFuture<String>> call) {
+            this.listener = listener;
+            this.call = call;
+        }
+
+        CompletableFuture<String> run() {
+            result.whenComplete((content, ex) -> cancelAllExcept(winner));
+            startNext();
+            if (hedgeEnabled && clients.size() > 1) {
+                Duration delay = getHedgeDelay(listener != null);
+                CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(() -> hedge(delay));
+            }
+            return result;
+        }
+
+        private void hedge(Duration delay) {
+            lock.lock();
+            try {
+                // 主提供者仍在进行且尚未产生 token 时才对冲
+                if (result.isDone() || winner != null || nextIndex != 1) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            System.out.println("    🪁 主提供者超过 p95 延迟（" + delay.toMillis() + "ms）仍未返回，发起对冲请求 → "
+                + clients.get(1).getModelName());
+            startNext();
+        }
+
+        /**
+         * 启动下一个尚未启动的提供者
+         *
+         * @return 是否成功启动
+         */
+        private boolean startNext() {
+            Attempt attempt;
+            lock.lock();
+            try {
+                if (result.isDone() || nextIndex >= clients.size()) {
+                    return false;
+                }
+                attempt = new Attempt(nextIndex++);
+                attempts.add(attempt);
+            } finally {
+                lock.unlock();
+            }
+            CompletableFuture<String> future;
+            try {
+                future = call.apply(clients.get(attempt.index),
+                    listener != null ? attempt : null);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            attempt.future = future;
+            // 启动期间已分出胜负（或已结束）时取消本请求
+            boolean abort;
+            boolean lost;
+            lock.lock();
+            try {
+                lost = winner != null && winner != attempt;
+                abort = (lost || result.isDone()) && winner != attempt && attempt.markCancelled();
+            } finally {
+                lock.unlock();
+            }
+            if (abort) {
+                attempt.cancel(lost);
+            }
+            future.whenComplete(attempt::onDone);
+            return true;
+        }
+
+        private void cancelAllExcept(Attempt keep) {
+            List<Attempt> losers = new ArrayList<>();
+            lock.lock();
+            try {
+                for (Attempt attempt : attempts) {
+                    if (attempt != keep && attempt.markCancelled()) {
+                        losers.add(attempt);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            for (Attempt attempt : losers) {
+                attempt.cancel(keep != null);
+            }
+        }
+
+        /**
+         * 向某个提供者发出的一次请求（流式调用时同时作为该请求的监听器）
+         */
+        private final class Attempt implements LLMStreamListener {
+            private final int index;
+            private final long startNanos = System.nanoTime();
+            private volatile CompletableFuture<String> future;
+            private boolean done;
+            private boolean cancelled;
+
+            private Attempt(int index) {
+                this.index = index;
+            }
+
+            /**
+             * 标记为待取消（调用方持有 lock）
+             *
+             * @return false 表示已完成或已被取消
+             */
+            private boolean markCancelled() {
+                if (cancelled || future == null || future.isDone()) {
+                    return false;
+                }
+                cancelled = true;
+                return true;
+            }
+
+            /**
+             * 取消本请求（在 lock 之外调用）
+             *
+             * @param lost 是否输给了其他提供者（主提供者输掉时记录截至取消时的耗时）
+             */
+            private void cancel(boolean lost) {
+                if (lost && index == 0) {
+                    (listener != null ? firstTokenLatency : completionLatency).record(System.nanoTime() - startNanos);
+                }
+                future.cancel(true);
+            }
+
+            /**
+             * 流式 token：第一个吐出 token 的请求胜出，其余取消
+             *
+             * 落败者在取消到达前吐出 token 时，只返回 false 会让读取器先完成结果再为用量继续读取，
+             * 之后的取消不再生效；因此先取消自己（中止订阅和 HTTP 连接）再返回 false
+             */
+            @Override
+            public boolean onToken(String token) {
+                boolean first = false;
+                boolean won;
+                boolean lost = false;
+                boolean abort = false;
+                lock.lock();
+                try {
+                    if (winner == null && !result.isDone()) {
+                        winner = this;
+                        first = true;
+                    }
+                    won = winner == this;
+                    if (!won) {
+                        lost = winner != null;
+                        abort = markCancelled();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (!won) {
+                    if (abort) {
+                        cancel(lost);
+                    }
+                    return false;
+                }
+                if (first) {
+                    if (index == 0) {
+                        firstTokenLatency.record(System.nanoTime() - startNanos);
+                    } else {
+                        System.out.println("    🪁 " + clients.get(index).getModelName() + " 先返回，取消其余请求");
+                    }
+                    cancelAllExcept(this);
+                }
+                return listener.onToken(token);
+            }
+
+            /**
+             * 用量只转发胜出者的（被取消的请求可能仍会计费，但不计入调用方统计）
+             */
+            @Override
+            public void onUsage(LLMUsage usage) {
+                if (isWinner()) {
+                    listener.onUsage(usage);
+                }
+            }
+
+            /**
+             * 读取结束同样只转发胜出者的
+             */
+            @Override
+            public void onEnd() {
+                if (isWinner()) {
+                    listener.onEnd();
+                }
+            }
+
+            private boolean isWinner() {
+                lock.lock();
+                try {
+                    return winner == this;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            private void onDone(String content, Throwable ex) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                boolean valid = cause == null && !LLMResponses.isFailureResponse(content);
+                if (valid && index == 0 && listener == null) {
+                    completionLatency.record(System.nanoTime() - startNanos);
+                }
+
+                boolean finish;
+                boolean fallback = false;
+                lock.lock();
+                try {
+                    done = true;
+                    if (result.isDone() || (winner != null && winner != this)) {
+                        // 已有胜出者，本请求是被取消的一方
+                        return;
+                    }
+                    if (winner == this || (valid && winner == null)) {
+                        // 胜出者（流式已输出内容时即使失败也无法再切换）
+                        winner = this;
+                        finish = true;
+                    } else {
+                        if (cause != null) {
+                            lastError = cause;
+                        } else {
+                            lastFailureContent = content;
+                        }
+                        finish = false;
+                        fallback = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                if (finish) {
+                    if (cause != null) {
+                        result.completeExceptionally(cause);
+                    } else {
+                        result.complete(content);
+                    }
+                    return;
+                }
+                if (fallback) {
+                    String reason = cause != null ? cause.getMessage() : "返回错误响应";
+                    if (index + 1 < clients.size()) {
+                        System.out.println("    ↪️  " + clients.get(index).getModelName() + " 调用失败（" + reason
+                            + "），切换到备用提供者");
+                    }
+                    if (!startNext() && noneRunning()) {
+                        failAll();
+                    }
+                }
+            }
+        }
+
+        private boolean noneRunning() {
+            lock.lock();
+            try {
+                for (Attempt attempt : attempts) {
+                    if (!attempt.done) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void failAll() {
+            if (lastError != null) {
+                result.completeExceptionally(lastError);
+            } else {
+                result.complete(lastFailureContent);
+            }
+        }
+    }
+}
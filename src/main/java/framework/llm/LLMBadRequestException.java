@@ -0,0 +1,37 @@
+package framework.llm;
+
+/**
+ * 请求错误（HTTP 4xx，429 除外：鉴权失败、参数错误、上下文超长等）
+ * 重试也不会成功，不计入熔断（端点本身是健康的）
+ */
+public class LLMBadRequestException extends LLMException {
+    private final String body;
+
+    public LLMBadRequestException(String provider, int statusCode, String body) {
+        super(provider, statusCode, body, null);
+        this.body = body;
+    }
+
+    /**
+     * 提供者返回的错误响应体（没有时为null）
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * 错误响应体是否提到了任一请求字段（不区分大小写），用于判断是否因某个字段不被支持而拒绝
+     */
+    public boolean mentionsAny(String... fields) {
+        if (body == null) {
+            return false;
+        }
+        String lower = body.toLowerCase();
+        for (String field : fields) {
+            if (lower.contains(field.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
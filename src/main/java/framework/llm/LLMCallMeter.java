@@ -0,0 +1,117 @@
+package framework.llm;
+
+import framework.model.UsageStats;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 单次 LLM 调用计量（包装 LLMStreamListener）
+ *
+ * 记录首个 token 到达时间（首字节耗时）、调用总耗时和提供者返回的用量，写入 UsageStats。
+ * 调用结束（无论成功与否）时由调用方调用 finish()；由缓存或合并的相同调用提供结果时（onReused）
+ * 只计为一次命中，不计入调用次数和耗时。
+ *
+ * 监听器要求提前停止后，客户端会在结果返回之后继续读取以获取用量。计量在构造时登记到 UsageStats，
+ * 直到用量到达或读取结束（onEnd）才算完成，写入统计前等待 UsageStats.whenSettled() 即可拿到最后一次调用的用量。
+ *
+ * 使用示例：
+ * <pre>
+ * LLMCallMeter meter = new LLMCallMeter(listener, request.getUsageStats());
+ * llmClient.chatStreamAsync(messages, meter).whenComplete((content, ex) -> meter.finish());
+ * </pre>
+ */
+public final class LLMCallMeter implements LLMStreamListener {
+    private final LLMStreamListener delegate;
+    private final UsageStats stats;
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final CompletableFuture<Void> settled = new CompletableFuture<>();
+    private volatile long firstTokenNanos;
+    private volatile boolean reused;
+    private volatile boolean stopped;
+    private volatile boolean drained;
+
+    /**
+     * @param delegate 实际的监听器（可为 null）
+     * @param stats 统计目标
+     */
+    public LLMCallMeter(LLMStreamListener delegate, UsageStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+        stats.track(settled);
+    }
+
+    @Override
+    public boolean onToken(String token) {
+        if (firstTokenNanos == 0) {
+            firstTokenNanos = System.nanoTime();
+        }
+        boolean proceed = delegate == null || delegate.onToken(token);
+        if (!proceed) {
+            stopped = true;
+        }
+        return proceed;
+    }
+
+    @Override
+    public void onUsage(LLMUsage usage) {
+        stats.recordTokens(usage.getPromptTokens(), usage.getCompletionTokens(), usage.getCachedPromptTokens());
+        if (delegate != null) {
+            delegate.onUsage(usage);
+        }
+        drained = true;
+        settleIfDone();
+    }
+
+    @Override
+    public void onReused() {
+        reused = true;
+        if (delegate != null) {
+            delegate.onReused();
+        }
+    }
+
+    @Override
+    public void onEnd() {
+        if (delegate != null) {
+            delegate.onEnd();
+        }
+        drained = true;
+        settleIfDone();
+    }
+
+    /**
+     * 调用结束，记录耗时或命中（重复调用只记录一次）
+     */
+    public void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (reused) {
+            stats.recordHit();
+        } else {
+            long end = System.nanoTime();
+            long first = firstTokenNanos;
+            long latency = end - startNanos;
+            stats.recordLatency(first != 0 ? first - startNanos : latency, latency);
+        }
+        settleIfDone();
+    }
+
+    /**
+     * 计量完成（调用已结束，且用量已到达或不会再到达）时完成
+     */
+    public CompletableFuture<Void> settled() {
+        return settled;
+    }
+
+    /**
+     * 没有提前停止时用量在结果之前到达；提前停止时等待用量或读取结束
+     */
+    private void settleIfDone() {
+        if (finished.get() && (reused || !stopped || drained)) {
+            settled.complete(null);
+        }
+    }
+}
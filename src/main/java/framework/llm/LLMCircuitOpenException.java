@@ -0,0 +1,22 @@
+package framework.llm;
+
+import java.time.Duration;
+
+/**
+ * 端点熔断中：请求未发出即失败（不可重试，交给故障转移或调用方处理）
+ */
+public class LLMCircuitOpenException extends LLMException {
+    /**
+     * @param endpoint 熔断的端点名称
+     * @param retryAfter 预计恢复探测前的剩余时间
+     */
+    public LLMCircuitOpenException(String endpoint, Duration retryAfter) {
+        super(endpoint, 0, retryAfter, endpoint + " API调用失败: 端点熔断中，约 "
+            + Math.max(1, retryAfter.toSeconds()) + " 秒后重新探测", null);
+    }
+
+    @Override
+    public String getReason() {
+        return "熔断中";
+    }
+}
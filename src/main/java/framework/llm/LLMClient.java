@@ -1,20 +1,95 @@
 package framework.llm;
 
+import framework.execution.ExecutionEngine;
+
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * LLM客户端接口（框架核心）
- * 
+ *
  * 业务开发人员可以实现此接口来支持新的LLM提供者
  */
 public interface LLMClient {
     /**
      * 调用LLM进行对话
-     * 
+     *
      * @param messages 消息列表，每个消息包含 role 和 content
      * @return LLM的响应文本
      */
     String chat(List<Map<String, String>> messages);
-}
 
+    /**
+     * 流式调用LLM进行对话
+     *
+     * 每收到一段增量文本就回调 listener；listener 返回 false 时停止接收。
+     * 默认实现退化为一次性调用 chat()，并把完整响应作为一个 token 回调，
+     * 支持流式协议的客户端（SSE / NDJSON）应重写此方法。
+     *
+     * @param messages 消息列表，每个消息包含 role 和 content
+     * @param listener 增量文本监听器
+     * @return 已接收到的响应文本（提前停止时为停止前的部分）
+     */
+    default String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        String content = chat(messages);
+        if (listener != null && content != null) {
+            listener.onToken(content);
+            listener.onEnd();
+        }
+        return content;
+    }
+
+    /**
+     * 异步调用LLM进行对话
+     *
+     * 默认实现在执行引擎（默认为虚拟线程）上执行 chat()；基于 HttpClient 的客户端应重写为
+     * sendAsync 实现，使等待响应期间不占用任何线程。
+     *
+     * @param messages 消息列表，每个消息包含 role 和 content
+     * @return LLM的响应文本（异步）
+     */
+    default CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return ExecutionEngine.defaultEngine().submit(() -> chat(messages));
+    }
+
+    /**
+     * 异步流式调用LLM进行对话
+     *
+     * 语义与 chatStream() 相同；默认实现在执行引擎上执行 chatStream()。
+     *
+     * @param messages 消息列表，每个消息包含 role 和 content
+     * @param listener 增量文本监听器
+     * @return 已接收到的响应文本（异步）
+     */
+    default CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                      LLMStreamListener listener) {
+        return ExecutionEngine.defaultEngine().submit(() -> chatStream(messages, listener));
+    }
+
+    /**
+     * 带请求选项的异步流式调用（原生函数调用 / JSON 模式）
+     *
+     * 模型返回的原生工具调用会被转换为决策 JSON，作为一段 token 回调并作为结果返回（见 ChatOptions）。
+     * 默认实现忽略选项，退化为 chatStreamAsync(messages, listener)；
+     * 支持原生字段的客户端和转发请求的装饰器应重写此方法。
+     *
+     * @param messages 消息列表，每个消息包含 role 和 content
+     * @param options 请求选项（为null时等同于不带选项）
+     * @param listener 增量文本监听器
+     * @return 已接收到的响应文本（异步）
+     */
+    default CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                      LLMStreamListener listener) {
+        return chatStreamAsync(messages, listener);
+    }
+
+    /**
+     * 模型名称（用于日志、缓存键等）
+     *
+     * 默认返回实现类名，连接真实模型的客户端应返回实际模型名。
+     */
+    default String getModelName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,315 @@
+package framework.llm;
+
+import framework.execution.ExecutionEngine;
+import framework.execution.VirtualThreadExecutionEngine;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * LLM客户端工厂（框架核心）
+ *
+ * 统一管理 LLM 客户端的 HTTP 资源：
+ * - 每个端点（scheme://host:port）只创建一个 HttpClient，所有智能体共享，
+ *   已建立的连接、HTTP/2 多路复用通道和 TLS 会话都可以被后续调用复用
+ * - HTTPS 端点优先协商 HTTP/2，回调在虚拟线程执行器上运行
+ * - 统一的连接超时、请求超时和连接池参数
+ * - 启动时可预热连接，避免每个智能体的首次调用都要经历 TCP + TLS 握手
+ * - 所有客户端共享一个线程安全的 ObjectMapper
+ * - 可按提供者开启请求体 gzip 压缩（见 setGzipProviders）
+ * - 每个端点一个熔断器，同一端点的所有客户端共享（见 withCircuitBreaker）
+ *
+ * 使用示例：
+ * <pre>
+ * LLMClientFactory factory = new LLMClientFactory();
+ * LLMClient client = factory.createClient("deepseek", apiKey, null, null);
+ * factory.prewarm("https://api.deepseek.com/v1");
+ * </pre>
+ */
+public class LLMClientFactory {
+    private static final String OPENAI_BASE_URL = "https://api.openai.com";
+
+    private final Duration connectTimeout;
+    private final Duration requestTimeout;
+    private final ExecutionEngine httpEngine;
+    private final ObjectMapper objectMapper;
+    private final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+    private final Set<String> gzipProviders = ConcurrentHashMap.newKeySet();
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private volatile int circuitFailureThreshold = 5;
+    private volatile Duration circuitOpenDuration = Duration.ofSeconds(30);
+    private volatile OllamaLLMClient.Settings ollamaSettings;
+
+    /**
+     * 默认构造函数（连接超时10秒，请求超时120秒，连接池参数使用JDK默认值）
+     */
+    public LLMClientFactory() {
+        this(Duration.ofSeconds(10), Duration.ofSeconds(120), 0, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param connectTimeout 建立连接超时
+     * @param requestTimeout 单次请求超时（为null时不限制）
+     * @param connectionPoolSize 每个 HttpClient 保持的 HTTP/1.1 空闲连接上限（0 表示使用JDK默认值，不限制）
+     * @param keepAlive 空闲连接保持时长（为null时使用JDK默认值）
+     */
+    public LLMClientFactory(Duration connectTimeout, Duration requestTimeout,
+                            int connectionPoolSize, Duration keepAlive) {
+        this.connectTimeout = connectTimeout != null ? connectTimeout : Duration.ofSeconds(10);
+        this.requestTimeout = requestTimeout;
+        this.httpEngine = new VirtualThreadExecutionEngine("oxygent-http");
+        this.objectMapper = new ObjectMapper();
+
+        // JDK HttpClient 的连接池参数只能通过系统属性配置，且需在首个 HttpClient 创建前设置；
+        // 已由 JVM 参数显式指定的不覆盖
+        if (connectionPoolSize > 0) {
+            setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(connectionPoolSize));
+        }
+        if (keepAlive != null) {
+            setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAlive.toSeconds()));
+        }
+    }
+
+    /**
+     * 获取端点对应的共享 HttpClient（不存在则创建）
+     *
+     * @param baseUrl 端点地址（只取 scheme://host:port 部分作为键）
+     */
+    public HttpClient getHttpClient(String baseUrl) {
+        return httpClients.computeIfAbsent(endpointKey(baseUrl), key -> {
+            System.out.println("🔌 创建共享HTTP客户端: " + key);
+            // 明文端点（如本地 Ollama）不做 h2c 升级，直接使用 HTTP/1.1 长连接
+            HttpClient.Version version = key.startsWith("https://")
+                ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+            return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(httpEngine.executor())
+                .build();
+        });
+    }
+
+    /**
+     * 获取共享的 ObjectMapper
+     */
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * 获取请求超时
+     */
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * 设置请求体使用 gzip 压缩的提供者（只影响之后创建的客户端）
+     *
+     * 提示很长（多轮 ReAct 历史、大段工具输出）时可明显减少上行字节数；
+     * 只对支持 Content-Encoding: gzip 请求体的提供者或网关开启。
+     *
+     * @param providers 提供者名称（deepseek / openai / ollama），为null时全部关闭
+     */
+    public void setGzipProviders(Collection<String> providers) {
+        gzipProviders.clear();
+        if (providers != null) {
+            for (String provider : providers) {
+                if (provider != null && !provider.isBlank()) {
+                    gzipProviders.add(provider.trim().toLowerCase());
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置 Ollama 客户端的 keep_alive、context 复用和 num_ctx 设置（只影响之后创建的客户端）
+     *
+     * @param settings 为null时使用默认设置（全部关闭）
+     */
+    public void setOllamaSettings(OllamaLLMClient.Settings settings) {
+        this.ollamaSettings = settings;
+    }
+
+    /**
+     * 设置熔断参数（只影响之后创建的熔断器）
+     *
+     * @param failureThreshold 连续失败多少次后熔断
+     * @param openDuration 熔断时长（到期后放行探测请求）
+     */
+    public void setCircuitBreakerSettings(int failureThreshold, Duration openDuration) {
+        this.circuitFailureThreshold = failureThreshold;
+        this.circuitOpenDuration = openDuration;
+    }
+
+    /**
+     * 获取端点对应的共享熔断器（不存在则创建）
+     *
+     * @param endpoint 端点地址（URL 只取 scheme://host:port 部分作为键，其他名称原样使用）
+     */
+    public CircuitBreaker getCircuitBreaker(String endpoint) {
+        String key = endpoint.contains("://") ? endpointKey(endpoint) : endpoint;
+        return circuitBreakers.computeIfAbsent(key,
+            name -> new CircuitBreaker(name, circuitFailureThreshold, circuitOpenDuration, 1));
+    }
+
+    /**
+     * 所有已创建的熔断器
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return circuitBreakers.values();
+    }
+
+    /**
+     * 为客户端包装其端点的共享熔断器
+     *
+     * 真实客户端按 baseUrl 识别端点，其他客户端（如模拟客户端）按模型名称识别；
+     * 负载均衡客户端原样返回，各副本的健康状况由其自身的摘除机制处理。
+     */
+    public LLMClient withCircuitBreaker(LLMClient client) {
+        if (client == null || client instanceof CircuitBreakingLLMClient || client instanceof LoadBalancedLLMClient) {
+            return client;
+        }
+        String endpoint;
+        if (client instanceof DeepSeekLLMClient deepSeekClient) {
+            endpoint = deepSeekClient.getBaseUrl();
+        } else if (client instanceof OpenAILLMClient openAIClient) {
+            endpoint = openAIClient.getBaseUrl();
+        } else if (client instanceof OllamaLLMClient ollamaClient) {
+            endpoint = ollamaClient.getBaseUrl();
+        } else {
+            endpoint = client.getModelName();
+        }
+        return new CircuitBreakingLLMClient(client, getCircuitBreaker(endpoint));
+    }
+
+    /**
+     * 根据提供者名称创建客户端
+     *
+     * @param provider deepseek / openai / ollama
+     * @return 客户端；未知提供者返回null
+     */
+    public LLMClient createClient(String provider, String apiKey, String modelName, String baseUrl) {
+        if (provider == null) {
+            return null;
+        }
+        switch (provider.toLowerCase()) {
+            case "deepseek":
+                return createDeepSeekClient(apiKey, modelName, baseUrl);
+            case "openai":
+                return createOpenAIClient(apiKey, modelName, baseUrl);
+            case "ollama":
+                return createOllamaClient(baseUrl, modelName);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 创建 DeepSeek 客户端（共享端点连接）
+     */
+    public DeepSeekLLMClient createDeepSeekClient(String apiKey, String modelName, String baseUrl) {
+        String url = DeepSeekLLMClient.resolveBaseUrl(baseUrl);
+        return new DeepSeekLLMClient(apiKey, modelName, url, getHttpClient(url), objectMapper, requestTimeout,
+            gzipProviders.contains("deepseek"));
+    }
+
+    /**
+     * 创建 OpenAI 客户端（共享端点连接）
+     */
+    public OpenAILLMClient createOpenAIClient(String apiKey, String modelName) {
+        return createOpenAIClient(apiKey, modelName, null);
+    }
+
+    /**
+     * 创建 OpenAI 兼容客户端（共享端点连接）
+     *
+     * @param baseUrl 端点地址（为null时使用 OpenAI 官方端点）
+     */
+    public OpenAILLMClient createOpenAIClient(String apiKey, String modelName, String baseUrl) {
+        String url = OpenAILLMClient.resolveBaseUrl(baseUrl);
+        return new OpenAILLMClient(apiKey, modelName, url,
+            getHttpClient(url), objectMapper, requestTimeout, gzipProviders.contains("openai"));
+    }
+
+    /**
+     * 创建 Ollama 客户端（共享端点连接）
+     */
+    public OllamaLLMClient createOllamaClient(String baseUrl, String modelName) {
+        String url = baseUrl != null ? baseUrl : "http://localhost:11434";
+        return new OllamaLLMClient(url, modelName, getHttpClient(url), objectMapper, requestTimeout,
+            gzipProviders.contains("ollama"), ollamaSettings);
+    }
+
+    /**
+     * 预热端点连接
+     *
+     * 发送一个轻量的 HEAD 请求以完成 DNS、TCP、TLS 握手和 HTTP/2 协商，
+     * 响应状态码不重要（未鉴权时通常为 401/404），失败也只打印警告。
+     *
+     * @param baseUrl 端点地址
+     * @return 预热完成（异步，不会异常完成）
+     */
+    public CompletableFuture<Void> prewarm(String baseUrl) {
+        String key = endpointKey(baseUrl);
+        long start = System.currentTimeMillis();
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(key + "/"))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(connectTimeout.plusSeconds(5))
+                .build();
+            return getHttpClient(baseUrl).sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, ex) -> {
+                    if (ex != null) {
+                        System.err.println("⚠️  连接预热失败: " + key + " - " + ex.getMessage());
+                    } else {
+                        System.out.println("🔥 连接预热完成: " + key + " (HTTP " + response.statusCode()
+                            + ", " + response.version() + ", " + (System.currentTimeMillis() - start) + "ms)");
+                    }
+                    return null;
+                });
+        } catch (Exception e) {
+            System.err.println("⚠️  连接预热失败: " + key + " - " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * 关闭工厂，释放 HttpClient 使用的线程
+     */
+    public void shutdown() {
+        httpClients.clear();
+        httpEngine.shutdown();
+    }
+
+    /**
+     * 端点键：scheme://host:port
+     */
+    static String endpointKey(String baseUrl) {
+        URI uri = URI.create(baseUrl);
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package framework.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * LLM 调用异常（框架核心）
+ *
+ * 客户端调用失败时一律抛出 LLMException（而不是把错误文本当作回答返回），按原因分为：
+ * - LLMRateLimitException：限流（HTTP 429），可重试，通常带 Retry-After
+ * - LLMServerException：服务端错误（HTTP 5xx）或无法连接，可重试
+ * - LLMTimeoutException：连接或请求超时，可重试
+ * - LLMBadRequestException：请求错误（其他 4xx，如鉴权失败、参数错误），重试也不会成功
+ * - LLMCircuitOpenException：端点熔断中，未发出请求即失败
+ * 可重试的错误由上层（如 RateLimitedLLMClient）按 Retry-After 排队重试，其他错误直接交给调用方。
+ */
+public class LLMException extends RuntimeException {
+    private final String provider;
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    public LLMException(String provider, int statusCode, String body, Duration retryAfter) {
+        this(provider, statusCode, retryAfter, provider + " API调用失败: HTTP " + statusCode + " - " + body, null);
+    }
+
+    /**
+     * @param message 完整的错误信息
+     * @param cause 底层异常（没有时为null）
+     */
+    protected LLMException(String provider, int statusCode, Duration retryAfter, String message, Throwable cause) {
+        super(message, cause);
+        this.provider = provider;
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * 服务端建议的重试等待时间（未提供时为null）
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * 是否被限流（HTTP 429）
+     */
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+
+    /**
+     * 是否为服务端错误（HTTP 5xx）
+     */
+    public boolean isServerError() {
+        return statusCode >= 500;
+    }
+
+    /**
+     * 是否可重试（限流或服务端错误）
+     */
+    public boolean isRetryable() {
+        return isRateLimited() || isServerError();
+    }
+
+    /**
+     * 简短的失败原因（用于日志，如 "HTTP 503"、"超时"）
+     */
+    public String getReason() {
+        return statusCode > 0 ? "HTTP " + statusCode : "调用失败";
+    }
+
+    /**
+     * 根据响应创建对应类型的异常（解析 Retry-After 头）
+     */
+    public static LLMException fromResponse(String provider, int statusCode, HttpHeaders headers, String body) {
+        Duration retryAfter = headers.firstValue("Retry-After").map(LLMException::parseRetryAfter).orElse(null);
+        if (statusCode == 429) {
+            return new LLMRateLimitException(provider, body, retryAfter);
+        }
+        if (statusCode >= 500) {
+            return new LLMServerException(provider, statusCode, body, retryAfter);
+        }
+        if (statusCode >= 400) {
+            return new LLMBadRequestException(provider, statusCode, body);
+        }
+        return new LLMException(provider, statusCode, body, retryAfter);
+    }
+
+    /**
+     * 将调用过程中的任意异常转换为对应类型的 LLMException（已是 LLMException 时原样返回）
+     *
+     * @param provider 提供者名称（用于错误信息）
+     * @param error 调用失败的异常（可以是 CompletionException 包装的异常）
+     */
+    public static LLMException classify(String provider, Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException
+                || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof LLMException llmException) {
+            return llmException;
+        }
+        if (cause instanceof HttpTimeoutException) {
+            return new LLMTimeoutException(provider, cause);
+        }
+        if (cause instanceof JsonProcessingException) {
+            return new LLMException(provider, 0, null, provider + " API调用失败: 响应解析失败 - " + cause.getMessage(), cause);
+        }
+        if (cause instanceof IOException) {
+            return new LLMServerException(provider, cause);
+        }
+        if (cause instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        return new LLMException(provider, 0, null, provider + " API调用失败: " + cause, cause);
+    }
+
+    /**
+     * 解析 Retry-After（秒数或 HTTP 日期），无法解析时返回null
+     */
+    static Duration parseRetryAfter(String value) {
+        String trimmed = value.trim();
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(trimmed) * 1000));
+        } catch (NumberFormatException ignored) {
+            // 不是秒数，尝试 HTTP 日期
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return wait.isNegative() ? Duration.ZERO : wait;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
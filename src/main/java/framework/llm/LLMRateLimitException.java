@@ -0,0 +1,12 @@
+package framework.llm;
+
+import java.time.Duration;
+
+/**
+ * 限流异常（HTTP 429，可重试）
+ */
+public class LLMRateLimitException extends LLMException {
+    public LLMRateLimitException(String provider, String body, Duration retryAfter) {
+        super(provider, 429, body, retryAfter);
+    }
+}
@@ -0,0 +1,25 @@
+package framework.llm;
+
+import java.util.regex.Pattern;
+
+/**
+ * LLM 响应工具（框架核心）
+ */
+public final class LLMResponses {
+    // 旧版客户端失败时返回的兜底回答：{"type": "answer", "content": "DeepSeek API调用失败: ..."}
+    private static final Pattern LEGACY_FAILURE = Pattern.compile(
+        "\\{\"type\": \"answer\", \"content\": \"(DeepSeek|OpenAI|Ollama) API调用失败: .*\"}", Pattern.DOTALL);
+
+    private LLMResponses() {
+    }
+
+    /**
+     * 是否为客户端调用失败时返回的兜底响应（null，或与旧版客户端的兜底回答完全一致）
+     * 这类响应不应被缓存，也不应被当作有效结果。
+     * 框架自带的客户端失败时抛出 LLMException；只匹配完整的兜底回答，
+     * 正常回答中提到"API调用失败"（如故障分析报告）不算失败
+     */
+    public static boolean isFailureResponse(String content) {
+        return content == null || LEGACY_FAILURE.matcher(content).matches();
+    }
+}
@@ -0,0 +1,29 @@
+package framework.llm;
+
+import java.time.Duration;
+
+/**
+ * 服务端错误（HTTP 5xx）或无法连接到端点（可重试，计入熔断）
+ */
+public class LLMServerException extends LLMException {
+    public LLMServerException(String provider, int statusCode, String body, Duration retryAfter) {
+        super(provider, statusCode, body, retryAfter);
+    }
+
+    /**
+     * 无法连接（连接被拒绝、连接被重置等），状态码为 0
+     */
+    public LLMServerException(String provider, Throwable cause) {
+        super(provider, 0, null, provider + " API调用失败: 无法连接 - " + cause, cause);
+    }
+
+    @Override
+    public boolean isServerError() {
+        return true;
+    }
+
+    @Override
+    public String getReason() {
+        return getStatusCode() > 0 ? super.getReason() : "无法连接";
+    }
+}
@@ -0,0 +1,80 @@
+package framework.llm;
+
+import java.util.function.Consumer;
+
+/**
+ * LLM流式输出监听器（框架核心）
+ *
+ * 每收到一段增量文本（token/delta）就回调一次，
+ * 调用方可以边接收边解析，在拿到足够信息后提前结束接收
+ */
+@FunctionalInterface
+public interface LLMStreamListener {
+    /**
+     * 接收一段增量文本
+     *
+     * @param token 本次收到的增量文本
+     * @return true 继续接收；false 停止接收（客户端会关闭响应流）
+     */
+    boolean onToken(String token);
+
+    /**
+     * 接收本次调用的 token 用量（提供者在流末尾返回，最多回调一次；不支持的客户端不回调）
+     *
+     * onToken 返回 false 后，客户端仍可能继续读取少量剩余数据以获取用量，此时本方法在结果返回之后回调。
+     */
+    default void onUsage(LLMUsage usage) {
+    }
+
+    /**
+     * 本次调用复用了已有结果（缓存命中或合并到进行中的相同调用），没有单独发往提供者；在回放 token 之前回调
+     */
+    default void onReused() {
+    }
+
+    /**
+     * 响应读取彻底结束（最多回调一次，用量回调之后）
+     *
+     * onToken 返回 false 后客户端为获取用量继续读取时，本方法在剩余数据读完或放弃读取时回调，可能晚于结果返回。
+     * 调用方据此判断不会再有用量到达；不会在停止后继续读取的客户端可以不回调。
+     */
+    default void onEnd() {
+    }
+
+    /**
+     * 组合 token 回调和用量回调
+     *
+     * @param tokenHandler token 回调（为 null 时始终继续接收）
+     * @param usageHandler 用量回调
+     */
+    static LLMStreamListener of(LLMStreamListener tokenHandler, Consumer<LLMUsage> usageHandler) {
+        return new LLMStreamListener() {
+            @Override
+            public boolean onToken(String token) {
+                return tokenHandler == null || tokenHandler.onToken(token);
+            }
+
+            @Override
+            public void onUsage(LLMUsage usage) {
+                if (tokenHandler != null) {
+                    tokenHandler.onUsage(usage);
+                }
+                usageHandler.accept(usage);
+            }
+
+            @Override
+            public void onReused() {
+                if (tokenHandler != null) {
+                    tokenHandler.onReused();
+                }
+            }
+
+            @Override
+            public void onEnd() {
+                if (tokenHandler != null) {
+                    tokenHandler.onEnd();
+                }
+            }
+        };
+    }
+}
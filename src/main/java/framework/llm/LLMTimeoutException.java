@@ -0,0 +1,20 @@
+package framework.llm;
+
+/**
+ * 连接或请求超时（可重试，计入熔断）
+ */
+public class LLMTimeoutException extends LLMException {
+    public LLMTimeoutException(String provider, Throwable cause) {
+        super(provider, 0, null, provider + " API调用失败: 超时 - " + cause.getMessage(), cause);
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return true;
+    }
+
+    @Override
+    public String getReason() {
+        return "超时";
+    }
+}
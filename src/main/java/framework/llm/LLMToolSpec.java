@@ -0,0 +1,59 @@
+package framework.llm;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 提供给模型的工具定义（对应 OpenAI 兼容接口 tools[].function）
+ *
+ * 支持原生函数调用的客户端把它放进请求的 tools 字段，模型返回的 tool_calls
+ * 会被转换为与文本协议相同的决策 JSON（见 ChatOptions）。
+ */
+public final class LLMToolSpec {
+    private final String name;
+    private final String description;
+    private final Map<String, Object> parameters;
+
+    /**
+     * @param name 工具名（子智能体名或工具名）
+     * @param description 工具描述
+     * @param parameters 参数的 JSON Schema（为null时只接受一个 query 字符串参数）
+     */
+    public LLMToolSpec(String name, String description, Map<String, Object> parameters) {
+        this.name = name;
+        this.description = description != null ? description : "";
+        this.parameters = parameters != null && !parameters.isEmpty() ? parameters : querySchema();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * 只有一个必填 query 字符串参数的 Schema（子智能体使用）
+     */
+    public static Map<String, Object> querySchema() {
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("type", "string");
+        query.put("description", "交给该工具处理的任务或问题");
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", Map.of("query", query));
+        schema.put("required", List.of("query"));
+        return schema;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
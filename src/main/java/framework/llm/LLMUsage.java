@@ -0,0 +1,56 @@
+package framework.llm;
+
+/**
+ * 一次 LLM 调用的 token 用量
+ *
+ * 从提供者响应中解析（见 ChatCompletionCodec）：
+ * - OpenAI 兼容接口（DeepSeek、OpenAI）：usage.prompt_tokens / completion_tokens / total_tokens；
+ *   命中前缀缓存的提示 token：DeepSeek 为 usage.prompt_cache_hit_tokens，
+ *   OpenAI 为 usage.prompt_tokens_details.cached_tokens
+ * - Ollama：最后一个分块的 prompt_eval_count / eval_count（无前缀缓存统计）
+ */
+public final class LLMUsage {
+    private final long promptTokens;
+    private final long completionTokens;
+    private final long totalTokens;
+    private final long cachedPromptTokens;
+
+    public LLMUsage(long promptTokens, long completionTokens, long totalTokens, long cachedPromptTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.totalTokens = totalTokens > 0 ? totalTokens : promptTokens + completionTokens;
+        this.cachedPromptTokens = cachedPromptTokens;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public long getTotalTokens() {
+        return totalTokens;
+    }
+
+    /**
+     * 命中提供者前缀缓存的提示 token 数
+     */
+    public long getCachedPromptTokens() {
+        return cachedPromptTokens;
+    }
+
+    /**
+     * 提示 token 的前缀缓存命中率（0~1）
+     */
+    public double getCacheHitRate() {
+        return promptTokens == 0 ? 0.0 : (double) cachedPromptTokens / promptTokens;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("prompt=%d (cached=%d, %.1f%%), completion=%d, total=%d",
+            promptTokens, cachedPromptTokens, getCacheHitRate() * 100, completionTokens, totalTokens);
+    }
+}
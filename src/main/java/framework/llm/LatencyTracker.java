@@ -0,0 +1,70 @@
+package framework.llm;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 滑动窗口延迟统计（保留最近 N 个样本，用于计算分位数）
+ */
+public class LatencyTracker {
+    private final long[] samples;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int next;
+    private int count;
+
+    /**
+     * @param windowSize 保留的样本数
+     */
+    public LatencyTracker(int windowSize) {
+        this.samples = new long[Math.max(1, windowSize)];
+    }
+
+    /**
+     * 记录一次延迟（纳秒）
+     */
+    public void record(long nanos) {
+        lock.lock();
+        try {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前样本数
+     */
+    public int count() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 计算分位数（纳秒），无样本时返回 -1
+     *
+     * @param quantile 分位（0~1，如 0.95）
+     */
+    public long percentile(double quantile) {
+        long[] copy;
+        lock.lock();
+        try {
+            if (count == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, count);
+        } finally {
+            lock.unlock();
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(quantile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(copy.length - 1, index))];
+    }
+}
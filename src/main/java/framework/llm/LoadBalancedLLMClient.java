@@ -0,0 +1,329 @@
+package framework.llm;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多副本端点负载均衡客户端（框架核心）
+ *
+ * 同一模型部署了多个 OpenAI 兼容的推理副本时使用，每个副本对应一个端点客户端：
+ * - 最少未完成请求：新会话分配给当前在途请求最少的健康副本（相同时轮流选择）
+ * - 会话亲和：同一会话的后续轮次继续发往上一次的副本，命中该副本上的 KV 前缀缓存；
+ *   副本被摘除或比最空闲的副本多出 MAX_AFFINITY_IMBALANCE 个在途请求时才迁移
+ * - 被动健康检查：连续失败达到阈值的副本被摘除一段时间（再次失败时摘除时间翻倍），
+ *   到期后由下一次真实请求试探，成功即恢复；所有副本都被摘除时选择最早到期的副本
+ *
+ * 会话优先由请求选项中的会话键识别（ChatOptions.getSessionKey，ReActAgent 传入请求的 groupId，没有时为 traceId）；
+ * 没有会话键时由对话开头（系统提示 + 第一条用户消息）识别：同一次 ReAct 执行的所有轮次开头都相同，
+ * 开头相同的不同执行也恰好共享同一段前缀缓存。
+ *
+ * 同一组副本配置了多个 API Key 时，用 withClients() 为每个 Key 创建共享同一份在途数、健康状况和
+ * 会话亲和的客户端，避免每个 Key 各自统计、同一会话在不同 Key 的通道上落到不同副本。
+ *
+ * 使用示例：
+ * <pre>
+ * LLMClient pool = new LoadBalancedLLMClient(List.of(
+ *     new LoadBalancedLLMClient.Endpoint("replica-1", factory.createDeepSeekClient(key, model, "http://10.0.0.1:8000/v1")),
+ *     new LoadBalancedLLMClient.Endpoint("replica-2", factory.createDeepSeekClient(key, model, "http://10.0.0.2:8000/v1"))
+ * ), 3, Duration.ofSeconds(30));
+ * </pre>
+ */
+public class LoadBalancedLLMClient implements LLMClient {
+    private static final int MAX_AFFINITY_ENTRIES = 4096;
+    private static final int MAX_AFFINITY_IMBALANCE = 8;
+    private static final int MAX_EJECTION_MULTIPLIER = 16;
+
+    private final List<Endpoint> endpoints;
+    private final List<LLMClient> clients;
+    private final int failureThreshold;
+    private final long baseEjectionNanos;
+    // 以下状态由 withClients() 创建的客户端共享
+    private final ReentrantLock lock;
+    private final LinkedHashMap<String, Endpoint> affinity;
+    private final AtomicInteger nextStart;
+
+    /**
+     * 使用默认健康检查参数（连续失败 3 次摘除 30 秒）
+     */
+    public LoadBalancedLLMClient(List<Endpoint> endpoints) {
+        this(endpoints, 3, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param endpoints 副本端点（至少一个）
+     * @param failureThreshold 连续失败多少次后摘除副本
+     * @param baseEjection 首次摘除时长（再次摘除时翻倍，最多 16 倍）
+     */
+    public LoadBalancedLLMClient(List<Endpoint> endpoints, int failureThreshold, Duration baseEjection) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个LLM端点");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.clients = this.endpoints.stream().map(endpoint -> endpoint.client).toList();
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.baseEjectionNanos = baseEjection != null ? baseEjection.toNanos() : Duration.ofSeconds(30).toNanos();
+        this.lock = new ReentrantLock();
+        this.affinity = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Endpoint> eldest) {
+                return size() > MAX_AFFINITY_ENTRIES;
+            }
+        };
+        this.nextStart = new AtomicInteger();
+    }
+
+    private LoadBalancedLLMClient(LoadBalancedLLMClient shared, List<LLMClient> clients) {
+        this.endpoints = shared.endpoints;
+        this.clients = List.copyOf(clients);
+        this.failureThreshold = shared.failureThreshold;
+        this.baseEjectionNanos = shared.baseEjectionNanos;
+        this.lock = shared.lock;
+        this.affinity = shared.affinity;
+        this.nextStart = shared.nextStart;
+    }
+
+    /**
+     * 创建共享本池负载均衡状态、但使用另一组端点客户端的客户端（如同一组副本的另一个 API Key）
+     *
+     * @param clients 与 getEndpoints() 一一对应的客户端
+     */
+    public LoadBalancedLLMClient withClients(List<LLMClient> clients) {
+        if (clients == null || clients.size() != endpoints.size()
+                || clients.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("客户端必须与 " + endpoints.size() + " 个端点一一对应");
+        }
+        return new LoadBalancedLLMClient(this, clients);
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        try {
+            return chatAsync(messages).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return call(messages, null, null);
+    }
+
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        try {
+            return chatStreamAsync(messages, listener).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        return call(messages, options, listener != null ? listener : token -> true);
+    }
+
+    @Override
+    public String getModelName() {
+        return clients.get(0).getModelName();
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 打印各副本的调用次数、失败次数和当前状态
+     */
+    public void printReport() {
+        System.out.println("⚖️  LLM端点负载均衡统计:");
+        for (Endpoint endpoint : endpoints) {
+            System.out.println("   " + endpoint.name + ": " + endpoint);
+        }
+    }
+
+    private CompletableFuture<String> call(List<Map<String, String>> messages, ChatOptions options,
+                                           LLMStreamListener listener) {
+        Endpoint endpoint = select(sessionKey(messages, options));
+        LLMClient client = clients.get(endpoints.indexOf(endpoint));
+        endpoint.outstanding.incrementAndGet();
+        CompletableFuture<String> future;
+        try {
+            future = listener != null
+                ? client.chatStreamAsync(messages, options, listener)
+                : client.chatAsync(messages);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        // 直接返回底层 future：调用方取消时中止的就是底层请求（取消不计入健康状况）
+        future.whenComplete((content, ex) -> {
+            endpoint.outstanding.decrementAndGet();
+            if (!(ex instanceof CancellationException)) {
+                record(endpoint, ex != null || LLMResponses.isFailureResponse(content));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 会话键：请求选项中的会话键，没有时为开头的系统消息 + 第一条非系统消息（为null表示无法识别会话）
+     */
+    private String sessionKey(List<Map<String, String>> messages, ChatOptions options) {
+        if (options != null && options.getSessionKey() != null) {
+            return "session:" + options.getSessionKey();
+        }
+        int head = 0;
+        while (head < messages.size() && "system".equals(messages.get(head).get("role"))) {
+            head++;
+        }
+        if (head >= messages.size()) {
+            return null;
+        }
+        return RequestFingerprint.of(this, messages.subList(0, head + 1));
+    }
+
+    /**
+     * 选择副本：亲和副本仍可用时沿用，否则选择在途请求最少的健康副本
+     */
+    private Endpoint select(String sessionKey) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            Endpoint least = null;
+            int start = nextStart.getAndUpdate(i -> (i + 1) % endpoints.size());
+            for (int i = 0; i < endpoints.size(); i++) {
+                Endpoint candidate = endpoints.get((start + i) % endpoints.size());
+                if (!candidate.isEjected(now)
+                        && (least == null || candidate.outstanding.get() < least.outstanding.get())) {
+                    least = candidate;
+                }
+            }
+            if (least == null) {
+                // 所有副本都被摘除：选择最早到期的副本，而不是直接失败
+                for (Endpoint candidate : endpoints) {
+                    if (least == null || candidate.ejectedUntilNanos < least.ejectedUntilNanos) {
+                        least = candidate;
+                    }
+                }
+                return least;
+            }
+            if (sessionKey == null) {
+                return least;
+            }
+            Endpoint sticky = affinity.get(sessionKey);
+            if (sticky != null && !sticky.isEjected(now)
+                    && sticky.outstanding.get() - least.outstanding.get() <= MAX_AFFINITY_IMBALANCE) {
+                return sticky;
+            }
+            if (sticky != null) {
+                System.out.println("    ⚖️  会话从 " + sticky.name + " 迁移到 " + least.name
+                    + (sticky.isEjected(now) ? "（原副本已摘除）" : "（原副本负载过高）"));
+            }
+            affinity.put(sessionKey, least);
+            return least;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(Endpoint endpoint, boolean failed) {
+        lock.lock();
+        try {
+            endpoint.totalCalls++;
+            if (!failed) {
+                if (endpoint.ejections > 0 && endpoint.consecutiveFailures > 0) {
+                    System.out.println("    ⚖️  端点 " + endpoint.name + " 已恢复");
+                }
+                endpoint.consecutiveFailures = 0;
+                endpoint.ejections = 0;
+                return;
+            }
+            endpoint.totalFailures++;
+            endpoint.consecutiveFailures++;
+            long now = System.nanoTime();
+            if (endpoint.consecutiveFailures >= failureThreshold && !endpoint.isEjected(now)) {
+                long multiplier = Math.min(MAX_EJECTION_MULTIPLIER, 1L << Math.min(endpoint.ejections, 30));
+                long ejection = baseEjectionNanos * multiplier;
+                endpoint.ejectedUntilNanos = now + ejection;
+                endpoint.ejections++;
+                System.out.println("    ⚖️  端点 " + endpoint.name + " 连续失败 " + endpoint.consecutiveFailures
+                    + " 次，摘除 " + ejection / 1_000_000_000 + " 秒");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 副本端点
+     */
+    public static final class Endpoint {
+        private final String name;
+        private final LLMClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        // 以下字段由外层 lock 保护
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntilNanos;
+        private long totalCalls;
+        private long totalFailures;
+
+        /**
+         * @param name 端点名称（用于日志，通常为 baseUrl）
+         * @param client 该副本的客户端
+         */
+        public Endpoint(String name, LLMClient client) {
+            if (client == null) {
+                throw new IllegalArgumentException("端点 " + name + " 的LLM客户端不能为空");
+            }
+            this.name = name;
+            this.client = client;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LLMClient getClient() {
+            return client;
+        }
+
+        /**
+         * 当前在途请求数
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntilNanos != 0 && now - ejectedUntilNanos < 0;
+        }
+
+        @Override
+        public String toString() {
+            return "调用 " + totalCalls + " 次，失败 " + totalFailures + " 次，在途 " + outstanding.get()
+                + (isEjected(System.nanoTime()) ? "，已摘除" : "");
+        }
+    }
+}
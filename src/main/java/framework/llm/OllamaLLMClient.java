@@ -1,28 +1,98 @@
 package framework.llm;
 
+import framework.llm.token.Tokenizer;
+
 import java.util.*;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.URI;
+import java.time.Duration;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Ollama LLM客户端实现（框架核心）
  * 
- * 连接本地Ollama服务
+ * 连接本地Ollama服务。针对本地推理的优化（通过 Settings 开启）：
+ * - keep_alive：每个请求都带上常驻时间，避免突发请求之间模型被卸载；preload() 在启动时预先加载模型
+ * - 会话 context 复用：新消息恰好是"上一轮的对话 + 模型回复 + 一条新的用户消息"时（同一次 ReAct 执行的相邻轮次），
+ *   改用 /api/generate 只发送新消息和上一轮返回的 context，服务端不再重新渲染和分词整个历史；
+ *   调用方写回历史的回复可以只是完整回复中的一段（如只保留决策 JSON）。
+ *   上一轮提前停止后 context 仍在后台读取时，最多等待 CONTEXT_WAIT_MS；无法确认前缀一致时回退为完整的 /api/chat 请求
+ * - num_ctx：按提示长度选择上下文窗口（2 的幂次档位，只增不减，避免频繁改变 num_ctx 导致模型重新加载）
  */
 public class OllamaLLMClient implements LLMClient {
+    private static final int MAX_CACHED_CONTEXTS = 64;
+    // 上一轮的 context 还在后台读取时，本轮最多等待的时间（超出后回退为 /api/chat）
+    static final long CONTEXT_WAIT_MS = 250;
+    
     private final String baseUrl;
     private final String modelName;
     private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
+    private final ChatCompletionCodec codec;
+    private final Duration requestTimeout;
+    private final boolean gzipRequests;
+    private final Settings settings;
+    private final AtomicInteger numCtx = new AtomicInteger();
+    private final ReentrantLock contextLock = new ReentrantLock();
+    private final LinkedHashMap<String, CompletableFuture<Turn>> contexts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Turn>> eldest) {
+            return size() > MAX_CACHED_CONTEXTS;
+        }
+    };
     
     public OllamaLLMClient(String baseUrl, String modelName) {
+        this(baseUrl, modelName, null, null, null);
+    }
+    
+    /**
+     * 构造函数（使用共享的 HttpClient，一般由 LLMClientFactory 调用）
+     * @param httpClient 共享的 HttpClient（为null时单独创建）
+     * @param objectMapper 共享的 ObjectMapper（为null时单独创建）
+     * @param requestTimeout 单次请求超时（为null时不限制）
+     */
+    public OllamaLLMClient(String baseUrl, String modelName,
+                           HttpClient httpClient, ObjectMapper objectMapper, Duration requestTimeout) {
+        this(baseUrl, modelName, httpClient, objectMapper, requestTimeout, false);
+    }
+    
+    /**
+     * 构造函数（使用共享的 HttpClient，可选 gzip 压缩请求体）
+     * @param gzipRequests 是否以 gzip 压缩请求体（需提供者或其前置网关支持 Content-Encoding: gzip）
+     */
+    public OllamaLLMClient(String baseUrl, String modelName,
+                           HttpClient httpClient, ObjectMapper objectMapper, Duration requestTimeout,
+                           boolean gzipRequests) {
+        this(baseUrl, modelName, httpClient, objectMapper, requestTimeout, gzipRequests, null);
+    }
+    
+    /**
+     * 构造函数（使用共享的 HttpClient，带 Ollama 优化设置）
+     * @param settings keep_alive、context 复用和 num_ctx 设置（为null时使用默认设置：全部关闭）
+     */
+    public OllamaLLMClient(String baseUrl, String modelName,
+                           HttpClient httpClient, ObjectMapper objectMapper, Duration requestTimeout,
+                           boolean gzipRequests, Settings settings) {
         this.baseUrl = baseUrl != null ? baseUrl : "http://localhost:11434";
         this.modelName = modelName != null ? modelName : "llama2";
-        this.httpClient = HttpClient.newHttpClient();
-        this.objectMapper = new ObjectMapper();
+        this.httpClient = httpClient != null ? httpClient : HttpClient.newHttpClient();
+        this.codec = new ChatCompletionCodec(objectMapper != null ? objectMapper : new ObjectMapper());
+        this.requestTimeout = requestTimeout;
+        this.gzipRequests = gzipRequests;
+        this.settings = settings != null ? settings : new Settings();
     }
     
     @Override
@@ -30,60 +100,507 @@ public class OllamaLLMClient implements LLMClient {
         try {
             System.out.println("    🌐 调用Ollama API (模型: " + modelName + ")...");
             
-            // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", modelName);
-            requestBody.put("messages", convertMessages(messages));
-            requestBody.put("stream", false);
-            
-            String requestBodyJson = objectMapper.writeValueAsString(requestBody);
-            
             // 发送HTTP请求
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "/api/chat"))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(requestBodyJson))
-                .build();
+            awaitPreviousTurn(messages);
+            Call call = prepare(messages, false, null);
+            try {
+                HttpResponse<InputStream> response = httpClient.send(
+                    call.request, 
+                    HttpResponse.BodyHandlers.ofInputStream()
+                );
+                
+                ChatCompletionCodec.ChatResult result = codec.readResponse(response, "Ollama");
+                call.remember(result.content(), result.context());
+                System.out.println("    ✅ Ollama响应接收成功");
+                return result.content();
+            } finally {
+                call.remember(null, null);
+            }
             
-            HttpResponse<String> response = httpClient.send(
-                request, 
-                HttpResponse.BodyHandlers.ofString()
-            );
+        } catch (Exception e) {
+            throw failure(e);
+        }
+    }
+    
+    /**
+     * 异步调用（基于 HttpClient.sendAsync，等待响应期间不占用线程）
+     * 取消返回的 future 会中止底层 HTTP 请求
+     */
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return afterPreviousTurn(messages, () -> sendAsync(messages));
+    }
+    
+    private CompletableFuture<String> sendAsync(List<Map<String, String>> messages) {
+        try {
+            System.out.println("    🌐 异步调用Ollama API (模型: " + modelName + ")...");
             
-            if (response.statusCode() == 200) {
-                // 解析响应
-                Map<String, Object> responseBody = objectMapper.readValue(
-                    response.body(), 
-                    Map.class
+            Call call = prepare(messages, false, null);
+            CompletableFuture<HttpResponse<byte[]>> exchange =
+                httpClient.sendAsync(call.request, HttpResponse.BodyHandlers.ofByteArray());
+            CompletableFuture<String> result = exchange
+                .thenApply(response -> {
+                    ChatCompletionCodec.ChatResult decoded = codec.readResponseBytes(response, "Ollama");
+                    call.remember(decoded.content(), decoded.context());
+                    System.out.println("    ✅ Ollama响应接收成功");
+                    return decoded.content();
+                })
+                .exceptionally(ex -> {
+                    throw failure(ex);
+                });
+            // 调用方取消时中止 HTTP 交换
+            result.whenComplete((content, ex) -> {
+                call.remember(null, null);
+                if (result.isCancelled()) {
+                    exchange.cancel(true);
+                }
+            });
+            return result;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(failure(e));
+        }
+    }
+    
+    /**
+     * 流式调用（NDJSON），逐段回调增量内容
+     */
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        try {
+            System.out.println("    🌐 流式调用Ollama API (模型: " + modelName + ")...");
+            
+            awaitPreviousTurn(messages);
+            Call call = prepare(messages, true, null);
+            try {
+                HttpResponse<Stream<String>> response = httpClient.send(
+                    call.request,
+                    HttpResponse.BodyHandlers.ofLines()
                 );
                 
-                Map<String, Object> message = (Map<String, Object>) responseBody.get("message");
-                String content = (String) message.get("content");
+                if (response.statusCode() != 200) {
+                    String errorBody;
+                    try (Stream<String> body = response.body()) {
+                        errorBody = body.collect(Collectors.joining("\n"));
+                    }
+                    throw LLMException.fromResponse("Ollama", response.statusCode(), response.headers(), errorBody);
+                }
                 
-                System.out.println("    ✅ Ollama响应接收成功");
-                return content;
-            } else {
-                throw new RuntimeException(
-                    "Ollama API调用失败: HTTP " + response.statusCode() + " - " + response.body()
+                StreamingResponseReader reader = new StreamingResponseReader(
+                    StreamingResponseReader.Protocol.NDJSON, codec, listener
                 );
+                reader.setContextHandler(call::remember);
+                String content = reader.read(response.body());
+                System.out.println("    ✅ Ollama流式响应接收完成");
+                return content;
+            } finally {
+                call.remember(null, null);
             }
             
         } catch (Exception e) {
-            System.err.println("    ❌ Ollama API调用失败: " + e.getMessage());
-            e.printStackTrace();
-            return "{\"type\": \"answer\", \"content\": \"Ollama API调用失败: " + e.getMessage() + "\"}";
+            throw failure(e);
+        }
+    }
+    
+    /**
+     * 异步流式调用（NDJSON），由 HttpClient 推送行数据，不占用等待线程
+     */
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+    
+    /**
+     * 带请求选项的异步流式调用：原生 tools（只走 /api/chat，开启 context 复用时改用 format: json）和 format: json
+     */
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        return afterPreviousTurn(messages, () -> streamAsync(messages, options, listener));
+    }
+    
+    private CompletableFuture<String> streamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                  LLMStreamListener listener) {
+        try {
+            System.out.println("    🌐 异步流式调用Ollama API (模型: " + modelName + ")...");
+            
+            Call call = prepare(messages, true, options);
+            StreamingResponseReader reader = new StreamingResponseReader(
+                StreamingResponseReader.Protocol.NDJSON, codec, listener
+            );
+            // 提前停止后后台继续读取的部分也会带回 context（读取结束仍没有 context 时以 null 回调）
+            reader.setContextHandler(call::remember);
+            CompletableFuture<String> stream = reader.readAsync(httpClient, call.request, "Ollama");
+            CompletableFuture<String> result = stream.exceptionally(ex -> {
+                throw failure(ex);
+            });
+            // 调用方取消时中止读取和 HTTP 交换（取消依赖阶段不会传到 stream）
+            result.whenComplete((content, ex) -> {
+                if (result.isCancelled()) {
+                    stream.cancel(true);
+                }
+            });
+            return result;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(failure(e));
+        }
+    }
+    
+    /**
+     * 调用失败时转换为对应类型的 LLMException（取消原样传递），不再把错误文本当作回答返回
+     * 是否重试、熔断或故障转移由上层决定
+     */
+    private RuntimeException failure(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof CancellationException cancelled) {
+            return cancelled;
+        }
+        LLMException failure = LLMException.classify("Ollama", cause);
+        if (failure.isRetryable()) {
+            System.err.println("    ⚠️  Ollama API暂时不可用: " + failure.getReason());
+        } else {
+            System.err.println("    ❌ " + failure.getMessage());
+        }
+        return failure;
+    }
+    
+    /**
+     * 预加载模型（空 prompt 的 /api/generate 请求），并设置 keep_alive 和初始 num_ctx
+     * 异步执行，失败只打印警告
+     */
+    public CompletableFuture<Void> preload() {
+        Map<String, Object> options = settings.getMaxNumCtx() > 0
+            ? Map.of("num_ctx", numCtx.accumulateAndGet(Math.min(settings.getMinNumCtx(), settings.getMaxNumCtx()), Math::max))
+            : null;
+        ChatCompletionCodec.GenerateRequest body = new ChatCompletionCodec.GenerateRequest(
+            modelName, null, null, null, false, settings.getKeepAlive(), options);
+        long start = System.nanoTime();
+        return httpClient.sendAsync(
+            buildRequest("/api/generate", codec.generatePublisher(body, gzipRequests)),
+            HttpResponse.BodyHandlers.discarding()
+        ).handle((response, ex) -> {
+            if (ex != null) {
+                System.out.println("⚠️  Ollama模型预加载失败: " + ex.getMessage());
+            } else if (response.statusCode() != 200) {
+                System.out.println("⚠️  Ollama模型预加载失败: HTTP " + response.statusCode());
+            } else {
+                System.out.println("🔥 Ollama模型已预加载: " + modelName + "（" + (System.nanoTime() - start) / 1_000_000 + "ms"
+                    + (settings.getKeepAlive() != null ? "，keep_alive=" + settings.getKeepAlive() : "")
+                    + (options != null ? "，num_ctx=" + options.get("num_ctx") : "") + "）");
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * 准备一次调用：能复用上一轮 context 时使用 /api/generate，否则使用 /api/chat
+     * /api/generate 不支持工具：开启 context 复用时，带工具的调用改用 JSON 模式（工具和决策格式已写在调用方的提示中，
+     * 如 ReActAgent 的系统提示），否则每一轮都会走 /api/chat 重新处理完整历史
+     */
+    private Call prepare(List<Map<String, String>> messages, boolean stream, ChatOptions chatOptions) {
+        Map<String, Object> options = contextOptions(messages);
+        if (settings.isContextReuse() && chatOptions != null && chatOptions.hasTools()) {
+            chatOptions = ChatOptions.jsonMode();
+        }
+        if (settings.isContextReuse()) {
+            String format = chatOptions != null && chatOptions.isJsonMode() ? "json" : null;
+            ChatCompletionCodec.GenerateRequest generate = planGenerate(messages, stream, options, format);
+            if (generate != null) {
+                CompletableFuture<Turn> turn = new CompletableFuture<>();
+                storeContext(conversationKey(messages), turn);
+                return new Call(turn,
+                    buildRequest("/api/generate", codec.generatePublisher(generate, gzipRequests)));
+            }
+        }
+        ChatCompletionCodec.ChatRequest requestBody = new ChatCompletionCodec.ChatRequest(
+            modelName,
+            ChatCompletionCodec.toChatMessages(messages),
+            null,
+            stream,
+            null,
+            settings.getKeepAlive(),
+            options
+        ).withOptions(chatOptions, true);
+        return new Call(null,
+            buildRequest("/api/chat", codec.requestPublisher(requestBody, gzipRequests)));
+    }
+    
+    /**
+     * 规划 /api/generate 请求
+     * - 新会话：只有（系统提示 +）一条用户消息，以 system + prompt 开始，以便拿到 context
+     * - 续接：去掉最后的回复和用户消息后与某次 /api/generate 请求的对话完全一致，且写回的回复是该次回复的全部或其中一段，
+     *   只发送最后一条消息和 context
+     * 
+     * @param format JSON 模式时为 "json"
+     * @return 为null时使用 /api/chat
+     */
+    private ChatCompletionCodec.GenerateRequest planGenerate(List<Map<String, String>> messages, boolean stream,
+                                                            Map<String, Object> options, String format) {
+        int n = messages.size();
+        if (n == 0 || !"user".equals(messages.get(n - 1).get("role"))) {
+            return null;
+        }
+        String prompt = messages.get(n - 1).get("content");
+        if (n >= 3 && "assistant".equals(messages.get(n - 2).get("role"))) {
+            CompletableFuture<Turn> previous = previousTurn(messages);
+            Turn turn = previous != null ? previous.getNow(null) : null;
+            if (turn == null || !turn.covers(messages.get(n - 2).get("content"))) {
+                return null;
+            }
+            int[] context = turn.context();
+            System.out.println("    ♻️  复用Ollama会话context（" + context.length + " tokens），只发送最新一条消息");
+            return new ChatCompletionCodec.GenerateRequest(
+                modelName, null, prompt, context, stream, settings.getKeepAlive(), options, format);
+        }
+        if (n == 1 || (n == 2 && "system".equals(messages.get(0).get("role")))) {
+            String system = n == 2 ? messages.get(0).get("content") : null;
+            return new ChatCompletionCodec.GenerateRequest(
+                modelName, system, prompt, null, stream, settings.getKeepAlive(), options, format);
+        }
+        return null;
+    }
+    
+    /**
+     * 按提示长度选择 num_ctx（未设置上限时返回null，使用服务端默认值）
+     * 档位为 minNumCtx 的 2 的幂次倍，只增不减：num_ctx 变化会导致 Ollama 重新加载模型
+     */
+    private Map<String, Object> contextOptions(List<Map<String, String>> messages) {
+        int max = settings.getMaxNumCtx();
+        if (max <= 0) {
+            return null;
+        }
+        int needed = settings.getTokenizer().count(messages) + settings.getReservedOutputTokens();
+        int bucket = Math.max(1, Math.min(settings.getMinNumCtx(), max));
+        while (bucket < needed && bucket < max) {
+            bucket *= 2;
+        }
+        bucket = Math.min(bucket, max);
+        int previous = numCtx.getAndAccumulate(bucket, Math::max);
+        if (bucket > previous && previous > 0) {
+            System.out.println("    📐 Ollama num_ctx " + previous + " → " + bucket + "（提示约 " + needed + " tokens，含预留输出）");
+        }
+        return Map.of("num_ctx", Math.max(previous, bucket));
+    }
+    
+    /**
+     * 对话指纹（assistant 消息去掉首尾空白：模型回复的尾部换行通常不会原样写回历史）
+     */
+    private String conversationKey(List<Map<String, String>> conversation) {
+        List<Map<String, String>> normalized = new ArrayList<>(conversation.size());
+        for (Map<String, String> msg : conversation) {
+            if ("assistant".equals(msg.get("role")) && msg.get("content") != null) {
+                normalized.add(Map.of("role", "assistant", "content", msg.get("content").strip()));
+            } else {
+                normalized.add(msg);
+            }
+        }
+        return RequestFingerprint.of(this, normalized);
+    }
+    
+    /**
+     * 新消息是"某次 /api/generate 请求的对话 + 回复 + 一条用户消息"时，返回该次请求的结果（可能仍在读取）
+     */
+    private CompletableFuture<Turn> previousTurn(List<Map<String, String>> messages) {
+        int n = messages.size();
+        if (!settings.isContextReuse() || n < 3 || !"user".equals(messages.get(n - 1).get("role"))
+                || !"assistant".equals(messages.get(n - 2).get("role"))) {
+            return null;
+        }
+        return lookupContext(conversationKey(messages.subList(0, n - 2)));
+    }
+    
+    /**
+     * 同步调用前等待仍在读取的上一轮 context（最多 CONTEXT_WAIT_MS）
+     */
+    private void awaitPreviousTurn(List<Map<String, String>> messages) {
+        CompletableFuture<Turn> previous = previousTurn(messages);
+        if (previous == null || previous.isDone()) {
+            return;
+        }
+        try {
+            previous.get(CONTEXT_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 没有拿到 context，回退为 /api/chat
+        }
+    }
+    
+    /**
+     * 上一轮提前停止后 context 仍在后台读取时，等其到达（最多 CONTEXT_WAIT_MS）再发起本轮调用；
+     * 等待期间取消返回的 future 不会发起调用
+     */
+    private CompletableFuture<String> afterPreviousTurn(List<Map<String, String>> messages,
+                                                        Supplier<CompletableFuture<String>> call) {
+        CompletableFuture<Turn> previous = previousTurn(messages);
+        if (previous == null || previous.isDone()) {
+            return call.get();
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        previous.copy().completeOnTimeout(null, CONTEXT_WAIT_MS, TimeUnit.MILLISECONDS).whenComplete((turn, ex) -> {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<String> inner = call.get();
+            inner.whenComplete((content, failure) -> {
+                if (failure != null) {
+                    result.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure);
+                } else {
+                    result.complete(content);
+                }
+            });
+            result.whenComplete((content, failure) -> {
+                if (result.isCancelled()) {
+                    inner.cancel(true);
+                }
+            });
+        });
+        return result;
+    }
+    
+    private CompletableFuture<Turn> lookupContext(String key) {
+        contextLock.lock();
+        try {
+            return contexts.get(key);
+        } finally {
+            contextLock.unlock();
         }
     }
     
-    private List<Map<String, Object>> convertMessages(List<Map<String, String>> messages) {
-        List<Map<String, Object>> converted = new ArrayList<>();
-        for (Map<String, String> msg : messages) {
-            Map<String, Object> convertedMsg = new HashMap<>();
-            convertedMsg.put("role", msg.get("role"));
-            convertedMsg.put("content", msg.get("content"));
-            converted.add(convertedMsg);
+    private void storeContext(String key, CompletableFuture<Turn> context) {
+        contextLock.lock();
+        try {
+            contexts.put(key, context);
+        } finally {
+            contextLock.unlock();
+        }
+    }
+    
+    /**
+     * 构建请求
+     */
+    private HttpRequest buildRequest(String path, HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+            .uri(URI.create(baseUrl + path))
+            .header("Content-Type", "application/json")
+            .POST(body);
+        if (gzipRequests) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        if (requestTimeout != null) {
+            builder.timeout(requestTimeout);
+        }
+        return builder.build();
+    }
+    
+    /**
+     * 获取模型名称
+     */
+    @Override
+    public String getModelName() {
+        return modelName;
+    }
+    
+    /**
+     * 获取API端点
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+    
+    /**
+     * 一次 /api/generate 调用的结果：完整回复和返回的 context
+     */
+    private record Turn(String reply, int[] context) {
+        /**
+         * 调用方写回历史的回复是否为完整回复或其中一段（如提前停止后只保留的决策 JSON）
+         * context 中是完整回复，写回的部分与之一致时续接的对话才与历史相符
+         */
+        boolean covers(String recorded) {
+            String excerpt = recorded != null ? recorded.strip() : "";
+            return !excerpt.isEmpty() && reply.contains(excerpt);
+        }
+    }
+    
+    /**
+     * 一次调用：请求和本轮 context 的登记项（/api/chat 不返回 context，为null）
+     */
+    private static final class Call {
+        private final CompletableFuture<Turn> turn;
+        private final HttpRequest request;
+        
+        private Call(CompletableFuture<Turn> turn, HttpRequest request) {
+            this.turn = turn;
+            this.request = request;
+        }
+        
+        /**
+         * 登记本轮的回复和 context，供下一轮续接；读取结束仍没有 context 时以 null 调用（只有第一次调用生效）
+         */
+        void remember(String reply, int[] context) {
+            if (turn != null) {
+                turn.complete(reply != null && context != null ? new Turn(reply, context) : null);
+            }
+        }
+    }
+    
+    /**
+     * Ollama 优化设置（默认全部关闭）
+     */
+    public static class Settings {
+        private String keepAlive; // 模型常驻时间，如 "30m"、"-1"（一直常驻）；为null时使用服务端默认（5分钟）
+        private boolean contextReuse; // 同一会话相邻轮次复用 context
+        private int minNumCtx = 4096;
+        private int maxNumCtx; // 0 表示不设置 num_ctx
+        private int reservedOutputTokens = 1024;
+        private Tokenizer tokenizer = Tokenizer.estimating();
+        
+        public String getKeepAlive() {
+            return keepAlive;
+        }
+        
+        public void setKeepAlive(String keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+        
+        public boolean isContextReuse() {
+            return contextReuse;
+        }
+        
+        public void setContextReuse(boolean contextReuse) {
+            this.contextReuse = contextReuse;
+        }
+        
+        public int getMinNumCtx() {
+            return minNumCtx;
+        }
+        
+        public void setMinNumCtx(int minNumCtx) {
+            this.minNumCtx = minNumCtx;
+        }
+        
+        public int getMaxNumCtx() {
+            return maxNumCtx;
+        }
+        
+        public void setMaxNumCtx(int maxNumCtx) {
+            this.maxNumCtx = maxNumCtx;
+        }
+        
+        public int getReservedOutputTokens() {
+            return reservedOutputTokens;
+        }
+        
+        public void setReservedOutputTokens(int reservedOutputTokens) {
+            this.reservedOutputTokens = reservedOutputTokens;
+        }
+        
+        public Tokenizer getTokenizer() {
+            return tokenizer;
+        }
+        
+        public void setTokenizer(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
         }
-        return converted;
     }
 }
-
@@ -0,0 +1,129 @@
+package framework.llm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按智能体统计提供者前缀缓存命中率
+ *
+ * DeepSeek / OpenAI 会缓存请求的公共前缀，命中部分按折扣计费且首 token 更快。
+ * 智能体把每次调用的 LLMUsage 记录到这里，便于观察消息组装是否保持了前缀稳定。
+ *
+ * 使用示例：
+ * <pre>
+ * PromptCacheStats.record("master_agent", usage);
+ * PromptCacheStats.printReport();
+ * </pre>
+ */
+public final class PromptCacheStats {
+    private static final Map<String, AgentStats> AGENTS = new ConcurrentHashMap<>();
+
+    private PromptCacheStats() {
+    }
+
+    /**
+     * 记录一次调用的用量
+     *
+     * @param agentName 智能体名称
+     * @param usage 提供者返回的用量（为 null 时忽略）
+     */
+    public static void record(String agentName, LLMUsage usage) {
+        if (agentName == null || usage == null) {
+            return;
+        }
+        AGENTS.computeIfAbsent(agentName, AgentStats::new).record(usage);
+    }
+
+    /**
+     * 获取某个智能体的统计（未记录过时返回 null）
+     */
+    public static AgentStats get(String agentName) {
+        return AGENTS.get(agentName);
+    }
+
+    /**
+     * 获取全部智能体统计快照
+     */
+    public static Map<String, AgentStats> getAll() {
+        return new LinkedHashMap<>(AGENTS);
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        AGENTS.clear();
+    }
+
+    /**
+     * 打印各智能体的前缀缓存命中率
+     */
+    public static void printReport() {
+        if (AGENTS.isEmpty()) {
+            return;
+        }
+        System.out.println("🧊 提示前缀缓存命中率");
+        for (AgentStats stats : AGENTS.values()) {
+            System.out.println("   " + stats);
+        }
+    }
+
+    /**
+     * 单个智能体的累计用量
+     */
+    public static final class AgentStats {
+        private final String agentName;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong promptTokens = new AtomicLong();
+        private final AtomicLong cachedPromptTokens = new AtomicLong();
+        private final AtomicLong completionTokens = new AtomicLong();
+
+        private AgentStats(String agentName) {
+            this.agentName = agentName;
+        }
+
+        private void record(LLMUsage usage) {
+            calls.incrementAndGet();
+            promptTokens.addAndGet(usage.getPromptTokens());
+            cachedPromptTokens.addAndGet(usage.getCachedPromptTokens());
+            completionTokens.addAndGet(usage.getCompletionTokens());
+        }
+
+        public String getAgentName() {
+            return agentName;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getPromptTokens() {
+            return promptTokens.get();
+        }
+
+        public long getCachedPromptTokens() {
+            return cachedPromptTokens.get();
+        }
+
+        public long getCompletionTokens() {
+            return completionTokens.get();
+        }
+
+        /**
+         * 累计命中率（0~1）
+         */
+        public double getHitRate() {
+            long prompt = promptTokens.get();
+            return prompt == 0 ? 0.0 : (double) cachedPromptTokens.get() / prompt;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 调用 %d 次, 提示 %d tokens, 命中缓存 %d tokens (%.1f%%), 输出 %d tokens",
+                agentName, getCalls(), getPromptTokens(), getCachedPromptTokens(), getHitRate() * 100,
+                getCompletionTokens());
+        }
+    }
+}
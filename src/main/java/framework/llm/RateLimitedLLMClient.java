@@ -0,0 +1,423 @@
+package framework.llm;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 限流 LLM 客户端（装饰器）
+ *
+ * 在提供者配额内尽量跑满吞吐，而不是让突发流量变成一串 429：
+ * - 每个 API Key 一条通道（Lane），各自有 RPM、TPM 令牌桶和 AIMD 自适应并发上限
+ * - 多个 API Key 时，请求分配给余量最大的通道
+ * - 超出配额的请求进入 FIFO 队列等待，而不是失败
+ * - 收到 429 / 5xx / 超时时降低并发上限，按 Retry-After（或指数退避）暂停该通道，并把请求放回队首重试
+ * - 重试次数和退避由 RetryPolicy 决定；超过最大重试次数、Retry-After 过长或错误不可重试
+ *   （请求错误、熔断）时，以 LLMException 结束
+ *
+ * TPM 按估算的输入 token 数加预留输出 token 数预扣，响应返回后按实际输出长度补扣。
+ *
+ * 使用示例：
+ * <pre>
+ * LLMClient client = new RateLimitedLLMClient(
+ *     List.of(factory.createDeepSeekClient(key1, null, null), factory.createDeepSeekClient(key2, null, null)),
+ *     60, 100_000, 4, 32, 5);
+ * </pre>
+ */
+public class RateLimitedLLMClient implements LLMClient {
+    private static final int EXPECTED_OUTPUT_TOKENS = 256;
+
+    private final List<Lane> lanes = new ArrayList<>();
+    private final RetryPolicy retryPolicy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private long wakeupAtNanos = Long.MAX_VALUE;
+
+    private final AtomicLong completedCalls = new AtomicLong();
+    private final AtomicLong queuedCalls = new AtomicLong();
+    private final AtomicLong retriedCalls = new AtomicLong();
+
+    /**
+     * @param clients 每个 API Key 对应的客户端（至少一个）
+     * @param rpmPerKey 每个 Key 每分钟请求数上限（<=0 不限制）
+     * @param tpmPerKey 每个 Key 每分钟 token 数上限（<=0 不限制）
+     * @param initialConcurrency 每个 Key 的初始并发上限
+     * @param maxConcurrency 每个 Key 的最大并发上限
+     * @param maxRetries 429 / 5xx / 超时时的最大重试次数（使用默认退避参数）
+     */
+    public RateLimitedLLMClient(List<LLMClient> clients, long rpmPerKey, long tpmPerKey,
+                                int initialConcurrency, int maxConcurrency, int maxRetries) {
+        this(clients, rpmPerKey, tpmPerKey, initialConcurrency, maxConcurrency, RetryPolicy.of(maxRetries));
+    }
+
+    /**
+     * @param retryPolicy 可重试错误的重试次数和退避策略
+     */
+    public RateLimitedLLMClient(List<LLMClient> clients, long rpmPerKey, long tpmPerKey,
+                                int initialConcurrency, int maxConcurrency, RetryPolicy retryPolicy) {
+        if (clients == null || clients.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个LLM客户端");
+        }
+        for (int i = 0; i < clients.size(); i++) {
+            lanes.add(new Lane("key#" + (i + 1), clients.get(i), rpmPerKey, tpmPerKey,
+                new AdaptiveConcurrencyLimit(initialConcurrency, 1, maxConcurrency)));
+        }
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.of(0);
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        return join(chatAsync(messages));
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return submit(messages, null, client -> client.chatAsync(messages));
+    }
+
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return join(chatStreamAsync(messages, listener));
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        AtomicBoolean delivered = new AtomicBoolean(false);
+        LLMStreamListener tracking = new LLMStreamListener() {
+            @Override
+            public boolean onToken(String token) {
+                delivered.set(true);
+                return listener == null || listener.onToken(token);
+            }
+
+            @Override
+            public void onUsage(LLMUsage usage) {
+                if (listener != null) {
+                    listener.onUsage(usage);
+                }
+            }
+
+            @Override
+            public void onEnd() {
+                // 未输出 token 就失败的尝试会被重试，只转发实际输出了内容的那次读取的结束
+                if (listener != null && delivered.get()) {
+                    listener.onEnd();
+                }
+            }
+        };
+        return submit(messages, delivered, client -> client.chatStreamAsync(messages, options, tracking));
+    }
+
+    @Override
+    public String getModelName() {
+        return lanes.get(0).client.getModelName();
+    }
+
+    /**
+     * 当前排队等待的请求数
+     */
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 打印各通道状态
+     */
+    public void printStats() {
+        lock.lock();
+        try {
+            System.out.println("🚦 LLM限流状态: 完成=" + completedCalls.get() + ", 曾排队=" + queuedCalls.get()
+                + ", 重试=" + retriedCalls.get() + ", 当前队列=" + queue.size());
+            for (Lane lane : lanes) {
+                System.out.println("   " + lane);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<String> submit(List<Map<String, String>> messages, AtomicBoolean delivered,
+                                             Function<LLMClient, CompletableFuture<String>> call) {
+        Pending pending = new Pending(estimateTokens(messages) + EXPECTED_OUTPUT_TOKENS, delivered, call);
+        pending.result.whenComplete((content, ex) -> {
+            if (pending.result.isCancelled()) {
+                cancel(pending);
+            }
+        });
+        lock.lock();
+        try {
+            queue.addLast(pending);
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+        if (!pending.started && !pending.result.isDone()) {
+            queuedCalls.incrementAndGet();
+            System.out.println("    ⏳ LLM请求排队等待配额（队列: " + getQueueLength() + "）");
+        }
+        return pending.result;
+    }
+
+    /**
+     * 按 FIFO 顺序把队首请求分配给可用通道
+     */
+    private void dispatch() {
+        List<Pending> toStart = new ArrayList<>();
+        long waitNanos = 0;
+        lock.lock();
+        try {
+            while (!queue.isEmpty()) {
+                Pending head = queue.peekFirst();
+                long now = System.nanoTime();
+                Lane best = null;
+                long minWait = Long.MAX_VALUE;
+                for (Lane lane : lanes) {
+                    long wait = lane.nanosUntilReady(head.reservedTokens, now);
+                    if (wait == 0 && lane.limit.getInFlight() < lane.limit.getLimit()) {
+                        if (best == null || lane.headroom() > best.headroom()) {
+                            best = lane;
+                        }
+                    } else if (wait > 0) {
+                        minWait = Math.min(minWait, wait);
+                    }
+                }
+                if (best == null) {
+                    // 受限于令牌桶或冷却时设置定时唤醒；受限于并发时等待在途请求完成
+                    waitNanos = minWait == Long.MAX_VALUE ? 0 : minWait;
+                    break;
+                }
+                queue.pollFirst();
+                best.acquire(head.reservedTokens);
+                head.lane = best;
+                head.started = true;
+                toStart.add(head);
+            }
+            if (waitNanos > 0) {
+                long wakeup = System.nanoTime() + waitNanos;
+                if (wakeup < wakeupAtNanos) {
+                    wakeupAtNanos = wakeup;
+                } else {
+                    waitNanos = 0;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (waitNanos > 0) {
+            CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                lock.lock();
+                try {
+                    wakeupAtNanos = Long.MAX_VALUE;
+                } finally {
+                    lock.unlock();
+                }
+                dispatch();
+            });
+        }
+        for (Pending pending : toStart) {
+            start(pending);
+        }
+    }
+
+    private void start(Pending pending) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<String> upstream;
+        try {
+            upstream = pending.call.apply(pending.lane.client);
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        pending.upstream = upstream;
+        if (pending.result.isCancelled()) {
+            upstream.cancel(true);
+        }
+        upstream.whenComplete((content, ex) -> onComplete(pending, startNanos, content, ex));
+    }
+
+    private void onComplete(Pending pending, long startNanos, String content, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        Lane lane = pending.lane;
+        boolean retry = false;
+        lock.lock();
+        try {
+            lane.limit.release();
+            if (cause == null) {
+                lane.limit.onSuccess(System.nanoTime() - startNanos);
+                // 按实际输出长度补扣 TPM（预扣的输出部分多退少补）
+                lane.tpm.consume(estimateTokens(content) - EXPECTED_OUTPUT_TOKENS);
+                completedCalls.incrementAndGet();
+            } else if (cause instanceof LLMException llmException && llmException.isRetryable()) {
+                lane.limit.onOverload();
+                lane.coolDown(retryPolicy.backoff(llmException, pending.attempt));
+                boolean streamed = pending.delivered != null && pending.delivered.get();
+                if (retryPolicy.shouldRetry(llmException, pending.attempt) && !streamed && !pending.result.isDone()) {
+                    pending.attempt++;
+                    pending.lane = null;
+                    pending.started = false;
+                    queue.addFirst(pending);
+                    retry = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (retry) {
+            retriedCalls.incrementAndGet();
+            System.out.println("    🔁 " + lane.name + " 调用失败（" + ((LLMException) cause).getReason()
+                + "），请求重新排队（第 " + pending.attempt + " 次重试）");
+        } else if (cause != null) {
+            pending.result.completeExceptionally(cause);
+        } else {
+            pending.result.complete(content);
+        }
+        dispatch();
+    }
+
+    private void cancel(Pending pending) {
+        CompletableFuture<String> upstream;
+        lock.lock();
+        try {
+            queue.remove(pending);
+            upstream = pending.upstream;
+        } finally {
+            lock.unlock();
+        }
+        if (upstream != null) {
+            upstream.cancel(true);
+        }
+    }
+
+    private static String join(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 粗略估算 token 数：ASCII 约 4 字符 1 token，其他字符（如中文）约 1 字符 1 token
+     */
+    static int estimateTokens(List<Map<String, String>> messages) {
+        int total = 0;
+        for (Map<String, String> msg : messages) {
+            total += 4 + estimateTokens(msg.get("content"));
+        }
+        return total;
+    }
+
+    static int estimateTokens(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    /**
+     * 一个 API Key 的配额通道
+     */
+    private static final class Lane {
+        private final String name;
+        private final LLMClient client;
+        private final TokenBucket rpm;
+        private final TokenBucket tpm;
+        private final AdaptiveConcurrencyLimit limit;
+        private long coolDownUntilNanos;
+
+        private Lane(String name, LLMClient client, long rpmLimit, long tpmLimit, AdaptiveConcurrencyLimit limit) {
+            this.name = name;
+            this.client = client;
+            this.rpm = new TokenBucket(rpmLimit);
+            this.tpm = new TokenBucket(tpmLimit);
+            this.limit = limit;
+        }
+
+        long nanosUntilReady(int tokens, long now) {
+            long wait = Math.max(0, coolDownUntilNanos - now);
+            wait = Math.max(wait, rpm.nanosUntilAvailable(1));
+            return Math.max(wait, tpm.nanosUntilAvailable(tokens));
+        }
+
+        void acquire(int tokens) {
+            limit.tryAcquire();
+            rpm.consume(1);
+            tpm.consume(tokens);
+        }
+
+        double headroom() {
+            return (double) (limit.getLimit() - limit.getInFlight()) / limit.getLimit();
+        }
+
+        void coolDown(Duration backoff) {
+            coolDownUntilNanos = Math.max(coolDownUntilNanos, System.nanoTime() + backoff.toNanos());
+        }
+
+        @Override
+        public String toString() {
+            return name + ": 并发上限=" + limit.getLimit() + ", 在途=" + limit.getInFlight()
+                + ", 平滑延迟=" + limit.getSmoothedLatencyMillis() + "ms"
+                + ", RPM余量=" + formatAvailable(rpm) + ", TPM余量=" + formatAvailable(tpm);
+        }
+
+        private static String formatAvailable(TokenBucket bucket) {
+            return bucket.isUnlimited() ? "不限" : String.valueOf((long) bucket.available());
+        }
+    }
+
+    /**
+     * 排队中的请求
+     */
+    private static final class Pending {
+        private final int reservedTokens;
+        private final AtomicBoolean delivered;
+        private final Function<LLMClient, CompletableFuture<String>> call;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private volatile CompletableFuture<String> upstream;
+        private volatile Lane lane;
+        private volatile boolean started;
+        private int attempt;
+
+        private Pending(int reservedTokens, AtomicBoolean delivered,
+                        Function<LLMClient, CompletableFuture<String>> call) {
+            this.reservedTokens = reservedTokens;
+            this.delivered = delivered;
+            this.call = call;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package framework.llm;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * LLM 请求指纹（框架核心）
+ *
+ * 对请求体做规范化后取 SHA-256：
+ * {"client": 实现类, "messages": [{"content", "role"}...], "model": 模型名, "options": 请求选项}
+ * 字段按键排序，消息只保留实际发送给模型的 role / content；不带请求选项时不含 options。
+ * 用于响应缓存的键以及相同请求的合并。
+ */
+public final class RequestFingerprint {
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private RequestFingerprint() {
+    }
+
+    /**
+     * 计算请求指纹
+     *
+     * @param client 实际发送请求的客户端
+     * @param messages 消息列表
+     * @return 64 位十六进制字符串
+     */
+    public static String of(LLMClient client, List<Map<String, String>> messages) {
+        return of(client, messages, null);
+    }
+
+    /**
+     * 计算带请求选项（工具定义、JSON 模式）的请求指纹
+     *
+     * @param options 请求选项（为null或不含原生字段时与不带选项的指纹相同；会话键不计入）
+     */
+    public static String of(LLMClient client, List<Map<String, String>> messages, ChatOptions options) {
+        List<Map<String, String>> normalized = new ArrayList<>(messages.size());
+        for (Map<String, String> msg : messages) {
+            Map<String, String> m = new LinkedHashMap<>();
+            m.put("role", msg.get("role"));
+            m.put("content", msg.get("content"));
+            normalized.add(m);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("client", client.getClass().getName());
+        body.put("model", client.getModelName());
+        body.put("messages", normalized);
+        if (options != null && options.hasProviderFields()) {
+            body.put("options", options);
+        }
+        try {
+            byte[] canonical = CANONICAL_MAPPER.writeValueAsBytes(body);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("无法计算请求指纹", e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package framework.llm;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * LLM 调用重试策略（RateLimitedLLMClient 使用）
+ *
+ * - 只重试可重试的错误（限流、服务端错误、无法连接、超时），请求错误和熔断直接失败
+ * - 服务端给出 Retry-After 时按其等待；超过最长退避时不再重试，直接失败，
+ *   避免请求长时间占用队列和调用方
+ * - 未给出时指数退避（base * 2^attempt，不超过最长退避），并减去最多 20% 的随机抖动，
+ *   避免同时失败的请求同时重试
+ */
+public class RetryPolicy {
+    private static final double JITTER = 0.2;
+
+    private final int maxRetries;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+
+    /**
+     * 使用默认退避参数（500 毫秒起，最长 30 秒）
+     */
+    public static RetryPolicy of(int maxRetries) {
+        return new RetryPolicy(maxRetries, Duration.ofMillis(500), Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param maxRetries 最大重试次数
+     * @param baseBackoff 首次重试的退避时间
+     * @param maxBackoff 最长退避时间（也是愿意遵守的最长 Retry-After）
+     */
+    public RetryPolicy(int maxRetries, Duration baseBackoff, Duration maxBackoff) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseBackoff = baseBackoff != null ? baseBackoff : Duration.ofMillis(500);
+        this.maxBackoff = maxBackoff != null ? maxBackoff : Duration.ofSeconds(30);
+    }
+
+    /**
+     * 第 attempt 次失败后是否重试
+     *
+     * @param error 失败原因
+     * @param attempt 已重试的次数（首次调用失败时为0）
+     */
+    public boolean shouldRetry(LLMException error, int attempt) {
+        if (!error.isRetryable() || attempt >= maxRetries) {
+            return false;
+        }
+        Duration retryAfter = error.getRetryAfter();
+        return retryAfter == null || retryAfter.compareTo(maxBackoff) <= 0;
+    }
+
+    /**
+     * 第 attempt 次失败后的等待时间：优先使用 Retry-After，否则指数退避加抖动
+     */
+    public Duration backoff(LLMException error, int attempt) {
+        if (error.getRetryAfter() != null) {
+            return error.getRetryAfter();
+        }
+        long millis = Math.min(maxBackoff.toMillis(), baseBackoff.toMillis() << Math.min(attempt, 20));
+        long jitter = (long) (millis * JITTER * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofMillis(millis - jitter);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    @Override
+    public String toString() {
+        return "最多重试 " + maxRetries + " 次，退避 " + baseBackoff.toMillis() + "~" + maxBackoff.toMillis() + "ms";
+    }
+}
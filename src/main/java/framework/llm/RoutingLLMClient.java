@@ -0,0 +1,373 @@
+package framework.llm;
+
+import framework.llm.token.Tokenizer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按智能体角色和提示长度路由的 LLM 客户端
+ *
+ * 每个路由对应一个模型 / 端点，按配置顺序匹配（通常把便宜、快速的模型放在前面）：
+ * - 智能体：路由只服务列出的智能体（为空表示所有智能体）
+ * - 提示长度：本地分词器统计的提示 token 数落在 [min, max] 内
+ * - 运行状况：最近的错误率和 p90 延迟不超过路由的上限；超出时跳过该路由，
+ *   每隔一段时间放行一次探测请求，探测成功后恢复
+ * 没有匹配（或匹配的都不健康）时使用默认客户端。
+ *
+ * LLMClient 接口只传消息，因此智能体角色通过 forAgent() 返回的视图绑定；
+ * 直接调用本客户端时只匹配未限定智能体的路由。
+ *
+ * 使用示例：
+ * <pre>
+ * RoutingLLMClient router = new RoutingLLMClient(List.of(
+ *     new RoutingLLMClient.Route("fast", fastClient, Set.of("executor_agent"), 0, 4000, 5000, 0.2)
+ * ), defaultClient, Tokenizer.estimating());
+ * LLMClient executorClient = router.forAgent("executor_agent");
+ * </pre>
+ */
+public class RoutingLLMClient implements LLMClient {
+    private static final int WINDOW_SIZE = 50;
+    private static final int MIN_SAMPLES = 10;
+    private static final long PROBE_INTERVAL_NANOS = 30_000_000_000L;
+
+    private final List<Route> routes;
+    private final LLMClient defaultClient;
+    private final Tokenizer tokenizer;
+    private final RouteStats defaultStats = new RouteStats();
+    private final LLMClient unboundView = new AgentView(null);
+
+    /**
+     * @param routes 路由（按优先级排序）
+     * @param defaultClient 默认客户端（没有匹配的路由时使用）
+     * @param tokenizer 用于统计提示长度的分词器
+     */
+    public RoutingLLMClient(List<Route> routes, LLMClient defaultClient, Tokenizer tokenizer) {
+        if (defaultClient == null) {
+            throw new IllegalArgumentException("默认LLM客户端不能为空");
+        }
+        this.routes = routes != null ? List.copyOf(routes) : List.of();
+        this.defaultClient = defaultClient;
+        this.tokenizer = tokenizer != null ? tokenizer : Tokenizer.estimating();
+    }
+
+    /**
+     * 获取绑定到某个智能体的客户端视图
+     */
+    public LLMClient forAgent(String agentName) {
+        return new AgentView(agentName);
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        return unboundView.chat(messages);
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return unboundView.chatAsync(messages);
+    }
+
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return unboundView.chatStream(messages, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        return unboundView.chatStreamAsync(messages, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        return unboundView.chatStreamAsync(messages, options, listener);
+    }
+
+    @Override
+    public String getModelName() {
+        return defaultClient.getModelName();
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * 打印各路由的调用次数、错误率和延迟
+     */
+    public void printReport() {
+        System.out.println("🧭 LLM路由统计:");
+        for (Route route : routes) {
+            System.out.println("   " + route.name + "（" + route.client.getModelName() + "）: " + route.stats);
+        }
+        System.out.println("   默认（" + defaultClient.getModelName() + "）: " + defaultStats);
+    }
+
+    /**
+     * 选择路由（为null表示使用默认客户端）
+     */
+    private Route select(String agentName, int promptTokens) {
+        for (Route route : routes) {
+            if (route.matches(agentName, promptTokens) && route.stats.admit(route)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 绑定了智能体角色的客户端视图
+     */
+    private final class AgentView implements LLMClient {
+        private final String agentName;
+
+        private AgentView(String agentName) {
+            this.agentName = agentName;
+        }
+
+        @Override
+        public String chat(List<Map<String, String>> messages) {
+            try {
+                return chatAsync(messages).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+            return call(messages, null, null);
+        }
+
+        @Override
+        public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+            try {
+                return chatStreamAsync(messages, listener).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                         LLMStreamListener listener) {
+            return chatStreamAsync(messages, null, listener);
+        }
+
+        @Override
+        public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                         LLMStreamListener listener) {
+            return call(messages, options, listener != null ? listener : token -> true);
+        }
+
+        @Override
+        public String getModelName() {
+            return defaultClient.getModelName();
+        }
+
+        private CompletableFuture<String> call(List<Map<String, String>> messages, ChatOptions options,
+                                               LLMStreamListener listener) {
+            int promptTokens = tokenizer.count(messages);
+            Route route = select(agentName, promptTokens);
+            LLMClient client = route != null ? route.client : defaultClient;
+            RouteStats stats = route != null ? route.stats : defaultStats;
+            if (route != null) {
+                System.out.println("    🧭 [" + (agentName != null ? agentName : "*") + "] 路由到 " + route.name
+                    + "（" + client.getModelName() + "，提示 " + promptTokens + " tokens）");
+            }
+            long start = System.nanoTime();
+            CompletableFuture<String> future;
+            try {
+                future = listener != null
+                    ? client.chatStreamAsync(messages, options, listener) : client.chatAsync(messages);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            // 直接返回底层 future：调用方取消时中止的就是底层请求（取消不计入运行状况）
+            future.whenComplete((content, ex) -> {
+                if (!(ex instanceof CancellationException)) {
+                    stats.record(System.nanoTime() - start, ex != null || LLMResponses.isFailureResponse(content));
+                }
+            });
+            return future;
+        }
+    }
+
+    /**
+     * 路由规则
+     */
+    public static final class Route {
+        private final String name;
+        private final LLMClient client;
+        private final Set<String> agents;
+        private final int minPromptTokens;
+        private final int maxPromptTokens;
+        private final long maxP90LatencyMs;
+        private final double maxErrorRate;
+        private final RouteStats stats = new RouteStats();
+
+        /**
+         * @param name 路由名称（用于日志）
+         * @param client 该路由使用的客户端
+         * @param agents 服务的智能体（为空表示所有智能体）
+         * @param minPromptTokens 提示 token 数下限（包含）
+         * @param maxPromptTokens 提示 token 数上限（包含，0 表示不限）
+         * @param maxP90LatencyMs 最近 p90 延迟上限（毫秒，0 表示不限）
+         * @param maxErrorRate 最近错误率上限（0~1，超出时暂停使用该路由）
+         */
+        public Route(String name, LLMClient client, Set<String> agents, int minPromptTokens, int maxPromptTokens,
+                     long maxP90LatencyMs, double maxErrorRate) {
+            if (client == null) {
+                throw new IllegalArgumentException("路由 " + name + " 的LLM客户端不能为空");
+            }
+            this.name = name;
+            this.client = client;
+            this.agents = agents != null ? Set.copyOf(agents) : Set.of();
+            this.minPromptTokens = minPromptTokens;
+            this.maxPromptTokens = maxPromptTokens;
+            this.maxP90LatencyMs = maxP90LatencyMs;
+            this.maxErrorRate = maxErrorRate;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LLMClient getClient() {
+            return client;
+        }
+
+        private boolean matches(String agentName, int promptTokens) {
+            return (agents.isEmpty() || (agentName != null && agents.contains(agentName)))
+                && promptTokens >= minPromptTokens
+                && (maxPromptTokens <= 0 || promptTokens <= maxPromptTokens);
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + client.getModelName() + ", agents=" + (agents.isEmpty() ? "*" : agents)
+                + ", tokens=" + minPromptTokens + "~" + (maxPromptTokens > 0 ? maxPromptTokens : "∞")
+                + ", p90≤" + (maxP90LatencyMs > 0 ? maxP90LatencyMs + "ms" : "∞") + ", errors≤" + maxErrorRate + ")";
+        }
+    }
+
+    /**
+     * 路由的近期运行状况（最近 WINDOW_SIZE 次调用的错误和延迟）
+     */
+    private static final class RouteStats {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final boolean[] errors = new boolean[WINDOW_SIZE];
+        private LatencyTracker latency = new LatencyTracker(WINDOW_SIZE);
+        private int next;
+        private int samples;
+        private int errorCount;
+        private long totalCalls;
+        private long totalErrors;
+        private long lastProbeNanos;
+        private boolean tripped;
+        private boolean probing;
+
+        void record(long nanos, boolean error) {
+            lock.lock();
+            try {
+                totalCalls++;
+                if (error) {
+                    totalErrors++;
+                }
+                if (probing) {
+                    probing = false;
+                    if (!error) {
+                        // 探测成功：清空旧样本，重新评估
+                        samples = 0;
+                        errorCount = 0;
+                        next = 0;
+                        latency = new LatencyTracker(WINDOW_SIZE);
+                    }
+                }
+                if (samples == WINDOW_SIZE && errors[next]) {
+                    errorCount--;
+                }
+                errors[next] = error;
+                if (error) {
+                    errorCount++;
+                }
+                next = (next + 1) % WINDOW_SIZE;
+                samples = Math.min(WINDOW_SIZE, samples + 1);
+                if (!error) {
+                    latency.record(nanos);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 是否放行一次调用：健康时放行；不健康时每隔探测间隔放行一次
+         */
+        boolean admit(Route route) {
+            lock.lock();
+            try {
+                if (healthy(route)) {
+                    tripped = false;
+                    return true;
+                }
+                long now = System.nanoTime();
+                if (!tripped) {
+                    // 刚变为不健康：从现在开始计算探测间隔
+                    tripped = true;
+                    lastProbeNanos = now;
+                    System.out.println("    🧭 路由 " + route.name + " 不健康（" + this + "），暂停使用");
+                    return false;
+                }
+                if (now - lastProbeNanos >= PROBE_INTERVAL_NANOS) {
+                    lastProbeNanos = now;
+                    probing = true;
+                    System.out.println("    🧭 路由 " + route.name + " 放行一次探测请求");
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean healthy(Route route) {
+            if (samples < MIN_SAMPLES) {
+                return true;
+            }
+            if ((double) errorCount / samples > route.maxErrorRate) {
+                return false;
+            }
+            return route.maxP90LatencyMs <= 0 || latency.count() == 0
+                || latency.percentile(0.9) <= route.maxP90LatencyMs * 1_000_000L;
+        }
+
+        @Override
+        public String toString() {
+            lock.lock();
+            try {
+                long p50 = latency.percentile(0.5);
+                long p90 = latency.percentile(0.9);
+                return "调用 " + totalCalls + " 次，失败 " + totalErrors + " 次"
+                    + "，近期错误率 " + (samples > 0 ? String.format("%.1f%%", 100.0 * errorCount / samples) : "-")
+                    + "，p50 " + (p50 >= 0 ? p50 / 1_000_000 + "ms" : "-")
+                    + "，p90 " + (p90 >= 0 ? p90 / 1_000_000 + "ms" : "-");
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
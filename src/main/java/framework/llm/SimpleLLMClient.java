@@ -1,12 +1,44 @@
 package framework.llm;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * 简单的LLM客户端实现（模拟 - 仅用于演示）
+ * 简单的LLM客户端实现（模拟 - 用于演示和压测）
+ * 
+ * ⚠️ 注意：这是一个模拟实现，不调用真实的大模型API
+ * 
+ * 两种用法：
+ * - 演示：无参构造，使用内置的 DevOps 流程字符串匹配逻辑，立即返回
+ * - 压测替身：按规则（正则匹配系统提示 / 最后一条用户消息 → 响应模板）生成响应，
+ *   并模拟首 token 延迟（TTFT）和输出速度（tokens/秒）分布、随机错误（HTTP 500）和限流（HTTP 429），
+ *   支持流式输出和用量回调。固定随机种子后，单线程顺序调用的结果可复现
+ * 
+ * 规则按顺序匹配，第一个命中的规则生效；没有规则命中时回退到内置的演示逻辑。
+ * 注入的错误以 LLMException 抛出，与真实客户端一致，可以驱动限流 / 重试 / 故障转移逻辑。
  * 
- * ⚠️ 注意：这是一个模拟实现，使用简单的字符串匹配来判断响应
- * 它不调用真实的大模型API，仅用于演示框架的工作流程
+ * 使用示例：
+ * <pre>
+ * SimpleLLMClient client = new SimpleLLMClient(
+ *     List.of(new SimpleLLMClient.Rule("主控智能体", "(?s).*",
+ *         "{\"type\": \"answer\", \"content\": \"第{{round}}轮: {{user}}\"}")),
+ *     SimpleLLMClient.Distribution.parse("lognormal:800,0.4"),
+ *     SimpleLLMClient.Distribution.parse("normal:40,8"),
+ *     0.01, 0.02, 42L);
+ * </pre>
  * 
  * 实际使用时应该使用：
  * - OllamaLLMClient: 连接本地Ollama模型
@@ -15,9 +47,140 @@ import java.util.*;
  * - 或其他真实的LLM客户端实现
  */
 public class SimpleLLMClient implements LLMClient {
+    private static final String PROVIDER = "Simulated";
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+    
+    private final List<Rule> rules;
+    private final Distribution ttftMillis;
+    private final Distribution tokensPerSecond;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final Random random;
+    private final ReentrantLock randomLock = new ReentrantLock();
+    
+    /**
+     * 演示模式：内置 DevOps 逻辑，无延迟、无错误注入
+     */
+    public SimpleLLMClient() {
+        this(List.of(), Distribution.constant(0), null, 0, 0, 0L);
+    }
+    
+    /**
+     * 压测替身模式
+     * 
+     * @param rules 响应规则（按顺序匹配）
+     * @param ttftMillis 首 token 延迟分布（毫秒）
+     * @param tokensPerSecond 输出速度分布（为null表示首 token 后立即输出全部内容）
+     * @param errorRate 返回 HTTP 500 的概率（0~1）
+     * @param rateLimitRate 返回 HTTP 429 的概率（0~1）
+     * @param seed 随机种子（相同种子 + 相同调用顺序得到相同的延迟和错误序列）
+     */
+    public SimpleLLMClient(List<Rule> rules, Distribution ttftMillis, Distribution tokensPerSecond,
+                           double errorRate, double rateLimitRate, long seed) {
+        this.rules = rules != null ? List.copyOf(rules) : List.of();
+        this.ttftMillis = ttftMillis != null ? ttftMillis : Distribution.constant(0);
+        this.tokensPerSecond = tokensPerSecond;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+        this.random = new Random(seed);
+    }
     
     @Override
     public String chat(List<Map<String, String>> messages) {
+        return join(chatStreamAsync(messages, null));
+    }
+    
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return join(chatStreamAsync(messages, listener));
+    }
+    
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return chatStreamAsync(messages, null);
+    }
+    
+    /**
+     * 模拟流式输出：首 token 在 TTFT 之后到达，之后按输出速度逐个 token 回调
+     * 延迟由定时器驱动，不占用线程；返回的 future 被取消时停止输出
+     */
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        Plan plan;
+        try {
+            plan = plan(messages);
+        } catch (LLMException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        new Emission(plan, listener, result, RateLimitedLLMClient.estimateTokens(messages)).schedule(plan.ttftMillis);
+        return result;
+    }
+    
+    @Override
+    public String getModelName() {
+        return rules.isEmpty() && tokensPerSecond == null ? "SimpleLLMClient" : "simulated";
+    }
+    
+    /**
+     * 从 JSON 文件加载规则
+     * 
+     * 文件格式：[{"system": "正则", "user": "正则", "response": "模板"}, ...]，system / user 可省略（匹配任意内容）
+     */
+    public static List<Rule> loadRules(Path path) {
+        try {
+            List<Map<String, String>> entries = new ObjectMapper().readValue(
+                Files.readAllBytes(path), new TypeReference<List<Map<String, String>>>() {});
+            List<Rule> loaded = new ArrayList<>();
+            for (Map<String, String> entry : entries) {
+                loaded.add(new Rule(entry.get("system"), entry.get("user"), entry.get("response")));
+            }
+            return loaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * 决定本次调用的响应内容、延迟和错误（在调用线程上一次性抽样，保证抽样顺序与调用顺序一致）
+     */
+    private Plan plan(List<Map<String, String>> messages) {
+        double roll;
+        long ttft;
+        double tps;
+        randomLock.lock();
+        try {
+            roll = random.nextDouble();
+            ttft = Math.max(0, Math.round(ttftMillis.sample(random)));
+            tps = tokensPerSecond != null ? tokensPerSecond.sample(random) : 0;
+        } finally {
+            randomLock.unlock();
+        }
+        if (roll < rateLimitRate) {
+            throw new LLMRateLimitException(PROVIDER, "{\"error\": \"simulated rate limit\"}", RETRY_AFTER);
+        }
+        if (roll < rateLimitRate + errorRate) {
+            throw new LLMServerException(PROVIDER, 500, "{\"error\": \"simulated server error\"}", null);
+        }
+        return new Plan(respond(messages), ttft, tps);
+    }
+    
+    private static String join(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 生成响应：先匹配规则，没有命中时使用内置演示逻辑
+     */
+    private String respond(List<Map<String, String>> messages) {
         // 获取最后一条用户消息
         String lastUserMessage = "";
         for (int i = messages.size() - 1; i >= 0; i--) {
@@ -36,6 +199,19 @@ public class SimpleLLMClient implements LLMClient {
             }
         }
         
+        for (Rule rule : rules) {
+            String response = rule.apply(systemPrompt, lastUserMessage, messages);
+            if (response != null) {
+                return response;
+            }
+        }
+        return demoResponse(messages, systemPrompt, lastUserMessage);
+    }
+    
+    /**
+     * 内置演示逻辑（DevOps 流程）
+     */
+    private String demoResponse(List<Map<String, String>> messages, String systemPrompt, String lastUserMessage) {
         // ========== 模拟逻辑（仅用于演示） ==========
         System.out.println("    🔧 模拟LLM处理（实际应调用真实LLM API）...");
         
@@ -113,5 +289,263 @@ public class SimpleLLMClient implements LLMClient {
         // 默认返回最终答案
         return "{\"type\": \"answer\", \"content\": \"任务完成\"}";
     }
+    
+    /**
+     * 按 token 切分文本：ASCII 约 4 字符一个 token，其他字符（如中文）一个字符一个 token
+     * （与 RateLimitedLLMClient.estimateTokens 的估算口径一致）
+     */
+    static List<String> splitTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int end = i;
+            if (text.charAt(i) < 128) {
+                while (end < text.length() && end - i < 4 && text.charAt(end) < 128) {
+                    end++;
+                }
+            } else {
+                end = Character.isHighSurrogate(text.charAt(i)) && i + 1 < text.length() ? i + 2 : i + 1;
+            }
+            tokens.add(text.substring(i, end));
+            i = end;
+        }
+        return tokens;
+    }
+    
+    /**
+     * 一次调用的抽样结果
+     */
+    private record Plan(String content, long ttftMillis, double tokensPerSecond) {
+    }
+    
+    /**
+     * 一次模拟输出：由定时器逐个发出 token
+     */
+    private static final class Emission {
+        private final LLMStreamListener listener;
+        private final CompletableFuture<String> result;
+        private final List<String> tokens;
+        private final long intervalNanos;
+        private final long promptTokens;
+        private final StringBuilder emitted = new StringBuilder();
+        private int next;
+        
+        private Emission(Plan plan, LLMStreamListener listener, CompletableFuture<String> result, long promptTokens) {
+            this.listener = listener;
+            this.result = result;
+            this.tokens = splitTokens(plan.content());
+            this.intervalNanos = plan.tokensPerSecond() > 0 ? (long) (1_000_000_000L / plan.tokensPerSecond()) : 0;
+            this.promptTokens = promptTokens;
+        }
+        
+        private void schedule(long delayMillis) {
+            CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(this::emit);
+        }
+        
+        private void emit() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                // 未设置输出速度时一次性输出剩余内容
+                int end = intervalNanos > 0 ? Math.min(next + 1, tokens.size()) : tokens.size();
+                boolean proceed = true;
+                while (next < end && proceed) {
+                    String token = tokens.get(next++);
+                    emitted.append(token);
+                    proceed = listener == null || listener.onToken(token);
+                }
+                if (proceed && next < tokens.size()) {
+                    CompletableFuture.delayedExecutor(intervalNanos, TimeUnit.NANOSECONDS).execute(this::emit);
+                    return;
+                }
+                if (listener != null) {
+                    listener.onUsage(new LLMUsage(promptTokens, next, 0, 0));
+                }
+                result.complete(emitted.toString());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+    
+    /**
+     * 模拟延迟分布
+     * 
+     * 文本格式（用于配置）：
+     * - const:300            固定值
+     * - uniform:200,600      均匀分布 [min, max]
+     * - normal:40,8          正态分布（均值, 标准差），负值截断为 0
+     * - lognormal:800,0.4    对数正态分布（中位数, sigma），适合描述长尾延迟
+     */
+    public static final class Distribution {
+        private final String kind;
+        private final double a;
+        private final double b;
+        
+        private Distribution(String kind, double a, double b) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+        }
+        
+        public static Distribution constant(double value) {
+            return new Distribution("const", value, 0);
+        }
+        
+        public static Distribution uniform(double min, double max) {
+            return new Distribution("uniform", min, max);
+        }
+        
+        public static Distribution normal(double mean, double stddev) {
+            return new Distribution("normal", mean, stddev);
+        }
+        
+        public static Distribution logNormal(double median, double sigma) {
+            return new Distribution("lognormal", median, sigma);
+        }
+        
+        /**
+         * 解析文本格式（只有一个数字时视为固定值）
+         * 
+         * @return 为空时返回null
+         */
+        public static Distribution parse(String spec) {
+            if (spec == null || spec.isBlank()) {
+                return null;
+            }
+            String text = spec.trim().toLowerCase();
+            int colon = text.indexOf(':');
+            if (colon < 0) {
+                return constant(Double.parseDouble(text));
+            }
+            String kind = text.substring(0, colon);
+            String[] params = text.substring(colon + 1).split(",");
+            double first = Double.parseDouble(params[0].trim());
+            double second = params.length > 1 ? Double.parseDouble(params[1].trim()) : 0;
+            switch (kind) {
+                case "const":
+                    return constant(first);
+                case "uniform":
+                    return uniform(first, second);
+                case "normal":
+                    return normal(first, second);
+                case "lognormal":
+                    return logNormal(first, second);
+                default:
+                    throw new IllegalArgumentException("未知的分布类型: " + spec);
+            }
+        }
+        
+        /**
+         * 抽样（不小于 0）
+         */
+        public double sample(Random random) {
+            double value;
+            switch (kind) {
+                case "uniform":
+                    value = a + (b - a) * random.nextDouble();
+                    break;
+                case "normal":
+                    value = a + b * random.nextGaussian();
+                    break;
+                case "lognormal":
+                    value = a * Math.exp(b * random.nextGaussian());
+                    break;
+                default:
+                    value = a;
+            }
+            return Math.max(0, value);
+        }
+        
+        @Override
+        public String toString() {
+            return "const".equals(kind) ? kind + ":" + a : kind + ":" + a + "," + b;
+        }
+    }
+    
+    /**
+     * 响应规则：系统提示和最后一条用户消息都匹配时生效
+     * 
+     * 模板占位符（替换值按 JSON 字符串转义，便于直接拼进 JSON 决策）：
+     * - {{user}}：最后一条用户消息
+     * - {{round}}：对话中已有的 assistant 消息数（可用于编排多轮 ReAct）
+     * - {{1}}、{{2}}...：用户消息正则的捕获组
+     */
+    public static final class Rule {
+        private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{(\\w+)}}");
+        
+        private final Pattern systemPattern;
+        private final Pattern userPattern;
+        private final String template;
+        
+        /**
+         * @param systemRegex 系统提示正则（find 语义，为null时匹配任意内容）
+         * @param userRegex 用户消息正则（find 语义，为null时匹配任意内容）
+         * @param template 响应模板
+         */
+        public Rule(String systemRegex, String userRegex, String template) {
+            this.systemPattern = systemRegex != null ? Pattern.compile(systemRegex) : null;
+            this.userPattern = userRegex != null ? Pattern.compile(userRegex) : null;
+            this.template = Objects.requireNonNull(template, "template");
+        }
+        
+        /**
+         * @return 命中时返回渲染后的响应，否则返回null
+         */
+        String apply(String systemPrompt, String userMessage, List<Map<String, String>> messages) {
+            if (systemPattern != null && !systemPattern.matcher(systemPrompt).find()) {
+                return null;
+            }
+            Matcher userMatcher = null;
+            if (userPattern != null) {
+                userMatcher = userPattern.matcher(userMessage);
+                if (!userMatcher.find()) {
+                    return null;
+                }
+            }
+            long round = messages.stream().filter(msg -> "assistant".equals(msg.get("role"))).count();
+            Matcher placeholder = PLACEHOLDER.matcher(template);
+            StringBuilder out = new StringBuilder();
+            while (placeholder.find()) {
+                String name = placeholder.group(1);
+                String value;
+                if ("user".equals(name)) {
+                    value = userMessage;
+                } else if ("round".equals(name)) {
+                    value = String.valueOf(round);
+                } else if (name.chars().allMatch(Character::isDigit) && userMatcher != null
+                        && Integer.parseInt(name) <= userMatcher.groupCount()) {
+                    value = userMatcher.group(Integer.parseInt(name));
+                } else {
+                    value = placeholder.group();
+                }
+                placeholder.appendReplacement(out, Matcher.quoteReplacement(escapeJson(value != null ? value : "")));
+            }
+            placeholder.appendTail(out);
+            return out.toString();
+        }
+        
+        private static String escapeJson(String value) {
+            StringBuilder sb = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                    }
+                }
+            }
+            return sb.toString();
+        }
+    }
 }
-
@@ -0,0 +1,190 @@
+package framework.llm;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流式 JSON 请求体（框架内部使用）
+ *
+ * 请求体不再先序列化成完整的 String / byte[]：HttpClient 每请求一块数据，
+ * 才让 JsonGenerator 写出下一段（例如下一条消息），写出的字节直接交给 HttpClient 发送。
+ * 在途调用的峰值堆占用约为"消息字符串本身 + 当前一条消息的编码字节"，而不是整个提示的多份拷贝。
+ *
+ * 可选 gzip 压缩（需提供者支持 Content-Encoding: gzip 的请求体）。
+ * 请求体长度未知，HTTP/1.1 下使用分块传输编码。每次订阅（包括 HttpClient 重发）都从头重新生成。
+ */
+final class StreamingJsonBodyPublisher implements HttpRequest.BodyPublisher {
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * 分段写出请求体
+     */
+    @FunctionalInterface
+    interface BodyWriter {
+        /**
+         * 写出第 step 段（从 0 开始）
+         *
+         * @return true 还有后续段；false 已写完（生成器随后被关闭）
+         */
+        boolean writeNext(JsonGenerator generator, int step) throws IOException;
+    }
+
+    private final JsonFactory jsonFactory;
+    private final boolean gzip;
+    private final BodyWriter writer;
+
+    StreamingJsonBodyPublisher(JsonFactory jsonFactory, boolean gzip, BodyWriter writer) {
+        this.jsonFactory = jsonFactory;
+        this.gzip = gzip;
+        this.writer = writer;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        subscriber.onSubscribe(new ChunkSubscription(subscriber));
+    }
+
+    /**
+     * 按需生成：每次需求不足时写出下一段，已生成的块排队等待下游请求
+     */
+    private final class ChunkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        private final ChunkSink sink = new ChunkSink();
+        private volatile boolean cancelled;
+        private JsonGenerator generator;
+        private int step;
+        private boolean finished;
+
+        private ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("request(" + n + ")"));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> {
+                long sum = current + added;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!cancelled && demand.get() > 0 && !(finished && pending.isEmpty())) {
+                    ByteBuffer next = pending.poll();
+                    if (next != null) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(next);
+                    } else {
+                        produce();
+                    }
+                }
+                // 全部发出后无需等待下游需求即可结束
+                if (!cancelled && finished && pending.isEmpty()) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void produce() {
+            try {
+                if (generator == null) {
+                    OutputStream out = gzip ? new GZIPOutputStream(sink, CHUNK_SIZE) : sink;
+                    generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+                }
+                if (writer.writeNext(generator, step++)) {
+                    generator.flush();
+                } else {
+                    // 关闭生成器同时关闭底层流（gzip 写出尾部）
+                    generator.close();
+                    finished = true;
+                }
+                pending.addAll(sink.drain());
+            } catch (IOException | RuntimeException e) {
+                cancelled = true;
+                subscriber.onError(e);
+            }
+        }
+    }
+
+    /**
+     * 按固定大小分块收集字节，取出时直接包装为 ByteBuffer（不再复制）
+     */
+    private static final class ChunkSink extends OutputStream {
+        private final List<ByteBuffer> filled = new ArrayList<>();
+        private byte[] current = new byte[CHUNK_SIZE];
+        private int position;
+
+        @Override
+        public void write(int b) {
+            if (position == current.length) {
+                rollOver();
+            }
+            current[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (position == current.length) {
+                    rollOver();
+                }
+                int n = Math.min(len, current.length - position);
+                System.arraycopy(b, off, current, position, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void rollOver() {
+            filled.add(ByteBuffer.wrap(current, 0, position));
+            current = new byte[CHUNK_SIZE];
+            position = 0;
+        }
+
+        List<ByteBuffer> drain() {
+            if (position > 0) {
+                rollOver();
+            }
+            List<ByteBuffer> chunks = new ArrayList<>(filled);
+            filled.clear();
+            return chunks;
+        }
+    }
+}
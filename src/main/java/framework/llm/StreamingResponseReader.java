@@ -0,0 +1,306 @@
+package framework.llm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * 流式响应读取工具（框架内部使用）
+ *
+ * 支持两种逐行协议：
+ * - SSE：OpenAI 兼容接口（DeepSeek、OpenAI），每行 "data: {...}"，以 "data: [DONE]" 结束
+ * - NDJSON：Ollama 接口，每行一个 JSON 对象，以 "done": true 结束
+ *
+ * 用量（usage）由提供者在流末尾返回（OpenAI 兼容接口需在请求中设置 stream_options.include_usage），
+ * 解析后通过 listener.onUsage 回调。
+ *
+ * listener 返回 false 时：同步读取立即停止，底层 HTTP 连接随之中止接收；
+ * 异步读取立即以已收到的内容完成结果，但会在后台继续读取至多 MAX_DRAIN_LINES 行以获取用量，
+ * 超出后中止连接。同步读取基于 BodyHandlers.ofLines()，异步读取基于行订阅者，不占用等待线程。
+ * 读取彻底结束（含停止后的后台读取、出错或取消）时回调一次 listener.onEnd。
+ *
+ * Ollama /api/generate 的最后一个分块带有 context：设置了 contextHandler 时，
+ * 以完整生成文本（含停止后继续读取到的部分）和 context 回调；读取结束仍没有 context 时以 null 回调，
+ * 两种情况都在 listener.onEnd 之前。
+ *
+ * 原生工具调用（tool_calls）的分片按 index 拼接，调用结束（finish_reason、done 或流结束）时
+ * 转换为决策 JSON，作为一段 token 回调，并取代正文作为结果。
+ */
+final class StreamingResponseReader {
+
+    /**
+     * 流式协议
+     */
+    enum Protocol {
+        SSE, NDJSON
+    }
+
+    /**
+     * 提前停止后为获取用量继续读取的最大行数
+     */
+    static final int MAX_DRAIN_LINES = 256;
+
+    private final Protocol protocol;
+    private final ChatCompletionCodec codec;
+    private final LLMStreamListener listener;
+    private final StringBuilder content = new StringBuilder();
+    private final StringBuilder drainedContent = new StringBuilder();
+    private final ChatCompletionCodec.ToolCallAssembler toolCalls = new ChatCompletionCodec.ToolCallAssembler();
+    private String decision;
+    private BiConsumer<String, int[]> contextHandler;
+    private volatile boolean contextDelivered;
+    private boolean stopped;
+    private int drainedLines;
+    private final AtomicBoolean ended = new AtomicBoolean(false);
+
+    StreamingResponseReader(Protocol protocol, ChatCompletionCodec codec, LLMStreamListener listener) {
+        this.protocol = protocol;
+        this.codec = codec;
+        this.listener = listener;
+    }
+
+    /**
+     * 设置 context 回调（完整生成文本, context），在读取开始前调用；没有 context 时 context 为 null
+     */
+    void setContextHandler(BiConsumer<String, int[]> contextHandler) {
+        this.contextHandler = contextHandler;
+    }
+
+    /**
+     * 处理一行数据
+     *
+     * listener 要求停止后不再累积内容，只解析用量；收到用量或超出 MAX_DRAIN_LINES 行后结束
+     *
+     * @return true 继续读取；false 流已结束、已在停止后拿到用量或超出读取上限
+     */
+    boolean onLine(String line) throws IOException {
+        if (stopped && ++drainedLines > MAX_DRAIN_LINES) {
+            return false;
+        }
+        String json;
+        if (protocol == Protocol.SSE) {
+            if (!line.startsWith("data:")) {
+                return true;
+            }
+            String data = line.substring(5).trim();
+            if ("[DONE]".equals(data)) {
+                return false;
+            }
+            if (data.isEmpty()) {
+                return true;
+            }
+            json = data;
+        } else {
+            json = line.trim();
+            if (json.isEmpty()) {
+                return true;
+            }
+        }
+        ChatCompletionCodec.ChatResult chunk = codec.readChunk(json);
+        String token = chunk.content();
+        LLMUsage usage = chunk.usage();
+        boolean done = chunk.done();
+        if (token != null && !token.isEmpty()) {
+            if (!stopped) {
+                content.append(token);
+                if (listener != null && !listener.onToken(token)) {
+                    stopped = true;
+                }
+            } else if (contextHandler != null) {
+                drainedContent.append(token);
+            }
+        }
+        if (chunk.toolCalls() != null && !stopped) {
+            toolCalls.add(chunk.toolCalls());
+        }
+        if (chunk.finishReason() != null || done) {
+            flushToolCalls();
+        }
+        if (chunk.context() != null && contextHandler != null) {
+            contextDelivered = true;
+            contextHandler.accept(content.toString() + drainedContent, chunk.context());
+        }
+        if (usage != null && listener != null) {
+            listener.onUsage(usage);
+            return false;
+        }
+        return !done;
+    }
+
+    /**
+     * 工具调用已完整时转换为决策 JSON 并回调（只执行一次）
+     */
+    private void flushToolCalls() {
+        if (decision != null || toolCalls.isEmpty() || stopped) {
+            return;
+        }
+        decision = codec.toDecisionJson(toolCalls.calls());
+        if (listener != null && !listener.onToken(decision)) {
+            stopped = true;
+        }
+    }
+
+    /**
+     * 读取彻底结束，通知 listener（只通知一次）
+     */
+    private void end() {
+        if (!ended.compareAndSet(false, true)) {
+            return;
+        }
+        if (contextHandler != null && !contextDelivered) {
+            contextHandler.accept(content.toString() + drainedContent, null);
+        }
+        if (listener != null) {
+            listener.onEnd();
+        }
+    }
+
+    /**
+     * listener 是否已要求停止接收
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * 获取已接收到的完整文本（有工具调用时为决策 JSON）
+     */
+    String getContent() {
+        flushToolCalls();
+        return decision != null ? decision : content.toString();
+    }
+
+    /**
+     * 同步读取行流（读取结束或提前停止时关闭行流）
+     */
+    String read(Stream<String> lines) throws IOException {
+        try (lines) {
+            Iterator<String> it = lines.iterator();
+            // 同步读取时调用方正在等待，提前停止后不再为用量继续读取
+            while (it.hasNext()) {
+                if (!onLine(it.next()) || stopped) {
+                    break;
+                }
+            }
+        } finally {
+            end();
+        }
+        return getContent();
+    }
+
+    /**
+     * 异步发送流式请求并读取响应
+     *
+     * 非 200 响应以 LLMException 结束；返回的 future 被取消时同时取消订阅和 HTTP 交换
+     *
+     * @param providerName 提供者名称（用于错误信息）
+     */
+    CompletableFuture<String> readAsync(HttpClient httpClient, HttpRequest request, String providerName) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        LineSubscriber subscriber = new LineSubscriber(result);
+
+        CompletableFuture<HttpResponse<Void>> exchange = httpClient.sendAsync(request, info -> {
+            if (info.statusCode() == 200) {
+                return HttpResponse.BodySubscribers.fromLineSubscriber(subscriber);
+            }
+            return HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                body -> {
+                    result.completeExceptionally(LLMException.fromResponse(
+                        providerName, info.statusCode(), info.headers(), body
+                    ));
+                    return (Void) null;
+                }
+            );
+        });
+
+        exchange.whenComplete((response, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(getContent());
+            }
+            end();
+        });
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) {
+                subscriber.cancel();
+                exchange.cancel(true);
+                end();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 行订阅者：逐行交给 onLine 处理
+     *
+     * listener 要求停止时立即完成结果，随后继续读取剩余行以获取用量；读取结束时取消订阅
+     */
+    private class LineSubscriber implements Flow.Subscriber<String> {
+        private final CompletableFuture<String> result;
+        private volatile Flow.Subscription subscription;
+        private boolean finished;
+
+        LineSubscriber(CompletableFuture<String> result) {
+            this.result = result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (finished || result.isCancelled()) {
+                return;
+            }
+            try {
+                boolean more = onLine(line);
+                if (stopped || !more) {
+                    result.complete(getContent());
+                }
+                if (!more) {
+                    finished = true;
+                    cancel();
+                    end();
+                }
+            } catch (IOException e) {
+                finished = true;
+                result.completeExceptionally(new UncheckedIOException(e));
+                cancel();
+                end();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+            end();
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(getContent());
+            end();
+        }
+
+        void cancel() {
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+}
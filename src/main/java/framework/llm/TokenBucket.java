@@ -0,0 +1,73 @@
+package framework.llm;
+
+/**
+ * 令牌桶（RateLimitedLLMClient 内部使用，非线程安全，由调用方加锁）
+ *
+ * 以"每分钟配额"描述：容量即每分钟配额，按配额/60000 每毫秒匀速补充。
+ * 允许透支（余额为负），用于在响应返回后按实际用量补扣。
+ */
+final class TokenBucket {
+    private final double capacity;
+    private final double refillPerNano;
+    private double available;
+    private long lastRefillNanos;
+
+    /**
+     * @param perMinute 每分钟配额（<=0 表示不限制）
+     */
+    TokenBucket(long perMinute) {
+        this.capacity = perMinute;
+        this.refillPerNano = perMinute / 60_000_000_000.0;
+        this.available = perMinute;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    boolean isUnlimited() {
+        return capacity <= 0;
+    }
+
+    /**
+     * 获取所需令牌还需等待的纳秒数（0 表示当前即可获取）
+     *
+     * 单次需求超过容量时按容量计算，避免永远无法满足
+     */
+    long nanosUntilAvailable(double amount) {
+        if (isUnlimited()) {
+            return 0;
+        }
+        refill();
+        double needed = Math.min(amount, capacity);
+        if (available >= needed) {
+            return 0;
+        }
+        return (long) Math.ceil((needed - available) / refillPerNano);
+    }
+
+    /**
+     * 扣减令牌（可透支）
+     */
+    void consume(double amount) {
+        if (isUnlimited()) {
+            return;
+        }
+        refill();
+        available -= amount;
+    }
+
+    /**
+     * 当前余额
+     */
+    double available() {
+        if (isUnlimited()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+}
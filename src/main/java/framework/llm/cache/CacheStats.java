@@ -0,0 +1,73 @@
+package framework.llm.cache;
+
+/**
+ * LLM 响应缓存统计快照
+ */
+public class CacheStats {
+    private final long memoryHits;
+    private final long diskHits;
+    private final long misses;
+    private final long stores;
+    private final long evictions;
+    private final int memorySize;
+    private final int diskSize;
+
+    public CacheStats(long memoryHits, long diskHits, long misses, long stores, long evictions,
+                      int memorySize, int diskSize) {
+        this.memoryHits = memoryHits;
+        this.diskHits = diskHits;
+        this.misses = misses;
+        this.stores = stores;
+        this.evictions = evictions;
+        this.memorySize = memorySize;
+        this.diskSize = diskSize;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public long getDiskHits() {
+        return diskHits;
+    }
+
+    public long getHits() {
+        return memoryHits + diskHits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    public int getDiskSize() {
+        return diskSize;
+    }
+
+    /**
+     * 命中率（0~1，无请求时为0）
+     */
+    public double getHitRate() {
+        long total = getHits() + misses;
+        return total == 0 ? 0.0 : (double) getHits() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "命中=%d（内存 %d / 磁盘 %d）, 未命中=%d, 命中率=%.1f%%, 写入=%d, 淘汰=%d, 内存条目=%d, 磁盘条目=%d",
+            getHits(), memoryHits, diskHits, misses, getHitRate() * 100, stores, evictions, memorySize, diskSize
+        );
+    }
+}
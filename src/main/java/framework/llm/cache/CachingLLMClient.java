@@ -0,0 +1,197 @@
+package framework.llm.cache;
+
+import framework.llm.ChatOptions;
+import framework.llm.LLMClient;
+import framework.llm.LLMResponses;
+import framework.llm.LLMStreamListener;
+import framework.llm.LLMUsage;
+import framework.llm.RequestFingerprint;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 带精确匹配缓存的 LLM 客户端（装饰器）
+ *
+ * 以请求体的规范化哈希（RequestFingerprint）为键，
+ * 同一模型上完全相同的对话（如 PlanAndSolve 的规划提示、ReflexionAgent 的评估提示）只请求一次。
+ * 温度等采样参数由被装饰的客户端固定（temperature=0.1），已隐含在 client/model 中。
+ *
+ * 以下响应不会写入缓存：
+ * - 调用失败时客户端返回的兜底响应（见 LLMResponses.isFailureResponse）
+ * - 流式调用中被监听器提前停止时的部分响应（例如 ReActAgent 提前分派工具调用的轮次）
+ *
+ * 按智能体关闭缓存：对不希望被缓存的智能体直接使用 getDelegate() 返回的原始客户端。
+ *
+ * 使用示例：
+ * <pre>
+ * LLMResponseCache cache = new LLMResponseCache(1000, Duration.ofHours(1), Path.of(".cache/llm.cache"), 64L << 20);
+ * LLMClient client = new CachingLLMClient(new DeepSeekLLMClient(), cache);
+ * </pre>
+ */
+public class CachingLLMClient implements LLMClient {
+    private final LLMClient delegate;
+    private final LLMResponseCache cache;
+
+    public CachingLLMClient(LLMClient delegate, LLMResponseCache cache) {
+        if (delegate == null || cache == null) {
+            throw new IllegalArgumentException("delegate 和 cache 不能为空");
+        }
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        String key = RequestFingerprint.of(delegate, messages);
+        String cached = cache.get(key);
+        if (cached != null) {
+            System.out.println("    💾 LLM缓存命中");
+            return cached;
+        }
+        String content = delegate.chat(messages);
+        store(key, content);
+        return content;
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        String key = RequestFingerprint.of(delegate, messages);
+        String cached = cache.get(key);
+        if (cached != null) {
+            System.out.println("    💾 LLM缓存命中");
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<String> future = delegate.chatAsync(messages);
+        return propagateCancel(future, future.thenApply(content -> {
+            store(key, content);
+            return content;
+        }));
+    }
+
+    @Override
+    public String chatStream(List<Map<String, String>> messages, LLMStreamListener listener) {
+        String key = RequestFingerprint.of(delegate, messages);
+        String cached = cache.get(key);
+        if (cached != null) {
+            System.out.println("    💾 LLM缓存命中");
+            replay(cached, listener);
+            return cached;
+        }
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        String content = delegate.chatStream(messages, trackStop(listener, stopped));
+        if (!stopped.get()) {
+            store(key, content);
+        }
+        return content;
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                     LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        String key = RequestFingerprint.of(delegate, messages, options);
+        String cached = cache.get(key);
+        if (cached != null) {
+            System.out.println("    💾 LLM缓存命中");
+            replay(cached, listener);
+            return CompletableFuture.completedFuture(cached);
+        }
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        CompletableFuture<String> future = delegate.chatStreamAsync(messages, options, trackStop(listener, stopped));
+        return propagateCancel(future, future.thenApply(content -> {
+            if (!stopped.get()) {
+                store(key, content);
+            }
+            return content;
+        }));
+    }
+
+    /**
+     * 调用方取消 result 时同时取消底层请求（取消依赖阶段不会传到 source）
+     */
+    private static CompletableFuture<String> propagateCancel(CompletableFuture<String> source,
+                                                             CompletableFuture<String> result) {
+        result.whenComplete((content, ex) -> {
+            if (result.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+
+    /**
+     * 获取被装饰的原始客户端（不经过缓存）
+     */
+    public LLMClient getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 获取缓存实例
+     */
+    public LLMResponseCache getCache() {
+        return cache;
+    }
+
+    private void store(String key, String content) {
+        if (LLMResponses.isFailureResponse(content)) {
+            return;
+        }
+        cache.put(key, content);
+    }
+
+    private static void replay(String content, LLMStreamListener listener) {
+        if (listener != null) {
+            listener.onReused();
+            listener.onToken(content);
+            listener.onEnd();
+        }
+    }
+
+    private static LLMStreamListener trackStop(LLMStreamListener listener, AtomicBoolean stopped) {
+        return new LLMStreamListener() {
+            @Override
+            public boolean onToken(String token) {
+                boolean proceed = listener == null || listener.onToken(token);
+                if (!proceed) {
+                    stopped.set(true);
+                }
+                return proceed;
+            }
+
+            @Override
+            public void onUsage(LLMUsage usage) {
+                if (listener != null) {
+                    listener.onUsage(usage);
+                }
+            }
+
+            @Override
+            public void onReused() {
+                if (listener != null) {
+                    listener.onReused();
+                }
+            }
+
+            @Override
+            public void onEnd() {
+                if (listener != null) {
+                    listener.onEnd();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,173 @@
+package framework.llm.cache;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * LLM 响应缓存（两级：内存 LRU + 磁盘）
+ *
+ * - 内存层：按访问顺序淘汰的 LRU，条目数有上限，带 TTL
+ * - 磁盘层（可选）：MappedDiskCacheStore，进程重启后仍可命中；磁盘命中会回填内存层
+ * - 统计命中/未命中次数，见 getStats()
+ *
+ * 一个缓存实例可以被多个 CachingLLMClient 共享（键中已包含模型信息）。
+ */
+public class LLMResponseCache implements AutoCloseable {
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final MappedDiskCacheStore diskStore;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 仅内存缓存
+     *
+     * @param maxEntries 内存条目上限
+     * @param ttl 有效期（为null表示不过期）
+     */
+    public LLMResponseCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, null, 0);
+    }
+
+    /**
+     * 内存 + 磁盘缓存
+     *
+     * @param maxEntries 内存条目上限
+     * @param ttl 有效期（为null表示不过期）
+     * @param diskPath 磁盘缓存文件（为null时不启用磁盘层）
+     * @param diskMaxBytes 磁盘文件大小上限
+     */
+    public LLMResponseCache(int maxEntries, Duration ttl, Path diskPath, long diskMaxBytes) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttl != null ? ttl.toMillis() : 0;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > LLMResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        MappedDiskCacheStore store = null;
+        if (diskPath != null) {
+            try {
+                store = new MappedDiskCacheStore(diskPath, diskMaxBytes, ttlMillis);
+                System.out.println("💾 LLM磁盘缓存已加载: " + diskPath + "（" + store.size() + " 条记录）");
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  LLM磁盘缓存不可用，仅使用内存缓存: " + e.getMessage());
+            }
+        }
+        this.diskStore = store;
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @return 缓存的响应；未命中返回null
+     */
+    public String get(String key) {
+        lock.lock();
+        try {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (!isExpired(entry)) {
+                    memoryHits.incrementAndGet();
+                    return entry.value;
+                }
+                memory.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (diskStore != null) {
+            String value = diskStore.get(key);
+            if (value != null) {
+                diskHits.incrementAndGet();
+                putMemory(key, value);
+                return value;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存（内存 + 磁盘）
+     */
+    public void put(String key, String value) {
+        if (value == null) {
+            return;
+        }
+        stores.incrementAndGet();
+        putMemory(key, value);
+        if (diskStore != null) {
+            diskStore.put(key, value);
+        }
+    }
+
+    /**
+     * 清空内存层（磁盘层保留）
+     */
+    public void clearMemory() {
+        lock.lock();
+        try {
+            memory.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取统计信息快照
+     */
+    public CacheStats getStats() {
+        int memorySize;
+        lock.lock();
+        try {
+            memorySize = memory.size();
+        } finally {
+            lock.unlock();
+        }
+        return new CacheStats(
+            memoryHits.get(), diskHits.get(), misses.get(), stores.get(), evictions.get(),
+            memorySize, diskStore != null ? diskStore.size() : 0
+        );
+    }
+
+    @Override
+    public void close() {
+        if (diskStore != null) {
+            diskStore.close();
+        }
+    }
+
+    private void putMemory(String key, String value) {
+        lock.lock();
+        try {
+            memory.put(key, new Entry(value, System.currentTimeMillis()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt > ttlMillis;
+    }
+
+    private record Entry(String value, long createdAt) {
+    }
+}
@@ -0,0 +1,277 @@
+package framework.llm.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于内存映射文件的追加写缓存存储（LLM 响应缓存的磁盘层）
+ *
+ * 文件格式：
+ * <pre>
+ * [magic "OXYC"][version]
+ * [recordLen][createdAt][keyLen][key bytes][valueLen][value bytes] ...
+ * </pre>
+ * - 只追加不修改，同一个键后写的记录覆盖先写的
+ * - recordLen 最后写入，进程中途崩溃时未写完的记录在下次打开时被忽略
+ * - 打开时顺序扫描一遍，在内存中只保留 键 → 偏移量 的索引，值按需从映射区读取
+ * - 文件写满时按需扩大映射；超过上限时压缩（只保留未过期的最新记录）
+ *
+ * 线程安全：读写均在 ReentrantLock 内进行（不使用 synchronized，避免钉住虚拟线程）
+ */
+public class MappedDiskCacheStore implements AutoCloseable {
+    private static final int MAGIC = 0x4F58_5943; // "OXYC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_OVERHEAD = 4 + 8 + 4 + 4;
+    private static final long INITIAL_MAPPED_SIZE = 1L << 20; // 1MB
+
+    private final Path path;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Long> index = new HashMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long writePosition;
+
+    /**
+     * @param path 缓存文件路径（不存在则创建）
+     * @param maxBytes 文件大小上限，超过时压缩
+     * @param ttlMillis 记录有效期（毫秒，<=0 表示不过期）
+     */
+    public MappedDiskCacheStore(Path path, long maxBytes, long ttlMillis) {
+        this.path = path;
+        // 偏移量使用 int 寻址，单个文件不超过 2GB
+        this.maxBytes = Math.min(Math.max(maxBytes, INITIAL_MAPPED_SIZE), Integer.MAX_VALUE);
+        this.ttlMillis = ttlMillis;
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法打开磁盘缓存: " + path, e);
+        }
+    }
+
+    /**
+     * 读取缓存值
+     *
+     * @return 值；不存在或已过期返回null
+     */
+    public String get(String key) {
+        lock.lock();
+        try {
+            Long offset = index.get(key);
+            if (offset == null) {
+                return null;
+            }
+            int pos = offset.intValue();
+            long createdAt = buffer.getLong(pos + 4);
+            if (isExpired(createdAt)) {
+                index.remove(key);
+                return null;
+            }
+            int keyLen = buffer.getInt(pos + 12);
+            int valuePos = pos + 16 + keyLen;
+            int valueLen = buffer.getInt(valuePos);
+            byte[] value = new byte[valueLen];
+            buffer.get(valuePos + 4, value);
+            return new String(value, StandardCharsets.UTF_8);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 追加写入一条记录
+     */
+    public void put(String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int recordLen = RECORD_OVERHEAD + keyBytes.length + valueBytes.length;
+
+        lock.lock();
+        try {
+            if (writePosition + recordLen > maxBytes) {
+                compact();
+                if (writePosition + recordLen > maxBytes) {
+                    return; // 单条记录超过上限，不写磁盘
+                }
+            }
+            ensureCapacity(writePosition + recordLen);
+
+            int pos = (int) writePosition;
+            buffer.putLong(pos + 4, System.currentTimeMillis());
+            buffer.putInt(pos + 12, keyBytes.length);
+            buffer.put(pos + 16, keyBytes);
+            buffer.putInt(pos + 16 + keyBytes.length, valueBytes.length);
+            buffer.put(pos + 20 + keyBytes.length, valueBytes);
+            // 最后写入长度，标记记录完整
+            buffer.putInt(pos, recordLen);
+
+            index.put(key, writePosition);
+            writePosition += recordLen;
+        } catch (IOException e) {
+            System.err.println("⚠️  磁盘缓存写入失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前索引中的记录数
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 已使用的文件字节数
+     */
+    public long usedBytes() {
+        lock.lock();
+        try {
+            return writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将映射区刷到磁盘
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            buffer.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (channel != null) {
+                buffer.force();
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️  关闭磁盘缓存失败: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(fileSize, INITIAL_MAPPED_SIZE));
+
+        if (fileSize < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            writePosition = HEADER_SIZE;
+            index.clear();
+            return;
+        }
+        scan();
+    }
+
+    /**
+     * 顺序扫描记录重建索引
+     */
+    private void scan() {
+        index.clear();
+        long pos = HEADER_SIZE;
+        long limit = buffer.capacity();
+        while (pos + RECORD_OVERHEAD <= limit) {
+            int recordLen = buffer.getInt((int) pos);
+            if (recordLen < RECORD_OVERHEAD || pos + recordLen > limit) {
+                break;
+            }
+            int keyLen = buffer.getInt((int) pos + 12);
+            if (keyLen < 0 || keyLen > recordLen - RECORD_OVERHEAD) {
+                break;
+            }
+            long createdAt = buffer.getLong((int) pos + 4);
+            byte[] keyBytes = new byte[keyLen];
+            buffer.get((int) pos + 16, keyBytes);
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            if (isExpired(createdAt)) {
+                index.remove(key);
+            } else {
+                index.put(key, pos);
+            }
+            pos += recordLen;
+        }
+        writePosition = pos;
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long newSize = buffer.capacity();
+        while (newSize < required) {
+            newSize *= 2;
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(newSize, maxBytes));
+    }
+
+    /**
+     * 压缩：把未过期的最新记录复制到新文件后替换
+     */
+    private void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(tmp);
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, buffer.capacity());
+            target.putInt(0, MAGIC);
+            target.putInt(4, VERSION);
+            int outPos = HEADER_SIZE;
+            for (Long offset : index.values()) {
+                int pos = offset.intValue();
+                if (isExpired(buffer.getLong(pos + 4))) {
+                    continue;
+                }
+                int recordLen = buffer.getInt(pos);
+                byte[] record = new byte[recordLen];
+                buffer.get(pos, record);
+                target.put(outPos, record);
+                outPos += recordLen;
+            }
+            target.force();
+        }
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+        System.out.println("🗜️  磁盘缓存已压缩: " + index.size() + " 条记录, " + writePosition + " 字节");
+    }
+
+    private boolean isExpired(long createdAt) {
+        return ttlMillis > 0 && System.currentTimeMillis() - createdAt > ttlMillis;
+    }
+}
@@ -0,0 +1,189 @@
+package framework.llm.token;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 字节级 BPE 分词器（框架内部使用，cl100k_base 兼容）
+ *
+ * 词表为 tiktoken 格式（每行 "base64字节 rank"），从本地文件加载，不需要网络。
+ * 与 tiktoken 相同：先用正则切分出片段，再在每个片段的 UTF-8 字节上按 rank 从小到大合并。
+ *
+ * 计数是热路径（每轮 ReAct 都要统计整个提示），因此有两级缓存：
+ * - 片段缓存：常见单词、标点、空白组合只做一次 BPE 合并
+ * - 文本缓存：较长的文本（系统提示、历史观察结果）每轮重复出现，直接命中计数
+ * 缓存超过上限时整体清空（实现简单，且不需要加锁）。
+ *
+ * 特殊 token（如 &lt;|endoftext|&gt;）按普通文本计数。
+ */
+final class BpeTokenizer implements Tokenizer {
+    private static final Pattern CL100K_PATTERN = Pattern.compile(
+        "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+            + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+        Pattern.UNICODE_CHARACTER_CLASS);
+    private static final int MAX_PIECE_CACHE = 65_536;
+    private static final int MAX_TEXT_CACHE = 1_024;
+    private static final int MIN_CACHED_TEXT_LENGTH = 256;
+
+    private final String name;
+    private final Map<String, Integer> ranks; // 键为字节序列（每个字节对应一个 ISO-8859-1 字符）
+    private final Map<String, Integer> pieceCache = new ConcurrentHashMap<>();
+    private final Map<String, Integer> textCache = new ConcurrentHashMap<>();
+
+    private BpeTokenizer(String name, Map<String, Integer> ranks) {
+        this.name = name;
+        this.ranks = ranks;
+    }
+
+    /**
+     * 加载 tiktoken 格式词表
+     */
+    static BpeTokenizer load(Path vocabPath) {
+        Map<String, Integer> ranks = new HashMap<>(200_000);
+        Base64.Decoder decoder = Base64.getDecoder();
+        try (BufferedReader reader = Files.newBufferedReader(vocabPath, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                byte[] bytes = decoder.decode(line.substring(0, space));
+                int rank = Integer.parseInt(line.substring(space + 1).trim());
+                ranks.put(new String(bytes, StandardCharsets.ISO_8859_1), rank);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载词表失败: " + vocabPath, e);
+        }
+        if (ranks.isEmpty()) {
+            throw new IllegalArgumentException("词表为空: " + vocabPath);
+        }
+        String fileName = vocabPath.getFileName().toString();
+        int dot = fileName.indexOf('.');
+        return new BpeTokenizer(dot > 0 ? fileName.substring(0, dot) : fileName, ranks);
+    }
+
+    @Override
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        boolean cacheable = text.length() >= MIN_CACHED_TEXT_LENGTH;
+        if (cacheable) {
+            Integer cached = textCache.get(text);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int total = 0;
+        Matcher matcher = CL100K_PATTERN.matcher(text);
+        while (matcher.find()) {
+            total += countPiece(matcher.group());
+        }
+        if (cacheable) {
+            if (textCache.size() >= MAX_TEXT_CACHE) {
+                textCache.clear();
+            }
+            textCache.put(text, total);
+        }
+        return total;
+    }
+
+    /**
+     * 按片段边界截断（可能比 maxTokens 略少，但不会截断字符）
+     */
+    @Override
+    public String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        int total = 0;
+        Matcher matcher = CL100K_PATTERN.matcher(text);
+        while (matcher.find()) {
+            total += countPiece(matcher.group());
+            if (total > maxTokens) {
+                return text.substring(0, matcher.start());
+            }
+        }
+        return text;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    private int countPiece(String piece) {
+        Integer cached = pieceCache.get(piece);
+        if (cached != null) {
+            return cached;
+        }
+        int count = mergeCount(piece.getBytes(StandardCharsets.UTF_8));
+        if (pieceCache.size() >= MAX_PIECE_CACHE) {
+            pieceCache.clear();
+        }
+        pieceCache.put(piece, count);
+        return count;
+    }
+
+    /**
+     * 对一个片段的字节做 BPE 合并，返回合并后的 token 数
+     *
+     * bounds[j] 为第 j 个 token 的起始位置，pairRanks[j] 为 token j 与 j+1 合并后的 rank；
+     * 每次合并 rank 最小（相同时取最左）的一对，直到没有可合并的相邻对。
+     */
+    private int mergeCount(byte[] bytes) {
+        int n = bytes.length;
+        if (n <= 1 || rank(bytes, 0, n) != Integer.MAX_VALUE) {
+            return n == 0 ? 0 : 1;
+        }
+        int[] bounds = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            bounds[i] = i;
+        }
+        int[] pairRanks = new int[n - 1];
+        for (int j = 0; j < n - 1; j++) {
+            pairRanks[j] = rank(bytes, j, j + 2);
+        }
+        int tokens = n;
+        while (tokens > 1) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int j = 0; j < tokens - 1; j++) {
+                if (pairRanks[j] < bestRank) {
+                    bestRank = pairRanks[j];
+                    best = j;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            // 合并 token best 与 best+1：删除边界 best+1 和对应的合并对
+            System.arraycopy(bounds, best + 2, bounds, best + 1, tokens - best - 1);
+            System.arraycopy(pairRanks, best + 1, pairRanks, best, tokens - best - 2);
+            tokens--;
+            if (best < tokens - 1) {
+                pairRanks[best] = rank(bytes, bounds[best], bounds[best + 2]);
+            }
+            if (best > 0) {
+                pairRanks[best - 1] = rank(bytes, bounds[best - 1], bounds[best + 1]);
+            }
+        }
+        return tokens;
+    }
+
+    private int rank(byte[] bytes, int start, int end) {
+        Integer rank = ranks.get(new String(bytes, start, end - start, StandardCharsets.ISO_8859_1));
+        return rank != null ? rank : Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,188 @@
+package framework.llm.token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 上下文窗口预算（框架核心）
+ *
+ * 发送前统计提示的 token 数，超出"上下文窗口 - 预留输出"时在本地裁剪，
+ * 而不是等提供者返回超长错误（那时已经付出了一次网络往返）。
+ *
+ * 裁剪策略（fit）：
+ * 1. 保留开头和结尾的若干条消息（如系统提示、原始查询、最新一轮），从最早的中间消息开始成对删除，
+ *    成对删除保持 user / assistant 交替
+ * 2. 仍然超出时，截断最长的非系统消息（如超长的工具输出），末尾加截断标记
+ *
+ * 计数由分词器缓存，未超出预算时 fit 直接返回原列表，每轮调用的开销很小。
+ *
+ * 使用示例：
+ * <pre>
+ * ContextBudget budget = new ContextBudget(Tokenizer.cl100k(vocabPath), 65536, 4096);
+ * framework.setContextBudget(budget);
+ * // 或替换全局默认预算（未关联框架的智能体使用）
+ * ContextBudget.setDefaultBudget(budget);
+ * </pre>
+ */
+public class ContextBudget {
+    private static final String TRUNCATED_MARKER = "\n…（内容过长，已截断）";
+    private static final int MIN_TRUNCATED_TOKENS = 32;
+
+    private static volatile ContextBudget defaultBudget = new ContextBudget(Tokenizer.estimating(), 65_536, 4_096);
+
+    private final Tokenizer tokenizer;
+    private final int maxContextTokens;
+    private final int reservedOutputTokens;
+
+    /**
+     * @param tokenizer 分词器
+     * @param maxContextTokens 模型上下文窗口（token）
+     * @param reservedOutputTokens 为输出预留的 token 数
+     */
+    public ContextBudget(Tokenizer tokenizer, int maxContextTokens, int reservedOutputTokens) {
+        if (tokenizer == null) {
+            throw new IllegalArgumentException("分词器不能为空");
+        }
+        if (maxContextTokens <= reservedOutputTokens) {
+            throw new IllegalArgumentException("上下文窗口必须大于预留输出: " + maxContextTokens + " <= " + reservedOutputTokens);
+        }
+        this.tokenizer = tokenizer;
+        this.maxContextTokens = maxContextTokens;
+        this.reservedOutputTokens = reservedOutputTokens;
+    }
+
+    /**
+     * 获取全局默认预算（估算分词器，64K 窗口，预留 4K 输出）
+     */
+    public static ContextBudget defaultBudget() {
+        return defaultBudget;
+    }
+
+    /**
+     * 替换全局默认预算
+     */
+    public static void setDefaultBudget(ContextBudget budget) {
+        if (budget == null) {
+            throw new IllegalArgumentException("上下文预算不能为空");
+        }
+        defaultBudget = budget;
+    }
+
+    public Tokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    public int getMaxContextTokens() {
+        return maxContextTokens;
+    }
+
+    public int getReservedOutputTokens() {
+        return reservedOutputTokens;
+    }
+
+    /**
+     * 提示可用的 token 数（上下文窗口 - 预留输出）
+     */
+    public int getAvailableTokens() {
+        return maxContextTokens - reservedOutputTokens;
+    }
+
+    /**
+     * 文本的 token 数
+     */
+    public int count(String text) {
+        return tokenizer.count(text);
+    }
+
+    /**
+     * 消息列表的 token 数（含格式开销）
+     */
+    public int count(List<Map<String, String>> messages) {
+        return tokenizer.count(messages);
+    }
+
+    /**
+     * 截断文本到 maxTokens 以内（含截断标记），未超出时原样返回
+     */
+    public String truncate(String text, int maxTokens) {
+        if (text == null || tokenizer.count(text) <= maxTokens) {
+            return text;
+        }
+        int bodyTokens = Math.max(0, maxTokens - tokenizer.count(TRUNCATED_MARKER));
+        return tokenizer.truncate(text, bodyTokens) + TRUNCATED_MARKER;
+    }
+
+    /**
+     * 将消息列表裁剪到预算以内
+     *
+     * 不修改传入的列表和消息；未超出时直接返回原列表。
+     *
+     * @param messages 消息列表
+     * @param keepHead 开头保留的消息数（如系统提示、原始查询）
+     * @param keepTail 结尾保留的消息数（如当前查询、最新一轮）
+     * @return 预算以内的消息列表（受保护的消息本身超出预算时，尽量截断后返回）
+     */
+    public List<Map<String, String>> fit(List<Map<String, String>> messages, int keepHead, int keepTail) {
+        int available = getAvailableTokens();
+        int[] costs = new int[messages.size()];
+        int total = Tokenizer.REPLY_PRIMING_TOKENS;
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = Tokenizer.TOKENS_PER_MESSAGE + tokenizer.count(messages.get(i).get("content"));
+            total += costs[i];
+        }
+        if (total <= available) {
+            return messages;
+        }
+        int originalTotal = total;
+
+        // 1. 从最早的中间消息开始成对删除
+        int head = Math.min(keepHead, messages.size());
+        int middleEnd = Math.max(head, messages.size() - keepTail);
+        int dropEnd = head;
+        while (total > available && dropEnd < middleEnd) {
+            int step = Math.min(2, middleEnd - dropEnd);
+            for (int i = 0; i < step; i++) {
+                total -= costs[dropEnd++];
+            }
+        }
+        List<Map<String, String>> fitted = new ArrayList<>(messages.size() - (dropEnd - head));
+        List<Integer> fittedCosts = new ArrayList<>(messages.size() - (dropEnd - head));
+        for (int i = 0; i < messages.size(); i++) {
+            if (i < head || i >= dropEnd) {
+                fitted.add(messages.get(i));
+                fittedCosts.add(costs[i]);
+            }
+        }
+
+        // 2. 仍然超出时，截断最长的非系统消息
+        int truncated = 0;
+        while (total > available) {
+            int longest = -1;
+            for (int i = 0; i < fitted.size(); i++) {
+                if (!"system".equals(fitted.get(i).get("role"))
+                        && fittedCosts.get(i) > MIN_TRUNCATED_TOKENS + Tokenizer.TOKENS_PER_MESSAGE
+                        && (longest < 0 || fittedCosts.get(i) > fittedCosts.get(longest))) {
+                    longest = i;
+                }
+            }
+            if (longest < 0) {
+                break;
+            }
+            int target = Math.max(MIN_TRUNCATED_TOKENS,
+                fittedCosts.get(longest) - Tokenizer.TOKENS_PER_MESSAGE - (total - available));
+            Map<String, String> msg = new HashMap<>(fitted.get(longest));
+            msg.put("content", truncate(msg.get("content"), target));
+            int cost = Tokenizer.TOKENS_PER_MESSAGE + tokenizer.count(msg.get("content"));
+            total += cost - fittedCosts.get(longest);
+            fitted.set(longest, msg);
+            fittedCosts.set(longest, cost);
+            truncated++;
+        }
+
+        System.out.println("    ✂️  上下文超出预算（" + originalTotal + " > " + available + " tokens，" + tokenizer.getName()
+            + "）：省略 " + (dropEnd - head) + " 条较早的消息，截断 " + truncated + " 条消息，裁剪后 " + total + " tokens");
+        return fitted;
+    }
+}
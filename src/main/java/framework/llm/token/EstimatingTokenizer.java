@@ -0,0 +1,60 @@
+package framework.llm.token;
+
+/**
+ * 估算分词器（框架内部使用）
+ *
+ * 没有词表时的兜底：ASCII 约 4 字符一个 token，其他字符（如中文）一个字符一个 token。
+ * 对中文偏保守（实际通常更少），对英文接近 cl100k 的平均值。
+ */
+final class EstimatingTokenizer implements Tokenizer {
+    static final EstimatingTokenizer INSTANCE = new EstimatingTokenizer();
+
+    private EstimatingTokenizer() {
+    }
+
+    @Override
+    public int count(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else if (!Character.isLowSurrogate(text.charAt(i))) {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    @Override
+    public String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        int ascii = 0;
+        int other = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int width = Character.isHighSurrogate(c) && i + 1 < text.length() ? 2 : 1;
+            if (c < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+            if ((ascii + 3) / 4 + other > maxTokens) {
+                return text.substring(0, i);
+            }
+            i += width;
+        }
+        return text;
+    }
+
+    @Override
+    public String getName() {
+        return "estimating";
+    }
+}
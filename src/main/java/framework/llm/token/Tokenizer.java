@@ -0,0 +1,73 @@
+package framework.llm.token;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分词器（框架核心，只用于本地计数和截断，不参与请求编码）
+ *
+ * 用于在发送请求前估算提示长度，超出上下文窗口时由 ContextBudget 裁剪，
+ * 避免请求发到提供者之后才因超长失败。
+ *
+ * 使用示例：
+ * <pre>
+ * // 使用 cl100k_base 词表（tiktoken 格式文件：每行 "base64字节 rank"）
+ * Tokenizer tokenizer = Tokenizer.cl100k(Path.of("/opt/models/cl100k_base.tiktoken"));
+ * // 没有词表时使用估算（ASCII 约 4 字符一个 token，其他字符一个字符一个 token）
+ * Tokenizer estimating = Tokenizer.estimating();
+ * </pre>
+ */
+public interface Tokenizer {
+    /**
+     * 每条消息的格式开销（角色和分隔符）
+     */
+    int TOKENS_PER_MESSAGE = 3;
+
+    /**
+     * 回复引导的固定开销
+     */
+    int REPLY_PRIMING_TOKENS = 3;
+
+    /**
+     * 计算文本的 token 数（null 视为 0）
+     */
+    int count(String text);
+
+    /**
+     * 截取文本开头不超过 maxTokens 个 token 的部分（不会截断字符）
+     */
+    String truncate(String text, int maxTokens);
+
+    /**
+     * 分词器名称（用于日志）
+     */
+    String getName();
+
+    /**
+     * 计算消息列表的 token 数（含每条消息的格式开销）
+     */
+    default int count(List<Map<String, String>> messages) {
+        int total = REPLY_PRIMING_TOKENS;
+        for (Map<String, String> msg : messages) {
+            total += TOKENS_PER_MESSAGE + count(msg.get("content"));
+        }
+        return total;
+    }
+
+    /**
+     * 估算分词器（无需词表）
+     */
+    static Tokenizer estimating() {
+        return EstimatingTokenizer.INSTANCE;
+    }
+
+    /**
+     * 从本地词表文件加载 cl100k_base 兼容的 BPE 分词器
+     *
+     * @param vocabPath tiktoken 格式的词表文件
+     */
+    static Tokenizer cl100k(Path vocabPath) {
+        return BpeTokenizer.load(vocabPath);
+    }
+}
@@ -0,0 +1,247 @@
+package framework.memory;
+
+import framework.llm.token.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReAct 内存压缩策略（框架核心）
+ *
+ * 工具观察（如 read_file 的结果）会在之后每一轮的提示里重复发送，是提示 token 增长的主要来源。
+ * 压缩分两级，都在本地完成，不调用 LLM：
+ * 1. 单条观察：最近 keepRecentRounds 轮保持原文；更早的轮次超过 maxObservationTokens 时，
+ *    按 mode 截断（保留开头和结尾）或抽取式摘要（保留标题、报错、含数字等信息量高的行）
+ * 2. 内存预算：全部轮次超过 memoryBudgetTokens 时，从最早的轮次开始把观察替换为简短引用
+ *
+ * 每轮只有刚离开"最近轮次"的那条观察会被改写，之前的消息保持不变，提供者前缀缓存仍可命中大部分提示。
+ *
+ * 使用示例：
+ * <pre>
+ * agent.setCompactionPolicy(CompactionPolicy.summarize(800).withBudget(12_000, 2));
+ * agent.setCompactionPolicy(CompactionPolicy.none()); // 关闭压缩
+ * </pre>
+ */
+public final class CompactionPolicy {
+    private static final CompactionPolicy NONE = new CompactionPolicy(Mode.NONE, Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+    private static final CompactionPolicy DEFAULTS = new CompactionPolicy(Mode.SUMMARIZE, 800, 12_000, 2);
+
+    /**
+     * 单条观察的压缩方式
+     */
+    public enum Mode {
+        /** 不压缩单条观察（仍受内存预算约束） */
+        NONE,
+        /** 保留开头和结尾，中间省略 */
+        TRUNCATE,
+        /** 抽取式摘要，信息量低时退化为 TRUNCATE */
+        SUMMARIZE
+    }
+
+    private final Mode mode;
+    private final int maxObservationTokens;
+    private final int memoryBudgetTokens;
+    private final int keepRecentRounds;
+
+    /**
+     * @param mode 单条观察的压缩方式
+     * @param maxObservationTokens 单条旧观察的上限（token）
+     * @param memoryBudgetTokens 全部轮次的上限（token），超出后旧观察替换为引用
+     * @param keepRecentRounds 保持原文的最近轮数
+     */
+    public CompactionPolicy(Mode mode, int maxObservationTokens, int memoryBudgetTokens, int keepRecentRounds) {
+        if (maxObservationTokens <= 0 || memoryBudgetTokens <= 0) {
+            throw new IllegalArgumentException("压缩上限必须大于0: " + maxObservationTokens + ", " + memoryBudgetTokens);
+        }
+        this.mode = mode != null ? mode : Mode.NONE;
+        this.maxObservationTokens = maxObservationTokens;
+        this.memoryBudgetTokens = memoryBudgetTokens;
+        this.keepRecentRounds = Math.max(0, keepRecentRounds);
+    }
+
+    /**
+     * 不压缩（保留全部原文）
+     */
+    public static CompactionPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * 默认策略：旧观察摘要到 800 tokens，内存超过 12000 tokens 后替换为引用，最近 2 轮保持原文
+     */
+    public static CompactionPolicy defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * 旧观察保留开头和结尾（使用默认内存预算）
+     */
+    public static CompactionPolicy truncate(int maxObservationTokens) {
+        return new CompactionPolicy(Mode.TRUNCATE, maxObservationTokens, DEFAULTS.memoryBudgetTokens, DEFAULTS.keepRecentRounds);
+    }
+
+    /**
+     * 旧观察做抽取式摘要（使用默认内存预算）
+     */
+    public static CompactionPolicy summarize(int maxObservationTokens) {
+        return new CompactionPolicy(Mode.SUMMARIZE, maxObservationTokens, DEFAULTS.memoryBudgetTokens, DEFAULTS.keepRecentRounds);
+    }
+
+    /**
+     * 替换内存预算和保持原文的轮数
+     */
+    public CompactionPolicy withBudget(int memoryBudgetTokens, int keepRecentRounds) {
+        return new CompactionPolicy(mode, maxObservationTokens, memoryBudgetTokens, keepRecentRounds);
+    }
+
+    public boolean isEnabled() {
+        return this != NONE;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxObservationTokens() {
+        return maxObservationTokens;
+    }
+
+    public int getMemoryBudgetTokens() {
+        return memoryBudgetTokens;
+    }
+
+    public int getKeepRecentRounds() {
+        return keepRecentRounds;
+    }
+
+    /**
+     * 压缩单条观察（未超出上限时原样返回）
+     */
+    String compress(String observation, Tokenizer tokenizer) {
+        if (mode == Mode.NONE || observation == null) {
+            return observation;
+        }
+        int tokens = tokenizer.count(observation);
+        if (tokens <= maxObservationTokens) {
+            return observation;
+        }
+        if (mode == Mode.SUMMARIZE) {
+            String summary = summarize(observation, tokens, tokenizer);
+            if (summary != null) {
+                return summary;
+            }
+        }
+        return headTail(observation, tokens);
+    }
+
+    /**
+     * 保留开头 2/3 和结尾 1/3（按字符比例近似 token 上限）
+     */
+    private String headTail(String text, int tokens) {
+        int keepChars = (int) ((long) text.length() * maxObservationTokens / tokens);
+        int head = keepChars * 2 / 3;
+        int tail = keepChars - head;
+        return text.substring(0, head)
+            + "\n…（省略约 " + (tokens - maxObservationTokens) + " tokens）…\n"
+            + text.substring(text.length() - tail);
+    }
+
+    /**
+     * 抽取式摘要：按行打分，在上限内保留得分最高的行并保持原有顺序
+     *
+     * @return 摘要；行数太少（如一整段 JSON）时返回 null，由调用方退化为截断
+     */
+    private String summarize(String text, int tokens, Tokenizer tokenizer) {
+        String[] lines = text.split("\n");
+        if (lines.length < 4) {
+            return null;
+        }
+        String header = "（摘要，原文约 " + tokens + " tokens）";
+        int budget = maxObservationTokens - tokenizer.count(header);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            if (!lines[i].isBlank()) {
+                order.add(i);
+            }
+        }
+        int[] scores = new int[lines.length];
+        for (int i : order) {
+            scores[i] = score(lines[i], i);
+        }
+        order.sort((a, b) -> scores[a] != scores[b] ? Integer.compare(scores[b], scores[a]) : Integer.compare(a, b));
+        boolean[] kept = new boolean[lines.length];
+        int used = 0;
+        int count = 0;
+        for (int i : order) {
+            int cost = tokenizer.count(lines[i]) + 1;
+            if (used + cost > budget) {
+                continue;
+            }
+            kept[i] = true;
+            used += cost;
+            count++;
+        }
+        if (count == 0) {
+            return null;
+        }
+        StringBuilder summary = new StringBuilder(header);
+        boolean gap = false;
+        for (int i = 0; i < lines.length; i++) {
+            if (kept[i]) {
+                summary.append('\n');
+                if (gap) {
+                    summary.append("…\n");
+                    gap = false;
+                }
+                summary.append(lines[i]);
+            } else if (!lines[i].isBlank()) {
+                gap = true;
+            }
+        }
+        if (gap) {
+            summary.append("\n…");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * 行的信息量：开头的行、标题、报错、含数字或键值的行优先，空洞的长行和分隔线靠后
+     */
+    private static int score(String line, int index) {
+        String trimmed = line.trim();
+        int score = 0;
+        if (index < 3) {
+            score += 4;
+        }
+        if (trimmed.startsWith("#") || trimmed.endsWith(":") || trimmed.endsWith("：")) {
+            score += 3;
+        }
+        String lower = trimmed.toLowerCase();
+        if (lower.contains("error") || lower.contains("exception") || lower.contains("fail")
+                || trimmed.contains("错误") || trimmed.contains("失败") || trimmed.contains("异常")) {
+            score += 3;
+        }
+        if (trimmed.chars().anyMatch(Character::isDigit)) {
+            score += 1;
+        }
+        if (trimmed.contains(":") || trimmed.contains("：") || trimmed.contains("=")) {
+            score += 1;
+        }
+        if (trimmed.length() > 200) {
+            score -= 2;
+        }
+        if (trimmed.chars().allMatch(c -> c == '-' || c == '=' || c == '*' || c == '|' || c == ' ')) {
+            score -= 5;
+        }
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        if (!isEnabled()) {
+            return "不压缩";
+        }
+        return mode + "（单条观察 " + maxObservationTokens + " tokens，内存 " + memoryBudgetTokens
+            + " tokens，保留最近 " + keepRecentRounds + " 轮）";
+    }
+}
@@ -1,5 +1,7 @@
 package framework.memory;
 
+import framework.llm.token.Tokenizer;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -8,19 +10,115 @@ import java.util.HashMap;
 /**
  * ReAct内存管理（框架核心）
  * 用于记录ReAct循环中的思考和观察
+ *
+ * 同时增量维护发送给 LLM 的消息列表：前缀消息（如系统提示、原始查询）在创建时加入，
+ * 每轮只追加一对 assistant（思考）/ user（观察）消息，不需要每轮从头重建整个上下文。
+ *
+ * 设置压缩策略（CompactionPolicy）后，离开最近轮次的观察被压缩，超出内存预算时最早的观察替换为引用，
+ * 只改写对应的那条消息。
  */
 public class ReactMemory {
     
     private List<Round> rounds = new ArrayList<>();
+    private final List<Map<String, String>> messages = new ArrayList<>();
+    private final int prefixSize;
+    private final CompactionPolicy policy;
+    private final Tokenizer tokenizer;
+    private int compactedRounds = 0;  // 已经按单条上限压缩过的轮数（从最早的轮次开始）
+    private int referencedRounds = 0; // 观察已替换为引用的轮数（从最早的轮次开始）
+    private long roundTokens = 0;     // 各轮思考和观察的 token 数之和（启用压缩时统计）
+    
+    public ReactMemory() {
+        this(null);
+    }
+    
+    /**
+     * @param prefix 每轮请求都以这些消息开头（如系统提示、原始查询）
+     */
+    public ReactMemory(List<Map<String, String>> prefix) {
+        this(prefix, CompactionPolicy.none(), null);
+    }
+    
+    /**
+     * @param prefix 每轮请求都以这些消息开头（如系统提示、原始查询）
+     * @param policy 压缩策略（为null时不压缩）
+     * @param tokenizer 计数用的分词器（为null时使用估算分词器）
+     */
+    public ReactMemory(List<Map<String, String>> prefix, CompactionPolicy policy, Tokenizer tokenizer) {
+        if (prefix != null) {
+            messages.addAll(prefix);
+        }
+        this.prefixSize = messages.size();
+        this.policy = policy != null ? policy : CompactionPolicy.none();
+        this.tokenizer = tokenizer != null ? tokenizer : Tokenizer.estimating();
+    }
     
     public void addRound(String thought, String observation) {
-        rounds.add(new Round(thought, observation));
+        thought = thought != null ? thought : "";
+        observation = observation != null ? observation : "";
+        Round round = new Round(thought, observation);
+        rounds.add(round);
+        messages.add(message("assistant", thought));
+        messages.add(message("user", observation));
+        if (policy.isEnabled()) {
+            round.originalTokens = tokenizer.count(observation);
+            round.tokens = tokenizer.count(thought) + round.originalTokens;
+            roundTokens += round.tokens;
+            compact();
+        }
+    }
+    
+    /**
+     * 按策略压缩：先压缩离开最近轮次的观察，仍超出内存预算时从最早的轮次开始替换为引用
+     */
+    private void compact() {
+        int agedRounds = rounds.size() - policy.getKeepRecentRounds();
+        while (compactedRounds < agedRounds) {
+            int index = compactedRounds++;
+            Round round = rounds.get(index);
+            if (index >= referencedRounds) {
+                String compressed = policy.compress(round.observation, tokenizer);
+                if (!compressed.equals(round.observation)) {
+                    replaceObservation(index, compressed);
+                }
+            }
+        }
+        while (roundTokens > policy.getMemoryBudgetTokens() && referencedRounds < agedRounds) {
+            int index = referencedRounds++;
+            Round round = rounds.get(index);
+            String reference = "（第 " + (index + 1) + " 轮的观察已省略，约 " + round.originalTokens + " tokens）";
+            replaceObservation(index, reference);
+        }
+    }
+    
+    private void replaceObservation(int index, String observation) {
+        Round round = rounds.get(index);
+        int thoughtTokens = round.tokens - tokenizer.count(round.observation);
+        round.observation = observation;
+        round.compacted = true;
+        int tokens = thoughtTokens + tokenizer.count(observation);
+        roundTokens += tokens - round.tokens;
+        round.tokens = tokens;
+        messages.set(prefixSize + 2 * index + 1, message("user", observation));
+    }
+    
+    public CompactionPolicy getCompactionPolicy() {
+        return policy;
     }
     
     public List<Round> getRounds() {
         return rounds;
     }
     
+    /**
+     * 当前的完整消息列表（前缀 + 各轮思考/观察）
+     *
+     * 返回不可变快照（只复制引用，不复制消息）：请求发出后内存继续追加也不会影响仍在进行的调用
+     */
+    public List<Map<String, String>> getMessages() {
+        return List.copyOf(messages);
+    }
+    
     public List<Map<String, String>> toHistory() {
         List<Map<String, String>> history = new ArrayList<>();
         for (Round round : rounds) {
@@ -32,9 +130,16 @@ public class ReactMemory {
         return history;
     }
     
+    private static Map<String, String> message(String role, String content) {
+        return Map.of("role", role, "content", content);
+    }
+    
     public static class Round {
         private String thought;
         private String observation;
+        private boolean compacted;
+        private int tokens;         // 思考和当前观察的 token 数
+        private int originalTokens; // 压缩前观察的 token 数
         
         public Round(String thought, String observation) {
             this.thought = thought;
@@ -45,9 +150,15 @@ public class ReactMemory {
             return thought;
         }
         
+        /**
+         * 当前的观察（可能已被压缩或替换为引用）
+         */
         public String getObservation() {
             return observation;
         }
+        
+        public boolean isCompacted() {
+            return compacted;
+        }
     }
 }
-
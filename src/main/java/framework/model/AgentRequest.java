@@ -3,6 +3,7 @@ package framework.model;
 import framework.agent.Agent;
 import framework.agent.AgentFramework;
 import framework.tool.Tool;
+import framework.tool.ToolResultCache;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -190,6 +191,13 @@ public class AgentRequest {
      */
     private Map<String, Object> groupData = new HashMap<>();  // 会话级共享数据（同group内共享）
     
+    /**
+     * 工具结果缓存（与 sharedData 一样在同一条调用链内共享）
+     * 幂等工具以相同参数再次调用时直接复用结果，并发的重复调用只执行一次；
+     * 写入类工具执行前后自动清空，也可以通过 getToolResultCache().invalidate() 显式失效
+     */
+    private ToolResultCache toolResultCache = new ToolResultCache();  // 调用链级工具结果缓存
+    
     // ==================== 框架引用 ====================
     
     /**
@@ -246,6 +254,15 @@ public class AgentRequest {
      */
     private List<String> rootTraceIds = new ArrayList<>();  // 根追踪ID列表
     
+    /**
+     * LLM 用量与耗时统计（本请求整棵调用子树的汇总）
+     * 用于：
+     * - 成本核算：智能体执行结束时写入 AgentResponse.extra
+     * - 向上汇总：cloneWith() 生成的子请求以本请求的统计为上级，子树中的每次 LLM 调用都会累加到这里
+     * 特点：不共享引用，每个请求各自一份，只沿调用链向上累加
+     */
+    private UsageStats usageStats = new UsageStats();  // 调用子树用量统计
+    
     public AgentRequest(String query, String traceId, String caller, String targetAgent) {
         this.query = query;
         this.traceId = traceId != null ? traceId : UUID.randomUUID().toString();
@@ -274,6 +291,7 @@ public class AgentRequest {
         // 复制上下文数据（共享引用）
         cloned.sharedData = this.sharedData;
         cloned.groupData = this.groupData;
+        cloned.toolResultCache = this.toolResultCache;
         
         // 复制调用栈
         cloned.callStack = new ArrayList<>(this.callStack);
@@ -314,6 +332,7 @@ public class AgentRequest {
         cloned.groupId = this.groupId;
         cloned.fromTraceId = this.traceId;
         cloned.rootTraceIds = new ArrayList<>(this.rootTraceIds);
+        cloned.usageStats = new UsageStats(this.usageStats);
         
         return cloned;
     }
@@ -328,6 +347,7 @@ public class AgentRequest {
      * 数据共享：自动传递 sharedData 和 groupData
      * 设计原则
      * 符合“单一职责”和“封装”原则：AgentRequest.call() 负责调用链管理，ReActAgent 只需关注 ReAct 循环逻辑，职责清晰。
+     * 成本汇总：被调用方子树的 LLM 用量已累加到本请求的 usageStats，并写入返回响应的 extra（被调用方未写入时）
      */
 
     public CompletableFuture<AgentResponse> call(String callee, Map<String, Object> arguments) {
@@ -345,6 +365,20 @@ public class AgentRequest {
         // 克隆请求
         AgentRequest calleeRequest = cloneWith(callee, arguments);
         
+        return dispatch(callee, arguments, calleeRequest).thenApply(response -> {
+            if (response != null && response.getExtra() != null
+                    && !response.getExtra().containsKey(UsageStats.LLM_CALLS)) {
+                calleeRequest.getUsageStats().writeTo(response.getExtra());
+            }
+            return response;
+        });
+    }
+    
+    /**
+     * 校验并分派到目标智能体或工具
+     */
+    private CompletableFuture<AgentResponse> dispatch(String callee, Map<String, Object> arguments,
+                                                      AgentRequest calleeRequest) {
         // 检查智能体是否存在
         if (!framework.getAllAgents().contains(callee) && !framework.hasTool(callee)) {
             return CompletableFuture.completedFuture(
@@ -409,33 +443,33 @@ public class AgentRequest {
         } catch (IllegalArgumentException e) {
             // 可能是工具，尝试调用工具
             if (framework.hasTool(callee)) {
-                return CompletableFuture.supplyAsync(() -> {
-                    try {
-                        Tool tool = framework.getTool(callee);
-                        Map<String, Object> toolArgs = calleeRequest.getArguments();
-                        if (arguments != null) {
-                            toolArgs.putAll(arguments);
-                        }
-                        
-                        AgentRequest toolRequest = new AgentRequest(
-                            (String) toolArgs.getOrDefault("query", ""),
-                            calleeRequest.getTraceId(),
-                            calleeRequest.getCaller(),
-                            callee
-                        );
-                        toolRequest.getArguments().putAll(toolArgs);
-                        
-                        // 工具返回的是 CompletableFuture<AgentResponse>，需要 join()
-                        return tool.execute(toolRequest).join();
-                    } catch (Exception ex) {
-                        return new AgentResponse(
-                            AgentState.FAILED,
-                            "Tool execution failed: " + ex.getMessage(),
-                            null,
-                            null
-                        );
-                    }
-                });
+                Tool tool = framework.getTool(callee);
+                Map<String, Object> toolArgs = calleeRequest.getArguments();
+                if (arguments != null) {
+                    toolArgs.putAll(arguments);
+                }
+                
+                // 幂等工具在调用链内复用结果，写入类工具执行前后清空缓存
+                // 通过执行引擎调度工具调用，工具返回的 future 直接组合，不阻塞线程
+                return toolResultCache.call(tool, toolArgs, () -> framework.getExecutionEngine().submit(() -> {
+                    AgentRequest toolRequest = new AgentRequest(
+                        (String) toolArgs.getOrDefault("query", ""),
+                        calleeRequest.getTraceId(),
+                        calleeRequest.getCaller(),
+                        callee
+                    );
+                    toolRequest.getArguments().putAll(toolArgs);
+                    toolRequest.setFramework(framework);
+                    
+                    return tool.execute(toolRequest);
+                })
+                    .thenCompose(future -> future)
+                    .exceptionally(ex -> new AgentResponse(
+                        AgentState.FAILED,
+                        "Tool execution failed: " + (ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage()),
+                        null,
+                        null
+                    )));
             }
             
             return CompletableFuture.completedFuture(
@@ -450,6 +484,10 @@ public class AgentRequest {
     }
     
     // Getters and Setters
+    public UsageStats getUsageStats() {
+        return usageStats;
+    }
+    
     public String getQuery() {
         return query;
     }
@@ -570,6 +608,10 @@ public class AgentRequest {
         this.arguments = arguments;
     }
     
+    public ToolResultCache getToolResultCache() {
+        return toolResultCache;
+    }
+    
     public Map<String, Object> getSharedData() {
         return sharedData;
     }
@@ -0,0 +1,181 @@
+package framework.model;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LLM 用量与耗时统计（按调用子树汇总）
+ *
+ * 每个 AgentRequest 持有一个统计对象；cloneWith() 生成子请求时，子请求的统计以父请求的统计为上级，
+ * 记录到子请求的数据会同时累加到所有上级。因此某个请求的统计即为它整棵调用子树的总成本，
+ * 包括 token 数（提示 / 输出 / 命中前缀缓存）、LLM 调用次数、首字节耗时和总耗时。
+ * 由响应缓存或合并的相同调用提供结果的调用不发往提供者，单独计为命中（llm_hits），不计入调用次数和耗时。
+ *
+ * 智能体执行结束时通过 writeTo() 写入 AgentResponse.extra。用量可能在调用结果返回后才到达，
+ * 写入前可短暂等待 whenSettled()；仍未到达时在 extra 中标记 usage_pending，
+ * 之后到达的用量照常累加到本统计对象（及所有上级）。
+ */
+public class UsageStats {
+    public static final String LLM_CALLS = "llm_calls";
+    public static final String LLM_HITS = "llm_hits";
+    public static final String PROMPT_TOKENS = "prompt_tokens";
+    public static final String COMPLETION_TOKENS = "completion_tokens";
+    public static final String CACHED_PROMPT_TOKENS = "cached_prompt_tokens";
+    public static final String TOTAL_TOKENS = "total_tokens";
+    public static final String TTFB_MS_TOTAL = "ttfb_ms_total";
+    public static final String TTFB_MS_MAX = "ttfb_ms_max";
+    public static final String LATENCY_MS_TOTAL = "llm_latency_ms_total";
+    public static final String LATENCY_MS_MAX = "llm_latency_ms_max";
+    public static final String USAGE_PENDING = "usage_pending";
+
+    private final UsageStats parent;
+    private final AtomicLong llmCalls = new AtomicLong();
+    private final AtomicLong llmHits = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicLong cachedPromptTokens = new AtomicLong();
+    private final AtomicLong ttfbNanosTotal = new AtomicLong();
+    private final AtomicLong ttfbNanosMax = new AtomicLong();
+    private final AtomicLong latencyNanosTotal = new AtomicLong();
+    private final AtomicLong latencyNanosMax = new AtomicLong();
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    public UsageStats() {
+        this(null);
+    }
+
+    /**
+     * @param parent 上级统计（为 null 表示调用树的根）
+     */
+    public UsageStats(UsageStats parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * 记录一次 LLM 调用的耗时
+     *
+     * @param ttfbNanos 首字节（首个 token）耗时
+     * @param latencyNanos 总耗时
+     */
+    public void recordLatency(long ttfbNanos, long latencyNanos) {
+        for (UsageStats stats = this; stats != null; stats = stats.parent) {
+            stats.llmCalls.incrementAndGet();
+            stats.ttfbNanosTotal.addAndGet(ttfbNanos);
+            stats.ttfbNanosMax.accumulateAndGet(ttfbNanos, Math::max);
+            stats.latencyNanosTotal.addAndGet(latencyNanos);
+            stats.latencyNanosMax.accumulateAndGet(latencyNanos, Math::max);
+        }
+    }
+
+    /**
+     * 记录一次由缓存或合并的相同调用提供结果的 LLM 调用（没有发往提供者）
+     */
+    public void recordHit() {
+        for (UsageStats stats = this; stats != null; stats = stats.parent) {
+            stats.llmHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * 登记一次尚未结束计量的调用（只登记在本统计上），完成后自动移除
+     */
+    public void track(CompletableFuture<?> metering) {
+        pending.add(metering);
+        metering.whenComplete((value, ex) -> pending.remove(metering));
+    }
+
+    /**
+     * 所有已登记调用的计量都结束（用量已到达或不会再到达）时完成
+     */
+    public CompletableFuture<Void> whenSettled() {
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * 记录一次 LLM 调用的 token 用量（提供者在流末尾返回，可能晚于 recordLatency）
+     */
+    public void recordTokens(long prompt, long completion, long cachedPrompt) {
+        for (UsageStats stats = this; stats != null; stats = stats.parent) {
+            stats.promptTokens.addAndGet(prompt);
+            stats.completionTokens.addAndGet(completion);
+            stats.cachedPromptTokens.addAndGet(cachedPrompt);
+        }
+    }
+
+    public long getLlmCalls() {
+        return llmCalls.get();
+    }
+
+    public long getLlmHits() {
+        return llmHits.get();
+    }
+
+    public long getPromptTokens() {
+        return promptTokens.get();
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens.get();
+    }
+
+    public long getCachedPromptTokens() {
+        return cachedPromptTokens.get();
+    }
+
+    public long getTotalTokens() {
+        return promptTokens.get() + completionTokens.get();
+    }
+
+    public long getTtfbMillisTotal() {
+        return ttfbNanosTotal.get() / 1_000_000;
+    }
+
+    public long getTtfbMillisMax() {
+        return ttfbNanosMax.get() / 1_000_000;
+    }
+
+    public long getLatencyMillisTotal() {
+        return latencyNanosTotal.get() / 1_000_000;
+    }
+
+    public long getLatencyMillisMax() {
+        return latencyNanosMax.get() / 1_000_000;
+    }
+
+    /**
+     * 是否尚无任何 LLM 调用
+     */
+    public boolean isEmpty() {
+        return llmCalls.get() == 0 && llmHits.get() == 0 && promptTokens.get() == 0 && completionTokens.get() == 0;
+    }
+
+    /**
+     * 将当前汇总写入响应的 extra
+     */
+    public void writeTo(Map<String, Object> extra) {
+        if (extra == null) {
+            return;
+        }
+        extra.put(LLM_CALLS, getLlmCalls());
+        extra.put(LLM_HITS, getLlmHits());
+        extra.put(PROMPT_TOKENS, getPromptTokens());
+        extra.put(COMPLETION_TOKENS, getCompletionTokens());
+        extra.put(CACHED_PROMPT_TOKENS, getCachedPromptTokens());
+        extra.put(TOTAL_TOKENS, getTotalTokens());
+        extra.put(TTFB_MS_TOTAL, getTtfbMillisTotal());
+        extra.put(TTFB_MS_MAX, getTtfbMillisMax());
+        extra.put(LATENCY_MS_TOTAL, getLatencyMillisTotal());
+        extra.put(LATENCY_MS_MAX, getLatencyMillisMax());
+    }
+
+    @Override
+    public String toString() {
+        return "LLM调用 " + getLlmCalls() + " 次（命中 " + getLlmHits() + " 次）, tokens " + getTotalTokens()
+            + " (提示 " + getPromptTokens() + ", 缓存命中 " + getCachedPromptTokens()
+            + ", 输出 " + getCompletionTokens() + "), 首字节合计 " + getTtfbMillisTotal()
+            + "ms, 耗时合计 " + getLatencyMillisTotal() + "ms";
+    }
+}
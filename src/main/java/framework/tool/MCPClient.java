@@ -42,11 +42,21 @@ public interface MCPClient {
         private String name;
         private String description;
         private Map<String, Object> inputSchema;
+        private Map<String, Object> annotations;
         
         public MCPToolInfo(String name, String description, Map<String, Object> inputSchema) {
+            this(name, description, inputSchema, null);
+        }
+        
+        /**
+         * @param annotations 工具注解（readOnlyHint、destructiveHint 等，服务器未声明时为 null）
+         */
+        public MCPToolInfo(String name, String description, Map<String, Object> inputSchema,
+                           Map<String, Object> annotations) {
             this.name = name;
             this.description = description;
             this.inputSchema = inputSchema;
+            this.annotations = annotations;
         }
         
         public String getName() {
@@ -60,6 +70,18 @@ public interface MCPClient {
         public Map<String, Object> getInputSchema() {
             return inputSchema;
         }
+        
+        public Map<String, Object> getAnnotations() {
+            return annotations;
+        }
+        
+        /**
+         * 服务器声明的 readOnlyHint（未声明时为 null）
+         */
+        public Boolean getReadOnlyHint() {
+            Object hint = annotations != null ? annotations.get("readOnlyHint") : null;
+            return hint instanceof Boolean readOnly ? readOnly : null;
+        }
     }
 }
 
@@ -2,6 +2,7 @@ package framework.tool;
 
 import framework.model.AgentRequest;
 import framework.model.AgentResponse;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -15,12 +16,32 @@ public class MCPTool implements Tool {
     private final String description;
     private final MCPClient mcpClient;
     private final String serverName;
+    private final Map<String, Object> inputSchema;
+    private final boolean readOnly;
     
     public MCPTool(String name, String description, MCPClient mcpClient, String serverName) {
+        this(name, description, mcpClient, serverName, null);
+    }
+    
+    /**
+     * @param inputSchema MCP 服务器声明的参数 JSON Schema（tools/list 的 inputSchema）
+     */
+    public MCPTool(String name, String description, MCPClient mcpClient, String serverName,
+                   Map<String, Object> inputSchema) {
+        this(name, description, mcpClient, serverName, inputSchema, false);
+    }
+    
+    /**
+     * @param readOnly 是否只读（只读工具的结果在调用链内复用，其他 MCP 工具视为写入类工具）
+     */
+    public MCPTool(String name, String description, MCPClient mcpClient, String serverName,
+                   Map<String, Object> inputSchema, boolean readOnly) {
         this.name = name;
         this.description = description;
         this.mcpClient = mcpClient;
         this.serverName = serverName;
+        this.inputSchema = inputSchema;
+        this.readOnly = readOnly;
     }
     
     @Override
@@ -39,6 +60,21 @@ public class MCPTool implements Tool {
         return description;
     }
     
+    @Override
+    public Map<String, Object> getInputSchema() {
+        return inputSchema;
+    }
+    
+    @Override
+    public boolean isIdempotent() {
+        return readOnly;
+    }
+    
+    @Override
+    public boolean isWriting() {
+        return !readOnly;
+    }
+    
     public MCPClient getMCPClient() {
         return mcpClient;
     }
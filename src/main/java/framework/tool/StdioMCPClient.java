@@ -1,6 +1,8 @@
 package framework.tool;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import framework.execution.ExecutionEngine;
+import framework.execution.PinningDiagnostics;
 import framework.model.AgentRequest;
 import framework.model.AgentResponse;
 import framework.model.AgentState;
@@ -16,12 +18,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Stdio MCP 客户端（框架核心）
  * 
  * 通过标准输入输出与 MCP 服务器进程通信
  * 类似于 Python 版本的 StdioMCPClient
+ * 
+ * 管道是共享资源，一次请求-响应必须独占管道：这里使用 ReentrantLock 而不是 synchronized，
+ * 避免虚拟线程在等待管道时钉住载体线程；管道读写本身属于本地 I/O，
+ * 通过 PinningDiagnostics.blockingSection() 统计其耗时。
  */
 public class StdioMCPClient implements MCPClient {
     private final String name;
@@ -33,6 +40,7 @@ public class StdioMCPClient implements MCPClient {
     private PrintWriter writer;
     private final ObjectMapper objectMapper;
     private List<MCPToolInfo> tools;
+    private final ReentrantLock pipeLock = new ReentrantLock();  // 保证请求-响应成对读写
     
     public StdioMCPClient(String name, String description, Map<String, Object> params) {
         this.name = name;
@@ -131,12 +139,10 @@ public class StdioMCPClient implements MCPClient {
         request.put("params", new HashMap<>());
         
         String requestJson = objectMapper.writeValueAsString(request);
-        writer.println(requestJson);
-        writer.flush();
         
         // 读取响应（简化版本）
         // 在实际实现中，需要完整的 JSON-RPC 响应解析
-        String response = readMCPResponse();
+        String response = exchange(requestJson);
         
         // 解析工具列表（简化版本）
         // 在实际实现中，需要解析完整的 MCP 响应格式
@@ -145,6 +151,20 @@ public class StdioMCPClient implements MCPClient {
         return tools;
     }
     
+    /**
+     * 发送一条 JSON-RPC 请求并读取响应（独占管道）
+     */
+    private String exchange(String requestJson) throws Exception {
+        pipeLock.lock();
+        try (PinningDiagnostics.Section section = PinningDiagnostics.blockingSection("mcp-stdio:" + name)) {
+            writer.println(requestJson);
+            writer.flush();
+            return readMCPResponse();
+        } finally {
+            pipeLock.unlock();
+        }
+    }
+    
     /**
      * 读取 MCP 响应（简化版本）
      */
@@ -185,8 +205,9 @@ public class StdioMCPClient implements MCPClient {
                         String toolName = (String) toolData.get("name");
                         String toolDesc = (String) toolData.get("description");
                         Map<String, Object> inputSchema = (Map<String, Object>) toolData.get("inputSchema");
+                        Map<String, Object> annotations = (Map<String, Object>) toolData.get("annotations");
                         
-                        toolList.add(new MCPToolInfo(toolName, toolDesc, inputSchema));
+                        toolList.add(new MCPToolInfo(toolName, toolDesc, inputSchema, annotations));
                     }
                 }
             }
@@ -201,7 +222,10 @@ public class StdioMCPClient implements MCPClient {
     
     @Override
     public CompletableFuture<AgentResponse> callTool(String toolName, Map<String, Object> arguments, AgentRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        ExecutionEngine engine = request != null && request.getFramework() != null
+            ? request.getFramework().getExecutionEngine()
+            : ExecutionEngine.defaultEngine();
+        return engine.submit(() -> {
             try {
                 // 发送工具调用请求（JSON-RPC 格式）
                 Map<String, Object> rpcRequest = new HashMap<>();
@@ -215,11 +239,9 @@ public class StdioMCPClient implements MCPClient {
                 rpcRequest.put("params", params);
                 
                 String requestJson = objectMapper.writeValueAsString(rpcRequest);
-                writer.println(requestJson);
-                writer.flush();
                 
-                // 读取响应
-                String response = readMCPResponse();
+                // 发送请求并读取响应
+                String response = exchange(requestJson);
                 
                 // 解析响应（传递 request 对象）
                 return parseToolResponse(response, request);
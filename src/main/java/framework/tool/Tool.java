@@ -2,6 +2,7 @@ package framework.tool;
 
 import framework.model.AgentRequest;
 import framework.model.AgentResponse;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -24,5 +25,30 @@ public interface Tool {
      * 获取工具描述
      */
     String getDescription();
+    
+    /**
+     * 获取参数的 JSON Schema（用于原生函数调用）
+     * 
+     * 默认返回 null，表示只接受一个 query 字符串参数
+     */
+    default Map<String, Object> getInputSchema() {
+        return null;
+    }
+    
+    /**
+     * 是否幂等（只读）：相同参数多次调用返回相同结果且没有副作用
+     * 
+     * 幂等工具的结果在同一条调用链内复用（见 ToolResultCache），默认 false
+     */
+    default boolean isIdempotent() {
+        return false;
+    }
+    
+    /**
+     * 是否写入外部状态：执行前后清空调用链内缓存的工具结果，默认 false
+     */
+    default boolean isWriting() {
+        return false;
+    }
 }
 
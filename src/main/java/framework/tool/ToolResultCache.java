@@ -0,0 +1,127 @@
+package framework.tool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import framework.model.AgentResponse;
+import framework.model.AgentState;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 工具结果缓存（框架核心，作用域为一次请求的整棵调用树）
+ *
+ * 同一条调用链中，不同子智能体经常以相同参数调用同一个只读工具（如 requirement_agent 和 code_agent
+ * 先后 read_file 同一份需求文档），每次都要经过 MCP 的 stdio 管道。本缓存：
+ * - 只缓存声明为幂等的工具（Tool.isIdempotent()），键为 (工具名, 规范化参数 JSON)
+ * - 相同调用并发到达时只执行一次，其余调用共享同一结果（single-flight）
+ * - 只保留成功的结果，失败、跳过或异常的调用从缓存移除，之后的调用重新执行
+ * - 写入类工具（Tool.isWriting()）执行前后清空缓存，也可以通过 invalidate 显式失效
+ *
+ * 由 AgentRequest 持有，cloneWith() 生成的子请求共享同一个实例（与 sharedData 相同）。
+ */
+public class ToolResultCache {
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final ConcurrentHashMap<String, CompletableFuture<AgentResponse>> results = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 按工具元数据执行调用：幂等工具复用结果，写入类工具执行前后清空缓存，其他工具直接执行
+     *
+     * @param tool 工具
+     * @param arguments 调用参数
+     * @param execution 实际执行调用
+     */
+    public CompletableFuture<AgentResponse> call(Tool tool, Map<String, Object> arguments,
+                                                 Supplier<CompletableFuture<AgentResponse>> execution) {
+        if (tool.isWriting()) {
+            invalidateAll();
+            return execution.get().whenComplete((response, ex) -> invalidateAll());
+        }
+        if (!tool.isIdempotent()) {
+            return execution.get();
+        }
+        String key = key(tool.getName(), arguments);
+        if (key == null) {
+            return execution.get();
+        }
+
+        CompletableFuture<AgentResponse> created = new CompletableFuture<>();
+        CompletableFuture<AgentResponse> existing = results.putIfAbsent(key, created);
+        if (existing != null) {
+            hits.incrementAndGet();
+            System.out.println("    ♻️  复用工具结果: " + tool.getName());
+            // 返回副本：调用方取消不影响其他共享同一结果的调用
+            return existing.copy();
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<AgentResponse> future;
+        try {
+            future = execution.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, ex) -> {
+            if (ex != null || response == null || response.getState() != AgentState.COMPLETED) {
+                results.remove(key, created);
+            }
+            if (ex != null) {
+                created.completeExceptionally(ex);
+            } else {
+                created.complete(response);
+            }
+        });
+        return created.copy();
+    }
+
+    /**
+     * 清除某个工具的全部缓存结果
+     */
+    public void invalidate(String toolName) {
+        String prefix = toolName + "\u0000";
+        results.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 清除全部缓存结果
+     */
+    public void invalidateAll() {
+        results.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * 缓存键：工具名 + 按键排序的参数 JSON（参数无法序列化时返回 null，不缓存）
+     */
+    private static String key(String toolName, Map<String, Object> arguments) {
+        try {
+            return toolName + "\u0000" + CANONICAL_MAPPER.writeValueAsString(arguments != null ? arguments : Map.of());
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "工具结果缓存: " + size() + " 条, 命中 " + hits.get() + " 次, 未命中 " + misses.get() + " 次";
+    }
+}
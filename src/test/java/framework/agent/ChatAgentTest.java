@@ -0,0 +1,56 @@
+package framework.agent;
+
+import framework.model.AgentRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ChatAgentTest {
+    private static final String PROMPT = "你是运维助手。参考资料：${knowledge}\n当前环境：${env}";
+
+    private final ScriptedLLMClient llm = new ScriptedLLMClient();
+    private final ChatAgent agent = new ChatAgent("chat_agent", "对话智能体", false, llm, PROMPT, 5);
+
+    @Test
+    void providedValueMovesToUserMessageSection() {
+        llm.reply("好的").reply("好的");
+
+        agent.execute(request(Map.of("knowledge", "连接池上限 20"))).join();
+        agent.execute(request(Map.of("knowledge", "超时 3s"))).join();
+
+        List<Map<String, String>> first = llm.messages().get(0);
+        List<Map<String, String>> second = llm.messages().get(1);
+        assertEquals("你是运维助手。参考资料：（见用户消息中的 <knowledge> 段落）\n当前环境：${env}",
+            first.get(0).get("content"), "只替换有值的变量");
+        assertEquals(first.get(0), second.get(0), "提供相同变量的请求系统消息一致");
+        assertEquals("<knowledge>\n连接池上限 20\n</knowledge>\n\n查询", first.get(1).get("content"));
+        assertFalse(first.get(1).get("content").contains("<env>"));
+    }
+
+    @Test
+    void missingValuesKeepPromptUnchanged() {
+        llm.reply("好的").reply("好的");
+
+        agent.execute(request(null)).join();
+        agent.execute(request(Map.of("short_memory", List.of()))).join();
+
+        for (List<Map<String, String>> messages : llm.messages()) {
+            assertEquals(PROMPT, messages.get(0).get("content"));
+            assertFalse(messages.get(0).get("content").contains("段落"), "不引用未发送的段落");
+            assertEquals("查询", messages.get(messages.size() - 1).get("content"));
+        }
+    }
+
+    private static AgentRequest request(Map<String, Object> arguments) {
+        AgentRequest request = new AgentRequest("查询", null, "user", "chat_agent");
+        if (arguments != null) {
+            request.setArguments(new HashMap<>(arguments));
+        }
+        return request;
+    }
+}
@@ -0,0 +1,164 @@
+package framework.agent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 决策解析基准测试：DecisionParser 与原来的正则解析路径对比
+ *
+ * 基线保留原 ReActAgent.parseLLMResponse 的做法：indexOf / lastIndexOf 截取第一个 '{' 到最后一个 '}'，
+ * contains 判断类型，每次编译正则提取 tool_name / content / query，都不匹配时按子智能体名扫描全文。
+ * 输入为典型的模型输出：说明文字 + 决策、代码块中的并发调用、嵌套参数、带示例花括号的说明和长答案。
+ *
+ * 运行：mvn -Pbenchmark test-compile exec:exec -Dbenchmark=DecisionParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionParserBenchmark {
+    private static final List<String> SUB_AGENTS = List.of("log_agent", "metrics_agent", "deploy_agent");
+
+    private static final Map<String, String> OUTPUTS = Map.of(
+        "tool_call",
+        "我需要先查看最近一小时的错误日志，确认 500 错误的来源。\n"
+            + "{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", \"arguments\": "
+            + "{\"query\": \"order-service 最近一小时的 ERROR 日志\"}}",
+        "tool_call_nested",
+        "根据告警信息，需要按时间范围和服务过滤指标。\n"
+            + "{\"type\": \"tool_call\", \"tool_name\": \"metrics_agent\", \"arguments\": {\"query\": \"p99 延迟\", "
+            + "\"filters\": {\"service\": \"order-service\", \"env\": \"prod\", \"labels\": [\"region=cn-east\", "
+            + "\"az=b\"]}, \"range\": {\"from\": \"2024-05-01T10:00:00Z\", \"to\": \"2024-05-01T11:00:00Z\"}, "
+            + "\"step\": 60}}",
+        "tool_calls_fenced",
+        "日志和指标互不依赖，可以同时查询：\n```json\n"
+            + "{\"type\": \"tool_calls\", \"calls\": [\n"
+            + "  {\"tool_name\": \"log_agent\", \"arguments\": {\"query\": \"payment-service 超时日志\"}},\n"
+            + "  {\"tool_name\": \"metrics_agent\", \"arguments\": {\"query\": \"payment-service 连接池使用率\"}}\n"
+            + "]}\n```\n两个结果返回后再判断是否需要回滚。",
+        "prose_with_example",
+        "上一轮返回的配置片段是 {\"maxPoolSize\": 20, \"timeout\": \"3s\"}，连接池上限偏小。"
+            + "接下来让部署智能体检查最近一次发布的变更。\n"
+            + "{\"type\": \"tool_call\", \"tool_name\": \"deploy_agent\", \"arguments\": "
+            + "{\"query\": \"order-service 最近一次发布的配置变更\"}}",
+        "answer_long",
+        "{\"type\": \"answer\", \"content\": \"" + longAnswer() + "\"}",
+        "plain_text",
+        "根据 log_agent 和 metrics_agent 返回的信息，故障已经在 10:42 自动恢复，"
+            + "原因是数据库主从切换期间连接池被耗尽。建议把连接池上限从 20 调整到 50，并为切换期间的重试加上退避。"
+    );
+
+    @Param({"tool_call", "tool_call_nested", "tool_calls_fenced", "prose_with_example", "answer_long", "plain_text"})
+    public String output;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = OUTPUTS.get(output);
+    }
+
+    @Benchmark
+    public Object decisionParser() {
+        DecisionParser.Result result = DecisionParser.parse(text);
+        if (result.decision() != null || result.error() != null) {
+            return result;
+        }
+        return scanSubAgents(text);
+    }
+
+    @Benchmark
+    public Object regexBaseline() {
+        return LegacyParser.parse(text, SUB_AGENTS);
+    }
+
+    private static Object scanSubAgents(String response) {
+        for (String agentName : SUB_AGENTS) {
+            if (response.contains(agentName)) {
+                return agentName;
+            }
+        }
+        return response;
+    }
+
+    private static String longAnswer() {
+        StringBuilder answer = new StringBuilder("故障复盘：");
+        for (int i = 1; i <= 20; i++) {
+            answer.append("第").append(i).append("步，检查 order-service 第 ").append(i)
+                .append(" 个实例的连接池、线程池和下游超时配置，确认没有异常后继续。\\n");
+        }
+        return answer.toString();
+    }
+
+    /**
+     * 原来的解析路径（只用于对比）
+     */
+    static final class LegacyParser {
+        private LegacyParser() {
+        }
+
+        static Object parse(String response, List<String> subAgents) {
+            try {
+                int jsonStart = response.indexOf("{");
+                int jsonEnd = response.lastIndexOf("}");
+                if (jsonStart >= 0 && jsonEnd > jsonStart) {
+                    String jsonStr = response.substring(jsonStart, jsonEnd + 1);
+                    if (jsonStr.contains("\"type\": \"tool_call\"")) {
+                        String toolName = extractJsonValue(jsonStr, "tool_name");
+                        Map<String, Object> arguments = extractArguments(jsonStr);
+                        return Map.of(toolName, arguments);
+                    } else if (jsonStr.contains("\"type\": \"answer\"")) {
+                        return extractJsonValue(jsonStr, "content");
+                    }
+                }
+            } catch (Exception e) {
+                // JSON解析失败，当作普通文本回答
+            }
+            for (String agentName : subAgents) {
+                if (response.contains(agentName)) {
+                    Map<String, Object> arguments = new HashMap<>();
+                    arguments.put("query", response);
+                    return Map.of(agentName, arguments);
+                }
+            }
+            return response;
+        }
+
+        private static String extractJsonValue(String json, String key) {
+            String pattern = "\"" + key + "\"\\s*:\\s*\"([^\"]+)\"";
+            Pattern p = Pattern.compile(pattern);
+            Matcher m = p.matcher(json);
+            if (m.find()) {
+                return m.group(1);
+            }
+            return "";
+        }
+
+        private static Map<String, Object> extractArguments(String json) {
+            Map<String, Object> args = new HashMap<>();
+            String query = extractJsonValue(json, "query");
+            if (!query.isEmpty()) {
+                args.put("query", query);
+            }
+            return args;
+        }
+    }
+}
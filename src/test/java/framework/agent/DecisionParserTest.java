@@ -0,0 +1,129 @@
+package framework.agent;
+
+import framework.model.ToolCall;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionParserTest {
+    private static final List<String> SUB_AGENTS = List.of("log_agent", "metrics_agent");
+
+    @Test
+    void escapedQuotesAndUnicodeEscapesInArguments() {
+        String text = "先搜索报错信息。\n{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", \"arguments\": "
+            + "{\"query\": \"message=\\\"连接超时\\\" \\u0026\\u0026 level=\\u9519\\u8bef\"}}";
+
+        ToolCall call = singleCall(text);
+        assertEquals("log_agent", call.getToolName());
+        assertEquals("message=\"连接超时\" && level=错误", call.getArguments().get("query"));
+
+        // 正则基线在第一个转义引号处截断
+        assertEquals(Map.of("log_agent", Map.of("query", "message=\\")),
+            DecisionParserBenchmark.LegacyParser.parse(text, SUB_AGENTS));
+    }
+
+    @Test
+    void nestedArgumentsKeepTheirStructure() {
+        String text = "{\"type\": \"tool_call\", \"tool_name\": \"metrics_agent\", \"arguments\": {\"query\": \"p99\", "
+            + "\"filters\": {\"service\": \"order-service\", \"labels\": [\"az=b\", {\"k\": \"}\"}]}, \"step\": 60}}";
+
+        ToolCall call = singleCall(text);
+        assertEquals(Map.of("query", "p99",
+            "filters", Map.of("service", "order-service", "labels", List.of("az=b", Map.of("k", "}"))),
+            "step", 60), call.getArguments());
+    }
+
+    @Test
+    void exampleObjectsInProseAreSkipped() {
+        String text = "配置片段是 {\"maxPoolSize\": 20, \"nested\": {\"type\": \"answer\"}}，接下来检查发布记录。\n"
+            + "{\"type\": \"tool_calls\", \"calls\": [{\"tool_name\": \"log_agent\", \"arguments\": \"查日志\"}, "
+            + "{\"tool_name\": \"metrics_agent\", \"arguments\": {\"query\": \"查指标\"}}]}";
+
+        DecisionParser.Decision decision = DecisionParser.parse(text).decision();
+        assertEquals(List.of("log_agent", "metrics_agent"),
+            decision.toolCalls().stream().map(ToolCall::getToolName).toList());
+        assertEquals(Map.of("query", "查日志"), decision.toolCalls().get(0).getArguments(), "字符串参数当作 query");
+    }
+
+    @Test
+    void rawNewlinesInsideStringsAreAccepted() {
+        String text = "{\"type\": \"answer\", \"content\": \"第一行\n第二行\t缩进\"}";
+
+        DecisionParser.Result result = DecisionParser.parse(text);
+        assertNull(result.error());
+        assertTrue(result.decision().answer());
+        assertEquals("第一行\n第二行\t缩进", result.decision().content());
+    }
+
+    @Test
+    void missingToolNameIsReportedAtObjectStart() {
+        String text = "需要查询日志。{\"type\": \"tool_call\", \"arguments\": {\"query\": \"ERROR\"}}";
+
+        DecisionParser.Result result = DecisionParser.parse(text);
+        assertNull(result.decision());
+        assertEquals(text.indexOf('{'), result.error().offset());
+        assertTrue(result.error().message().contains("tool_name"));
+    }
+
+    @Test
+    void truncatedOutputIsReportedAtEndOfText() {
+        String betweenFields = "{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", \"arguments\": {\"query\": \"ERROR\"}";
+        DecisionParser.Result result = DecisionParser.parse(betweenFields);
+        assertNull(result.decision());
+        assertEquals(betweenFields.length(), result.error().offset());
+        assertEquals("决策对象不完整", result.error().message());
+
+        String insideString = "{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", \"arguments\": {\"query\": \"order-ser";
+        result = DecisionParser.parse(insideString);
+        assertNull(result.decision());
+        assertEquals(insideString.length(), result.error().offset());
+        assertEquals("决策对象不完整", result.error().message());
+    }
+
+    @Test
+    void syntaxErrorOffsetPointsAtTheFaultWhereBaselineGuesses() {
+        String text = "说明文字 {\"type\": \"tool_call\", \"tool_name\": \"log_agent\" \"arguments\": {\"query\": \"ERROR\"}}";
+        int missingComma = text.indexOf("\"arguments\"");
+
+        DecisionParser.Result result = DecisionParser.parse(text);
+        assertNull(result.decision());
+        assertEquals(missingComma, result.error().offset(), "错误位置指向缺少逗号之后的字段");
+        assertTrue(result.error().toString().startsWith("第 " + missingComma + " 个字符附近"));
+
+        // 正则基线不检查语法，把格式错误的对象当作正常调用，模型得不到修正提示
+        assertEquals(Map.of("log_agent", Map.of("query", "ERROR")),
+            DecisionParserBenchmark.LegacyParser.parse(text, SUB_AGENTS));
+    }
+
+    @Test
+    void objectsWithoutDecisionFieldsAreNotErrors() {
+        assertEquals(DecisionParser.Result.NONE, DecisionParser.parse("示例：{\"a\": 1, \"b\": "));
+        assertEquals(DecisionParser.Result.NONE, DecisionParser.parse("没有 JSON 的普通回答"));
+        assertEquals(DecisionParser.Result.NONE, DecisionParser.parse(null));
+    }
+
+    @Test
+    void agreesWithBaselineOnWellFormedDecisions() {
+        String call = "我需要先查看错误日志。\n{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", "
+            + "\"arguments\": {\"query\": \"order-service 最近一小时的 ERROR 日志\"}}";
+        String answer = "{\"type\": \"answer\", \"content\": \"故障已恢复\"}";
+
+        ToolCall parsed = singleCall(call);
+        assertEquals(Map.of(parsed.getToolName(), parsed.getArguments()),
+            DecisionParserBenchmark.LegacyParser.parse(call, SUB_AGENTS));
+        assertEquals(DecisionParser.parse(answer).decision().content(),
+            DecisionParserBenchmark.LegacyParser.parse(answer, SUB_AGENTS));
+    }
+
+    private static ToolCall singleCall(String text) {
+        DecisionParser.Result result = DecisionParser.parse(text);
+        assertNull(result.error(), () -> "不应有解析错误: " + result.error());
+        assertEquals(1, result.decision().toolCalls().size());
+        return result.decision().toolCalls().get(0);
+    }
+}
@@ -0,0 +1,91 @@
+package framework.agent;
+
+import framework.model.ToolCall;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoopDetectorTest {
+    private final LoopDetector detector = new LoopDetector(LoopDetectionPolicy.defaults());
+
+    @Test
+    void identicalCallWithIdenticalObservationWarnsThenStops() {
+        List<LoopDetector.Verdict> verdicts = List.of(
+            detector.record(call("search", "上海天气"), "上海今天晴，气温 25 度。"),
+            detector.record(call("search", "上海 天气"), "上海今天晴，气温 25 度。"),
+            detector.record(call("search", "上海天气"), "上海今天晴，气温 25 度"),
+            detector.record(call("search", "上海天气!"), "上海今天晴, 气温 25 度。"));
+
+        assertEquals(List.of(LoopDetector.Verdict.CONTINUE, LoopDetector.Verdict.CONTINUE,
+            LoopDetector.Verdict.WARN, LoopDetector.Verdict.STOP), verdicts);
+    }
+
+    @Test
+    void pollingSameArgumentsWithChangingStatusIsProgress() {
+        for (int done = 1; done <= 6; done++) {
+            assertEquals(LoopDetector.Verdict.CONTINUE,
+                detector.record(call("job_status", "job-42"), "running " + done + "/10"));
+        }
+    }
+
+    @Test
+    void rereadingFileAfterWriteIsProgress() {
+        assertEquals(LoopDetector.Verdict.CONTINUE,
+            detector.record(call("read_file", "config.yml"), "port: 8080\nhost: localhost"));
+        detector.record(call("write_file", "config.yml"), "写入成功");
+        assertEquals(LoopDetector.Verdict.CONTINUE,
+            detector.record(call("read_file", "config.yml"), "port: 9090\nhost: 0.0.0.0\ntimeout: 30s"));
+        assertEquals(0, detector.getStreak());
+    }
+
+    @Test
+    void pollingLongStatusThatChangesAfterPrefixIsProgress() {
+        String header = "job-42 部署流水线\n" + "step: 拉取镜像 完成\n".repeat(200);
+        assertTrue(header.length() > 2000);
+        for (int done = 1; done <= 6; done++) {
+            assertEquals(LoopDetector.Verdict.CONTINUE,
+                detector.record(call("job_status", "job-42"), header + "当前进度 " + done + "/10"));
+        }
+        assertEquals(0, detector.getStreak());
+    }
+
+    @Test
+    void rereadingLargeFileAfterOneLineEditIsProgress() {
+        StringBuilder file = new StringBuilder();
+        for (int line = 1; line <= 300; line++) {
+            file.append("key").append(line).append(": value").append(line).append('\n');
+        }
+        assertTrue(file.length() > 2000);
+        // 每次写入只改最后一行，之后重新读取整个文件
+        for (int seconds = 30; seconds <= 70; seconds += 10) {
+            assertEquals(LoopDetector.Verdict.CONTINUE,
+                detector.record(call("read_file", "app.yml"), file + "timeout: " + seconds + "s"));
+        }
+        assertEquals(0, detector.getStreak());
+    }
+
+    @Test
+    void rereadingUnchangedLargeFileIsRepeat() {
+        String content = "line: value\n".repeat(500);
+        detector.record(call("read_file", "app.yml"), content);
+        detector.record(call("read_file", "app.yml"), content);
+
+        assertEquals(1, detector.getStreak());
+    }
+
+    @Test
+    void rephrasedQuestionWithSimilarAnswerCountsAsRepeat() {
+        detector.record(call("search", "北京今天的天气怎么样"), "北京今天多云，气温 18 到 26 度，东南风 2 级。");
+        detector.record(call("search", "北京今天天气怎么样？"), "北京今天多云，气温 18 到 26 度，东南风 3 级。");
+
+        assertEquals(1, detector.getStreak());
+    }
+
+    private static List<ToolCall> call(String tool, String query) {
+        return List.of(new ToolCall(tool, Map.of("query", query)));
+    }
+}
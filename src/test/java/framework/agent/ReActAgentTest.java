@@ -0,0 +1,249 @@
+package framework.agent;
+
+import framework.llm.ChatOptions;
+import framework.llm.LLMBadRequestException;
+import framework.llm.LLMUsage;
+import framework.model.AgentRequest;
+import framework.model.AgentResponse;
+import framework.model.AgentState;
+import framework.model.UsageStats;
+import framework.tool.Tool;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReActAgentTest {
+    private static final String ANSWER = "{\"type\": \"answer\", \"content\": \"完成\"}";
+
+    private final ScriptedLLMClient llm = new ScriptedLLMClient();
+
+    @Test
+    void rejectedToolsStepDownToJsonModeForThisExecutionOnly() {
+        ReActAgent agent = agent();
+        llm.fail(badRequest("{\"error\":{\"message\":\"tools is not supported for this model\"}}"))
+            .reply(ANSWER)
+            .reply(ANSWER);
+
+        AgentResponse response = agent.execute(request()).join();
+        assertEquals(AgentState.COMPLETED, response.getState());
+        assertTrue(llm.options().get(0).hasTools());
+        assertTrue(llm.options().get(1).isJsonMode(), "NATIVE 被拒绝后先退到 JSON_MODE");
+        assertEquals(ReActAgent.DecisionProtocol.NATIVE, agent.getDecisionProtocol(), "不修改智能体的协议设置");
+
+        agent.execute(request()).join();
+        assertTrue(llm.options().get(2).hasTools(), "下一次执行重新使用 NATIVE");
+    }
+
+    @Test
+    void rejectedJsonModeStepsDownToText() {
+        ReActAgent agent = agent();
+        llm.fail(badRequest("{\"error\":{\"message\":\"Unrecognized request argument: tool_choice\"}}"))
+            .fail(badRequest("{\"error\":{\"message\":\"response_format is not supported\"}}"))
+            .reply(ANSWER);
+
+        AgentResponse response = agent.execute(request()).join();
+        assertEquals(AgentState.COMPLETED, response.getState());
+        assertEquals(3, llm.options().size());
+        assertFalse(llm.options().get(2).hasProviderFields(), "最后退到文本协议");
+    }
+
+    @Test
+    void unrelatedBadRequestFailsWithoutDowngrade() {
+        ReActAgent agent = agent();
+        llm.fail(badRequest("{\"error\":{\"message\":\"Incorrect API key provided\"}}"));
+
+        AgentResponse response = agent.execute(request()).join();
+        assertEquals(AgentState.FAILED, response.getState());
+        assertEquals(1, llm.options().size());
+        assertEquals(ReActAgent.DecisionProtocol.NATIVE, agent.getDecisionProtocol());
+    }
+
+    @Test
+    void requestGroupIsSentAsSessionKey() {
+        ReActAgent agent = agent();
+        llm.reply(ANSWER);
+        AgentRequest request = request();
+
+        agent.execute(request).join();
+        ChatOptions options = llm.options().get(0);
+        assertEquals(request.getGroupId(), options.getSessionKey());
+    }
+
+    @Test
+    void finalRoundUsageArrivingShortlyAfterEarlyStopIsWrittenToExtra() {
+        ReActAgent agent = agent();
+        llm.replyWithLateUsage(ANSWER + "\n以上是最终答案", new LLMUsage(100, 20, 120, 40), 5);
+
+        AgentResponse response = agent.execute(request()).join();
+        assertEquals(1L, response.getExtra().get(UsageStats.LLM_CALLS));
+        assertEquals(120L, response.getExtra().get(UsageStats.TOTAL_TOKENS));
+        assertEquals(40L, response.getExtra().get(UsageStats.CACHED_PROMPT_TOKENS));
+        assertFalse(response.getExtra().containsKey(UsageStats.USAGE_PENDING));
+    }
+
+    @Test
+    void slowFinalRoundUsageDoesNotDelayResponse() throws Exception {
+        ReActAgent agent = agent();
+        llm.replyWithLateUsage(ANSWER + "\n以上是最终答案", new LLMUsage(100, 20, 120, 40), 1000);
+        AgentRequest request = request();
+
+        long start = System.nanoTime();
+        AgentResponse response = agent.execute(request).join();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 500, "不应等待后台读取的用量，实际 " + elapsedMillis + "ms");
+        assertEquals(true, response.getExtra().get(UsageStats.USAGE_PENDING));
+        assertEquals(0L, response.getExtra().get(UsageStats.TOTAL_TOKENS));
+
+        request.getUsageStats().whenSettled().get(5, TimeUnit.SECONDS);
+        assertEquals(120L, request.getUsageStats().getTotalTokens(), "之后到达的用量仍计入请求的统计");
+    }
+
+    @Test
+    void reusedResponseCountsAsHitNotCall() {
+        ReActAgent agent = agent();
+        llm.replyReused(ANSWER);
+
+        AgentResponse response = agent.execute(request()).join();
+        assertEquals(0L, response.getExtra().get(UsageStats.LLM_CALLS));
+        assertEquals(1L, response.getExtra().get(UsageStats.LLM_HITS));
+    }
+
+    @Test
+    void loopDetectedStopIsReportedAsFailure() {
+        ReActAgent agent = agent();
+        String call = "{\"type\": \"tool_call\", \"tool_name\": \"search_agent\", \"arguments\": {\"query\": \"天气\"}}";
+        for (int i = 0; i < 5; i++) {
+            llm.reply(call);
+        }
+
+        AgentResponse response = agent.execute(request()).join();
+        assertEquals(AgentState.FAILED, response.getState());
+        assertEquals("loop_detected", response.getExtra().get("early_stopped"));
+        assertEquals(4, llm.options().size());
+    }
+
+    @Test
+    void toolCallsInOneRoundRunConcurrentlyAndKeepTheirOrder() throws Exception {
+        // 两个工具都开始后才一起完成：串行执行时第一个调用永远等不到第二个
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<Void> bothStarted = new CompletableFuture<>();
+        Tool slow = tool("slow_logs", request -> {
+            if (started.incrementAndGet() == 2) {
+                bothStarted.complete(null);
+            }
+            return bothStarted.thenApplyAsync(ignored -> "慢日志结果",
+                CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+        });
+        Tool fast = tool("fast_metrics", request -> {
+            if (started.incrementAndGet() == 2) {
+                bothStarted.complete(null);
+            }
+            return bothStarted.thenApply(ignored -> "指标结果");
+        });
+        Tool broken = tool("broken_trace", request -> CompletableFuture.failedFuture(new IllegalStateException("链路服务不可用")));
+        ReActAgent agent = agentWithTools(slow, fast, broken);
+        llm.reply("{\"type\": \"tool_calls\", \"calls\": ["
+                + "{\"tool_name\": \"slow_logs\", \"arguments\": {\"query\": \"ERROR\"}}, "
+                + "{\"tool_name\": \"fast_metrics\", \"arguments\": {\"query\": \"p99\"}}, "
+                + "{\"tool_name\": \"broken_trace\", \"arguments\": {\"query\": \"trace\"}}]}")
+            .reply(ANSWER);
+
+        AgentResponse response = agent.execute(new AgentRequest("排查", null, "user", "tool_agent"))
+            .get(5, TimeUnit.SECONDS);
+
+        assertEquals(AgentState.COMPLETED, response.getState());
+        List<Map<String, String>> second = llm.messages().get(1);
+        String observation = second.get(second.size() - 1).get("content");
+        int slowAt = observation.indexOf("[1] slow_logs → 工具: slow_logs, 结果: 慢日志结果");
+        int fastAt = observation.indexOf("[2] fast_metrics → 工具: fast_metrics, 结果: 指标结果");
+        int brokenAt = observation.indexOf("[3] broken_trace → 错误: ");
+        assertTrue(slowAt >= 0 && fastAt > slowAt && brokenAt > fastAt, "观察按决策中的顺序排列: " + observation);
+        assertTrue(observation.contains("链路服务不可用"), "失败的调用作为观察保留，不影响其他调用");
+    }
+
+    @Test
+    void eachRoundExtendsThePreviousRoundsMessages() throws Exception {
+        Tool logs = tool("log_search", request -> CompletableFuture.completedFuture(
+            "日志: " + request.getArguments().get("query")));
+        ReActAgent agent = agentWithTools(logs);
+        llm.reply("{\"type\": \"tool_call\", \"tool_name\": \"log_search\", \"arguments\": {\"query\": \"ERROR\"}}")
+            .reply("{\"type\": \"tool_call\", \"tool_name\": \"log_search\", \"arguments\": {\"query\": \"WARN\"}}")
+            .reply(ANSWER)
+            .reply(ANSWER);
+
+        agent.execute(new AgentRequest("排查", null, "user", "tool_agent")).get(5, TimeUnit.SECONDS);
+
+        List<List<Map<String, String>>> rounds = llm.messages();
+        assertEquals(3, rounds.size());
+        for (int n = 0; n + 1 < rounds.size(); n++) {
+            List<Map<String, String>> previous = rounds.get(n);
+            List<Map<String, String>> next = rounds.get(n + 1);
+            assertEquals(previous.size() + 2, next.size(), "每轮只追加助手决策和观察两条消息");
+            for (int i = 0; i < previous.size(); i++) {
+                assertSame(previous.get(i), next.get(i), "第 " + (n + 2) + " 轮复用第 " + (n + 1) + " 轮的第 " + i + " 条消息");
+            }
+            assertEquals("assistant", next.get(previous.size()).get("role"));
+            assertEquals("user", next.get(previous.size() + 1).get("role"));
+        }
+        assertTrue(rounds.get(2).get(5).get("content").contains("日志: WARN"));
+
+        agent.execute(new AgentRequest("再查一次", null, "user", "tool_agent")).get(5, TimeUnit.SECONDS);
+        assertSame(rounds.get(0).get(0), llm.messages().get(3).get(0), "系统消息在智能体内只构建一次");
+    }
+
+    private ReActAgent agentWithTools(Tool... tools) {
+        AgentFramework framework = new AgentFramework();
+        List<String> names = new ArrayList<>();
+        for (Tool tool : tools) {
+            framework.registerTool(tool.getName(), tool);
+            names.add(tool.getName());
+        }
+        ReActAgent agent = new ReActAgent("tool_agent", "工具智能体", true, llm, List.of(), names, "你是测试助手。", 5);
+        framework.registerAgent("tool_agent", agent);
+        return agent;
+    }
+
+    private static Tool tool(String name, Function<AgentRequest, CompletableFuture<String>> body) {
+        return new Tool() {
+            @Override
+            public CompletableFuture<AgentResponse> execute(AgentRequest request) {
+                return body.apply(request)
+                    .thenApply(output -> new AgentResponse(AgentState.COMPLETED, output, null, request));
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return name;
+            }
+        };
+    }
+
+    private ReActAgent agent() {
+        return new ReActAgent("test_agent", "测试智能体", true, llm,
+            List.of("search_agent"), List.of(), "你是测试助手。", 5);
+    }
+
+    private static AgentRequest request() {
+        return new AgentRequest("查询", null, "user", "test_agent");
+    }
+
+    private static LLMBadRequestException badRequest(String body) {
+        return new LLMBadRequestException("OpenAI", 400, body);
+    }
+}
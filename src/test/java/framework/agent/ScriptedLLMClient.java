@@ -0,0 +1,120 @@
+package framework.agent;
+
+import framework.llm.ChatOptions;
+import framework.llm.LLMClient;
+import framework.llm.LLMStreamListener;
+import framework.llm.LLMUsage;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试用的LLM客户端：按顺序返回预先设定的回复，并记录每次调用的消息和请求选项
+ */
+final class ScriptedLLMClient implements LLMClient {
+    private final Queue<Reply> replies = new ArrayDeque<>();
+    private final List<ChatOptions> options = new CopyOnWriteArrayList<>();
+    private final List<List<Map<String, String>>> messages = new CopyOnWriteArrayList<>();
+
+    /**
+     * 一次回复：以单个增量推送 text，随后报告 usage（可为null）；failure 不为null时直接失败
+     *
+     * @param usageDelayMillis 大于0时先返回结果，延迟后再报告用量并结束读取（模拟提前停止后的后台读取）
+     * @param reused 是否作为缓存命中或合并的调用回放
+     */
+    record Reply(String text, LLMUsage usage, long usageDelayMillis, boolean reused, RuntimeException failure) {
+    }
+
+    ScriptedLLMClient reply(String text) {
+        return reply(text, null);
+    }
+
+    ScriptedLLMClient reply(String text, LLMUsage usage) {
+        replies.add(new Reply(text, usage, 0, false, null));
+        return this;
+    }
+
+    ScriptedLLMClient replyWithLateUsage(String text, LLMUsage usage, long delayMillis) {
+        replies.add(new Reply(text, usage, delayMillis, false, null));
+        return this;
+    }
+
+    ScriptedLLMClient replyReused(String text) {
+        replies.add(new Reply(text, null, 0, true, null));
+        return this;
+    }
+
+    ScriptedLLMClient fail(RuntimeException failure) {
+        replies.add(new Reply(null, null, 0, false, failure));
+        return this;
+    }
+
+    /**
+     * 各次调用的请求选项（按调用顺序）
+     */
+    List<ChatOptions> options() {
+        return options;
+    }
+
+    /**
+     * 各次调用发送的消息（按调用顺序）
+     */
+    List<List<Map<String, String>>> messages() {
+        return messages;
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        return chatAsync(messages).join();
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return chatStreamAsync(messages, null, token -> true);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+
+    @Override
+    public synchronized CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages,
+                                                                  ChatOptions options, LLMStreamListener listener) {
+        this.options.add(options != null ? options : ChatOptions.none());
+        this.messages.add(List.copyOf(messages));
+        Reply reply = replies.poll();
+        if (reply == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("没有更多预设回复"));
+        }
+        if (reply.failure() != null) {
+            return CompletableFuture.failedFuture(reply.failure());
+        }
+        if (reply.reused()) {
+            listener.onReused();
+        }
+        listener.onToken(reply.text());
+        if (reply.usageDelayMillis() > 0) {
+            CompletableFuture.delayedExecutor(reply.usageDelayMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                listener.onUsage(reply.usage());
+                listener.onEnd();
+            });
+            return CompletableFuture.completedFuture(reply.text());
+        }
+        if (reply.usage() != null) {
+            listener.onUsage(reply.usage());
+        }
+        listener.onEnd();
+        return CompletableFuture.completedFuture(reply.text());
+    }
+
+    @Override
+    public String getModelName() {
+        return "scripted";
+    }
+}
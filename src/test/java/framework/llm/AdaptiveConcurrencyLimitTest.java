@@ -0,0 +1,58 @@
+package framework.llm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+    private static final long NORMAL = 100_000_000L;
+
+    @Test
+    void admitsUpToLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 8);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+    }
+
+    @Test
+    void additiveIncreaseAboutOnePerWindow() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 8);
+        for (int i = 0; i < 5; i++) {
+            limit.onSuccess(NORMAL);
+        }
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void overloadHalvesAndRespectsMinimum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 2, 8);
+        limit.onOverload();
+        assertEquals(4, limit.getLimit());
+        limit.onOverload();
+        limit.onOverload();
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void slowResponseBacksOffGently() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 8);
+        limit.onSuccess(NORMAL);
+        limit.onSuccess(NORMAL * 5);
+        assertEquals(7, limit.getLimit());
+    }
+
+    @Test
+    void increaseIsCappedAtMaximum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 1, 4);
+        for (int i = 0; i < 100; i++) {
+            limit.onSuccess(NORMAL);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+}
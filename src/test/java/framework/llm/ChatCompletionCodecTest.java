@@ -0,0 +1,353 @@
+package framework.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 请求编码和响应解码：分块取自 DeepSeek（OpenAI 兼容）和 Ollama 的实际响应（省略了部分 id 和耗时字段）
+ */
+class ChatCompletionCodecTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<LLMToolSpec> TOOLS = List.of(
+        new LLMToolSpec("log_search", "搜索日志", LLMToolSpec.querySchema()));
+
+    private final ChatCompletionCodec codec = new ChatCompletionCodec(MAPPER);
+
+    @Test
+    void encodesOpenAICompatibleRequestWithTools() throws Exception {
+        ChatCompletionCodec.ChatRequest request = new ChatCompletionCodec.ChatRequest("deepseek-chat",
+            ChatCompletionCodec.toChatMessages(List.of(
+                Map.of("role", "system", "content", "你是运维助手"),
+                Map.of("role", "user", "content", "查 \"ERROR\" 日志"))),
+            0.7, true, ChatCompletionCodec.INCLUDE_USAGE, null, null)
+            .withOptions(new ChatOptions(TOOLS, "auto", false), false);
+
+        JsonNode body = body(codec.requestPublisher(request, false));
+        assertEquals("deepseek-chat", body.get("model").asText());
+        assertEquals("查 \"ERROR\" 日志", body.at("/messages/1/content").asText());
+        assertEquals(0.7, body.get("temperature").asDouble());
+        assertTrue(body.at("/stream_options/include_usage").asBoolean());
+        assertEquals("function", body.at("/tools/0/type").asText());
+        assertEquals("log_search", body.at("/tools/0/function/name").asText());
+        assertEquals("string", body.at("/tools/0/function/parameters/properties/query/type").asText());
+        assertEquals("auto", body.get("tool_choice").asText());
+        assertFalse(body.has("response_format"));
+        assertFalse(body.has("keep_alive"), "为 null 的字段不输出");
+    }
+
+    @Test
+    void jsonModeUsesResponseFormatOrOllamaFormat() throws Exception {
+        ChatCompletionCodec.ChatRequest base = new ChatCompletionCodec.ChatRequest("m",
+            ChatCompletionCodec.toChatMessages(List.of(Map.of("role", "user", "content", "hi"))),
+            null, false, null, "30m", Map.of("num_ctx", 4096));
+
+        JsonNode openAI = body(codec.requestPublisher(base.withOptions(ChatOptions.jsonMode(), false), false));
+        assertEquals("json_object", openAI.at("/response_format/type").asText());
+        assertFalse(openAI.has("format"));
+
+        JsonNode ollama = body(codec.requestPublisher(
+            base.withOptions(new ChatOptions(TOOLS, "required", true), true), false));
+        assertEquals("json", ollama.get("format").asText());
+        assertEquals("30m", ollama.get("keep_alive").asText());
+        assertEquals(4096, ollama.at("/options/num_ctx").asInt());
+        assertFalse(ollama.has("tool_choice"), "Ollama 不支持 tool_choice");
+        assertFalse(ollama.has("response_format"));
+        assertEquals("log_search", ollama.at("/tools/0/function/name").asText());
+    }
+
+    @Test
+    void encodesGenerateRequestWithContext() throws Exception {
+        ChatCompletionCodec.GenerateRequest request = new ChatCompletionCodec.GenerateRequest(
+            "qwen2.5", null, "继续", new int[]{151644, 8948, 198}, true, "30m", Map.of("num_ctx", 8192), "json");
+
+        JsonNode body = body(codec.generatePublisher(request, false));
+        assertEquals("继续", body.get("prompt").asText());
+        assertEquals(List.of(151644, 8948, 198), MAPPER.convertValue(body.get("context"), List.class));
+        assertEquals("30m", body.get("keep_alive").asText());
+        assertEquals("json", body.get("format").asText());
+        assertFalse(body.has("system"));
+    }
+
+    @Test
+    void decodesDeepSeekContentAndUsageChunks() throws IOException {
+        ChatCompletionCodec.ChatResult first = codec.readChunk("{\"id\":\"0193a7f2\",\"object\":\"chat.completion.chunk\","
+            + "\"created\":1717000000,\"model\":\"deepseek-chat\",\"system_fingerprint\":\"fp_a49d71b8a1\","
+            + "\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"\"},\"logprobs\":null,"
+            + "\"finish_reason\":null}]}");
+        assertEquals("", first.content());
+        assertNull(first.usage());
+        assertNull(first.finishReason());
+
+        ChatCompletionCodec.ChatResult middle = codec.readChunk("{\"id\":\"0193a7f2\",\"object\":\"chat.completion.chunk\","
+            + "\"created\":1717000000,\"model\":\"deepseek-chat\",\"system_fingerprint\":\"fp_a49d71b8a1\","
+            + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"连接池\"},\"logprobs\":null,\"finish_reason\":null}]}");
+        assertEquals("连接池", middle.content());
+
+        ChatCompletionCodec.ChatResult last = codec.readChunk("{\"id\":\"0193a7f2\",\"object\":\"chat.completion.chunk\","
+            + "\"created\":1717000000,\"model\":\"deepseek-chat\",\"system_fingerprint\":\"fp_a49d71b8a1\","
+            + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"\"},\"logprobs\":null,\"finish_reason\":\"stop\"}],"
+            + "\"usage\":{\"prompt_tokens\":1200,\"completion_tokens\":35,\"total_tokens\":1235,"
+            + "\"prompt_tokens_details\":{\"cached_tokens\":1024},\"prompt_cache_hit_tokens\":1024,"
+            + "\"prompt_cache_miss_tokens\":176}}");
+        assertEquals("stop", last.finishReason());
+        assertEquals(1200, last.usage().getPromptTokens());
+        assertEquals(35, last.usage().getCompletionTokens());
+        assertEquals(1235, last.usage().getTotalTokens());
+        assertEquals(1024, last.usage().getCachedPromptTokens());
+        assertFalse(last.done());
+        assertNull(last.context());
+    }
+
+    @Test
+    void usageOnlyChunkWithEmptyChoices() throws IOException {
+        ChatCompletionCodec.ChatResult result = codec.readChunk("{\"id\":\"chatcmpl-9\",\"object\":\"chat.completion.chunk\","
+            + "\"choices\":[],\"usage\":{\"prompt_tokens\":50,\"completion_tokens\":10,\"total_tokens\":60,"
+            + "\"prompt_tokens_details\":{\"cached_tokens\":32}}}");
+
+        assertNull(result.content());
+        assertEquals(60, result.usage().getTotalTokens());
+        assertEquals(32, result.usage().getCachedPromptTokens(), "没有 prompt_cache_hit_tokens 时取 cached_tokens");
+    }
+
+    @Test
+    void assemblesDeepSeekToolCallFragmentsIntoDecisionJson() throws IOException {
+        List<String> chunks = List.of(
+            "{\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":null,\"tool_calls\":[{\"index\":0,"
+                + "\"id\":\"call_0_1a\",\"type\":\"function\",\"function\":{\"name\":\"log_search\",\"arguments\":\"\"}}]},"
+                + "\"finish_reason\":null}]}",
+            "{\"choices\":[{\"index\":0,\"delta\":{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\"{\\\"query\\\":\"}}]},"
+                + "\"finish_reason\":null}]}",
+            "{\"choices\":[{\"index\":0,\"delta\":{\"tool_calls\":[{\"index\":0,\"function\":{\"arguments\":\" \\\"ERROR\\\"}\"}}]},"
+                + "\"finish_reason\":null}]}",
+            "{\"choices\":[{\"index\":0,\"delta\":{\"tool_calls\":[{\"index\":1,\"id\":\"call_1_2b\",\"type\":\"function\","
+                + "\"function\":{\"name\":\"metrics_query\",\"arguments\":\"{\\\"query\\\": \\\"p99\\\"}\"}}]},"
+                + "\"finish_reason\":null}]}",
+            "{\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"tool_calls\"}],"
+                + "\"usage\":{\"prompt_tokens\":300,\"completion_tokens\":40,\"total_tokens\":340,\"prompt_cache_hit_tokens\":0}}");
+
+        ChatCompletionCodec.ToolCallAssembler assembler = new ChatCompletionCodec.ToolCallAssembler();
+        String finishReason = null;
+        for (String chunk : chunks) {
+            ChatCompletionCodec.ChatResult result = codec.readChunk(chunk);
+            if (result.toolCalls() != null) {
+                assembler.add(result.toolCalls());
+            }
+            if (result.finishReason() != null) {
+                finishReason = result.finishReason();
+            }
+        }
+
+        assertEquals("tool_calls", finishReason);
+        JsonNode decision = MAPPER.readTree(codec.toDecisionJson(assembler.calls()));
+        assertEquals("tool_calls", decision.get("type").asText());
+        assertEquals("log_search", decision.at("/calls/0/tool_name").asText());
+        assertEquals("ERROR", decision.at("/calls/0/arguments/query").asText());
+        assertEquals("metrics_query", decision.at("/calls/1/tool_name").asText());
+        assertEquals("p99", decision.at("/calls/1/arguments/query").asText());
+    }
+
+    @Test
+    void decisionJsonForSingleCallAndInvalidArguments() throws IOException {
+        JsonNode single = MAPPER.readTree(codec.toDecisionJson(List.of(
+            new ChatCompletionCodec.ToolCallChunk(0, "log_search", "{\"query\": \"ERROR\", \"limit\": 20}"))));
+        assertEquals("tool_call", single.get("type").asText());
+        assertEquals("log_search", single.get("tool_name").asText());
+        assertEquals(20, single.at("/arguments/limit").asInt());
+
+        JsonNode invalid = MAPPER.readTree(codec.toDecisionJson(List.of(
+            new ChatCompletionCodec.ToolCallChunk(0, "log_search", "ERROR 日志"))));
+        assertEquals("ERROR 日志", invalid.at("/arguments/query").asText(), "参数不是 JSON 对象时作为 query");
+
+        JsonNode empty = MAPPER.readTree(codec.toDecisionJson(List.of(
+            new ChatCompletionCodec.ToolCallChunk(0, "list_services", null))));
+        assertTrue(empty.get("arguments").isObject());
+        assertEquals(0, empty.get("arguments").size());
+    }
+
+    @Test
+    void decodesOllamaChatChunks() throws IOException {
+        ChatCompletionCodec.ChatResult middle = codec.readChunk("{\"model\":\"qwen2.5:7b\","
+            + "\"created_at\":\"2024-06-01T10:42:01.123Z\",\"message\":{\"role\":\"assistant\",\"content\":\"连接\"},"
+            + "\"done\":false}");
+        assertEquals("连接", middle.content());
+        assertFalse(middle.done());
+        assertNull(middle.usage());
+
+        ChatCompletionCodec.ChatResult last = codec.readChunk("{\"model\":\"qwen2.5:7b\","
+            + "\"created_at\":\"2024-06-01T10:42:02.456Z\",\"message\":{\"role\":\"assistant\",\"content\":\"\"},"
+            + "\"done_reason\":\"stop\",\"done\":true,\"total_duration\":1523000000,\"load_duration\":21000000,"
+            + "\"prompt_eval_count\":412,\"prompt_eval_duration\":310000000,\"eval_count\":58,\"eval_duration\":1180000000}");
+        assertTrue(last.done());
+        assertEquals(412, last.usage().getPromptTokens());
+        assertEquals(58, last.usage().getCompletionTokens());
+        assertNull(last.context());
+    }
+
+    @Test
+    void decodesOllamaToolCallsWithObjectArguments() throws IOException {
+        ChatCompletionCodec.ChatResult result = codec.readChunk("{\"model\":\"qwen2.5:7b\","
+            + "\"created_at\":\"2024-06-01T10:42:01Z\",\"message\":{\"role\":\"assistant\",\"content\":\"\","
+            + "\"tool_calls\":[{\"function\":{\"name\":\"log_search\",\"arguments\":{\"query\":\"ERROR\"}}},"
+            + "{\"function\":{\"name\":\"metrics_query\",\"arguments\":{\"query\":\"p99\"}}}]},\"done\":false}");
+
+        assertEquals(List.of(0, 1), result.toolCalls().stream().map(ChatCompletionCodec.ToolCallChunk::index).toList(),
+            "Ollama 不提供 index，按出现顺序编号");
+        assertEquals("{\"query\":\"ERROR\"}", result.toolCalls().get(0).arguments());
+        JsonNode decision = MAPPER.readTree(codec.toDecisionJson(result.toolCalls()));
+        assertEquals("metrics_query", decision.at("/calls/1/tool_name").asText());
+    }
+
+    @Test
+    void decodesOllamaGenerateChunksWithContext() throws IOException {
+        ChatCompletionCodec.ChatResult middle = codec.readChunk("{\"model\":\"qwen2.5:7b\","
+            + "\"created_at\":\"2024-06-01T10:42:01Z\",\"response\":\"{\\\"type\\\"\",\"done\":false}");
+        assertEquals("{\"type\"", middle.content());
+        assertNull(middle.context());
+
+        StringBuilder context = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            context.append(i > 0 ? "," : "").append(151_000 + i);
+        }
+        ChatCompletionCodec.ChatResult last = codec.readChunk("{\"model\":\"qwen2.5:7b\","
+            + "\"created_at\":\"2024-06-01T10:42:03Z\",\"response\":\"\",\"done\":true,\"done_reason\":\"stop\","
+            + "\"context\":[" + context + "],\"total_duration\":2100000000,\"prompt_eval_count\":590,"
+            + "\"eval_count\":10}");
+        assertTrue(last.done());
+        assertEquals("", last.content());
+        assertEquals(600, last.context().length, "超过初始容量的 context 完整读取");
+        assertEquals(151_000, last.context()[0]);
+        assertEquals(151_599, last.context()[599]);
+        assertEquals(590, last.usage().getPromptTokens());
+    }
+
+    @Test
+    void nonStreamingResponseTurnsToolCallsIntoDecision() throws IOException {
+        ChatCompletionCodec.ChatResult result = codec.readResponseBytes(response(200,
+            "{\"id\":\"0193a7f3\",\"object\":\"chat.completion\",\"model\":\"deepseek-chat\",\"choices\":[{\"index\":0,"
+                + "\"message\":{\"role\":\"assistant\",\"content\":\"\",\"tool_calls\":[{\"index\":0,\"id\":\"call_0\","
+                + "\"type\":\"function\",\"function\":{\"name\":\"log_search\",\"arguments\":\"{\\\"query\\\":\\\"ERROR\\\"}\"}}]},"
+                + "\"logprobs\":null,\"finish_reason\":\"tool_calls\"}],\"usage\":{\"prompt_tokens\":100,"
+                + "\"completion_tokens\":20,\"total_tokens\":120,\"prompt_cache_hit_tokens\":64}}"), "DeepSeek");
+
+        JsonNode decision = MAPPER.readTree(result.content());
+        assertEquals("tool_call", decision.get("type").asText());
+        assertEquals("ERROR", decision.at("/arguments/query").asText());
+        assertEquals(64, result.usage().getCachedPromptTokens());
+    }
+
+    @Test
+    void nonStreamingErrorsBecomeLLMException() {
+        LLMException missing = assertThrows(LLMException.class, () -> codec.readResponseBytes(response(200,
+            "{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\"},\"finish_reason\":\"stop\"}]}"), "DeepSeek"));
+        assertTrue(missing.getMessage().contains("返回空响应"));
+
+        LLMException status = assertThrows(LLMException.class, () -> codec.readResponseBytes(response(429,
+            "{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"rate_limit_error\"}}"), "DeepSeek"));
+        assertEquals(429, status.getStatusCode());
+    }
+
+    @Test
+    void rejectsNonObjectChunksAndReadsEmptyContext() throws IOException {
+        assertThrows(IOException.class, () -> codec.readChunk("[DONE]"));
+        assertArrayEquals(new int[0], codec.readChunk("{\"response\":\"\",\"done\":true,\"context\":[]}").context());
+    }
+
+    private static JsonNode body(HttpRequest.BodyPublisher publisher) throws Exception {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(out.toByteArray());
+            }
+        });
+        return MAPPER.readTree(result.get(5, TimeUnit.SECONDS));
+    }
+
+    private static HttpResponse<byte[]> response(int status, String body) {
+        return new HttpResponse<>() {
+            @Override
+            public int statusCode() {
+                return status;
+            }
+
+            @Override
+            public HttpRequest request() {
+                return HttpRequest.newBuilder(URI.create("http://localhost/v1/chat/completions")).build();
+            }
+
+            @Override
+            public Optional<HttpResponse<byte[]>> previousResponse() {
+                return Optional.empty();
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(Map.of(), (name, value) -> true);
+            }
+
+            @Override
+            public byte[] body() {
+                return body.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public Optional<SSLSession> sslSession() {
+                return Optional.empty();
+            }
+
+            @Override
+            public URI uri() {
+                return request().uri();
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+}
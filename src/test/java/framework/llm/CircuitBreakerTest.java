@@ -0,0 +1,89 @@
+package framework.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    private static final Duration OPEN = Duration.ofMillis(50);
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 2, OPEN, 1);
+
+    @Test
+    void opensAfterConsecutiveEndpointFailures() {
+        fail();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(LLMCircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        fail();
+        breaker.record(breaker.acquire(), null);
+        fail();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void clientErrorsRateLimitsAndCancellationDoNotCount() {
+        for (int i = 0; i < 3; i++) {
+            breaker.record(breaker.acquire(), new LLMBadRequestException("test", 400, "bad"));
+            breaker.record(breaker.acquire(), new LLMRateLimitException("test", "slow down", null));
+            breaker.record(breaker.acquire(), new CancellationException());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void halfOpenAdmitsLimitedProbesAndClosesOnSuccess() throws Exception {
+        open();
+        Thread.sleep(OPEN.toMillis() + 20);
+
+        assertTrue(breaker.acquire(), "到期后的第一个请求应为探测");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertThrows(LLMCircuitOpenException.class, breaker::acquire, "探测名额已满");
+
+        breaker.record(true, null);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.acquire());
+    }
+
+    @Test
+    void failedProbeReopens() throws Exception {
+        open();
+        Thread.sleep(OPEN.toMillis() + 20);
+
+        boolean probe = breaker.acquire();
+        breaker.record(probe, new LLMServerException("test", 503, "unavailable", null));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(LLMCircuitOpenException.class, breaker::acquire);
+    }
+
+    @Test
+    void cancelledProbeReturnsItsSlot() throws Exception {
+        open();
+        Thread.sleep(OPEN.toMillis() + 20);
+
+        breaker.record(breaker.acquire(), new CancellationException());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.acquire(), "取消的探测应归还名额");
+    }
+
+    private void open() {
+        fail();
+        fail();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void fail() {
+        breaker.record(breaker.acquire(), new LLMServerException("test", 500, "boom", null));
+    }
+}
@@ -0,0 +1,141 @@
+package framework.llm;
+
+import framework.model.UsageStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingLLMClientTest {
+    private static final List<Map<String, String>> MESSAGES = List.of(Map.of("role", "user", "content", "hi"));
+
+    private final StubLLMClient upstream = new StubLLMClient("stub");
+    private final CoalescingLLMClient client = new CoalescingLLMClient(upstream);
+
+    @Test
+    void concurrentIdenticalCallsShareOneUpstreamCall() {
+        CompletableFuture<String> first = client.chatAsync(MESSAGES);
+        CompletableFuture<String> second = client.chatAsync(MESSAGES);
+
+        assertEquals(1, upstream.calls().size());
+        assertEquals(1, client.getCoalescedCalls());
+        upstream.call(0).future().complete("answer");
+        assertEquals("answer", first.join());
+        assertEquals("answer", second.join());
+        assertEquals(0, client.getInFlightCount());
+    }
+
+    @Test
+    void followerIsMeteredAsHitAndInitiatorWaitsForLateUsage() {
+        UsageStats stats = new UsageStats();
+        LLMCallMeter initiator = new LLMCallMeter(token -> false, stats);
+        LLMCallMeter follower = new LLMCallMeter(token -> false, stats);
+        CompletableFuture<String> first = client.chatStreamAsync(MESSAGES, null, initiator);
+        CompletableFuture<String> second = client.chatStreamAsync(MESSAGES, null, follower);
+
+        StubLLMClient.Call call = upstream.call(0);
+        assertFalse(call.emit("{}"));
+        first.join();
+        second.join();
+        initiator.finish();
+        follower.finish();
+        assertTrue(follower.settled().isDone());
+        assertFalse(initiator.settled().isDone(), "提前停止后用量尚未到达");
+
+        call.listener().onUsage(new LLMUsage(10, 5, 15, 0));
+        call.listener().onEnd();
+        assertTrue(stats.whenSettled().isDone());
+        assertEquals(1, stats.getLlmCalls());
+        assertEquals(1, stats.getLlmHits());
+        assertEquals(15, stats.getTotalTokens());
+    }
+
+    @Test
+    void callAfterCompletionStartsNewFlight() {
+        client.chatAsync(MESSAGES);
+        upstream.call(0).future().complete("answer");
+
+        client.chatAsync(MESSAGES);
+        assertEquals(2, upstream.calls().size());
+    }
+
+    @Test
+    void lateStreamWaiterReceivesReplayThenLiveTokens() {
+        List<String> early = new ArrayList<>();
+        List<String> late = new ArrayList<>();
+        CompletableFuture<String> first = client.chatStreamAsync(MESSAGES, null, token -> early.add(token));
+        StubLLMClient.Call call = upstream.call(0);
+        call.emit("a");
+        call.emit("b");
+
+        CompletableFuture<String> second = client.chatStreamAsync(MESSAGES, null, token -> late.add(token));
+        assertEquals(List.of("a", "b"), late);
+        call.emit("c");
+        call.future().complete("abc");
+
+        assertEquals(List.of("a", "b", "c"), early);
+        assertEquals(List.of("a", "b", "c"), late);
+        assertEquals("abc", first.join());
+        assertEquals("abc", second.join());
+        assertEquals(1, upstream.calls().size());
+    }
+
+    @Test
+    void waiterThatStopsEarlyGetsPrefixWithoutStoppingOthers() {
+        CompletableFuture<String> stopper = client.chatStreamAsync(MESSAGES, null, token -> !token.equals("b"));
+        List<String> reader = new ArrayList<>();
+        CompletableFuture<String> other = client.chatStreamAsync(MESSAGES, null, token -> reader.add(token));
+        StubLLMClient.Call call = upstream.call(0);
+
+        assertTrue(call.emit("a"));
+        assertTrue(call.emit("b"), "仍有等待者时上游应继续");
+        assertEquals("ab", stopper.join());
+        call.emit("c");
+        call.future().complete("abc");
+        assertEquals("abc", other.join());
+        assertEquals(List.of("a", "b", "c"), reader);
+    }
+
+    @Test
+    void upstreamCancelledOnlyWhenAllWaitersLeave() {
+        CompletableFuture<String> first = client.chatAsync(MESSAGES);
+        CompletableFuture<String> second = client.chatAsync(MESSAGES);
+        CompletableFuture<String> source = upstream.call(0).future();
+
+        first.cancel(true);
+        assertFalse(source.isCancelled());
+        assertEquals(1, client.getInFlightCount());
+
+        second.cancel(true);
+        assertTrue(source.isCancelled());
+        assertEquals(0, client.getInFlightCount());
+    }
+
+    @Test
+    void callAfterAllWaitersLeftDoesNotJoinCancelledFlight() {
+        client.chatAsync(MESSAGES).cancel(true);
+
+        CompletableFuture<String> next = client.chatAsync(MESSAGES);
+        assertEquals(2, upstream.calls().size());
+        upstream.call(1).future().complete("fresh");
+        assertEquals("fresh", next.join());
+    }
+
+    @Test
+    void usageForwardedOnlyToInitiator() {
+        List<LLMUsage> initiatorUsage = new ArrayList<>();
+        List<LLMUsage> joinerUsage = new ArrayList<>();
+        client.chatStreamAsync(MESSAGES, null, LLMStreamListener.of(token -> true, initiatorUsage::add));
+        client.chatStreamAsync(MESSAGES, null, LLMStreamListener.of(token -> true, joinerUsage::add));
+
+        upstream.call(0).listener().onUsage(new LLMUsage(10, 5, 15, 0));
+        assertEquals(1, initiatorUsage.size());
+        assertTrue(joinerUsage.isEmpty());
+    }
+}
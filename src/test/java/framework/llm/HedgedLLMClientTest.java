@@ -0,0 +1,147 @@
+package framework.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgedLLMClientTest {
+    private static final List<Map<String, String>> MESSAGES = List.of(Map.of("role", "user", "content", "hi"));
+
+    private final StubLLMClient primary = new StubLLMClient("primary");
+    private final StubLLMClient secondary = new StubLLMClient("secondary");
+
+    @Test
+    void slowPrimaryIsHedgedAndCancelledWhenBackupWins() throws Exception {
+        HedgedLLMClient client = hedged(Duration.ofMillis(20));
+        CompletableFuture<String> result = client.chatAsync(MESSAGES);
+
+        awaitCalls(secondary, 1);
+        secondary.call(0).future().complete("backup");
+        assertEquals("backup", result.join());
+        assertTrue(primary.call(0).future().isCancelled(), "落败的主提供者应被取消");
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() throws Exception {
+        HedgedLLMClient client = hedged(Duration.ofMillis(50));
+        CompletableFuture<String> result = client.chatAsync(MESSAGES);
+        primary.call(0).future().complete("main");
+
+        assertEquals("main", result.join());
+        Thread.sleep(100);
+        assertTrue(secondary.calls().isEmpty());
+    }
+
+    @Test
+    void failureFailsOverToNextProvider() {
+        HedgedLLMClient client = new HedgedLLMClient(List.of(primary, secondary), false,
+            Duration.ofSeconds(10), Duration.ofMillis(1));
+        CompletableFuture<String> result = client.chatAsync(MESSAGES);
+
+        primary.call(0).future().completeExceptionally(new LLMServerException("primary", 503, "down", null));
+        assertEquals(1, secondary.calls().size());
+        secondary.call(0).future().complete("backup");
+        assertEquals("backup", result.join());
+    }
+
+    @Test
+    void answerMentioningApiFailureIsAValidResult() {
+        HedgedLLMClient client = new HedgedLLMClient(List.of(primary, secondary), false,
+            Duration.ofSeconds(10), Duration.ofMillis(1));
+        String incident = "{\"type\": \"answer\", \"content\": \"根因：支付网关返回 DeepSeek API调用失败: HTTP 502，"
+            + "重试风暴耗尽连接池\"}\n以上是复盘结论。";
+        CompletableFuture<String> result = client.chatAsync(MESSAGES);
+
+        primary.call(0).future().complete(incident);
+        assertEquals(incident, result.join());
+        assertTrue(secondary.calls().isEmpty(), "正常回答中提到 API调用失败 不应触发故障转移");
+    }
+
+    @Test
+    void legacyFailurePayloadFailsOver() {
+        HedgedLLMClient client = new HedgedLLMClient(List.of(primary, secondary), false,
+            Duration.ofSeconds(10), Duration.ofMillis(1));
+        CompletableFuture<String> result = client.chatAsync(MESSAGES);
+
+        primary.call(0).future().complete("{\"type\": \"answer\", \"content\": \"DeepSeek API调用失败: Connection refused\"}");
+        assertEquals(1, secondary.calls().size());
+        secondary.call(0).future().complete("backup");
+        assertEquals("backup", result.join());
+    }
+
+    @Test
+    void firstStreamTokenWinsAndLoserIsCancelledNotDrained() throws Exception {
+        HedgedLLMClient client = hedged(Duration.ofMillis(20));
+        List<String> received = new ArrayList<>();
+        CompletableFuture<String> result = client.chatStreamAsync(MESSAGES, null, token -> received.add(token));
+
+        awaitCalls(secondary, 1);
+        assertTrue(secondary.call(0).emit("b1"));
+        assertTrue(primary.call(0).future().isCancelled());
+        assertFalse(primary.call(0).emit("p1"), "落败者的 token 不应转发");
+
+        secondary.call(0).emit("b2");
+        secondary.call(0).future().complete("b1b2");
+        assertEquals("b1b2", result.join());
+        assertEquals(List.of("b1", "b2"), received);
+    }
+
+    @Test
+    void usageForwardedOnlyFromWinner() throws Exception {
+        HedgedLLMClient client = hedged(Duration.ofMillis(20));
+        List<LLMUsage> usage = new ArrayList<>();
+        client.chatStreamAsync(MESSAGES, null, LLMStreamListener.of(token -> true, usage::add));
+
+        awaitCalls(secondary, 1);
+        secondary.call(0).emit("b1");
+        primary.call(0).listener().onUsage(new LLMUsage(1, 1, 2, 0));
+        secondary.call(0).listener().onUsage(new LLMUsage(10, 5, 15, 0));
+        assertEquals(1, usage.size());
+        assertEquals(15, usage.get(0).getTotalTokens());
+    }
+
+    @Test
+    void primaryLossIsRecordedAsCensoredLatency() throws Exception {
+        HedgedLLMClient client = new HedgedLLMClient(List.of(primary, secondary), true,
+            Duration.ofSeconds(10), Duration.ofMillis(1));
+        // 主提供者立即返回的 20 次调用：p95 接近 0，对冲延迟接近下限 1ms
+        for (int i = 0; i < 20; i++) {
+            CompletableFuture<String> result = client.chatAsync(MESSAGES);
+            primary.call(i).future().complete("main");
+            result.join();
+        }
+        assertTrue(client.getHedgeDelay(false).toMillis() < 20, "delay=" + client.getHedgeDelay(false));
+
+        // 之后两次主提供者卡住，备用提供者 50ms 后返回：取消主提供者时的耗时应计入样本
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<String> result = client.chatAsync(MESSAGES);
+            awaitCalls(secondary, i + 1);
+            Thread.sleep(50);
+            secondary.call(i).future().complete("backup");
+            result.join();
+        }
+        assertTrue(client.getHedgeDelay(false).toMillis() >= 50, "delay=" + client.getHedgeDelay(false));
+    }
+
+    private HedgedLLMClient hedged(Duration delay) {
+        return new HedgedLLMClient(List.of(primary, secondary), true, delay, Duration.ofMillis(1));
+    }
+
+    private static void awaitCalls(StubLLMClient client, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (client.calls().size() < count) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError(client.getModelName() + " 未在 5 秒内收到第 " + count + " 次调用");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package framework.llm;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多副本负载均衡：每个副本是一个本地 HttpServer，响应内容为副本名称
+ */
+class LoadBalancedLLMClientTest {
+    private final List<Replica> replicas = new ArrayList<>();
+
+    @AfterEach
+    void stopReplicas() {
+        replicas.forEach(Replica::stop);
+    }
+
+    @Test
+    void newSessionGoesToReplicaWithFewestOutstandingRequests() throws Exception {
+        Replica a = replica("A");
+        Replica b = replica("B");
+        LoadBalancedLLMClient pool = pool(3, Duration.ofSeconds(30), "key", a, b);
+        a.hold = new CountDownLatch(1);
+
+        CompletableFuture<String> slow = pool.chatAsync(user("q1"));
+        assertEquals("B", pool.chatAsync(user("q2")).get(5, TimeUnit.SECONDS));
+        assertEquals("B", pool.chatAsync(user("q3")).get(5, TimeUnit.SECONDS), "A 仍有在途请求");
+
+        a.hold.countDown();
+        assertEquals("A", slow.get(5, TimeUnit.SECONDS));
+        assertEquals(1, a.requests.get());
+        assertEquals(2, b.requests.get());
+    }
+
+    @Test
+    void failingReplicaIsEjectedAndRecoversAfterProbe() throws Exception {
+        Replica a = replica("A");
+        Replica b = replica("B");
+        LoadBalancedLLMClient pool = pool(2, Duration.ofMillis(200), "key", a, b);
+        a.status = 500;
+
+        for (int i = 0; i < 8; i++) {
+            try {
+                pool.chatAsync(user("q" + i)).get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // A 的失败请求
+            }
+        }
+        assertEquals(2, a.requests.get(), "连续失败 2 次后摘除，不再分配请求");
+        assertEquals(6, b.requests.get());
+
+        Thread.sleep(250);
+        a.status = 200;
+        List<String> answers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            answers.add(pool.chatAsync(user("r" + i)).get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(answers.contains("A"), "摘除到期后由真实请求试探并恢复: " + answers);
+        assertFalse(pool.getEndpoints().get(0).toString().contains("已摘除"));
+    }
+
+    @Test
+    void sessionKeyKeepsConversationOnOneReplica() throws Exception {
+        Replica a = replica("A");
+        Replica b = replica("B");
+        LoadBalancedLLMClient pool = pool(3, Duration.ofSeconds(30), "key", a, b);
+
+        // 同一个 groupId 的各轮请求内容不同，仍发往同一副本（不按轮询交替）
+        for (int round = 0; round < 3; round++) {
+            assertEquals("A", stream(pool, user("group-1 round " + round), "group-1"));
+        }
+        for (int round = 0; round < 2; round++) {
+            assertEquals("B", stream(pool, user("group-2 round " + round), "group-2"));
+        }
+        assertEquals(3, a.requests.get());
+        assertEquals(2, b.requests.get());
+    }
+
+    @Test
+    void conversationHeadIdentifiesSessionWithoutKey() throws Exception {
+        Replica a = replica("A");
+        Replica b = replica("B");
+        LoadBalancedLLMClient pool = pool(3, Duration.ofSeconds(30), "key", a, b);
+        List<Map<String, String>> first = List.of(
+            Map.of("role", "system", "content", "sys"), Map.of("role", "user", "content", "task"));
+        List<Map<String, String>> next = List.of(
+            Map.of("role", "system", "content", "sys"), Map.of("role", "user", "content", "task"),
+            Map.of("role", "assistant", "content", "thought"), Map.of("role", "user", "content", "observation"));
+
+        assertEquals("A", pool.chatAsync(first).get(5, TimeUnit.SECONDS));
+        // 轮询起点已移到 B，开头相同的下一轮仍沿用 A
+        assertEquals("A", pool.chatAsync(next).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void keyLanesShareAffinityAndLoad() throws Exception {
+        Replica a = replica("A");
+        Replica b = replica("B");
+        LoadBalancedLLMClient pool = pool(3, Duration.ofSeconds(30), "key-1", a, b);
+        LoadBalancedLLMClient lane = pool.withClients(List.of(client("key-2", a), client("key-2", b)));
+
+        assertEquals("A", stream(pool, user("round 0"), "group-1"));
+        assertEquals("A", stream(lane, user("round 1"), "group-1"), "另一个 Key 的通道沿用同一会话亲和");
+        assertEquals(List.of("Bearer key-1", "Bearer key-2"), a.authorizations);
+
+        a.hold = new CountDownLatch(1);
+        CompletableFuture<String> slow = lane.chatAsync(user("slow"));
+        assertEquals("B", pool.chatAsync(user("new session")).get(5, TimeUnit.SECONDS), "在途数按整个池统计");
+        a.hold.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void sessionKeyIsNotPartOfRequestFingerprint() {
+        LLMClient client = new StubLLMClient("stub");
+        List<Map<String, String>> messages = user("q");
+
+        assertEquals(RequestFingerprint.of(client, messages, null),
+            RequestFingerprint.of(client, messages, ChatOptions.none().withSessionKey("group-1")));
+        assertEquals(RequestFingerprint.of(client, messages, ChatOptions.jsonMode()),
+            RequestFingerprint.of(client, messages, ChatOptions.jsonMode().withSessionKey("group-2")));
+    }
+
+    private Replica replica(String name) throws IOException {
+        Replica replica = new Replica(name);
+        replicas.add(replica);
+        return replica;
+    }
+
+    private static LoadBalancedLLMClient pool(int failureThreshold, Duration ejection, String apiKey,
+                                              Replica... replicas) {
+        List<LoadBalancedLLMClient.Endpoint> endpoints = new ArrayList<>();
+        for (Replica replica : replicas) {
+            endpoints.add(new LoadBalancedLLMClient.Endpoint(replica.name, client(apiKey, replica)));
+        }
+        return new LoadBalancedLLMClient(endpoints, failureThreshold, ejection);
+    }
+
+    private static LLMClient client(String apiKey, Replica replica) {
+        return new OpenAILLMClient(apiKey, "test-model", replica.baseUrl(), null, null, null, false);
+    }
+
+    private static String stream(LLMClient client, List<Map<String, String>> messages, String sessionKey)
+            throws Exception {
+        return client.chatStreamAsync(messages, ChatOptions.none().withSessionKey(sessionKey), token -> true)
+            .get(5, TimeUnit.SECONDS);
+    }
+
+    private static List<Map<String, String>> user(String content) {
+        return List.of(Map.of("role", "user", "content", content));
+    }
+
+    /**
+     * OpenAI 兼容副本的替身：非流式返回 JSON，流式返回一个 SSE 分块；可以挂起请求或返回错误状态
+     */
+    private static final class Replica {
+        private final String name;
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final List<String> authorizations = new CopyOnWriteArrayList<>();
+        private volatile int status = 200;
+        private volatile CountDownLatch hold;
+
+        Replica(String name) throws IOException {
+            this.name = name;
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/v1/chat/completions", exchange -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                requests.incrementAndGet();
+                authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+                CountDownLatch latch = hold;
+                if (latch != null) {
+                    try {
+                        latch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] response;
+                int code = status;
+                if (code != 200) {
+                    response = "{\"error\":{\"message\":\"replica down\"}}".getBytes(StandardCharsets.UTF_8);
+                } else if (body.contains("\"stream\":true")) {
+                    exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+                    response = ("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + name + "\"}}]}\n\n"
+                        + "data: [DONE]\n\n").getBytes(StandardCharsets.UTF_8);
+                } else {
+                    response = ("{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\""
+                        + name + "\"}}]}").getBytes(StandardCharsets.UTF_8);
+                }
+                exchange.sendResponseHeaders(code, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            });
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
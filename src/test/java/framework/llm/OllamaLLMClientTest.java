@@ -0,0 +1,273 @@
+package framework.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import framework.agent.AgentFramework;
+import framework.agent.ReActAgent;
+import framework.model.AgentRequest;
+import framework.model.AgentResponse;
+import framework.model.AgentState;
+import framework.tool.Tool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ollama 会话 context 复用（含带工具的 ReAct 执行）和 num_ctx：本地 HttpServer 模拟 /api/generate 和 /api/chat，
+ * 按脚本逐段推送回复，/api/generate 的最后一个分块带 context
+ */
+class OllamaLLMClientTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<String, String> SYSTEM = Map.of("role", "system", "content", "你是运维助手。");
+    private static final Map<String, String> QUERY = Map.of("role", "user", "content", "排查 order-service 的 500 错误");
+    private static final String DECISION =
+        "{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", \"arguments\": {\"query\": \"ERROR 日志\"}}";
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String baseUrl;
+    private final Queue<Script> scripts = new ArrayDeque<>();
+    private final List<Recorded> requests = new CopyOnWriteArrayList<>();
+
+    /**
+     * 一次回复：按段推送 parts，推送完后等待 doneDelayMillis 再发送带 context 的结束分块
+     */
+    record Script(List<String> parts, int[] context, long doneDelayMillis) {
+    }
+
+    record Recorded(String path, JsonNode body) {
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/api/generate", exchange -> respond(exchange, true));
+        server.createContext("/api/chat", exchange -> respond(exchange, false));
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void recordedDecisionWithoutSurroundingTextContinuesContext() throws Exception {
+        OllamaLLMClient client = client(true, 0);
+        script(new int[]{1, 2, 3}, 0, "我先查一下日志。\n", DECISION, "\n拿到日志后再看指标。");
+
+        String reply = client.chatStreamAsync(List.of(SYSTEM, QUERY), null, token -> true).get(5, TimeUnit.SECONDS);
+        assertTrue(reply.startsWith("我先查一下日志"));
+        assertEquals("/api/generate", requests.get(0).path(), "新会话从 /api/generate 开始");
+
+        script(new int[]{1, 2, 3, 4, 5}, 0, "{\"type\": \"answer\", \"content\": \"完成\"}");
+        // 调用方只把决策 JSON 写回历史
+        client.chatStreamAsync(List.of(SYSTEM, QUERY, assistant(DECISION), user("日志: NPE at OrderController:42")),
+            null, token -> true).get(5, TimeUnit.SECONDS);
+
+        Recorded second = requests.get(1);
+        assertEquals("/api/generate", second.path());
+        assertEquals("[1,2,3]", second.body().get("context").toString());
+        assertEquals("日志: NPE at OrderController:42", second.body().get("prompt").asText());
+        assertFalse(second.body().has("messages"), "续接时只发送最新一条消息");
+    }
+
+    @Test
+    void contextArrivingAfterEarlyStopIsAwaited() throws Exception {
+        OllamaLLMClient client = client(true, 0);
+        script(new int[]{7, 8}, 100, "说明文字 ", DECISION, " 尾部文字");
+
+        String decision = client.chatStreamAsync(List.of(SYSTEM, QUERY), null,
+            token -> !token.contains("tool_call")).get(5, TimeUnit.SECONDS);
+        assertTrue(decision.contains("tool_call"));
+
+        script(new int[]{7, 8, 9}, 0, "好的");
+        client.chatStreamAsync(List.of(SYSTEM, QUERY, assistant(DECISION), user("观察")), null, token -> true)
+            .get(5, TimeUnit.SECONDS);
+        assertEquals("/api/generate", requests.get(1).path(), "等待后台读取带回的 context");
+        assertEquals("[7,8]", requests.get(1).body().get("context").toString());
+    }
+
+    @Test
+    void mismatchedHistoryFallsBackToChat() throws Exception {
+        OllamaLLMClient client = client(true, 0);
+        script(new int[]{1, 2}, 0, DECISION);
+        client.chatStreamAsync(List.of(SYSTEM, QUERY), null, token -> true).get(5, TimeUnit.SECONDS);
+
+        // 写回的回复不是模型的原回复
+        script(null, 0, "好的");
+        client.chatStreamAsync(List.of(SYSTEM, QUERY, assistant("{\"type\": \"answer\", \"content\": \"改写\"}"),
+            user("继续")), null, token -> true).get(5, TimeUnit.SECONDS);
+        // 更早的消息变了（如观察被压缩）
+        script(null, 0, "好的");
+        client.chatStreamAsync(List.of(SYSTEM, user("另一个问题"), assistant(DECISION), user("继续")),
+            null, token -> true).get(5, TimeUnit.SECONDS);
+
+        for (Recorded fallback : requests.subList(1, 3)) {
+            assertEquals("/api/chat", fallback.path());
+            assertEquals(4, fallback.body().get("messages").size(), "回退时发送完整历史");
+        }
+    }
+
+    @Test
+    void contextStillReadingPastWaitBoundFallsBackToChat() throws Exception {
+        OllamaLLMClient client = client(true, 0);
+        script(new int[]{1, 2}, 2000, DECISION, " 尾部");
+        client.chatStreamAsync(List.of(SYSTEM, QUERY), null, token -> false).get(5, TimeUnit.SECONDS);
+
+        script(null, 0, "好的");
+        long start = System.nanoTime();
+        client.chatStreamAsync(List.of(SYSTEM, QUERY, assistant(DECISION), user("观察")), null, token -> true)
+            .get(5, TimeUnit.SECONDS);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals("/api/chat", requests.get(1).path());
+        assertTrue(elapsedMillis < 1000, "最多等待 " + OllamaLLMClient.CONTEXT_WAIT_MS + "ms，实际 " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void reactTraceWithToolsStaysOnGenerateWhenContextReuseIsOn() throws Exception {
+        OllamaLLMClient client = client(true, 0);
+        AgentFramework framework = new AgentFramework();
+        framework.registerTool("log_search", new Tool() {
+            @Override
+            public CompletableFuture<AgentResponse> execute(AgentRequest request) {
+                return CompletableFuture.completedFuture(
+                    new AgentResponse(AgentState.COMPLETED, "NPE at OrderController:42", null, request));
+            }
+
+            @Override
+            public String getName() {
+                return "log_search";
+            }
+
+            @Override
+            public String getDescription() {
+                return "检索日志";
+            }
+        });
+        ReActAgent agent = new ReActAgent("devops_agent", "运维智能体", true, client,
+            List.of(), List.of("log_search"), "你是运维助手。", 5);
+        framework.registerAgent("devops_agent", agent);
+        assertEquals(ReActAgent.DecisionProtocol.NATIVE, agent.getDecisionProtocol());
+        script(new int[]{1, 2, 3}, 0,
+            "{\"type\": \"tool_call\", \"tool_name\": \"log_search\", \"arguments\": {\"query\": \"ERROR\"}}");
+        script(new int[]{1, 2, 3, 4}, 0, "{\"type\": \"answer\", \"content\": \"OrderController 空指针\"}");
+
+        AgentResponse response = agent.execute(new AgentRequest("排查 500 错误", null, "user", "devops_agent"))
+            .get(10, TimeUnit.SECONDS);
+        assertEquals(AgentState.COMPLETED, response.getState());
+        assertEquals("OrderController 空指针", response.getOutput());
+
+        assertEquals(2, requests.size());
+        for (Recorded request : requests) {
+            assertEquals("/api/generate", request.path(), "带工具的 ReAct 轮次改用 JSON 模式走 /api/generate");
+            assertEquals("json", request.body().get("format").asText());
+            assertFalse(request.body().has("tools"));
+        }
+        assertEquals("[1,2,3]", requests.get(1).body().get("context").toString(), "第二轮续接第一轮的 context");
+        assertTrue(requests.get(1).body().get("prompt").asText().contains("NPE at OrderController:42"));
+    }
+
+    @Test
+    void numCtxGrowsInPowerOfTwoBucketsAndNeverShrinks() throws Exception {
+        OllamaLLMClient client = client(false, 8192);
+        int[] expected = {1024, 4096, 4096, 8192};
+        int[] promptChars = {500, 3000, 100, 20000};
+        for (int promptLength : promptChars) {
+            script(null, 0, "好的");
+            // 估算分词器按一个中文字符一个 token 计数
+            client.chatStreamAsync(List.of(user("测".repeat(promptLength))), null, token -> true).get(5, TimeUnit.SECONDS);
+        }
+
+        for (int i = 0; i < expected.length; i++) {
+            Recorded request = requests.get(i);
+            assertEquals("/api/chat", request.path());
+            assertEquals(expected[i], request.body().get("options").get("num_ctx").asInt(), "第 " + (i + 1) + " 次请求");
+            assertEquals("30m", request.body().get("keep_alive").asText());
+        }
+    }
+
+    private OllamaLLMClient client(boolean contextReuse, int maxNumCtx) {
+        OllamaLLMClient.Settings settings = new OllamaLLMClient.Settings();
+        settings.setKeepAlive("30m");
+        settings.setContextReuse(contextReuse);
+        settings.setMinNumCtx(1024);
+        settings.setMaxNumCtx(maxNumCtx);
+        settings.setReservedOutputTokens(0);
+        return new OllamaLLMClient(baseUrl, "qwen2.5", null, null, null, false, settings);
+    }
+
+    private void script(int[] context, long doneDelayMillis, String... parts) {
+        synchronized (scripts) {
+            scripts.add(new Script(List.of(parts), context, doneDelayMillis));
+        }
+    }
+
+    private void respond(HttpExchange exchange, boolean generate) throws IOException {
+        requests.add(new Recorded(exchange.getRequestURI().getPath(), MAPPER.readTree(exchange.getRequestBody())));
+        Script script;
+        synchronized (scripts) {
+            script = scripts.poll();
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            for (String part : script.parts()) {
+                Map<String, Object> chunk = generate
+                    ? Map.of("response", part, "done", false)
+                    : Map.of("message", Map.of("role", "assistant", "content", part), "done", false);
+                body.write(line(chunk));
+                body.flush();
+            }
+            if (script.doneDelayMillis() > 0) {
+                Thread.sleep(script.doneDelayMillis());
+            }
+            Map<String, Object> done = generate && script.context() != null
+                ? Map.of("done", true, "context", script.context(), "prompt_eval_count", 20, "eval_count", 5)
+                : Map.of("done", true, "prompt_eval_count", 20, "eval_count", 5);
+            body.write(line(done));
+        } catch (IOException e) {
+            // 客户端中止连接
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] line(Map<String, Object> chunk) throws IOException {
+        return (MAPPER.writeValueAsString(chunk) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> user(String content) {
+        return Map.of("role", "user", "content", content);
+    }
+
+    private static Map<String, String> assistant(String content) {
+        return Map.of("role", "assistant", "content", content);
+    }
+}
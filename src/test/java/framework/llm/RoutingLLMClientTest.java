@@ -0,0 +1,162 @@
+package framework.llm;
+
+import framework.llm.token.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoutingLLMClientTest {
+    private static final List<Map<String, String>> SHORT = List.of(Map.of("role", "user", "content", "hi"));
+    private static final List<Map<String, String>> LONG = List.of(Map.of("role", "user", "content", "x".repeat(200)));
+
+    private final StubLLMClient fast = new StubLLMClient("fast-model");
+    private final StubLLMClient longContext = new StubLLMClient("long-model");
+    private final StubLLMClient fallback = new StubLLMClient("default-model");
+
+    @Test
+    void selectsRouteByAgentAndPromptLength() {
+        RoutingLLMClient router = new RoutingLLMClient(List.of(
+            new RoutingLLMClient.Route("fast", fast, Set.of("executor_agent"), 0, 50, 0, 0.5),
+            new RoutingLLMClient.Route("long", longContext, Set.of(), 51, 0, 0, 0.5)
+        ), fallback, new CharTokenizer());
+
+        router.forAgent("executor_agent").chatStreamAsync(SHORT, token -> true);
+        assertEquals(1, fast.calls().size());
+
+        router.forAgent("planner_agent").chatStreamAsync(SHORT, token -> true);
+        router.chatAsync(SHORT);
+        assertEquals(2, fallback.calls().size(), "其他智能体和未绑定的调用不使用限定智能体的路由");
+
+        router.forAgent("executor_agent").chatStreamAsync(LONG, token -> true);
+        router.chatAsync(LONG);
+        assertEquals(2, longContext.calls().size(), "超出 fast 的提示长度上限时使用下一个匹配的路由");
+        assertEquals(1, fast.calls().size());
+    }
+
+    @Test
+    void failingRouteFallsBackToDefault() {
+        RoutingLLMClient router = new RoutingLLMClient(List.of(
+            new RoutingLLMClient.Route("fast", fast, Set.of(), 0, 0, 0, 0.2)
+        ), fallback, new CharTokenizer());
+
+        for (int i = 0; i < 10; i++) {
+            CompletableFuture<String> future = router.chatAsync(SHORT);
+            if (i % 2 == 0) {
+                fast.call(i).future().completeExceptionally(new LLMException("fast", 503, null, "不可用", null));
+                assertThrows(CompletionException.class, future::join, "选中路由的失败原样返回给调用方");
+            } else {
+                // 旧式失败正文同样计为失败
+                fast.call(i).future().complete("{\"type\": \"answer\", \"content\": \"DeepSeek API调用失败: 超时\"}");
+            }
+        }
+
+        CompletableFuture<String> next = router.chatAsync(SHORT);
+        assertEquals(10, fast.calls().size(), "错误率超过上限后跳过该路由");
+        assertEquals(1, fallback.calls().size());
+        fallback.call(0).future().complete("ok");
+        assertEquals("ok", next.join());
+    }
+
+    @Test
+    void cancelledCallsDoNotCountAgainstRoute() {
+        RoutingLLMClient router = new RoutingLLMClient(List.of(
+            new RoutingLLMClient.Route("fast", fast, Set.of(), 0, 0, 0, 0.2)
+        ), fallback, new CharTokenizer());
+
+        for (int i = 0; i < 10; i++) {
+            router.chatAsync(SHORT).cancel(true);
+        }
+        for (int i = 0; i < 10; i++) {
+            router.chatAsync(SHORT);
+            fast.call(10 + i).future().complete("ok");
+        }
+        router.chatAsync(SHORT);
+
+        assertEquals(21, fast.calls().size());
+        assertTrue(fallback.calls().isEmpty());
+    }
+
+    @Test
+    void slowRouteIsSkippedByP90Latency() throws Exception {
+        RoutingLLMClient router = new RoutingLLMClient(List.of(
+            new RoutingLLMClient.Route("fast", fast, Set.of(), 0, 0, 20, 0.5)
+        ), fallback, new CharTokenizer());
+
+        for (int i = 0; i < 10; i++) {
+            router.chatAsync(SHORT);
+            Thread.sleep(40);
+            fast.call(i).future().complete("ok");
+        }
+        router.chatAsync(SHORT);
+
+        assertEquals(10, fast.calls().size());
+        assertEquals(1, fallback.calls().size(), "p90 延迟超过上限后使用默认客户端");
+    }
+
+    @Test
+    void reportShowsPerRouteErrorsAndLatency() {
+        RoutingLLMClient router = new RoutingLLMClient(List.of(
+            new RoutingLLMClient.Route("fast", fast, Set.of("executor_agent"), 0, 0, 0, 0.5)
+        ), fallback, new CharTokenizer());
+        LLMClient executor = router.forAgent("executor_agent");
+
+        for (int i = 0; i < 4; i++) {
+            executor.chatAsync(SHORT);
+        }
+        fast.call(0).future().complete("ok");
+        fast.call(1).future().complete("ok");
+        fast.call(2).future().complete("ok");
+        fast.call(3).future().completeExceptionally(new LLMException("fast", 500, null, "错误", null));
+        router.chatAsync(SHORT);
+        fallback.call(0).future().complete("ok");
+
+        String report = captureReport(router);
+        assertTrue(report.contains("fast（fast-model）: 调用 4 次，失败 1 次，近期错误率 25.0%"), report);
+        assertTrue(report.contains("默认（default-model）: 调用 1 次，失败 0 次，近期错误率 0.0%"), report);
+        assertFalse(report.contains("p90 -"), "成功的调用都记录了延迟");
+    }
+
+    private static String captureReport(RoutingLLMClient router) {
+        PrintStream original = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        try {
+            router.printReport();
+        } finally {
+            System.setOut(original);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一个字符一个 token
+     */
+    private static final class CharTokenizer implements Tokenizer {
+        @Override
+        public int count(String text) {
+            return text == null ? 0 : text.length();
+        }
+
+        @Override
+        public String truncate(String text, int maxTokens) {
+            return text.substring(0, Math.min(text.length(), maxTokens));
+        }
+
+        @Override
+        public String getName() {
+            return "chars";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package framework.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimpleLLMClientTest {
+    private static final List<SimpleLLMClient.Rule> SCRIPT = List.of(
+        new SimpleLLMClient.Rule("主控智能体", "^排查 (\\S+)", "{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", "
+            + "\"arguments\": {\"query\": \"{{1}} 第{{round}}轮\"}}"),
+        new SimpleLLMClient.Rule(null, "观察结果", "{\"type\": \"answer\", \"content\": \"{{user}}\"}"));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysScriptWithPlaceholders() {
+        SimpleLLMClient client = new SimpleLLMClient(SCRIPT, null, null, 0, 0, 1L);
+
+        assertEquals("{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", \"arguments\": {\"query\": \"order-service 第0轮\"}}",
+            client.chat(conversation("排查 order-service 的 500 错误")));
+        assertEquals("{\"type\": \"answer\", \"content\": \"观察结果：\\\"连接池\\\"\\n耗尽\"}",
+            client.chat(List.of(
+                Map.of("role", "system", "content", "主控智能体"),
+                Map.of("role", "assistant", "content", "{}"),
+                Map.of("role", "user", "content", "观察结果：\"连接池\"\n耗尽"))),
+            "{{user}} 按 JSON 字符串转义");
+        assertEquals("{\"type\": \"answer\", \"content\": \"任务完成\"}", client.chat(conversation("你好")),
+            "没有规则命中时回退到演示逻辑");
+    }
+
+    @Test
+    void loadsScriptFromFile() throws Exception {
+        Path file = Files.writeString(dir.resolve("rules.json"),
+            "[{\"user\": \"状态\", \"response\": \"{\\\"type\\\": \\\"answer\\\", \\\"content\\\": \\\"正常\\\"}\"}]");
+        SimpleLLMClient client = new SimpleLLMClient(SimpleLLMClient.loadRules(file), null, null, 0, 0, 1L);
+
+        assertEquals("{\"type\": \"answer\", \"content\": \"正常\"}", client.chat(conversation("查询状态")));
+    }
+
+    @Test
+    void streamsTokensAndReportsUsage() throws Exception {
+        SimpleLLMClient client = new SimpleLLMClient(SCRIPT, SimpleLLMClient.Distribution.constant(5),
+            SimpleLLMClient.Distribution.constant(2000), 0, 0, 1L);
+        List<Map<String, String>> messages = conversation("排查 order-service");
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        AtomicReference<LLMUsage> usage = new AtomicReference<>();
+
+        String content = client.chatStreamAsync(messages, LLMStreamListener.of(tokens::add, usage::set))
+            .get(5, TimeUnit.SECONDS);
+
+        assertEquals(content, String.join("", tokens));
+        assertEquals(SimpleLLMClient.splitTokens(content), tokens);
+        assertEquals(RateLimitedLLMClient.estimateTokens(messages), usage.get().getPromptTokens());
+        assertEquals(tokens.size(), usage.get().getCompletionTokens());
+    }
+
+    @Test
+    void listenerStoppingEarlyEndsTheStream() throws Exception {
+        SimpleLLMClient client = new SimpleLLMClient(SCRIPT, null, SimpleLLMClient.Distribution.constant(2000), 0, 0, 1L);
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        AtomicReference<LLMUsage> usage = new AtomicReference<>();
+
+        String content = client.chatStreamAsync(conversation("排查 order-service"), new LLMStreamListener() {
+            @Override
+            public boolean onToken(String token) {
+                tokens.add(token);
+                return tokens.size() < 3;
+            }
+
+            @Override
+            public void onUsage(LLMUsage reported) {
+                usage.set(reported);
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        Thread.sleep(20);
+        assertEquals(3, tokens.size(), "返回 false 后不再推送");
+        assertEquals(String.join("", tokens), content, "结果只包含已推送的部分");
+        assertEquals(3, usage.get().getCompletionTokens());
+    }
+
+    @Test
+    void sameSeedReplaysSameFailures() {
+        List<String> first = outcomes(new SimpleLLMClient(SCRIPT, null, null, 0.3, 0.2, 42L));
+        List<String> second = outcomes(new SimpleLLMClient(SCRIPT, null, null, 0.3, 0.2, 42L));
+
+        assertEquals(first, second);
+        assertTrue(first.contains("500") && first.contains("429") && first.contains("ok"), first.toString());
+    }
+
+    @Test
+    void injectedErrorsAreProviderExceptions() {
+        SimpleLLMClient failing = new SimpleLLMClient(SCRIPT, null, null, 1.0, 0, 1L);
+        LLMException error = assertThrows(LLMException.class, () -> failing.chat(conversation("排查 a")));
+        assertEquals(500, error.getStatusCode());
+        assertTrue(error.isRetryable());
+
+        SimpleLLMClient limited = new SimpleLLMClient(SCRIPT, null, null, 0, 1.0, 1L);
+        LLMRateLimitException rateLimit = assertThrows(LLMRateLimitException.class,
+            () -> limited.chat(conversation("排查 a")));
+        assertEquals(1, rateLimit.getRetryAfter().toSeconds());
+    }
+
+    private static List<String> outcomes(SimpleLLMClient client) {
+        List<String> outcomes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            try {
+                client.chat(conversation("排查 a"));
+                outcomes.add("ok");
+            } catch (LLMException e) {
+                outcomes.add(String.valueOf(e.getStatusCode()));
+            }
+        }
+        return outcomes;
+    }
+
+    private static List<Map<String, String>> conversation(String query) {
+        return List.of(Map.of("role", "system", "content", "你是主控智能体"), Map.of("role", "user", "content", query));
+    }
+}
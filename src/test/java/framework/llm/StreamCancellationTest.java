@@ -0,0 +1,189 @@
+package framework.llm;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 流式调用的取消必须传到 HTTP 交换：本地 SSE 服务端持续推送，客户端取消后服务端写入应失败；
+ * 提前停止时结果立即返回，用量和读取结束在后台读完剩余数据后回调
+ */
+class StreamCancellationTest {
+    private static final List<Map<String, String>> MESSAGES = List.of(Map.of("role", "user", "content", "hi"));
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String baseUrl;
+    private final AtomicInteger streamsStarted = new AtomicInteger();
+    private final CountDownLatch connectionAborted = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            streamsStarted.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                for (int i = 0; i < 500; i++) {
+                    body.write(chunk("t" + i));
+                    body.flush();
+                    Thread.sleep(20);
+                }
+                body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                connectionAborted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.createContext("/usage/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                for (int i = 0; i < 3; i++) {
+                    body.write(chunk("t" + i));
+                    body.flush();
+                    Thread.sleep(50);
+                }
+                body.write(("data: {\"choices\":[],\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":3,"
+                    + "\"total_tokens\":13}}\n\n").getBytes(StandardCharsets.UTF_8));
+                body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                connectionAborted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.createContext("/bad/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"error\":{\"message\":\"invalid tools\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(400, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void cancellingStreamAbortsHttpExchange() throws Exception {
+        OpenAILLMClient client = new OpenAILLMClient("test-key", "test-model", baseUrl + "/v1", null, null, null, false);
+        CountDownLatch firstToken = new CountDownLatch(1);
+        AtomicInteger tokens = new AtomicInteger();
+
+        CompletableFuture<String> future = client.chatStreamAsync(MESSAGES, null, token -> {
+            tokens.incrementAndGet();
+            firstToken.countDown();
+            return true;
+        });
+        assertTrue(firstToken.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(true));
+
+        assertTrue(connectionAborted.await(1, TimeUnit.SECONDS), "取消后服务端应检测到连接中止");
+        int received = tokens.get();
+        Thread.sleep(100);
+        assertEquals(received, tokens.get(), "取消后不应再回调 token");
+    }
+
+    @Test
+    void coalescedStreamAbortsOnlyAfterLastWaiterLeaves() throws Exception {
+        OpenAILLMClient raw = new OpenAILLMClient("test-key", "test-model", baseUrl + "/v1", null, null, null, false);
+        CoalescingLLMClient client = new CoalescingLLMClient(raw);
+        CountDownLatch firstToken = new CountDownLatch(1);
+
+        CompletableFuture<String> first = client.chatStreamAsync(MESSAGES, null, token -> {
+            firstToken.countDown();
+            return true;
+        });
+        CompletableFuture<String> second = client.chatStreamAsync(MESSAGES, null, token -> true);
+        assertTrue(firstToken.await(5, TimeUnit.SECONDS));
+        assertEquals(1, client.getUpstreamCalls());
+        assertEquals(1, client.getCoalescedCalls());
+
+        first.cancel(true);
+        assertFalse(connectionAborted.await(200, TimeUnit.MILLISECONDS), "仍有等待者时不应中止上游");
+
+        second.cancel(true);
+        assertTrue(connectionAborted.await(1, TimeUnit.SECONDS), "所有等待者离开后应中止上游");
+        assertEquals(1, streamsStarted.get());
+    }
+
+    @Test
+    void earlyStopReturnsAtOnceAndReportsUsageThenEnd() throws Exception {
+        OpenAILLMClient client = new OpenAILLMClient("test-key", "test-model", baseUrl + "/usage/v1", null, null, null, false);
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch ended = new CountDownLatch(1);
+
+        String content = client.chatStreamAsync(MESSAGES, null, new LLMStreamListener() {
+            @Override
+            public boolean onToken(String token) {
+                return false;
+            }
+
+            @Override
+            public void onUsage(LLMUsage usage) {
+                events.add("usage:" + usage.getTotalTokens());
+            }
+
+            @Override
+            public void onEnd() {
+                events.add("end");
+                ended.countDown();
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals("t0", content);
+        assertTrue(events.isEmpty(), "结果应在剩余数据读完之前返回");
+        assertTrue(ended.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("usage:13", "end"), events);
+    }
+
+    @Test
+    void errorResponseStillMapsToTypedException() {
+        OpenAILLMClient client = new OpenAILLMClient("test-key", "test-model", baseUrl + "/bad/v1", null, null, null, false);
+
+        CompletionException error = assertThrows(CompletionException.class,
+            () -> client.chatStreamAsync(MESSAGES, null, token -> true).join());
+        assertInstanceOf(LLMBadRequestException.class, error.getCause());
+    }
+
+    private static byte[] chunk(String token) {
+        return ("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + token + "\"}}]}\n\n")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,207 @@
+package framework.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 流式请求体：逐段写出的字节与 ObjectMapper 一次性序列化的结果一致（含 gzip 解压后），
+ * 并遵守下游的逐个请求
+ */
+class StreamingJsonBodyPublisherTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private final ChatCompletionCodec codec = new ChatCompletionCodec(MAPPER);
+
+    @Test
+    void streamedChatBodyMatchesObjectMapper() throws Exception {
+        ChatCompletionCodec.ChatRequest request = chatRequest();
+
+        byte[] streamed = collect(codec.requestPublisher(request, false), Long.MAX_VALUE).get(5, TimeUnit.SECONDS);
+        assertEquals(MAPPER.writeValueAsString(expectedChatBody(request)), new String(streamed, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void streamedGenerateBodyMatchesObjectMapper() throws Exception {
+        int[] context = new int[20_000];
+        for (int i = 0; i < context.length; i++) {
+            context[i] = i * 7;
+        }
+        ChatCompletionCodec.GenerateRequest request = new ChatCompletionCodec.GenerateRequest(
+            "qwen2.5", null, "继续排查", context, true, "30m", Map.of("num_ctx", 8192));
+
+        byte[] streamed = collect(codec.generatePublisher(request, false), Long.MAX_VALUE).get(5, TimeUnit.SECONDS);
+        assertArrayEquals(MAPPER.writeValueAsBytes(request), streamed);
+    }
+
+    @Test
+    void gzipBodyDecompressesToSameJson() throws Exception {
+        ChatCompletionCodec.ChatRequest request = chatRequest();
+        byte[] plain = collect(codec.requestPublisher(request, false), Long.MAX_VALUE).get(5, TimeUnit.SECONDS);
+
+        byte[] compressed = collect(codec.requestPublisher(request, true), Long.MAX_VALUE).get(5, TimeUnit.SECONDS);
+        assertTrue(compressed.length < plain.length / 2, "重复的消息内容应被压缩");
+        assertArrayEquals(plain, gunzip(new ByteArrayInputStream(compressed)));
+    }
+
+    @Test
+    void subscriberRequestingOneChunkAtATime() throws Exception {
+        ChatCompletionCodec.ChatRequest request = chatRequest();
+        HttpRequest.BodyPublisher publisher = codec.requestPublisher(request, false);
+        AtomicInteger chunks = new AtomicInteger();
+
+        byte[] first = collect(publisher, 1, chunks).get(5, TimeUnit.SECONDS);
+        assertTrue(chunks.get() > request.messages().size(), "每条消息至少一块，超过 16KB 的消息分多块");
+        assertEquals(MAPPER.writeValueAsString(expectedChatBody(request)), new String(first, StandardCharsets.UTF_8));
+
+        // 重新订阅（如 HttpClient 重发）从头生成同样的请求体
+        assertArrayEquals(first, collect(publisher, 1).get(5, TimeUnit.SECONDS));
+        assertArrayEquals(first, gunzip(new ByteArrayInputStream(
+            collect(codec.requestPublisher(request, true), 1).get(5, TimeUnit.SECONDS))));
+    }
+
+    @Test
+    void gzipBodyRoundTripsThroughHttpClient() throws Exception {
+        ChatCompletionCodec.ChatRequest request = chatRequest();
+        AtomicReference<byte[]> received = new AtomicReference<>();
+        AtomicReference<String> encoding = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            encoding.set(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            received.set(gunzip(exchange.getRequestBody()));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            HttpRequest httpRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions"))
+                .header("Content-Type", "application/json")
+                .header("Content-Encoding", "gzip")
+                .POST(codec.requestPublisher(request, true))
+                .build();
+            HttpResponse<Void> response = HttpClient.newHttpClient()
+                .send(httpRequest, HttpResponse.BodyHandlers.discarding());
+
+            assertEquals(200, response.statusCode());
+            assertEquals("gzip", encoding.get());
+            assertEquals(MAPPER.writeValueAsString(expectedChatBody(request)),
+                new String(received.get(), StandardCharsets.UTF_8));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * 多条消息，其中一条超过一个 16KB 块，带工具和 JSON 以外的全部可选字段
+     */
+    private static ChatCompletionCodec.ChatRequest chatRequest() {
+        List<ChatCompletionCodec.ChatMessage> messages = new ArrayList<>();
+        messages.add(new ChatCompletionCodec.ChatMessage("system", "你是运维助手，按 \"决策 JSON\" 格式回复。"));
+        messages.add(new ChatCompletionCodec.ChatMessage("user", "排查 order-service 的 500 错误"));
+        messages.add(new ChatCompletionCodec.ChatMessage("assistant",
+            "{\"type\": \"tool_call\", \"tool_name\": \"log_agent\", \"arguments\": {\"query\": \"ERROR\"}}"));
+        messages.add(new ChatCompletionCodec.ChatMessage("user",
+            "观察结果：\n" + "2024-05-01 10:42:01 ERROR 连接池已耗尽 (pool=order-db, active=20)\n".repeat(800)));
+        messages.add(new ChatCompletionCodec.ChatMessage("user", "继续"));
+        return new ChatCompletionCodec.ChatRequest("deepseek-chat", messages, 0.7, true,
+            ChatCompletionCodec.INCLUDE_USAGE, "30m", Map.of("num_ctx", 8192));
+    }
+
+    /**
+     * 与流式写出相同的字段顺序和名称
+     */
+    private static Map<String, Object> expectedChatBody(ChatCompletionCodec.ChatRequest request) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", request.model());
+        body.put("messages", request.messages());
+        body.put("temperature", request.temperature());
+        body.put("stream", request.stream());
+        body.put("stream_options", Map.of("include_usage", true));
+        body.put("keep_alive", request.keepAlive());
+        body.put("options", request.options());
+        return body;
+    }
+
+    private static CompletableFuture<byte[]> collect(HttpRequest.BodyPublisher publisher, long batch) {
+        return collect(publisher, batch, new AtomicInteger());
+    }
+
+    /**
+     * 订阅并收集全部字节：每次请求 batch 个块，收到的块超过已请求数量时失败
+     */
+    private static CompletableFuture<byte[]> collect(HttpRequest.BodyPublisher publisher, long batch,
+                                                     AtomicInteger chunks) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            private Flow.Subscription subscription;
+            private long outstanding;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                outstanding = batch;
+                subscription.request(batch);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                chunks.incrementAndGet();
+                if (outstanding-- <= 0) {
+                    result.completeExceptionally(new AssertionError("收到的块超过请求数量"));
+                }
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.writeBytes(bytes);
+                if (batch != Long.MAX_VALUE && outstanding == 0) {
+                    outstanding = batch;
+                    subscription.request(batch);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                result.complete(out.toByteArray());
+            }
+        });
+        return result;
+    }
+
+    private static byte[] gunzip(InputStream compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(compressed)) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package framework.llm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 测试用的上游客户端：每次调用返回一个由测试完成的 future，并记录流式监听器
+ */
+final class StubLLMClient implements LLMClient {
+    private final String modelName;
+    private final List<Call> calls = new CopyOnWriteArrayList<>();
+
+    record Call(CompletableFuture<String> future, LLMStreamListener listener) {
+        /**
+         * 以上游身份推送一段增量文本
+         */
+        boolean emit(String token) {
+            return listener.onToken(token);
+        }
+    }
+
+    StubLLMClient(String modelName) {
+        this.modelName = modelName;
+    }
+
+    @Override
+    public String chat(List<Map<String, String>> messages) {
+        return chatAsync(messages).join();
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(List<Map<String, String>> messages) {
+        return record(null);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, LLMStreamListener listener) {
+        return chatStreamAsync(messages, null, listener);
+    }
+
+    @Override
+    public CompletableFuture<String> chatStreamAsync(List<Map<String, String>> messages, ChatOptions options,
+                                                     LLMStreamListener listener) {
+        return record(listener);
+    }
+
+    @Override
+    public String getModelName() {
+        return modelName;
+    }
+
+    List<Call> calls() {
+        return calls;
+    }
+
+    Call call(int index) {
+        return calls.get(index);
+    }
+
+    private CompletableFuture<String> record(LLMStreamListener listener) {
+        Call call = new Call(new CompletableFuture<>(), listener);
+        calls.add(call);
+        return call.future;
+    }
+}
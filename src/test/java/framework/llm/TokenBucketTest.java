@@ -0,0 +1,38 @@
+package framework.llm;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    @Test
+    void startsFullAndWaitsForRefillWhenEmpty() {
+        TokenBucket bucket = new TokenBucket(60); // 每秒补充 1 个
+        assertEquals(0, bucket.nanosUntilAvailable(60));
+
+        bucket.consume(60);
+        long wait = bucket.nanosUntilAvailable(1);
+        assertTrue(wait > 900_000_000L && wait <= 1_000_000_000L, "wait=" + wait);
+    }
+
+    @Test
+    void overdraftIsRepaidBeforeNextAcquire() {
+        TokenBucket bucket = new TokenBucket(60);
+        bucket.consume(90);
+        assertTrue(bucket.available() < -29);
+        // 需求超过容量时按容量计算：先还清 30 的透支，再攒满 60
+        long wait = bucket.nanosUntilAvailable(1_000);
+        assertTrue(wait > 89_000_000_000L && wait <= 90_000_000_000L, "wait=" + wait);
+    }
+
+    @Test
+    void zeroQuotaMeansUnlimited() {
+        TokenBucket bucket = new TokenBucket(0);
+        bucket.consume(1_000_000);
+        assertTrue(bucket.isUnlimited());
+        assertEquals(0, bucket.nanosUntilAvailable(1_000_000));
+        assertEquals(Double.POSITIVE_INFINITY, bucket.available());
+    }
+}
@@ -0,0 +1,54 @@
+package framework.llm.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LLMResponseCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() {
+        LLMResponseCache cache = new LLMResponseCache(2, null);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void expiredEntriesMiss() throws Exception {
+        LLMResponseCache cache = new LLMResponseCache(10, Duration.ofMillis(30));
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+
+        Thread.sleep(60);
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    void diskLayerSurvivesRestartAndRefillsMemory(@TempDir Path dir) {
+        Path file = dir.resolve("llm.cache");
+        try (LLMResponseCache cache = new LLMResponseCache(10, null, file, 1 << 20)) {
+            cache.put("a", "持久化的响应");
+        }
+
+        try (LLMResponseCache cache = new LLMResponseCache(10, null, file, 1 << 20)) {
+            assertEquals("持久化的响应", cache.get("a"));
+            assertEquals("持久化的响应", cache.get("a"));
+            CacheStats stats = cache.getStats();
+            assertEquals(1, stats.getDiskHits());
+            assertEquals(1, stats.getMemoryHits());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package framework.llm.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedDiskCacheStoreTest {
+    private static final long ONE_MB = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void laterRecordOverridesEarlierAcrossReopen() {
+        Path file = dir.resolve("store.cache");
+        try (MappedDiskCacheStore store = new MappedDiskCacheStore(file, ONE_MB, 0)) {
+            store.put("k", "v1");
+            store.put("k", "v2");
+            store.put("other", "x");
+        }
+
+        try (MappedDiskCacheStore store = new MappedDiskCacheStore(file, ONE_MB, 0)) {
+            assertEquals("v2", store.get("k"));
+            assertEquals("x", store.get("other"));
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    void expiredRecordsAreDropped() throws Exception {
+        try (MappedDiskCacheStore store = new MappedDiskCacheStore(dir.resolve("ttl.cache"), ONE_MB, 30)) {
+            store.put("k", "v");
+            assertEquals("v", store.get("k"));
+            Thread.sleep(60);
+            assertNull(store.get("k"));
+        }
+    }
+
+    @Test
+    void compactsWhenFullKeepingLatestRecords() {
+        String value = "x".repeat(100_000);
+        try (MappedDiskCacheStore store = new MappedDiskCacheStore(dir.resolve("full.cache"), ONE_MB, 0)) {
+            for (int i = 0; i < 30; i++) {
+                store.put("k" + (i % 3), value + i);
+            }
+            assertTrue(store.usedBytes() <= ONE_MB);
+            assertEquals(3, store.size());
+            assertEquals(value + 29, store.get("k2"));
+            assertEquals(value + 27, store.get("k0"));
+        }
+    }
+}
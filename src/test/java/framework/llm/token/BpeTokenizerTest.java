@@ -0,0 +1,125 @@
+package framework.llm.token;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 使用小词表验证 BPE 计数：完整的 256 个单字节 token 加上指定的合并（rank 按参数顺序），
+ * 期望值按 tiktoken 的规则（正则切分 + 每个片段内按 rank 从小到大合并）手算。
+ */
+class BpeTokenizerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void asciiPiecesMergeByRank() throws IOException {
+        BpeTokenizer tokenizer = load(utf8("he"), utf8("ll"), utf8("llo"), utf8("hello"),
+            utf8(" w"), utf8("or"), utf8("ld"), utf8(" wor"), utf8(" world"));
+
+        assertEquals(2, tokenizer.count("hello world"));
+        assertEquals(3, tokenizer.count("hello worlds"), "\" worlds\" 合并为 \" world\" + \"s\"");
+        assertEquals(0, tokenizer.count(""));
+        assertEquals(0, tokenizer.count((String) null));
+    }
+
+    @Test
+    void lowestRankMergesFirstNotLeftmost() throws IOException {
+        BpeTokenizer tokenizer = load(utf8("bc"), utf8("ab"), utf8("cd"));
+
+        // 先合并 rank 最小的 bc，之后 a|bc|d 没有可合并的相邻对
+        assertEquals(3, tokenizer.count("abcd"));
+    }
+
+    @Test
+    void contractionsAndDigitsAreSplitBeforeMerging() throws IOException {
+        BpeTokenizer tokenizer = load(utf8("do"), utf8("don"), utf8("'t"), utf8("don't"), utf8("12"), utf8("123"));
+
+        assertEquals(2, tokenizer.count("don't"), "缩写 't 单独成片段，整词 don't 不会命中");
+        assertEquals(3, tokenizer.count("12345"), "数字每 3 位一段：123 | 45");
+    }
+
+    @Test
+    void cjkFallsBackToBytesAndMergesKnownCharacters() throws IOException {
+        BpeTokenizer bytesOnly = load();
+        assertEquals(15, bytesOnly.count("你好，世界"), "没有合并时每个 UTF-8 字节一个 token");
+
+        byte[] ni = utf8("你");
+        BpeTokenizer tokenizer = load(Arrays.copyOf(ni, 2), ni);
+        assertEquals(4, tokenizer.count("你好"), "你 合并为一个 token，好 仍是 3 个字节");
+
+        byte[] hao = utf8("好");
+        BpeTokenizer full = load(Arrays.copyOf(ni, 2), ni, Arrays.copyOf(hao, 2), hao, utf8("你好"));
+        assertEquals(1, full.count("你好"));
+        assertEquals(2, full.count("你好你"), "你好你 是一个片段：你好 + 你");
+    }
+
+    @Test
+    void emojiSequenceIsOnePieceOfBytes() throws IOException {
+        byte[] grin = utf8("😀");
+        BpeTokenizer tokenizer = load(Arrays.copyOf(grin, 2), Arrays.copyOf(grin, 3));
+
+        assertEquals(2, tokenizer.count("😀"), "F0 9F 98 | 80");
+        assertEquals(6, tokenizer.count("ok😀😀"), "ok 两个字节 + 两个表情各 2 个 token");
+    }
+
+    @Test
+    void truncateStopsAtPieceBoundaries() throws IOException {
+        BpeTokenizer tokenizer = load();
+        String text = "ab 😀 cd";
+        assertEquals(10, tokenizer.count(text), "片段 ab | \" 😀\" | \" cd\"：2 + 5 + 3 字节");
+
+        assertEquals(text, tokenizer.truncate(text, 10), "恰好等于上限时原样返回");
+        assertEquals(text, tokenizer.truncate(text, 100));
+        assertEquals("ab 😀", tokenizer.truncate(text, 9));
+        assertEquals("ab 😀", tokenizer.truncate(text, 7));
+        assertEquals("ab", tokenizer.truncate(text, 6), "不会截断表情的代理对");
+        assertEquals("", tokenizer.truncate(text, 1), "第一个片段就超出时返回空串");
+        assertEquals("", tokenizer.truncate(text, 0));
+        assertEquals("", tokenizer.truncate(null, 5));
+    }
+
+    @Test
+    void longTextCountIsStableAcrossCacheHits() throws IOException {
+        BpeTokenizer tokenizer = load(utf8("he"), utf8("ll"), utf8("llo"), utf8("hello"));
+        String text = "hello 你好 😀 ".repeat(40);
+
+        int first = tokenizer.count(text);
+        assertEquals(first, tokenizer.count(text));
+        assertEquals(first, tokenizer.count(new String(text)));
+    }
+
+    @Test
+    void nameComesFromFileAndEmptyVocabIsRejected() throws IOException {
+        assertEquals("cl100k_base", load().getName());
+
+        Path empty = Files.writeString(dir.resolve("empty.tiktoken"), "");
+        assertThrows(IllegalArgumentException.class, () -> BpeTokenizer.load(empty));
+    }
+
+    private BpeTokenizer load(byte[]... merges) throws IOException {
+        Base64.Encoder encoder = Base64.getEncoder();
+        StringBuilder vocab = new StringBuilder();
+        for (int b = 0; b < 256; b++) {
+            vocab.append(encoder.encodeToString(new byte[]{(byte) b})).append(' ').append(b).append('\n');
+        }
+        for (int i = 0; i < merges.length; i++) {
+            vocab.append(encoder.encodeToString(merges[i])).append(' ').append(256 + i).append('\n');
+        }
+        Path file = Files.writeString(dir.resolve("cl100k_base.tiktoken"), vocab, StandardCharsets.US_ASCII);
+        return BpeTokenizer.load(file);
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,116 @@
+package framework.llm.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextBudgetTest {
+    private static final String SYSTEM = "s".repeat(40);
+    private static final String QUERY = "q".repeat(40);
+
+    @Test
+    void underBudgetReturnsSameList() {
+        List<Map<String, String>> messages = react(3, 40);
+        ContextBudget budget = budget(1_000);
+
+        assertSame(messages, budget.fit(messages, 2, 2));
+    }
+
+    @Test
+    void droppedRoundsKeepToolCallAndObservationTogether() {
+        List<Map<String, String>> messages = react(3, 40);
+        List<Map<String, String>> original = List.copyOf(messages);
+        // 每条消息 43，共 8 条 + 3 = 347；删掉一轮（两条）后 261
+        ContextBudget budget = budget(300);
+
+        List<Map<String, String>> fitted = budget.fit(messages, 2, 2);
+
+        assertEquals(List.of(messages.get(0), messages.get(1), messages.get(4), messages.get(5),
+            messages.get(6), messages.get(7)), fitted);
+        assertEquals(original, messages, "不修改传入的列表");
+        for (int i = 2; i < fitted.size(); i += 2) {
+            assertEquals("assistant", fitted.get(i).get("role"));
+            String round = fitted.get(i).get("content").substring("call ".length(), "call ".length() + 1);
+            assertTrue(fitted.get(i + 1).get("content").startsWith("obs " + round), "工具调用与对应的观察结果一起保留");
+        }
+        assertTrue(budget.count(fitted) <= budget.getAvailableTokens());
+    }
+
+    @Test
+    void headAndTailSurviveWhenMiddleIsNotEnough() {
+        List<Map<String, String>> messages = react(3, 400);
+        // 中间全部删除后仍超出：截断最长的受保护消息（最新的观察结果），系统提示不动
+        ContextBudget budget = budget(300);
+
+        List<Map<String, String>> fitted = budget.fit(messages, 2, 2);
+
+        assertEquals(4, fitted.size());
+        assertSame(messages.get(0), fitted.get(0));
+        assertSame(messages.get(1), fitted.get(1));
+        assertSame(messages.get(6), fitted.get(2));
+        assertEquals("user", fitted.get(3).get("role"));
+        assertTrue(fitted.get(3).get("content").startsWith("obs 3"));
+        assertTrue(fitted.get(3).get("content").endsWith("已截断）"));
+        assertTrue(budget.count(fitted) <= budget.getAvailableTokens());
+        assertEquals(400, messages.get(7).get("content").length(), "原消息不被修改");
+    }
+
+    @Test
+    void truncateFitsMarkerWithinLimit() {
+        ContextBudget budget = budget(1_000);
+        String text = "x".repeat(200);
+
+        assertSame(text, budget.truncate(text, 200), "未超出时原样返回");
+        String truncated = budget.truncate(text, 50);
+        assertTrue(truncated.endsWith("已截断）"));
+        assertTrue(budget.count(truncated) <= 50, "截断标记也计入上限");
+    }
+
+    /**
+     * 系统提示、原始查询，之后是 rounds 轮（助手的工具调用 + 用户消息中的观察结果）
+     */
+    private static List<Map<String, String>> react(int rounds, int observationLength) {
+        List<Map<String, String>> messages = new ArrayList<>();
+        messages.add(Map.of("role", "system", "content", SYSTEM));
+        messages.add(Map.of("role", "user", "content", QUERY));
+        for (int i = 1; i <= rounds; i++) {
+            messages.add(Map.of("role", "assistant", "content", pad("call " + i, 40)));
+            messages.add(Map.of("role", "user", "content", pad("obs " + i, observationLength)));
+        }
+        return messages;
+    }
+
+    private static String pad(String prefix, int length) {
+        return prefix + ".".repeat(length - prefix.length());
+    }
+
+    private static ContextBudget budget(int availableTokens) {
+        return new ContextBudget(new CharTokenizer(), availableTokens + 100, 100);
+    }
+
+    /**
+     * 一个字符一个 token，便于手算预算
+     */
+    private static final class CharTokenizer implements Tokenizer {
+        @Override
+        public int count(String text) {
+            return text == null ? 0 : text.length();
+        }
+
+        @Override
+        public String truncate(String text, int maxTokens) {
+            return text == null ? "" : text.substring(0, Math.min(text.length(), Math.max(0, maxTokens)));
+        }
+
+        @Override
+        public String getName() {
+            return "chars";
+        }
+    }
+}
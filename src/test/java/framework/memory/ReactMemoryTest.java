@@ -0,0 +1,114 @@
+package framework.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactMemoryTest {
+    private static final List<Map<String, String>> PREFIX = List.of(
+        Map.of("role", "system", "content", "system prompt"),
+        Map.of("role", "user", "content", "query")
+    );
+    /** 估算分词器下约 250 tokens */
+    private static final String LONG_OBSERVATION = "x".repeat(1000);
+
+    @Test
+    void roundsAppendAfterPrefix() {
+        ReactMemory memory = new ReactMemory(PREFIX);
+        memory.addRound("t1", "o1");
+        memory.addRound("t2", "o2");
+
+        List<Map<String, String>> messages = memory.getMessages();
+        assertEquals(6, messages.size());
+        assertSame(PREFIX.get(0), messages.get(0));
+        assertSame(PREFIX.get(1), messages.get(1));
+        assertEquals(Map.of("role", "assistant", "content", "t1"), messages.get(2));
+        assertEquals(Map.of("role", "user", "content", "o1"), messages.get(3));
+        assertEquals(Map.of("role", "assistant", "content", "t2"), messages.get(4));
+        assertEquals(Map.of("role", "user", "content", "o2"), messages.get(5));
+    }
+
+    @Test
+    void onlyObservationLeavingRecentWindowIsCompressed() {
+        CompactionPolicy policy = new CompactionPolicy(CompactionPolicy.Mode.TRUNCATE, 50, 100_000, 1);
+        ReactMemory memory = new ReactMemory(PREFIX, policy, null);
+
+        memory.addRound("t1", LONG_OBSERVATION);
+        assertEquals(LONG_OBSERVATION, memory.getMessages().get(3).get("content"), "最近一轮保持原文");
+
+        memory.addRound("t2", LONG_OBSERVATION);
+        List<Map<String, String>> messages = memory.getMessages();
+        String compressed = messages.get(3).get("content");
+        assertTrue(compressed.contains("省略约"), compressed);
+        assertTrue(compressed.length() < LONG_OBSERVATION.length());
+        assertEquals("user", messages.get(3).get("role"));
+        assertEquals("t1", messages.get(2).get("content"), "思考不被改写");
+        assertEquals(LONG_OBSERVATION, messages.get(5).get("content"));
+        assertTrue(memory.getRounds().get(0).isCompacted());
+        assertFalse(memory.getRounds().get(1).isCompacted());
+    }
+
+    @Test
+    void budgetReplacesOldestObservationWithReference() {
+        CompactionPolicy policy = new CompactionPolicy(CompactionPolicy.Mode.NONE, 100_000, 600, 1);
+        ReactMemory memory = new ReactMemory(PREFIX, policy, null);
+
+        memory.addRound("t1", LONG_OBSERVATION);
+        memory.addRound("t2", LONG_OBSERVATION);
+        assertEquals(LONG_OBSERVATION, memory.getMessages().get(3).get("content"), "未超出预算");
+
+        memory.addRound("t3", LONG_OBSERVATION);
+        List<Map<String, String>> messages = memory.getMessages();
+        assertEquals(8, messages.size());
+        assertEquals("（第 1 轮的观察已省略，约 250 tokens）", messages.get(3).get("content"));
+        assertEquals(LONG_OBSERVATION, messages.get(5).get("content"), "回到预算内后不再替换");
+        assertEquals(LONG_OBSERVATION, messages.get(7).get("content"));
+    }
+
+    @Test
+    void recentRoundsSurviveEvenOverBudget() {
+        CompactionPolicy policy = new CompactionPolicy(CompactionPolicy.Mode.NONE, 100_000, 10, 2);
+        ReactMemory memory = new ReactMemory(PREFIX, policy, null);
+
+        memory.addRound("t1", LONG_OBSERVATION);
+        memory.addRound("t2", LONG_OBSERVATION);
+        memory.addRound("t3", LONG_OBSERVATION);
+
+        List<Map<String, String>> messages = memory.getMessages();
+        assertTrue(messages.get(3).get("content").startsWith("（第 1 轮"));
+        assertEquals(LONG_OBSERVATION, messages.get(5).get("content"));
+        assertEquals(LONG_OBSERVATION, messages.get(7).get("content"));
+    }
+
+    @Test
+    void referencedRoundIsNotCompressedAgain() {
+        CompactionPolicy policy = new CompactionPolicy(CompactionPolicy.Mode.TRUNCATE, 50, 10, 0);
+        ReactMemory memory = new ReactMemory(PREFIX, policy, null);
+
+        memory.addRound("t1", LONG_OBSERVATION);
+        memory.addRound("t2", LONG_OBSERVATION);
+
+        List<Map<String, String>> messages = memory.getMessages();
+        assertEquals("（第 1 轮的观察已省略，约 250 tokens）", messages.get(3).get("content"));
+        assertEquals("（第 2 轮的观察已省略，约 250 tokens）", messages.get(5).get("content"));
+        assertEquals(6, messages.size());
+    }
+
+    @Test
+    void snapshotIsNotAffectedByLaterCompaction() {
+        CompactionPolicy policy = new CompactionPolicy(CompactionPolicy.Mode.TRUNCATE, 50, 100_000, 1);
+        ReactMemory memory = new ReactMemory(PREFIX, policy, null);
+        memory.addRound("t1", LONG_OBSERVATION);
+        List<Map<String, String>> snapshot = memory.getMessages();
+
+        memory.addRound("t2", LONG_OBSERVATION);
+        assertEquals(4, snapshot.size());
+        assertEquals(LONG_OBSERVATION, snapshot.get(3).get("content"));
+    }
+}
@@ -0,0 +1,197 @@
+package framework.tool;
+
+import framework.model.AgentRequest;
+import framework.model.AgentResponse;
+import framework.model.AgentState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolResultCacheTest {
+    private static final Tool READ_FILE = new FakeTool("read_file", true, false);
+    private static final Tool WRITE_FILE = new FakeTool("write_file", false, true);
+    private static final Tool RUN_COMMAND = new FakeTool("run_command", false, false);
+
+    private final ToolResultCache cache = new ToolResultCache();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void concurrentIdenticalCallsExecuteOnce() throws Exception {
+        CompletableFuture<AgentResponse> pending = new CompletableFuture<>();
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<CompletableFuture<CompletableFuture<AgentResponse>>> calls = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                // 参数顺序不同也是同一个调用
+                Map<String, Object> args = new LinkedHashMap<>();
+                if (i % 2 == 0) {
+                    args.put("path", "docs/requirement.md");
+                    args.put("encoding", "utf-8");
+                } else {
+                    args.put("encoding", "utf-8");
+                    args.put("path", "docs/requirement.md");
+                }
+                calls.add(CompletableFuture.supplyAsync(() -> {
+                    await(start);
+                    return cache.call(READ_FILE, args, counting(() -> pending));
+                }, executor));
+            }
+            start.countDown();
+
+            List<CompletableFuture<AgentResponse>> results = new ArrayList<>();
+            for (CompletableFuture<CompletableFuture<AgentResponse>> call : calls) {
+                results.add(call.get(5, TimeUnit.SECONDS));
+            }
+            AgentResponse response = completed("需求文档内容");
+            pending.complete(response);
+
+            for (CompletableFuture<AgentResponse> result : results) {
+                assertSame(response, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, executions.get(), "相同调用只执行一次");
+            assertEquals(1, cache.getMisses());
+            assertEquals(callers - 1, cache.getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancellingOneCallerLeavesOthersRunning() throws Exception {
+        CompletableFuture<AgentResponse> pending = new CompletableFuture<>();
+        CompletableFuture<AgentResponse> first = cache.call(READ_FILE, args("a.md"), counting(() -> pending));
+        CompletableFuture<AgentResponse> second = cache.call(READ_FILE, args("a.md"), counting(() -> pending));
+
+        first.cancel(true);
+        assertFalse(pending.isCancelled(), "取消不传到共享的执行");
+        assertFalse(second.isDone());
+
+        AgentResponse response = completed("a");
+        pending.complete(response);
+        assertSame(response, second.get(5, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class, first::join);
+        assertSame(response, cache.call(READ_FILE, args("a.md"), counting(() -> pending)).join(), "结果仍被缓存");
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void writingToolClearsCachedResults() {
+        cache.call(READ_FILE, args("a.md"), counting(() -> CompletableFuture.completedFuture(completed("旧内容")))).join();
+        assertEquals(1, cache.size());
+
+        CompletableFuture<AgentResponse> write = new CompletableFuture<>();
+        CompletableFuture<AgentResponse> writing = cache.call(WRITE_FILE, args("a.md"), counting(() -> write));
+        assertEquals(0, cache.size(), "写入前清空");
+
+        // 写入进行中读到的结果可能是旧的，写入结束后同样清空
+        cache.call(READ_FILE, args("a.md"), counting(() -> CompletableFuture.completedFuture(completed("写入中"))));
+        write.complete(completed("已写入"));
+        writing.join();
+        assertEquals(0, cache.size(), "写入后清空");
+
+        AgentResponse fresh = cache.call(READ_FILE, args("a.md"),
+            counting(() -> CompletableFuture.completedFuture(completed("新内容")))).join();
+        assertEquals("新内容", fresh.getOutput());
+        assertEquals(4, executions.get());
+    }
+
+    @Test
+    void failedResultsAreNotCached() {
+        CompletableFuture<AgentResponse> failing = new CompletableFuture<>();
+        CompletableFuture<AgentResponse> first = cache.call(READ_FILE, args("a.md"), counting(() -> failing));
+        CompletableFuture<AgentResponse> waiting = cache.call(READ_FILE, args("a.md"), counting(() -> failing));
+        failing.completeExceptionally(new IllegalStateException("MCP 管道已关闭"));
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, waiting::join, "等待中的调用收到同一个失败");
+        assertEquals(0, cache.size());
+
+        AgentResponse failed = new AgentResponse(AgentState.FAILED, "文件不存在", null, null);
+        cache.call(READ_FILE, args("a.md"), counting(() -> CompletableFuture.completedFuture(failed))).join();
+        assertEquals(0, cache.size(), "非 COMPLETED 的结果同样不缓存");
+
+        cache.call(READ_FILE, args("a.md"), counting(() -> CompletableFuture.completedFuture(completed("a")))).join();
+        assertEquals(3, executions.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void toolsWithoutMetadataAreNeverShared() {
+        for (int i = 0; i < 3; i++) {
+            cache.call(RUN_COMMAND, args("ls"), counting(() -> CompletableFuture.completedFuture(completed("ok")))).join();
+        }
+        assertEquals(3, executions.get());
+        assertEquals(0, cache.size());
+        assertTrue(cache.toString().contains("命中 0 次"));
+    }
+
+    private Supplier<CompletableFuture<AgentResponse>> counting(Supplier<CompletableFuture<AgentResponse>> execution) {
+        return () -> {
+            executions.incrementAndGet();
+            return execution.get();
+        };
+    }
+
+    private static Map<String, Object> args(String path) {
+        return Map.of("path", path);
+    }
+
+    private static AgentResponse completed(String output) {
+        return new AgentResponse(AgentState.COMPLETED, output, null, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record FakeTool(String name, boolean idempotent, boolean writing) implements Tool {
+        @Override
+        public CompletableFuture<AgentResponse> execute(AgentRequest request) {
+            throw new UnsupportedOperationException("由测试提供执行");
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDescription() {
+            return name;
+        }
+
+        @Override
+        public boolean isIdempotent() {
+            return idempotent;
+        }
+
+        @Override
+        public boolean isWriting() {
+            return writing;
+        }
+    }
+}